@@ -0,0 +1,71 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Checking all days of the calendar grid for holidays, as the renderers do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HolidaysBenchmark
+{
+    private final Position[] positions = new Position[12 * 31];
+
+
+
+    @Setup
+    public void setUp()
+    {
+        for (int month = 1; month <= 12; month++) {
+            for (int day = 1; day <= 31; day++) {
+                final Position pos = new Position(IcsFixture.YEAR, month, 1, CalendarLayout.ROWS_PER_DAY);
+                pos.setDay(day);
+                positions[(month - 1) * 31 + day - 1] = pos;
+            }
+        }
+    }
+
+
+
+    @Benchmark
+    public int isHoliday()
+    {
+        final Holidays holidays = Holidays.forYear(IcsFixture.YEAR);
+        int result = 0;
+        for (final Position pos : positions) {
+            if (holidays.isHoliday(pos)) {
+                result++;
+            }
+        }
+        return result;
+    }
+}
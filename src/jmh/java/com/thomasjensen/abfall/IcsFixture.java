@@ -0,0 +1,147 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.IsoFields;
+import java.util.Locale;
+
+
+/**
+ * Synthetic ICS files of different sizes, as used by the benchmarks. They look like the files downloaded from the
+ * municipalities, including the December of the previous year, which is filtered out when reading.
+ */
+public enum IcsFixture
+{
+    /** one street, Restmüll only */
+    Small(1, false),
+
+    /** one street, all categories (about 150 events) */
+    Typical(1, true),
+
+    /** a whole city of 250 streets, all categories, in one file (about 17 MB) */
+    City(250, true);
+
+    //
+
+    /** the year of the calendars */
+    public static final int YEAR = 2026;
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd", Locale.ROOT);
+
+    private final int numStreets;
+
+    private final boolean allCategories;
+
+    private byte[] bytes;
+
+
+
+    private IcsFixture(final int pNumStreets, final boolean pAllCategories)
+    {
+        numStreets = pNumStreets;
+        allCategories = pAllCategories;
+    }
+
+
+
+    /**
+     * Getter.
+     *
+     * @return the ICS file, UTF-8 encoded (created on first use)
+     */
+    public synchronized byte[] getBytes()
+    {
+        if (bytes == null) {
+            bytes = create().getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes;
+    }
+
+
+
+    /**
+     * Create a configuration for reading and rendering the fixtures.
+     *
+     * @param pEngine the engine
+     * @param pReferenceParser use the Biweekly parser instead of the streaming reader
+     * @return the configuration (for a single file and one thread)
+     */
+    public static Config config(final Engine pEngine, final boolean pReferenceParser)
+    {
+        return Config.builder(YearRange.of(YEAR)).engine(pEngine).referenceParser(pReferenceParser).build();
+    }
+
+
+
+    private String create()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("BEGIN:VCALENDAR\r\nVERSION:2.0\r\nPRODID:-//abfall//IcsFixture//DE\r\n");
+        int uid = 0;
+        for (int street = 1; street <= numStreets; street++) {
+            for (LocalDate date = LocalDate.of(YEAR - 1, 12, 1); date.getYear() <= YEAR; date = date.plusDays(1)) {
+                final String summary = getSummary(date);
+                if (summary == null) {
+                    continue;
+                }
+                final String ds = date.format(DATE_FORMAT);
+                sb.append("BEGIN:VEVENT\r\nUID:").append(++uid).append('-').append(ds).append("@abfall.example\r\n");
+                sb.append("DTSTAMP:").append(YEAR - 1).append("1101T120000Z\r\n");
+                sb.append("DTSTART;VALUE=DATE:").append(ds).append("\r\n");
+                sb.append("DTEND;VALUE=DATE:").append(date.plusDays(1).format(DATE_FORMAT)).append("\r\n");
+                sb.append("SUMMARY:").append(summary).append("\r\n");
+                sb.append("LOCATION:Musterstraße ").append(street).append("\\, 12345 Musterstadt\r\n");
+                sb.append("DESCRIPTION:Bitte stellen Sie die Behälter bis 6:00 Uhr bereit. Weitere Informationen\r\n");
+                sb.append(" finden Sie unter https://abfall.example/musterstadt/").append(street).append("\r\n");
+                sb.append("BEGIN:VALARM\r\nACTION:DISPLAY\r\nDESCRIPTION:").append(summary)
+                    .append("\r\nTRIGGER:-PT6H\r\nEND:VALARM\r\nEND:VEVENT\r\n");
+            }
+        }
+        sb.append("END:VCALENDAR\r\n");
+        return sb.toString();
+    }
+
+
+
+    private String getSummary(final LocalDate pDate)
+    {
+        final int week = pDate.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR);
+        final DayOfWeek dow = pDate.getDayOfWeek();
+        String result = null;
+        if (dow == DayOfWeek.MONDAY) {
+            result = "Restmülltonne";
+        }
+        else if (!allCategories) {
+            result = null;
+        }
+        else if (dow == DayOfWeek.TUESDAY) {
+            result = week % 2 == 0 ? "Biotonne" : "Gelber Sack";
+        }
+        else if (dow == DayOfWeek.WEDNESDAY && week % 4 == 0) {
+            result = "Papiertonne";
+        }
+        else if (dow == DayOfWeek.FRIDAY && week % 2 == 0 && pDate.getMonthValue() >= 4
+            && pDate.getMonthValue() <= 11) {
+            result = "Gartenabfall";
+        }
+        else if (dow == DayOfWeek.THURSDAY && pDate.getDayOfMonth() <= 7 && pDate.getMonthValue() % 3 == 0) {
+            result = "Schadstoffmobil";
+        }
+        return result;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Parsing the ICS file, with the streaming {@link IcsReader} and with the Biweekly object model.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ParseBenchmark
+{
+    @Param({"Small", "Typical", "City"})
+    public IcsFixture fixture;
+
+    @Param({"false", "true"})
+    public boolean referenceParser;
+
+    private final Converter converter = new Converter();
+
+    private Config config;
+
+    private byte[] ics;
+
+
+
+    @Setup
+    public void setUp()
+    {
+        config = IcsFixture.config(Engine.Xssf, referenceParser);
+        ics = fixture.getBytes();
+    }
+
+
+
+    @Benchmark
+    public List<IcsEvent> readIcs()
+        throws IOException
+    {
+        return converter.readIcs(config, new ByteArrayInputStream(ics), new RunStats(config));
+    }
+}
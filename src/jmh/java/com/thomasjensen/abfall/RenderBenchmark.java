@@ -0,0 +1,75 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.ss.usermodel.Workbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Rendering the calendar of a typical ICS file into a POI workbook ({@link ExcelCreator}), and into the layout which
+ * all engines render from ({@link CalendarLayout}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RenderBenchmark
+{
+    private final Config xssfConfig = IcsFixture.config(Engine.Xssf, false);
+
+    private final Config directConfig = IcsFixture.config(Engine.Direct, false);
+
+    private Schedule schedule;
+
+
+
+    @Setup
+    public void setUp()
+        throws IOException
+    {
+        schedule = new Converter().readSchedule(xssfConfig, new ByteArrayInputStream(IcsFixture.Typical.getBytes()));
+    }
+
+
+
+    @Benchmark
+    public Workbook excelCreator()
+    {
+        return new ExcelCreator(xssfConfig).create(schedule);
+    }
+
+
+
+    @Benchmark
+    public CalendarLayout calendarLayout()
+    {
+        return CalendarLayout.create(directConfig, schedule);
+    }
+}
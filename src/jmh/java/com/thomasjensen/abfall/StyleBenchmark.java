@@ -0,0 +1,109 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/**
+ * Getting the cell styles of all day cells of a year from the {@link CellStyleFactory} by their {@link StyleKey}s, as
+ * the Excel engines do, once from a new factory, where each style is created in the workbook, and once from a factory
+ * which already has all styles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StyleBenchmark
+{
+    /** the categories of a day cell; days without a pickup get the style of an empty day or a Sunday instead */
+    private static final Art[] CATEGORIES = {Art.Gartenabfall, Art.Papier, Art.GelberSack, Art.Rest, Art.Bio,
+        Art.Schadstoff3};
+
+    private static final Holidays HOLIDAYS = Holidays.forYear(IcsFixture.YEAR);
+
+    private CellStyleFactory warmFactory;
+
+
+
+    @Setup
+    public void setUp()
+    {
+        warmFactory = new CellStyleFactory(new XSSFWorkbook());
+        requestAll(warmFactory, null);
+    }
+
+
+
+    /**
+     * Includes the creation of an empty workbook, which the factory needs.
+     */
+    @Benchmark
+    public int createStyles(final Blackhole pBlackhole)
+    {
+        final CellStyleFactory factory = new CellStyleFactory(new XSSFWorkbook());
+        requestAll(factory, pBlackhole);
+        return factory.getStyleCount();
+    }
+
+
+
+    @Benchmark
+    public void cachedStyles(final Blackhole pBlackhole)
+    {
+        requestAll(warmFactory, pBlackhole);
+    }
+
+
+
+    private static void requestAll(final CellStyleFactory pFactory, final Blackhole pBlackhole)
+    {
+        for (int month = 1; month <= 12; month++) {
+            for (int dayRowIdx = 0; dayRowIdx < CalendarLayout.ROWS_PER_DAY; dayRowIdx++) {
+                final Position pos = new Position(IcsFixture.YEAR, month, dayRowIdx, CalendarLayout.ROWS_PER_DAY);
+                for (int day = 1; day <= 31; day++) {
+                    pos.setDay(day);
+                    final Object emptyStyle = pFactory.getStyle(pos.isSunday() ? StyleKey.sunday(pos)
+                        : StyleKey.emptyDay(pos));
+                    if (pBlackhole != null) {
+                        pBlackhole.consume(emptyStyle);
+                    }
+                    for (final Art category : CATEGORIES) {
+                        final Object style = pFactory.getStyle(dayRowIdx == 0
+                            ? StyleKey.dayHeading(pos, category, HOLIDAYS.isHoliday(pos))
+                            : StyleKey.dayCell(pos, category));
+                        if (pBlackhole != null) {
+                            pBlackhole.consume(style);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.ss.usermodel.Workbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Writing the rendered calendar of a typical ICS file as Excel file, once by POI ({@link Workbook#write}), and once
+ * by the direct engine ({@link XlsxWriter}). The output is discarded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class WriteBenchmark
+{
+    private final Config xssfConfig = IcsFixture.config(Engine.Xssf, false);
+
+    private final Config directConfig = IcsFixture.config(Engine.Direct, false);
+
+    private Workbook workbook;
+
+    private CalendarLayout layout;
+
+
+
+    @Setup
+    public void setUp()
+        throws IOException
+    {
+        final Schedule schedule = new Converter().readSchedule(xssfConfig,
+            new ByteArrayInputStream(IcsFixture.Typical.getBytes()));
+        workbook = new ExcelCreator(xssfConfig).create(schedule);
+        layout = CalendarLayout.create(directConfig, schedule);
+    }
+
+
+
+    @Benchmark
+    public void xssfWrite()
+        throws IOException
+    {
+        workbook.write(OutputStream.nullOutputStream());
+    }
+
+
+
+    @Benchmark
+    public void directWrite()
+        throws IOException
+    {
+        new XlsxWriter(directConfig).write(layout, OutputStream.nullOutputStream());
+    }
+}
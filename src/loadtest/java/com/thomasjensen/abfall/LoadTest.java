@@ -0,0 +1,186 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Local load test of the conversion {@link Server}. It starts the server in this JVM on a free port, sends a number
+ * of conversion requests from several concurrent clients, and checks the 95th percentile of the latencies against
+ * {@link Server#LATENCY_TARGET_MILLIS}. No external services are needed.
+ * <p>Arguments (all optional): <code>[requests] [clients] [engine] [icsFile]</code>. Without an ICS file, a
+ * synthetic one with a year of weekly and biweekly pickup dates is used. Exits with 1 if the target was missed.</p>
+ */
+public final class LoadTest
+{
+    private static final int YEAR = 2026;
+
+
+
+    private LoadTest()
+    {
+        // main class
+    }
+
+
+
+    public static void main(final String[] pArgs)
+        throws IOException, InterruptedException, ExecutionException
+    {
+        final int numRequests = pArgs.length > 0 ? Integer.parseInt(pArgs[0]) : 2000;
+        final int numClients = pArgs.length > 1 ? Integer.parseInt(pArgs[1]) : 16;
+        final Engine engine = pArgs.length > 2 ? Engine.fromName(pArgs[2]) : Engine.Xssf;
+        if (engine == null) {
+            throw new IllegalArgumentException("Unknown engine: " + pArgs[2]);
+        }
+        final byte[] ics = pArgs.length > 3 ? Files.readAllBytes(Paths.get(pArgs[3]))
+            : createIcs().getBytes(StandardCharsets.UTF_8);
+
+        final Config config = Config.builder(YearRange.of(YEAR)).threads(Runtime.getRuntime().availableProcessors())
+            .engine(engine).serverPort(0).build();
+        final Server server = new Server(config);
+        server.start();
+        final ExecutorService clients = Executors.newFixedThreadPool(numClients);
+        try {
+            // the JDK's HTTP server does not speak HTTP/2, so don't let the client try to upgrade each connection
+            final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            final HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + server.getPort() + Server.PATH + "?year=" + YEAR))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(ics))
+                .build();
+
+            // warm up the client side, and the JIT on the server side
+            for (int i = 0; i < Math.min(100, numRequests); i++) {
+                send(httpClient, request);
+            }
+
+            final long[] latencies = new long[numRequests];
+            final AtomicInteger next = new AtomicInteger();
+            final long startNanos = System.nanoTime();
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < numClients; c++) {
+                futures.add(clients.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < numRequests; i = next.getAndIncrement()) {
+                        final long t0 = System.nanoTime();
+                        send(httpClient, request);
+                        latencies[i] = System.nanoTime() - t0;
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+            final long totalNanos = System.nanoTime() - startNanos;
+
+            Arrays.sort(latencies);
+            final long p95 = percentileMillis(latencies, 95);
+            System.out.println("Engine " + engine + ", " + numRequests + " requests, " + numClients + " clients, "
+                + ics.length + " bytes of ICS");
+            System.out.println("Throughput: " + (numRequests * 1000000000L / totalNanos) + " requests/s");
+            System.out.println("Latency (ms): p50=" + percentileMillis(latencies, 50) + " p95=" + p95 + " p99="
+                + percentileMillis(latencies, 99) + " max=" + latencies[latencies.length - 1] / 1000000L);
+            if (p95 > Server.LATENCY_TARGET_MILLIS) {
+                System.out.println("FAILED: p95 latency exceeds the target of " + Server.LATENCY_TARGET_MILLIS
+                    + " ms");
+                System.exit(1);
+            }
+            System.out.println("OK: p95 latency is within the target of " + Server.LATENCY_TARGET_MILLIS + " ms");
+        }
+        finally {
+            clients.shutdownNow();
+            server.stop();
+        }
+    }
+
+
+
+    private static void send(final HttpClient pClient, final HttpRequest pRequest)
+        throws IOException, InterruptedException
+    {
+        final HttpResponse<byte[]> response = pClient.send(pRequest, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("HTTP " + response.statusCode() + ": "
+                + new String(response.body(), StandardCharsets.UTF_8));
+        }
+    }
+
+
+
+    private static long percentileMillis(final long[] pSortedNanos, final int pPercentile)
+    {
+        final int idx = Math.min(pSortedNanos.length - 1, pSortedNanos.length * pPercentile / 100);
+        return pSortedNanos[idx] / 1000000L;
+    }
+
+
+
+    /**
+     * Create an ICS file similar to those of the municipalities: Restmüll every week, Bio and Gelber Sack every other
+     * week, Papier every four weeks, and Gartenabfall every other week from April through November.
+     */
+    private static String createIcs()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("BEGIN:VCALENDAR\r\nVERSION:2.0\r\nPRODID:-//abfall//LoadTest//DE\r\n");
+        int uid = 0;
+        for (LocalDate date = LocalDate.of(YEAR, 1, 1); date.getYear() == YEAR; date = date.plusDays(1)) {
+            final int week = date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR);
+            final DayOfWeek dow = date.getDayOfWeek();
+            String summary = null;
+            if (dow == DayOfWeek.MONDAY) {
+                summary = "Restmülltonne";
+            }
+            else if (dow == DayOfWeek.TUESDAY && week % 2 == 0) {
+                summary = "Biotonne";
+            }
+            else if (dow == DayOfWeek.TUESDAY && week % 2 == 1) {
+                summary = "Gelber Sack";
+            }
+            else if (dow == DayOfWeek.WEDNESDAY && week % 4 == 0) {
+                summary = "Papiertonne";
+            }
+            else if (dow == DayOfWeek.FRIDAY && week % 2 == 0 && date.getMonthValue() >= 4
+                && date.getMonthValue() <= 11) {
+                summary = "Gartenabfall";
+            }
+            if (summary != null) {
+                sb.append("BEGIN:VEVENT\r\nUID:").append(++uid).append("@abfall\r\nDTSTART;VALUE=DATE:")
+                    .append(date.toString().replace("-", "")).append("\r\nSUMMARY:").append(summary)
+                    .append("\r\nLOCATION:Musterstraße 1\r\nEND:VEVENT\r\n");
+            }
+        }
+        sb.append("END:VCALENDAR\r\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+
+/**
+ * Entry point for using the converter as a library, for example in a service which converts uploaded ICS files
+ * without starting a process per file. ICS data is read from a stream or byte array, and the calendar is written to
+ * any stream; no files are touched, and the JVM is never exited.
+ * <p>An instance is immutable, and can be used by any number of threads concurrently. The state shared by all
+ * conversions (categories, holidays, calendar skeletons, and the QR code image) is initialized once per JVM and then
+ * only read, so that concurrent conversions do not contend for locks.</p>
+ * <p>If the same calendars are requested again and again, a {@link RenderCache} can be added by
+ * {@link #withRenderCache}, so that each one is converted only once.</p>
+ */
+public final class Abfall
+{
+    /** lowest year accepted for a calendar, as on the command line */
+    private static final int MIN_YEAR = 2000;
+
+    /** highest year accepted for a calendar, which must have four digits */
+    private static final int MAX_YEAR = 9999;
+
+    /** the configuration all conversions are derived from */
+    private final Config config;
+
+    /** the cache of converted files, or <code>null</code> to convert every time */
+    private final RenderCache renderCache;
+
+
+
+    /**
+     * Constructor for Excel files rendered by the default engine, using the built-in categories.
+     */
+    public Abfall()
+    {
+        this(Config.builder(YearRange.of(MIN_YEAR)).build());
+    }
+
+
+
+    /**
+     * Constructor.
+     *
+     * @param pEngine the rendering engine for Excel files
+     * @param pFormat the output format
+     * @param pCategoriesFile file with rules for classifying the pickup dates, or <code>null</code> for the built-in
+     * rules
+     * @throws IOException the categories file could not be read
+     * @throws IllegalArgumentException the categories file contains an invalid rule
+     */
+    public Abfall(final Engine pEngine, final Format pFormat, final File pCategoriesFile)
+        throws IOException
+    {
+        this(Config.builder(YearRange.of(MIN_YEAR)).engine(pEngine).format(pFormat).categoriesFile(pCategoriesFile)
+            .build());
+        if (pCategoriesFile != null) {
+            CategoryClassifier.forFile(pCategoriesFile);  // fail now rather than on the first conversion
+        }
+    }
+
+
+
+    /**
+     * Constructor used by the {@link Server}.
+     *
+     * @param pConfig the configuration, whose locale is the default; its files and year are ignored
+     */
+    Abfall(final Config pConfig)
+    {
+        this(pConfig, null);
+    }
+
+
+
+    private Abfall(final Config pConfig, final RenderCache pRenderCache)
+    {
+        config = pConfig;
+        renderCache = pRenderCache;
+    }
+
+
+
+    /**
+     * Create a copy of this instance which keeps the converted files in the given cache. The cache may be shared with
+     * other instances, because the key of an entry covers the options, too.
+     *
+     * @param pRenderCache the cache
+     * @return a new instance, which is otherwise unchanged
+     */
+    public Abfall withRenderCache(final RenderCache pRenderCache)
+    {
+        return new Abfall(config, pRenderCache);
+    }
+
+
+
+    /**
+     * Create a copy of this instance whose calendars carry a QR code with the given text, for example the URL of the
+     * feed which the ICS data comes from.
+     *
+     * @param pQrCode the text of the QR code, or <code>null</code> for the link to this project
+     * @return a new instance, which is otherwise unchanged
+     * @throws IllegalArgumentException the text is too long for a QR code
+     */
+    public Abfall withQrCode(final String pQrCode)
+    {
+        if (pQrCode != null) {
+            QrCode.forText(pQrCode);  // fail now rather than on the first conversion
+        }
+        return new Abfall(config.withQrCode(pQrCode), renderCache);
+    }
+
+
+
+    /**
+     * Convert ICS data into the calendar of one year.
+     *
+     * @param pIcs the ICS data (UTF-8 encoded); the stream is read to the end, but not closed
+     * @param pYear the year of the calendar
+     * @param pLocale the locale of the month and weekday names, or <code>null</code> for German
+     * @param pOutput the stream to write the calendar to; the stream is not closed
+     * @throws IOException reading or writing failed, or the ICS data is invalid
+     * @throws IllegalArgumentException the year is out of range
+     */
+    public void convert(final InputStream pIcs, final int pYear, final Locale pLocale, final OutputStream pOutput)
+        throws IOException
+    {
+        if (renderCache != null) {
+            convert(pIcs.readAllBytes(), pYear, pLocale, pOutput);
+        }
+        else {
+            render(getRequestConfig(pYear, pLocale), pIcs, pOutput);
+        }
+    }
+
+
+
+    /**
+     * Convert ICS data into the calendar of one year.
+     *
+     * @param pIcs the ICS data (UTF-8 encoded)
+     * @param pYear the year of the calendar
+     * @param pLocale the locale of the month and weekday names, or <code>null</code> for German
+     * @param pOutput the stream to write the calendar to; the stream is not closed
+     * @throws IOException writing failed, or the ICS data is invalid
+     * @throws IllegalArgumentException the year is out of range
+     */
+    public void convert(final byte[] pIcs, final int pYear, final Locale pLocale, final OutputStream pOutput)
+        throws IOException
+    {
+        final Config requestConfig = getRequestConfig(pYear, pLocale);
+        if (renderCache != null) {
+            pOutput.write(renderCache.get(Manifest.fingerprint(requestConfig, pIcs), () -> {
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                render(requestConfig, new ByteArrayInputStream(pIcs), out);
+                return out.toByteArray();
+            }));
+        }
+        else {
+            render(requestConfig, new ByteArrayInputStream(pIcs), pOutput);
+        }
+    }
+
+
+
+    private Config getRequestConfig(final int pYear, final Locale pLocale)
+    {
+        if (pYear < MIN_YEAR || pYear > MAX_YEAR) {
+            throw new IllegalArgumentException("Invalid year: " + pYear);
+        }
+        return config.withRequest(pYear, pLocale);
+    }
+
+
+
+    private void render(final Config pConfig, final InputStream pIcs, final OutputStream pOutput)
+        throws IOException
+    {
+        final Converter converter = new Converter();
+        final Schedule termine;
+        try {
+            termine = converter.readSchedule(pConfig, pIcs);
+        }
+        catch (RuntimeException e) {
+            throw new IOException("Invalid ICS data: " + e.getMessage(), e);
+        }
+        converter.write(pConfig, termine, pOutput);
+    }
+
+
+
+    /**
+     * Run one conversion of a small calendar and discard the result, so that the classes are loaded, and the shared
+     * state for the given year and locale is built before the first real conversion. Calling this is optional.
+     *
+     * @param pYear the year expected in most conversions
+     * @param pLocale the locale expected in most conversions, or <code>null</code> for German
+     * @throws IOException the conversion failed
+     */
+    public void warmUp(final int pYear, final Locale pLocale)
+        throws IOException
+    {
+        final String ics = "BEGIN:VCALENDAR\r\nBEGIN:VEVENT\r\nDTSTART;VALUE=DATE:" + pYear
+            + "0105\r\nSUMMARY:Restmüll\r\nEND:VEVENT\r\nEND:VCALENDAR\r\n";
+        convert(ics.getBytes(StandardCharsets.UTF_8), pYear, pLocale, OutputStream.nullOutputStream());
+    }
+}
@@ -13,53 +13,54 @@
  */
 package com.thomasjensen.abfall;
 
-import java.awt.Color;
-
-
 /**
  * Trash category. Order indicates importance for placement on chart.
  */
 public enum Art
 {
     /** "Gartenabfallsammlung" */
-    Gartenabfall("GA", new Color(0, 176, 80)),
+    Gartenabfall("GA", new Rgb(0, 176, 80), new Rgb(255, 255, 255)),
 
     /** "Papiermüll" */
-    Papier("P", new Color(149, 179, 215)),
+    Papier("P", new Rgb(149, 179, 215), new Rgb(221, 231, 242)),
 
     /** "Gelber Sack" */
-    GelberSack("GS", new Color(255, 255, 102)),
+    GelberSack("GS", new Rgb(255, 255, 102), new Rgb(255, 255, 204)),
 
     /** "Restmüll" */
-    Rest("Rest", new Color(207, 121, 119)),
+    Rest("Rest", new Rgb(207, 121, 119), new Rgb(255, 255, 255)),
 
     /** "Biomüll" */
-    Bio("Bio", new Color(196, 215, 155)),
+    Bio("Bio", new Rgb(196, 215, 155), new Rgb(235, 241, 222)),
 
     /** "Schadstoffmobil" Location 1 */
-    Schadstoff1("SM1", new Color(250, 192, 146)),
+    Schadstoff1("SM1", new Rgb(250, 192, 146), new Rgb(255, 255, 255)),
 
     /** "Schadstoffmobil" Location 2 */
-    Schadstoff2("SM2", new Color(250, 192, 146)),
+    Schadstoff2("SM2", new Rgb(250, 192, 146), new Rgb(255, 255, 255)),
 
     /** "Schadstoffmobil" Location 3 */
-    Schadstoff3("SM3", new Color(250, 192, 146)),
+    Schadstoff3("SM3", new Rgb(250, 192, 146), new Rgb(255, 255, 255)),
 
     /** "Schadstoffmobil" Location 4 */
-    Schadstoff4("SM4", new Color(250, 192, 146));
+    Schadstoff4("SM4", new Rgb(250, 192, 146), new Rgb(255, 255, 255));
 
     //
 
     private final String abbrev;
 
-    private final Color color;
+    private final Rgb color;
 
+    /** lighter variant of the color, used in the center of the gradient fills */
+    private final Rgb lightColor;
 
 
-    private Art(final String pAbbrev, final Color pColor)
+
+    private Art(final String pAbbrev, final Rgb pColor, final Rgb pLightColor)
     {
         abbrev = pAbbrev;
         color = pColor;
+        lightColor = pLightColor;
     }
 
 
@@ -71,8 +72,15 @@ public enum Art
 
 
 
-    public Color getColor()
+    public Rgb getColor()
     {
         return color;
     }
+
+
+
+    public Rgb getLightColor()
+    {
+        return lightColor;
+    }
 }
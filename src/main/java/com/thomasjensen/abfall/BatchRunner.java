@@ -0,0 +1,332 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * Converts a directory or glob pattern of ICS files, or a list of feed URLs, in one JVM, using a bounded pool of
+ * worker threads. Each file is converted independently, so a bad file or feed does not abort the batch.
+ * <p>In multi-sheet mode, the calendars of all files are combined into one Excel file per year instead, with one sheet
+ * per ICS file.</p>
+ */
+public class BatchRunner
+{
+    private static final Logger LOG = LogManager.getLogger(BatchRunner.class);
+
+    /** the ICS files converted when the input is a directory */
+    static final String DEFAULT_GLOB = "*.{ics,ICS}";
+
+    /** base name of the Excel files written in multi-sheet mode, to which the year is added */
+    static final String MULTI_SHEET_BASE_NAME = "Abfallkalender";
+
+    private final Config config;
+
+    private final Converter converter = new Converter();
+
+
+
+    public BatchRunner(final Config pConfig)
+    {
+        config = pConfig;
+    }
+
+
+
+    /**
+     * Convert all ICS files found at the configured input location, or downloaded from the configured feeds.
+     *
+     * @return <code>true</code> if all files were converted successfully
+     * @throws IOException the input files could not be listed, or the output directory could not be created
+     */
+    public boolean run()
+        throws IOException
+    {
+        final RunReport report = new RunReport();
+        final List<File> inFiles;
+        final Map<File, URI> feeds = new HashMap<>();
+        final int numInputs;
+        File outDir = config.getOutFileXlsx();
+        if (config.getFeeds().isEmpty()) {
+            inFiles = findInputFiles(config.getInFileIcs());
+            numInputs = inFiles.size();
+            if (inFiles.isEmpty()) {
+                LOG.error("No ICS files found at " + config.getInFileIcs());
+                return false;
+            }
+        }
+        else {
+            final FeedFetcher fetcher = new FeedFetcher(config.getCacheDir(), config.getThreads());
+            final Map<URI, File> fetched = fetcher.fetchAll(config.getFeeds());
+            for (final Map.Entry<URI, File> feed : fetched.entrySet()) {
+                feeds.put(feed.getValue(), feed.getKey());
+            }
+            inFiles = new ArrayList<>(fetched.values());
+            numInputs = config.getFeeds().size();
+            for (int i = inFiles.size(); i < numInputs; i++) {
+                report.addFailure();
+            }
+            if (inFiles.isEmpty()) {
+                LOG.error("None of the " + numInputs + " feeds could be downloaded");
+                return false;
+            }
+            if (outDir == null) {
+                outDir = new File(".");  // not next to the cached feeds
+            }
+        }
+        if (outDir != null) {
+            Files.createDirectories(outDir.toPath());
+        }
+        if (config.isMultiSheet()) {
+            return runMultiSheet(inFiles, feeds, numInputs, outDir, report);
+        }
+
+        final int numThreads = Math.min(config.getThreads(), inFiles.size());
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Converting " + inFiles.size() + " ICS files using " + numThreads + " threads ...");
+        }
+        final long startMillis = System.currentTimeMillis();
+        final ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        int failed = numInputs - inFiles.size();
+        int unchanged = 0;
+        try {
+            final Map<File, Future<RunStats>> jobs = new LinkedHashMap<>();
+            for (final File inFile : inFiles) {
+                final Config fileConfig = getFileConfig(inFile, feeds.get(inFile), getOutFile(inFile, outDir));
+                jobs.put(inFile, pool.submit(() -> converter.convert(fileConfig)));
+            }
+            for (final Map.Entry<File, Future<RunStats>> job : jobs.entrySet()) {
+                try {
+                    final RunStats stats = job.getValue().get();
+                    report.add(stats);
+                    if (stats.isUnchanged()) {
+                        unchanged++;
+                    }
+                }
+                catch (ExecutionException e) {
+                    failed++;
+                    report.addFailure();
+                    LOG.error("Failed to convert " + job.getKey() + ": " + e.getCause(), e.getCause());
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.error("Batch conversion interrupted");
+            return false;
+        }
+        finally {
+            pool.shutdownNow();
+        }
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Converted " + (numInputs - failed) + " of " + numInputs + " ICS files in "
+                + (System.currentTimeMillis() - startMillis) + " ms (" + failed + " failed"
+                + (config.isIncremental() ? ", " + unchanged + " unchanged" : "") + ").");
+        }
+        if (config.getReportFile() != null) {
+            report.write(config.getReportFile());
+        }
+        return failed == 0;
+    }
+
+
+
+    /**
+     * Read all ICS files in parallel, and write the calendars of each year into one Excel file, with one sheet per ICS
+     * file named after it. The sheets are in the order of the file names. A file which cannot be read is left out.
+     *
+     * @param pInFiles the ICS files
+     * @param pFeeds the URL of each ICS file which is a downloaded feed
+     * @param pNumInputs the number of inputs, including feeds which could not be downloaded
+     * @param pOutDir the output directory, or <code>null</code> to write next to the first ICS file
+     * @param pReport receives the timings and counters of reading each file and of writing each workbook
+     * @return <code>true</code> if all files were read and all workbooks written successfully
+     * @throws IOException the report could not be written
+     */
+    private boolean runMultiSheet(final List<File> pInFiles, final Map<File, URI> pFeeds, final int pNumInputs,
+        final File pOutDir, final RunReport pReport)
+        throws IOException
+    {
+        final int numThreads = Math.min(config.getThreads(), pInFiles.size());
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Reading " + pInFiles.size() + " ICS files using " + numThreads + " threads ...");
+        }
+        final long startMillis = System.currentTimeMillis();
+        final ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        int failed = pNumInputs - pInFiles.size();
+        final SortedMap<Integer, Map<Config, Schedule>> sheetsByYear = new TreeMap<>();
+        try {
+            final Map<File, Config> configs = new HashMap<>();
+            final Map<File, RunStats> stats = new LinkedHashMap<>();
+            final Map<File, Future<SortedMap<Integer, Schedule>>> jobs = new LinkedHashMap<>();
+            for (final File inFile : pInFiles) {
+                final Config fileConfig = getFileConfig(inFile, pFeeds.get(inFile), null);
+                final RunStats fileStats = new RunStats(fileConfig);
+                configs.put(inFile, fileConfig);
+                stats.put(inFile, fileStats);
+                jobs.put(inFile, pool.submit(() -> converter.readSchedules(fileConfig, fileStats)));
+            }
+            for (final Map.Entry<File, Future<SortedMap<Integer, Schedule>>> job : jobs.entrySet()) {
+                try {
+                    for (final Map.Entry<Integer, Schedule> entry : job.getValue().get().entrySet()) {
+                        final Config sheetConfig = configs.get(job.getKey()).withYear(entry.getKey().intValue(), null);
+                        sheetsByYear.computeIfAbsent(entry.getKey(), y -> new LinkedHashMap<>())
+                            .put(sheetConfig, entry.getValue());
+                    }
+                    pReport.add(stats.get(job.getKey()));
+                }
+                catch (ExecutionException e) {
+                    failed++;
+                    pReport.addFailure();
+                    LOG.error("Failed to read " + job.getKey() + ": " + e.getCause(), e.getCause());
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.error("Batch conversion interrupted");
+            return false;
+        }
+        finally {
+            pool.shutdownNow();
+        }
+
+        final File dir = pOutDir != null ? pOutDir : pInFiles.get(0).getAbsoluteFile().getParentFile();
+        int failedWorkbooks = 0;
+        for (final Map.Entry<Integer, Map<Config, Schedule>> entry : sheetsByYear.entrySet()) {
+            final int year = entry.getKey().intValue();
+            final Config yearConfig = config.withYear(year, new File(dir, MULTI_SHEET_BASE_NAME + " " + year + "."
+                + Format.Xlsx.getExtension()));
+            final RunStats yearStats = new RunStats(yearConfig);
+            final long startNanos = System.nanoTime();
+            try {
+                converter.writeWorkbook(yearConfig, entry.getValue(), yearStats);
+                yearStats.setTotalNanos(System.nanoTime() - startNanos);
+                pReport.add(yearStats);
+            }
+            catch (IOException | RuntimeException e) {
+                failedWorkbooks++;
+                pReport.addFailure();
+                LOG.error("Failed to write " + yearConfig.getOutFileXlsx() + ": " + e, e);
+            }
+        }
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Combined " + (pNumInputs - failed) + " of " + pNumInputs + " ICS files into "
+                + (sheetsByYear.size() - failedWorkbooks) + " Excel files in "
+                + (System.currentTimeMillis() - startMillis) + " ms (" + failed + " files failed, " + failedWorkbooks
+                + " Excel files failed).");
+        }
+        if (config.getReportFile() != null) {
+            pReport.write(config.getReportFile());
+        }
+        return failed == 0 && failedWorkbooks == 0;
+    }
+
+
+
+    private List<File> findInputFiles(final File pInput)
+        throws IOException
+    {
+        Path dir = pInput.toPath();
+        String glob = DEFAULT_GLOB;
+        if (!pInput.isDirectory()) {
+            dir = pInput.getAbsoluteFile().getParentFile().toPath();
+            glob = pInput.getName();
+        }
+
+        final List<File> result = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, glob)) {
+            for (final Path path : stream) {
+                if (Files.isRegularFile(path)) {
+                    result.add(path.toFile());
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+
+
+    /**
+     * Determine the output file to write for an ICS file.
+     *
+     * @param pInFile the ICS file
+     * @param pOutDir the output directory, or <code>null</code> to write next to the ICS file
+     * @return the output file, with the extension of the configured format
+     */
+    File getOutFile(final File pInFile, final File pOutDir)
+    {
+        final String baseName = getBaseName(pInFile);
+        final File dir = pOutDir != null ? pOutDir : pInFile.getAbsoluteFile().getParentFile();
+        if (config.isMultiYear()) {
+            // the Converter adds the year of each calendar
+            return new File(dir, baseName + "." + config.getFormat().getExtension());
+        }
+        return new File(dir, baseName + " " + config.getYear() + "." + config.getFormat().getExtension());
+    }
+
+
+
+    /**
+     * Create the configuration for converting one ICS file of the batch.
+     *
+     * @param pInFile the ICS file
+     * @param pFeed the URL of the feed which the ICS file was downloaded from, or <code>null</code> for a local file
+     * @param pOutFile the output file, or <code>null</code> if the calendar goes into a combined workbook
+     * @return the configuration; the QR code of a feed links to the feed, unless a QR code was configured
+     */
+    private Config getFileConfig(final File pInFile, final URI pFeed, final File pOutFile)
+    {
+        return (pFeed != null ? config.withInput(pInFile, pFeed) : config).withFiles(pInFile, pOutFile);
+    }
+
+
+
+    /**
+     * Determine the name of a file without its extension.
+     *
+     * @param pFile the file
+     * @return the base name, for example <code>Altstadt</code> for <code>Altstadt.ics</code>
+     */
+    static String getBaseName(final File pFile)
+    {
+        final String name = pFile.getName();
+        final int dotPos = name.lastIndexOf('.');
+        return dotPos > 0 ? name.substring(0, dotPos) : name;
+    }
+}
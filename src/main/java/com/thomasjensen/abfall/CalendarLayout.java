@@ -0,0 +1,744 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * The layout of the calendar sheet, independent of the rendering engine: the content and style of each cell, merged
+ * regions, row heights, column widths, print area, and the position of the QR code. It is produced in one pass over
+ * the pickup dates. Instances are immutable. All outputs are rendered from it: the POI engines ({@link ExcelCreator}),
+ * the direct engine ({@link XlsxWriter}), and the print formats ({@link PrintRenderer}).
+ */
+public final class CalendarLayout
+{
+    /**
+     * version of the look of the calendar; increase it whenever a change to the program changes the Excel files, so
+     * that incremental runs convert everything again
+     */
+    public static final int TEMPLATE_VERSION = 2;
+
+    public static final int ROWS_PER_DAY = 3;
+
+    /** number of columns (month names plus 31 days) */
+    public static final int NUM_COLUMNS = 32;
+
+    /** index of the first row showing a month */
+    public static final int FIRST_MONTH_ROW = 2;
+
+    /** height of rows which have no explicit height, in points */
+    public static final float DEFAULT_ROW_HEIGHT = 15f;
+
+    /** width of the first column, in 1/256 of a character */
+    private static final int MONTH_COLUMN_WIDTH = 4064;  // column width 13.86
+
+    /** width of the day columns, in 1/256 of a character */
+    private static final int DAY_COLUMN_WIDTH = 1340;  // column width 4.57
+
+    /** the default QR code image, which links to the project; read only once and shared by all calendars */
+    static final byte[] QR_CODE_PNG = readQrCode();
+
+
+
+    /**
+     * One cell of the sheet, which has either a text, a number, or no content.
+     */
+    public static final class Cell
+    {
+        private final int row;
+
+        private final int column;
+
+        private final String text;
+
+        private final boolean numeric;
+
+        private final int number;
+
+        private final StyleKey style;
+
+        /** index of the style in {@link CalendarLayout#getStyles()} */
+        private final int styleIndex;
+
+
+
+        private Cell(final int pRow, final int pColumn, final String pText, final boolean pNumeric,
+            final int pNumber, final StyleKey pStyle, final int pStyleIndex)
+        {
+            row = pRow;
+            column = pColumn;
+            text = pText;
+            numeric = pNumeric;
+            number = pNumber;
+            style = pStyle;
+            styleIndex = pStyleIndex;
+        }
+
+
+
+        public int getRow()
+        {
+            return row;
+        }
+
+
+
+        public int getColumn()
+        {
+            return column;
+        }
+
+
+
+        /**
+         * Getter.
+         * @return the text content, or <code>null</code> if the cell is numeric or blank
+         */
+        public String getText()
+        {
+            return text;
+        }
+
+
+
+        public boolean isNumeric()
+        {
+            return numeric;
+        }
+
+
+
+        public int getNumber()
+        {
+            return number;
+        }
+
+
+
+        public boolean isBlank()
+        {
+            return text == null && !numeric;
+        }
+
+
+
+        public StyleKey getStyle()
+        {
+            return style;
+        }
+
+
+
+        public int getStyleIndex()
+        {
+            return styleIndex;
+        }
+    }
+
+
+
+    /**
+     * One row of the sheet.
+     */
+    public static final class Row
+    {
+        private final int index;
+
+        /** height in points, or {@link Float#NaN} for the default height */
+        private final float height;
+
+        private final List<Cell> cells;
+
+
+
+        private Row(final int pIndex, final float pHeight, final List<Cell> pCells)
+        {
+            index = pIndex;
+            height = pHeight;
+            cells = Collections.unmodifiableList(pCells);
+        }
+
+
+
+        public int getIndex()
+        {
+            return index;
+        }
+
+
+
+        public boolean hasHeight()
+        {
+            return !Float.isNaN(height);
+        }
+
+
+
+        public float getHeight()
+        {
+            return height;
+        }
+
+
+
+        public List<Cell> getCells()
+        {
+            return cells;
+        }
+    }
+
+
+
+    /**
+     * A rectangular range of cells, all indexes inclusive.
+     */
+    public static final class Region
+    {
+        private final int firstRow;
+
+        private final int lastRow;
+
+        private final int firstColumn;
+
+        private final int lastColumn;
+
+
+
+        public Region(final int pFirstRow, final int pLastRow, final int pFirstColumn, final int pLastColumn)
+        {
+            firstRow = pFirstRow;
+            lastRow = pLastRow;
+            firstColumn = pFirstColumn;
+            lastColumn = pLastColumn;
+        }
+
+
+
+        public int getFirstRow()
+        {
+            return firstRow;
+        }
+
+
+
+        public int getLastRow()
+        {
+            return lastRow;
+        }
+
+
+
+        public int getFirstColumn()
+        {
+            return firstColumn;
+        }
+
+
+
+        public int getLastColumn()
+        {
+            return lastColumn;
+        }
+    }
+
+    //
+
+    /** empty calendars by year and locale, see {@link #create} */
+    private static final Map<String, CalendarLayout> SKELETONS = new ConcurrentHashMap<>();
+
+    private final int year;
+
+    private final Locale locale;
+
+    private final List<Row> rows;
+
+    private final List<Region> mergedRegions;
+
+    /** the distinct cell styles, in the order of their first use */
+    private final List<StyleKey> styles;
+
+    /** index of each style in {@link #styles}; only present in skeletons */
+    private final Map<StyleKey, Integer> styleIndexes;
+
+    /** index of the last row of the print area */
+    private final int lastRow;
+
+    /** the cells covered by the QR code, before it is scaled by {@link #QR_CODE_SCALE_X} */
+    private final Region qrCodeAnchor;
+
+    /** the QR code image (PNG), shared with other calendars which have the same QR code */
+    private final byte[] qrCodePng;
+
+    /** the QR code is made slightly narrower than its cells, so that it is square */
+    public static final double QR_CODE_SCALE_X = 0.88d;
+
+
+
+    private CalendarLayout(final int pYear, final Locale pLocale, final List<Row> pRows,
+        final List<Region> pMergedRegions, final Styles pStyles, final int pLastRow, final Region pQrCodeAnchor,
+        final byte[] pQrCodePng)
+    {
+        year = pYear;
+        locale = pLocale;
+        rows = Collections.unmodifiableList(pRows);
+        mergedRegions = Collections.unmodifiableList(pMergedRegions);
+        styles = Collections.unmodifiableList(pStyles.list);
+        styleIndexes = pStyles.shared.isEmpty() ? pStyles.added : null;
+        lastRow = pLastRow;
+        qrCodeAnchor = pQrCodeAnchor;
+        qrCodePng = pQrCodePng;
+    }
+
+
+
+    /**
+     * Lay out the calendar for the given pickup dates. The parts which are the same for all households are taken
+     * from a cached empty calendar of the year and locale, so that only the pickup dates remain to be filled in.
+     *
+     * @param pConfig the configuration, providing year, locale, and the text of the QR code
+     * @param pSchedule the trash categories picked up on each day
+     * @return the layout
+     */
+    public static CalendarLayout create(final Config pConfig, final Schedule pSchedule)
+    {
+        final CalendarLayout skeleton = SKELETONS.computeIfAbsent(pConfig.getYear() + "_" + pConfig.getLocale(),
+            k -> new Builder(pConfig.getYear(), pConfig.getLocale()).build());
+        final byte[] qrCode = pConfig.getQrCode() != null ? QrCode.forText(pConfig.getQrCode()).getPng() : QR_CODE_PNG;
+        return skeleton.stamp(pSchedule, qrCode);
+    }
+
+
+
+    /**
+     * Create a copy of this empty calendar with the given pickup dates filled in. Only the rows which contain pickup
+     * dates are copied, all other rows are shared with this calendar.
+     *
+     * @param pSchedule the trash categories picked up on each day
+     * @param pQrCodePng the QR code image
+     * @return the new layout
+     */
+    private CalendarLayout stamp(final Schedule pSchedule, final byte[] pQrCodePng)
+    {
+        final Styles newStyles = new Styles(styleIndexes, styles);
+        final List<Region> newMergedRegions = new ArrayList<>(mergedRegions);
+        final List<List<Cell>> changedRows = new ArrayList<>(Collections.nCopies(rows.size(), null));
+        final Holidays holidays = Holidays.forYear(year);
+
+        for (int month = 1; month <= 12; month++) {
+            for (int day = 1; day <= 31; day++) {
+                if (pSchedule.isEmpty(month, day)) {
+                    continue;
+                }
+                for (int dayRowIdx = 0; dayRowIdx < ROWS_PER_DAY; dayRowIdx++) {
+                    final Position pos = new Position(year, month, dayRowIdx, ROWS_PER_DAY);
+                    pos.setDay(day);
+                    if (!pos.dayExists()) {
+                        break;
+                    }
+                    final int rowIdx = FIRST_MONTH_ROW + (month - 1) * ROWS_PER_DAY + dayRowIdx;
+                    List<Cell> cells = changedRows.get(rowIdx);
+                    if (cells == null) {
+                        cells = new ArrayList<>(rows.get(rowIdx).getCells());
+                        changedRows.set(rowIdx, cells);
+                    }
+                    cells.set(day, createDayCell(newStyles, holidays, locale, rowIdx, pos, pSchedule));
+                    if (isMergedWithRowAbove(pos, pSchedule)) {
+                        newMergedRegions.add(new Region(rowIdx - 1, rowIdx, day, day));
+                    }
+                }
+            }
+        }
+
+        final List<Row> newRows = new ArrayList<>(rows);
+        for (int i = 0; i < newRows.size(); i++) {
+            if (changedRows.get(i) != null) {
+                newRows.set(i, new Row(i, rows.get(i).getHeight(), changedRows.get(i)));
+            }
+        }
+        return new CalendarLayout(year, locale, newRows, newMergedRegions, newStyles, lastRow, qrCodeAnchor,
+            pQrCodePng);
+    }
+
+
+
+    /**
+     * Create the cell of a day. Cells of days without pickup only depend on the position, so they are part of the
+     * skeleton.
+     *
+     * @param pStyles the style registry
+     * @param pHolidays the holidays of the year
+     * @param pLocale the locale for the weekday names
+     * @param pRow the row index
+     * @param pPos position of the cell
+     * @param pSchedule the pickup dates, or <code>null</code> for an empty calendar
+     * @return the new cell
+     */
+    private static Cell createDayCell(final Styles pStyles, final Holidays pHolidays, final Locale pLocale,
+        final int pRow, final Position pPos, final Schedule pSchedule)
+    {
+        final int column = pPos.getDay();
+        final int month = pPos.getMonthNumeric1();
+        final int count = pSchedule != null && pPos.dayExists() ? pSchedule.getCount(month, column) : 0;
+        final boolean isDayEmpty = count == 0;
+        if (!pPos.dayExists()) {
+            return pStyles.text(pRow, column, null, StyleKey.emptyDay(pPos));
+        }
+        else if (isDayEmpty) {
+            final String text = pPos.isFirstRowOfDay() ? getDayOfWeekDisplay(pPos, pLocale) : null;
+            return pStyles.text(pRow, column, text, pPos.isSunday() ? StyleKey.sunday(pPos) : StyleKey.emptyDay(pPos));
+        }
+        else if (pPos.isFirstRowOfDay()) {
+            return pStyles.text(pRow, column, getDayOfWeekDisplay(pPos, pLocale),
+                StyleKey.dayHeading(pPos, pSchedule.getFirst(month, column), pHolidays.isHoliday(pPos)));
+        }
+        else if (count >= pPos.getDayRowIdx()) {
+            final Art category = pPos.getDayRowIdx() == 1
+                ? pSchedule.getFirst(month, column) : pSchedule.getLast(month, column);
+            return pStyles.text(pRow, column, category.getKuerzel(), StyleKey.dayCell(pPos, category));
+        }
+        return pStyles.text(pRow, column, null, StyleKey.centered(pPos));
+    }
+
+
+
+    private static boolean isMergedWithRowAbove(final Position pPos, final Schedule pSchedule)
+    {
+        return pPos.dayExists() && pPos.getDayRowIdx() == 2
+            && pSchedule.getCount(pPos.getMonthNumeric1(), pPos.getDay()) == 1;
+    }
+
+
+
+    private static String getDayOfWeekDisplay(final Position pPos, final Locale pLocale)
+    {
+        return pPos.getDayOfWeek().getDisplayName(TextStyle.SHORT_STANDALONE, pLocale);
+    }
+
+
+
+    /**
+     * Assigns indexes to the distinct cell styles. It may extend the styles of a skeleton, which are then only
+     * read, so that the skeleton can be shared between threads.
+     */
+    private static final class Styles
+    {
+        private final Map<StyleKey, Integer> shared;
+
+        private final Map<StyleKey, Integer> added = new HashMap<>();
+
+        private final List<StyleKey> list;
+
+
+
+        Styles()
+        {
+            this(Collections.emptyMap(), Collections.emptyList());
+        }
+
+
+
+        Styles(final Map<StyleKey, Integer> pShared, final List<StyleKey> pSharedList)
+        {
+            shared = pShared;
+            list = new ArrayList<>(pSharedList);
+        }
+
+
+
+        Cell text(final int pRow, final int pColumn, final String pText, final StyleKey pStyle)
+        {
+            final int styleIndex = indexOf(pStyle);
+            return new Cell(pRow, pColumn, pText, false, 0, list.get(styleIndex), styleIndex);
+        }
+
+
+
+        Cell number(final int pRow, final int pColumn, final int pNumber, final StyleKey pStyle)
+        {
+            final int styleIndex = indexOf(pStyle);
+            return new Cell(pRow, pColumn, null, true, pNumber, list.get(styleIndex), styleIndex);
+        }
+
+
+
+        private int indexOf(final StyleKey pStyle)
+        {
+            Integer result = shared.get(pStyle);
+            if (result == null) {
+                result = added.get(pStyle);
+            }
+            if (result == null) {
+                result = list.size();
+                list.add(pStyle);
+                added.put(pStyle, result);
+            }
+            return result.intValue();
+        }
+    }
+
+
+
+    /**
+     * Computes the empty calendar of a year, which becomes the skeleton for all households.
+     */
+    private static final class Builder
+    {
+        private final int year;
+
+        private final Locale locale;
+
+        private final Holidays holidays;
+
+        private final List<Row> rows = new ArrayList<>();
+
+        private final List<Region> mergedRegions = new ArrayList<>();
+
+        private final Styles styles = new Styles();
+
+        private List<Cell> cells = null;
+
+        private int rowNum = 0;
+
+
+
+        Builder(final int pYear, final Locale pLocale)
+        {
+            year = pYear;
+            locale = pLocale;
+            holidays = Holidays.forYear(pYear);
+        }
+
+
+
+        CalendarLayout build()
+        {
+            createHeadings();
+
+            for (int month = Calendar.JANUARY; month <= Calendar.DECEMBER; month++) {
+                for (int dayRowIdx = 0; dayRowIdx < ROWS_PER_DAY; dayRowIdx++) {
+                    final Position pos = new Position(year, month + 1, dayRowIdx, ROWS_PER_DAY);
+
+                    startRow(Float.NaN);
+                    addMonthHeadingCell(pos);
+
+                    for (int day = 1; day <= 31; day++) {
+                        pos.setDay(day);
+                        cells.add(createDayCell(styles, holidays, locale, rowNum - 1, pos, null));
+                    }
+                }
+            }
+
+            mergeMonthNames();
+            addNotices();
+
+            final int logoSizeRows = 3;
+            final int logoRow = rowNum + 1 - logoSizeRows;
+            final Region qrCodeAnchor = new Region(logoRow, logoRow + logoSizeRows - 1, 30, 31);
+            return new CalendarLayout(year, locale, rows, mergedRegions, styles, rowNum, qrCodeAnchor, QR_CODE_PNG);
+        }
+
+
+
+        private void startRow(final float pHeight)
+        {
+            cells = new ArrayList<>();
+            rows.add(new Row(rowNum++, pHeight, cells));
+        }
+
+
+
+        private void addText(final int pColumn, final String pText, final StyleKey pStyle)
+        {
+            cells.add(styles.text(rowNum - 1, pColumn, pText, pStyle));
+        }
+
+
+
+        private void addNumber(final int pColumn, final int pNumber, final StyleKey pStyle)
+        {
+            cells.add(styles.number(rowNum - 1, pColumn, pNumber, pStyle));
+        }
+
+
+
+        private void createHeadings()
+        {
+            startRow(35.25f);
+            addText(1, "Abholtermine", StyleKey.heading());
+
+            startRow(29.25f);
+            addNumber(0, year, StyleKey.yearHeading());
+            for (int i = 1; i <= 31; i++) {
+                addNumber(i, i, StyleKey.columnHeading(i));
+            }
+        }
+
+
+
+        private void addMonthHeadingCell(final Position pPos)
+        {
+            final String text = pPos.isFirstRowOfDay()
+                ? " " + pPos.getMonth().getDisplayName(TextStyle.FULL, locale) : null;
+            addText(0, text, StyleKey.monthHeading(pPos));
+        }
+
+
+
+        private void mergeMonthNames()
+        {
+            for (int month = Calendar.JANUARY; month <= Calendar.DECEMBER; month++) {
+                int firstRow = month * ROWS_PER_DAY + FIRST_MONTH_ROW;
+                mergedRegions.add(new Region(firstRow, firstRow + ROWS_PER_DAY - 1, 0, 0));
+            }
+        }
+
+
+
+        private void addNotices()
+        {
+            startRow(Float.NaN);
+            startRow(Float.NaN);
+            addText(1, "Öffnungszeiten Hafen:  Mo. - Fr.:  7 - 12 und 13 - 17 Uhr,   "
+                + "Samstag:  8 - 14 Uhr,   Mo./Di. kein Sondermüll", StyleKey.noteBig());
+
+            startRow(Float.NaN);
+            addText(1, "Gartenabfallsammlungen:", StyleKey.noteBig());
+            addText(7, "verschiedene Standorte", StyleKey.noteSmall());
+            addText(13, "Schadstoffmobil:", StyleKey.noteBig());
+            addText(17, "ab 1.1.2019 abgeschafft", StyleKey.noteSmall());
+
+            startRow(Float.NaN);  // for inclusion in print area, and extra notes
+            startRow(Float.NaN);
+            rowNum--;  // the last row is the end of the print area
+        }
+    }
+
+
+
+    private static byte[] readQrCode()
+    {
+        try (InputStream is = CalendarLayout.class.getResourceAsStream("qrcode.png")) {
+            return is.readAllBytes();
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+
+
+    public int getYear()
+    {
+        return year;
+    }
+
+
+
+    public List<Row> getRows()
+    {
+        return rows;
+    }
+
+
+
+    public List<Region> getMergedRegions()
+    {
+        return mergedRegions;
+    }
+
+
+
+    /**
+     * Getter.
+     * @return the distinct cell styles used on the sheet, in the order of their first use
+     */
+    public List<StyleKey> getStyles()
+    {
+        return styles;
+    }
+
+
+
+    /**
+     * Getter.
+     * @return index of the last row of the print area
+     */
+    public int getLastRow()
+    {
+        return lastRow;
+    }
+
+
+
+    /**
+     * Getter.
+     * @return the cells covered by the QR code, before it is scaled horizontally by {@link #QR_CODE_SCALE_X}
+     */
+    public Region getQrCodeAnchor()
+    {
+        return qrCodeAnchor;
+    }
+
+
+
+    /**
+     * Getter.
+     * @return the QR code image (PNG); the array must not be modified, because it is shared
+     */
+    public byte[] getQrCodePng()
+    {
+        return qrCodePng;
+    }
+
+
+
+    /**
+     * Get the width of a column.
+     *
+     * @param pColumn column index
+     * @return the column width in 1/256 of a character
+     */
+    public int getColumnWidth(final int pColumn)
+    {
+        return pColumn == 0 ? MONTH_COLUMN_WIDTH : DAY_COLUMN_WIDTH;
+    }
+
+
+
+    /**
+     * Get the height of a row.
+     *
+     * @param pRow row index
+     * @return the row height in points
+     */
+    public float getRowHeight(final int pRow)
+    {
+        float result = DEFAULT_ROW_HEIGHT;
+        if (pRow < rows.size() && rows.get(pRow).hasHeight()) {
+            result = rows.get(pRow).getHeight();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+
+/**
+ * Determines the trash category of a pickup date from its SUMMARY and LOCATION, according to a table of rules. The
+ * built-in rules are in <code>kategorien.txt</code>, which also describes the format.
+ * <p>The keywords of all rules are compiled into one {@link KeywordMatcher} per field, so that an event is classified
+ * in a single pass over its texts, and without allocating objects. Instances are immutable, and shared via
+ * {@link #getDefault()} and {@link #forFile(File)}.</p>
+ */
+public final class CategoryClassifier
+{
+    private static final Pattern RULE_PATTERN = Pattern.compile("([^@=]+?)\\s*(?:@\\s*([^@=]+?)\\s*)?=\\s*(\\w+)");
+
+    private static final CategoryClassifier DEFAULT = readDefault();
+
+    private static final Map<File, CategoryClassifier> BY_FILE = new ConcurrentHashMap<>();
+
+    private final KeywordMatcher summaryMatcher;
+
+    private final KeywordMatcher locationMatcher;
+
+    /** for each rule, the summary keywords it requires */
+    private final long[] summaryMasks;
+
+    /** for each rule, the location keywords it requires (may be 0) */
+    private final long[] locationMasks;
+
+    /** for each rule, the resulting category */
+    private final Art[] categories;
+
+
+
+    private CategoryClassifier(final List<String> pLines, final String pSource)
+    {
+        final List<String> summaryKeywords = new ArrayList<>();
+        final List<String> locationKeywords = new ArrayList<>();
+        final List<long[]> masks = new ArrayList<>();
+        final List<Art> arts = new ArrayList<>();
+
+        for (final String rawLine : pLines) {
+            final String line = rawLine.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            final Matcher m = RULE_PATTERN.matcher(line);
+            if (!m.matches()) {
+                throw new IllegalArgumentException("Did not understand rule in " + pSource + ": " + line);
+            }
+            final Art art = findArt(m.group(3));
+            if (art == null) {
+                throw new IllegalArgumentException("Unknown category in " + pSource + ": " + line);
+            }
+            final long summaryMask = 1L << indexOf(summaryKeywords, m.group(1), pSource);
+            final long locationMask = m.group(2) != null ? 1L << indexOf(locationKeywords, m.group(2), pSource) : 0L;
+            masks.add(new long[]{summaryMask, locationMask});
+            arts.add(art);
+        }
+
+        summaryMatcher = new KeywordMatcher(summaryKeywords);
+        locationMatcher = new KeywordMatcher(locationKeywords);
+        summaryMasks = new long[arts.size()];
+        locationMasks = new long[arts.size()];
+        for (int i = 0; i < arts.size(); i++) {
+            summaryMasks[i] = masks.get(i)[0];
+            locationMasks[i] = masks.get(i)[1];
+        }
+        categories = arts.toArray(new Art[0]);
+    }
+
+
+
+    private static int indexOf(final List<String> pKeywords, final String pKeyword, final String pSource)
+    {
+        final String keyword = pKeyword.toLowerCase();
+        int result = pKeywords.indexOf(keyword);
+        if (result < 0) {
+            if (pKeywords.size() >= KeywordMatcher.MAX_KEYWORDS) {
+                throw new IllegalArgumentException("Too many keywords in " + pSource + " (maximum is "
+                    + KeywordMatcher.MAX_KEYWORDS + ")");
+            }
+            result = pKeywords.size();
+            pKeywords.add(keyword);
+        }
+        return result;
+    }
+
+
+
+    private static Art findArt(final String pName)
+    {
+        for (final Art art : Art.values()) {
+            if (art.name().equalsIgnoreCase(pName)) {
+                return art;
+            }
+        }
+        return null;
+    }
+
+
+
+    private static CategoryClassifier readDefault()
+    {
+        try (InputStream is = CategoryClassifier.class.getResourceAsStream("kategorien.txt");
+            BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+            return new CategoryClassifier(reader.lines().collect(Collectors.toList()), "kategorien.txt");
+        }
+        catch (IOException e) {
+            throw new RuntimeException("failed to load kategorien.txt", e);
+        }
+    }
+
+
+
+    /**
+     * Get the classifier using the built-in rules.
+     *
+     * @return the default classifier
+     */
+    public static CategoryClassifier getDefault()
+    {
+        return DEFAULT;
+    }
+
+
+
+    /**
+     * Get the classifier using the rules from the given file. The file is read and compiled only once.
+     *
+     * @param pFile the rules file, in the format of <code>kategorien.txt</code> (UTF-8)
+     * @return the classifier
+     * @throws IOException reading the file failed
+     * @throws IllegalArgumentException the file contains an invalid rule
+     */
+    public static CategoryClassifier forFile(final File pFile)
+        throws IOException
+    {
+        CategoryClassifier result = BY_FILE.get(pFile);
+        if (result == null) {
+            result = new CategoryClassifier(Files.readAllLines(pFile.toPath(), StandardCharsets.UTF_8),
+                pFile.getPath());
+            BY_FILE.putIfAbsent(pFile, result);
+        }
+        return result;
+    }
+
+
+
+    /**
+     * Determine the category of a pickup date.
+     *
+     * @param pSummary the SUMMARY of the event
+     * @param pLocation the LOCATION of the event, may be <code>null</code>
+     * @return the category of the first matching rule, or <code>null</code> if no rule matches
+     */
+    public Art classify(final String pSummary, final String pLocation)
+    {
+        final long summaryHits = summaryMatcher.match(pSummary);
+        if (summaryHits == 0L) {
+            return null;
+        }
+        long locationHits = 0L;
+        boolean locationMatched = false;
+        for (int i = 0; i < categories.length; i++) {
+            if ((summaryHits & summaryMasks[i]) != summaryMasks[i]) {
+                continue;
+            }
+            if (locationMasks[i] != 0L) {
+                if (!locationMatched) {
+                    locationHits = locationMatcher.match(pLocation);
+                    locationMatched = true;
+                }
+                if ((locationHits & locationMasks[i]) != locationMasks[i]) {
+                    continue;
+                }
+            }
+            return categories[i];
+        }
+        return null;
+    }
+}
@@ -13,10 +13,11 @@
  */
 package com.thomasjensen.abfall;
 
-import java.awt.Color;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.poi.ss.usermodel.BorderStyle;
-import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.FillPatternType;
 import org.apache.poi.ss.usermodel.FontUnderline;
 import org.apache.poi.ss.usermodel.HorizontalAlignment;
@@ -29,23 +30,27 @@ import org.apache.poi.xssf.usermodel.XSSFFont;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTFill;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTGradientFill;
-import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTPatternFill;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.STGradientType;
-import org.openxmlformats.schemas.spreadsheetml.x2006.main.STPatternType;
 
 
 /**
- * Some POI cell styles.
+ * Some POI cell styles. Cell styles, fonts, and colors are interned, so that each distinct combination of visual
+ * attributes (as described by a {@link StyleKey}) is created only once per workbook.
  */
 public class CellStyleFactory
 {
     private static final IndexedColorMap DEFAULT_COLOR_MAP = new DefaultIndexedColorMap();
 
-    private static final XSSFColor VERTICAL_SEP_COLOR = new XSSFColor(new Color(128, 128, 128), DEFAULT_COLOR_MAP);
+    private final XSSFWorkbook workbook;
 
-    private final Holidays holidays = new Holidays();
+    private final Map<StyleKey, XSSFCellStyle> styles = new HashMap<>();
 
-    private final XSSFWorkbook workbook;
+    private final Map<StyleKey.Font, XSSFFont> fonts = new EnumMap<>(StyleKey.Font.class);
+
+    private final Map<Rgb, XSSFColor> colors = new HashMap<>();
+
+    /** fill IDs of the gradient fills, which are expensive to create and can be shared by all styles of a category */
+    private final Map<Art, Long> gradientFills = new EnumMap<>(Art.class);
 
 
 
@@ -56,275 +61,198 @@ public class CellStyleFactory
 
 
 
-    public XSSFCellStyle monthHeading(final Position pPos)
+    /**
+     * Getter.
+     * @return the number of distinct cell styles created in the workbook so far
+     */
+    public int getStyleCount()
     {
-        final XSSFCellStyle result = workbook.createCellStyle();
-        result.setAlignment(HorizontalAlignment.LEFT);
-        result.setVerticalAlignment(VerticalAlignment.CENTER);
-        result.setFont(boldCalibri(14));
-        if (pPos.isOddMonth()) {
-            setOddBackground(result);
-        }
-        if (pPos.isFirstRowOfDay()) {
-            result.setBorderTop(pPos.isJanuary() ? BorderStyle.MEDIUM : BorderStyle.THIN);
-        }
-        if (pPos.isLastRowOfDay()) {
-            result.setBorderBottom(pPos.isDecember() ? BorderStyle.MEDIUM : BorderStyle.THIN);
-        }
-        result.setBorderRight(BorderStyle.MEDIUM);
-        result.setBorderLeft(BorderStyle.MEDIUM);
-        return result;
+        return styles.size();
     }
 
 
 
-    public XSSFCellStyle yearHeading()
+    /**
+     * Getter.
+     * @return the number of distinct fonts created in the workbook so far
+     */
+    public int getFontCount()
     {
-        final XSSFCellStyle result = alignCenter(workbook.createCellStyle());
-        result.setFont(boldCalibri(20));
-        result.setBorderBottom(BorderStyle.MEDIUM);
-        return result;
+        return fonts.size();
     }
 
 
 
-    public XSSFCellStyle dayHeading(final Position pPos, final Art pCategory)
+    /**
+     * Get the cell style for the given key, creating it if it does not exist yet.
+     *
+     * @param pKey describes the look of the cell
+     * @return the cell style
+     */
+    public XSSFCellStyle getStyle(final StyleKey pKey)
     {
-        final XSSFCellStyle result = alignCenter(workbook.createCellStyle());
-
-        result.setFillPattern(pCategory == Art.Gartenabfall
-            ? FillPatternType.THIN_FORWARD_DIAG : FillPatternType.SOLID_FOREGROUND);
-        result.setFillForegroundColor(new XSSFColor(pCategory.getColor(), DEFAULT_COLOR_MAP));
-
-        result.setBorderTop(pPos.isJanuary() ? BorderStyle.MEDIUM : BorderStyle.THIN);
-        if (pPos.isDay1()) {
-            result.setBorderLeft(BorderStyle.MEDIUM);
-        }
-        else {
-            result.setBorderLeft(BorderStyle.THIN);
-            result.setLeftBorderColor(VERTICAL_SEP_COLOR);
-        }
-        if (pPos.isDay31()) {
-            result.setBorderRight(BorderStyle.MEDIUM);
-        }
-
-        if (holidays.isHoliday(pPos)) {
-            final XSSFFont font = workbook.createFont();
-            font.setUnderline(FontUnderline.SINGLE);
-            result.setFont(font);
+        XSSFCellStyle result = styles.get(pKey);
+        if (result == null) {
+            result = createStyle(pKey);
+            styles.put(pKey, result);
         }
         return result;
     }
 
 
 
-    public XSSFCellStyle dayCell(final Position pPos, final Art pCategory)
+    private XSSFCellStyle createStyle(final StyleKey pKey)
     {
-        final XSSFCellStyle result = alignCenter(workbook.createCellStyle());
-        if (pPos.isDay1()) {
-            result.setBorderLeft(BorderStyle.MEDIUM);
-        }
-        else {
-            result.setBorderLeft(BorderStyle.THIN);
-            result.setLeftBorderColor(VERTICAL_SEP_COLOR);
-        }
-        if (pPos.isDay31()) {
-            result.setBorderRight(BorderStyle.MEDIUM);
-        }
-        if (pPos.isLastRowOfDay()) {
-            result.setBorderBottom(pPos.isDecember() ? BorderStyle.MEDIUM : BorderStyle.THIN);
+        final XSSFCellStyle result = workbook.createCellStyle();
+        if (pKey.getAlignment() != StyleKey.Alignment.General) {
+            result.setAlignment(pKey.getAlignment() == StyleKey.Alignment.Left
+                ? HorizontalAlignment.LEFT : HorizontalAlignment.CENTER);
+            result.setVerticalAlignment(VerticalAlignment.CENTER);
         }
-
-        result.setFillBackgroundColor(new XSSFColor(Color.WHITE, DEFAULT_COLOR_MAP));
-        result.setFillForegroundColor(new XSSFColor(Art.Gartenabfall.getColor(), DEFAULT_COLOR_MAP));
-        result.setFillPattern(FillPatternType.THIN_FORWARD_DIAG);
-        final CTFill ctFill = workbook.getStylesSource().getFillAt((int) result.getCoreXf().getFillId()).getCTFill();
-        ctFill.unsetPatternFill();
-
-        if (pCategory == Art.Gartenabfall) {
-            final CTPatternFill ctPatternFill = ctFill.addNewPatternFill();
-            ctPatternFill.addNewFgColor().setRgb(toBytes(pCategory.getColor()));
-            ctPatternFill.setPatternType(STPatternType.LIGHT_UP);
-            return result;
+        if (pKey.getFont() != StyleKey.Font.Default) {
+            result.setFont(getFont(pKey.getFont()));
         }
-
-        byte[] rgbInner;
-        switch (pCategory) {
-            case Bio:
-                rgbInner = toBytes(new Color(235, 241, 222));
+        switch (pKey.getFill()) {
+            case Solid:
+                result.setFillForegroundColor(getColor(pKey.getFillColor()));
+                result.setFillPattern(FillPatternType.SOLID_FOREGROUND);
                 break;
-            case Papier:
-                rgbInner = toBytes(new Color(221, 231, 242));
+            case Hatched:
+                result.setFillForegroundColor(getColor(pKey.getFillColor()));
+                result.setFillPattern(FillPatternType.THIN_FORWARD_DIAG);
                 break;
-            case GelberSack:
-                rgbInner = toBytes(new Color(255, 255, 204));
+            case Gradient:
+                setGradientFill(result, pKey);
                 break;
-            default: // Rest || Schadstoffmobil
-                rgbInner = toBytes(new Color(255, 255, 255));
+            default:
                 break;
         }
-        final byte[] rgbOuter = toBytes(pCategory.getColor());
-
-        final CTGradientFill ctGradientFill = ctFill.addNewGradientFill();
-        ctGradientFill.setType(STGradientType.PATH);
-        ctGradientFill.setLeft(0.5d);
-        ctGradientFill.setRight(0.5d);
-        ctGradientFill.setTop(0.5d);
-        ctGradientFill.setBottom(0.5d);
-
-        ctGradientFill.addNewStop().setPosition(0.0);
-        ctGradientFill.getStopArray(0).addNewColor().setRgb(rgbInner);
-        ctGradientFill.addNewStop().setPosition(1.0);
-        ctGradientFill.getStopArray(1).addNewColor().setRgb(rgbOuter);
-
+        addBorders(result, pKey);
         return result;
     }
 
 
 
-    public XSSFCellStyle heading()
-    {
-        final XSSFCellStyle headingStyle = workbook.createCellStyle();
-        headingStyle.setFont(boldCalibri(24));
-        return headingStyle;
-    }
-
-
-
-    public XSSFCellStyle columnHeading(final int pDay)
+    private void addBorders(final XSSFCellStyle pStyle, final StyleKey pKey)
     {
-        final XSSFCellStyle result = alignCenter(workbook.createCellStyle());
-        result.setFont(boldCalibri(14));
-        result.setBorderTop(BorderStyle.MEDIUM);
-        result.setBorderBottom(BorderStyle.MEDIUM);
-        if (pDay == 1) {
-            result.setBorderLeft(BorderStyle.MEDIUM);
+        if (pKey.getTop() != StyleKey.Border.None) {
+            pStyle.setBorderTop(toBorderStyle(pKey.getTop()));
         }
-        else {
-            result.setBorderLeft(BorderStyle.THIN);
-            result.setLeftBorderColor(VERTICAL_SEP_COLOR);
+        if (pKey.getBottom() != StyleKey.Border.None) {
+            pStyle.setBorderBottom(toBorderStyle(pKey.getBottom()));
         }
-        if (pDay == 31) {
-            result.setBorderRight(BorderStyle.MEDIUM);
+        if (pKey.getLeft() != StyleKey.Border.None) {
+            pStyle.setBorderLeft(toBorderStyle(pKey.getLeft()));
+            if (pKey.getLeft() == StyleKey.Border.Thin) {
+                pStyle.setLeftBorderColor(getColor(StyleKey.SEPARATOR_COLOR));
+            }
+        }
+        if (pKey.getRight() != StyleKey.Border.None) {
+            pStyle.setBorderRight(toBorderStyle(pKey.getRight()));
         }
-        return result;
     }
 
 
 
-    public CellStyle centered(final Position pPos)
+    private BorderStyle toBorderStyle(final StyleKey.Border pBorder)
     {
-        final XSSFCellStyle result = alignCenter(workbook.createCellStyle());
-        addNormalCellBorders(pPos, result);
-        return result;
+        return pBorder == StyleKey.Border.Medium ? BorderStyle.MEDIUM : BorderStyle.THIN;
     }
 
 
 
-    public XSSFCellStyle emptyDay(final Position pPos)
+    private void setGradientFill(final XSSFCellStyle pStyle, final StyleKey pKey)
     {
-        XSSFCellStyle result = alignCenter(workbook.createCellStyle());
-        if (pPos.isOddMonth()) {
-            setOddBackground(result);
+        final Long fillId = gradientFills.get(pKey.getCategory());
+        if (fillId != null) {
+            pStyle.getCoreXf().setFillId(fillId.longValue());
+            pStyle.getCoreXf().setApplyFill(true);
+            return;
         }
-        addNormalCellBorders(pPos, result);
-        return result;
-    }
 
+        pStyle.setFillBackgroundColor(getColor(StyleKey.WHITE));
+        pStyle.setFillForegroundColor(getColor(pKey.getFillColor()));
+        pStyle.setFillPattern(FillPatternType.THIN_FORWARD_DIAG);
+        final CTFill ctFill = workbook.getStylesSource().getFillAt((int) pStyle.getCoreXf().getFillId()).getCTFill();
+        ctFill.unsetPatternFill();
+        gradientFills.put(pKey.getCategory(), pStyle.getCoreXf().getFillId());
 
+        final CTGradientFill ctGradientFill = ctFill.addNewGradientFill();
+        ctGradientFill.setType(STGradientType.PATH);
+        ctGradientFill.setLeft(0.5d);
+        ctGradientFill.setRight(0.5d);
+        ctGradientFill.setTop(0.5d);
+        ctGradientFill.setBottom(0.5d);
 
-    private void addNormalCellBorders(final Position pPos, final XSSFCellStyle pStyle)
-    {
-        if (pPos.isFirstRowOfDay()) {
-            pStyle.setBorderTop(pPos.isJanuary() ? BorderStyle.MEDIUM : BorderStyle.THIN);
-        }
-        if (pPos.isDay1()) {
-            pStyle.setBorderLeft(BorderStyle.MEDIUM);
-        }
-        else {
-            pStyle.setBorderLeft(BorderStyle.THIN);
-            pStyle.setLeftBorderColor(VERTICAL_SEP_COLOR);
-        }
-        if (pPos.isDay31()) {
-            pStyle.setBorderRight(BorderStyle.MEDIUM);
-        }
-        if (pPos.isLastRowOfDay()) {
-            pStyle.setBorderBottom(pPos.isDecember() ? BorderStyle.MEDIUM : BorderStyle.THIN);
-        }
+        ctGradientFill.addNewStop().setPosition(0.0);
+        ctGradientFill.getStopArray(0).addNewColor().setRgb(pKey.getGradientInnerColor().toBytes());
+        ctGradientFill.addNewStop().setPosition(1.0);
+        ctGradientFill.getStopArray(1).addNewColor().setRgb(pKey.getFillColor().toBytes());
     }
 
 
 
-    public XSSFCellStyle sunday(final Position pPos)
+    private XSSFColor getColor(final Rgb pColor)
     {
-        final XSSFCellStyle result = alignCenter(workbook.createCellStyle());
-        result.setFillForegroundColor(new XSSFColor(new Color(191, 191, 191), DEFAULT_COLOR_MAP));
-        result.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-        XSSFFont font = workbook.createFont();
-        font.setColor(new XSSFColor(new Color(255, 255, 255), DEFAULT_COLOR_MAP));
-        result.setFont(font);
-        addNormalCellBorders(pPos, result);
+        XSSFColor result = colors.get(pColor);
+        if (result == null) {
+            result = new XSSFColor(pColor.toBytes(), DEFAULT_COLOR_MAP);
+            colors.put(pColor, result);
+        }
         return result;
     }
 
 
 
-    private byte[] toBytes(final Color pColor)
+    private XSSFFont getFont(final StyleKey.Font pFont)
     {
-        return new byte[]{
-            (byte) pColor.getRed(),
-            (byte) pColor.getGreen(),
-            (byte) pColor.getBlue()
-        };
-    }
-
-
-
-    private XSSFCellStyle alignCenter(final XSSFCellStyle pCellStyle)
-    {
-        pCellStyle.setAlignment(HorizontalAlignment.CENTER);
-        pCellStyle.setVerticalAlignment(VerticalAlignment.CENTER);
-        return pCellStyle;
-    }
-
-
-
-    private void setOddBackground(final XSSFCellStyle pCellStyle)
-    {
-        pCellStyle.setFillForegroundColor(new XSSFColor(new Color(221, 221, 221), DEFAULT_COLOR_MAP));
-        pCellStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-    }
-
-
-
-    private XSSFFont boldCalibri(final int pFontSizePx)
-    {
-        final XSSFFont result = workbook.createFont();
-        result.setFontName("Calibri");
-        result.setFontHeightInPoints((short) pFontSizePx);
-        result.setBold(true);
+        XSSFFont result = fonts.get(pFont);
+        if (result == null) {
+            result = createFont(pFont);
+            fonts.put(pFont, result);
+        }
         return result;
     }
 
 
 
-    public XSSFCellStyle noteBig()
+    private XSSFFont createFont(final StyleKey.Font pFont)
     {
-        final XSSFCellStyle result = workbook.createCellStyle();
-        XSSFFont font = boldCalibri(14);
-        font.setBold(false);
-        result.setFont(font);
+        final XSSFFont result = workbook.createFont();
+        switch (pFont) {
+            case Bold24:
+                setCalibri(result, 24, true);
+                break;
+            case Bold20:
+                setCalibri(result, 20, true);
+                break;
+            case Bold14:
+                setCalibri(result, 14, true);
+                break;
+            case Plain14:
+                setCalibri(result, 14, false);
+                break;
+            case Plain11:
+                setCalibri(result, 11, false);
+                break;
+            case Underlined:
+                result.setUnderline(FontUnderline.SINGLE);
+                break;
+            case White:
+                result.setColor(getColor(StyleKey.WHITE));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown font: " + pFont);
+        }
         return result;
     }
 
 
 
-    public CellStyle noteSmall()
+    private void setCalibri(final XSSFFont pFont, final int pFontSizePx, final boolean pBold)
     {
-        final XSSFCellStyle result = workbook.createCellStyle();
-        XSSFFont font = boldCalibri(11);
-        font.setBold(false);
-        result.setFont(font);
-        return result;
+        pFont.setFontName("Calibri");
+        pFont.setFontHeightInPoints((short) pFontSizePx);
+        pFont.setBold(pBold);
     }
 }
@@ -15,9 +15,17 @@ package com.thomasjensen.abfall;
 
 import java.io.File;
 import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -48,9 +56,10 @@ public class CmdLine
 
         Option year = Option.builder("y")
             .longOpt("year")
-            .hasArg().argName("year").type(PatternOptionBuilder.NUMBER_VALUE)
-            .desc("(required) The four-digit year for which the summary is being created")
-            .required()
+            .hasArg().argName("years").type(PatternOptionBuilder.STRING_VALUE)
+            .desc("(required) The four-digit year for which the summary is being created, a range of years "
+                + "(e.g. 2025-2026), or 'all' for all years in the ICS file. One Excel file is created per year. "
+                + "In server mode, the default year for requests (default: current year).")
             .build();
 
         Option locale = Option.builder("l")
@@ -61,8 +70,108 @@ public class CmdLine
 
         Option outFile = Option.builder("o")
             .longOpt("output")
-            .hasArg().argName("xls").type(PatternOptionBuilder.FILE_VALUE)
-            .desc("Name of the Excel file to create (output file)")
+            .hasArg().argName("file").type(PatternOptionBuilder.FILE_VALUE)
+            .desc("Name of the Excel, PDF, or SVG file to create (output file)")
+            .build();
+
+        Option batch = Option.builder("b")
+            .longOpt("batch")
+            .desc("Convert all ICS files in the directory or matching the glob pattern given as input. "
+                + "The output option then names the output directory (default: next to the input files).")
+            .build();
+
+        Option threads = Option.builder("t")
+            .longOpt("threads")
+            .hasArg().argName("count").type(PatternOptionBuilder.NUMBER_VALUE)
+            .desc("Number of worker threads (default: number of processors)")
+            .build();
+
+        Option referenceParser = Option.builder("r")
+            .longOpt("reference-parser")
+            .desc("Read the ICS file using the full Biweekly object model (slower, for comparisons)")
+            .build();
+
+        Option engine = Option.builder("e")
+            .longOpt("engine")
+            .hasArg().argName("name").type(PatternOptionBuilder.STRING_VALUE)
+            .desc("Rendering engine: xssf (in memory, default), sxssf (streaming, low memory), or direct (fastest)")
+            .build();
+
+        Option format = Option.builder("f")
+            .longOpt("format")
+            .hasArg().argName("name").type(PatternOptionBuilder.STRING_VALUE)
+            .desc("Output format: xlsx (Excel), pdf, or svg (for printing without Excel). Default: the extension of "
+                + "the output file, or xlsx.")
+            .build();
+
+        Option categories = Option.builder("k")
+            .longOpt("categories")
+            .hasArg().argName("file").type(PatternOptionBuilder.FILE_VALUE)
+            .desc("File with rules for classifying the pickup dates (default: built-in rules)")
+            .build();
+
+        Option server = Option.builder("s")
+            .longOpt("server")
+            .hasArg().argName("port").type(PatternOptionBuilder.NUMBER_VALUE)
+            .desc("Run as a conversion server on the given port instead of converting files. ICS files are POSTed "
+                + "to /convert, and the Excel file is returned.")
+            .build();
+
+        Option bind = Option.builder("n")
+            .longOpt("bind")
+            .hasArg().argName("address").type(PatternOptionBuilder.STRING_VALUE)
+            .desc("Address on which the server accepts connections, e.g. 0.0.0.0 for all network interfaces (default: "
+                + "the loopback address, so only local clients can connect)")
+            .build();
+
+        Option renderCache = Option.builder("a")
+            .longOpt("render-cache")
+            .hasArg().argName("MiB").type(PatternOptionBuilder.NUMBER_VALUE)
+            .desc("Maximum size of the in-memory cache of converted files in server mode, in MiB (default: "
+                + RenderCache.DEFAULT_SIZE_MB + "; 0 disables the cache)")
+            .build();
+
+        Option cds = Option.builder("c")
+            .longOpt("cds")
+            .desc("Create a class data sharing archive by a training run on a bundled sample file, so that the "
+                + "program starts faster from then on")
+            .build();
+
+        Option report = Option.builder("j")
+            .longOpt("report")
+            .hasArg().argName("file").type(PatternOptionBuilder.FILE_VALUE)
+            .desc("Write timings and counters of each conversion to the given JSON file")
+            .build();
+
+        Option incremental = Option.builder("i")
+            .longOpt("incremental")
+            .desc("Skip conversions whose ICS file, options, and calendar template are unchanged since the last run, "
+                + "as recorded in " + Manifest.FILE_NAME + " in the output directory")
+            .build();
+
+        Option cacheDir = Option.builder("d")
+            .longOpt("cache-dir")
+            .hasArg().argName("dir").type(PatternOptionBuilder.FILE_VALUE)
+            .desc("Directory for caching downloaded ICS feeds (default: .abfall/cache in the user's home directory)")
+            .build();
+
+        Option watch = Option.builder("w")
+            .longOpt("watch")
+            .desc("Convert all ICS files in the directory or matching the glob pattern given as input, and keep "
+                + "converting them again whenever they change (implies --batch)")
+            .build();
+
+        Option qrCode = Option.builder("q")
+            .longOpt("qr-code")
+            .hasArg().argName("text").type(PatternOptionBuilder.STRING_VALUE)
+            .desc("Text of the QR code, usually the URL of the calendar's online feed. In batch mode, {name} is "
+                + "replaced by the name of the ICS file. Default: the URL of the feed, or a link to the project.")
+            .build();
+
+        Option multiSheet = Option.builder("m")
+            .longOpt("multi-sheet")
+            .desc("Combine the calendars of all ICS files of a batch into one Excel file per year, with one sheet per "
+                + "ICS file named after it (requires --batch)")
             .build();
 
         Options result = new Options();
@@ -70,6 +179,22 @@ public class CmdLine
         result.addOption(year);
         result.addOption(locale);
         result.addOption(outFile);
+        result.addOption(batch);
+        result.addOption(threads);
+        result.addOption(referenceParser);
+        result.addOption(engine);
+        result.addOption(format);
+        result.addOption(categories);
+        result.addOption(server);
+        result.addOption(bind);
+        result.addOption(renderCache);
+        result.addOption(cds);
+        result.addOption(report);
+        result.addOption(incremental);
+        result.addOption(cacheDir);
+        result.addOption(watch);
+        result.addOption(multiSheet);
+        result.addOption(qrCode);
 
         return result;
     }
@@ -105,26 +230,94 @@ public class CmdLine
             return null;
         }
 
-        int year = -1;
+        YearRange years = null;
         Locale locale = Locale.GERMAN;
         File inFile = null;
+        final List<File> mergedFiles = new ArrayList<>();
+        final List<URI> feeds = new ArrayList<>();
+        File cacheDir = new File(System.getProperty("user.home"), ".abfall" + File.separator + "cache");
         File outFile = null;
+        boolean batch = false;
+        boolean referenceParser = false;
+        Engine engine = Engine.Xssf;
+        Format format = Format.Xlsx;
+        File categoriesFile = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int serverPort = -1;
+        InetAddress serverAddress = InetAddress.getLoopbackAddress();
+        boolean cdsTraining = false;
+        File reportFile = null;
+        boolean incremental = false;
+        boolean watch = false;
+        boolean multiSheet = false;
+        int renderCacheMb = 0;
+        String qrCode = null;
 
         CommandLineParser parser = new DefaultParser();
 
         try {
             CommandLine cmd = parser.parse(opts, pArgs);
 
-            if (cmd.hasOption('y')) {
-                Long j = (Long) cmd.getParsedOptionValue("y");
-                if (j != null) {
-                    year = j.intValue();
-                    if (year < 2000) {
-                        throw new ParseException("Year too small. Must be 4 digits: " + year);
+            cdsTraining = cmd.hasOption('c');
+            if (cmd.hasOption('s')) {
+                Long p = (Long) cmd.getParsedOptionValue("s");
+                if (p != null) {
+                    serverPort = p.intValue();
+                    if (serverPort < 0 || serverPort > 65535) {
+                        throw new ParseException("Invalid port number: " + serverPort);
                     }
                 }
             }
 
+            if (cmd.hasOption('n')) {
+                if (serverPort < 0) {
+                    throw new ParseException("The bind address is only used in server mode");
+                }
+                String s = cmd.getOptionValue('n');
+                try {
+                    serverAddress = InetAddress.getByName(s);
+                }
+                catch (UnknownHostException e) {
+                    throw new ParseException("Unknown bind address: " + s);
+                }
+            }
+
+            if (serverPort >= 0) {
+                renderCacheMb = RenderCache.DEFAULT_SIZE_MB;
+            }
+            if (cmd.hasOption('a')) {
+                Long mb = (Long) cmd.getParsedOptionValue("a");
+                if (mb != null) {
+                    if (serverPort < 0) {
+                        throw new ParseException("The render cache is only used in server mode");
+                    }
+                    if (mb.longValue() < 0 || mb.longValue() > Integer.MAX_VALUE) {
+                        throw new ParseException("Invalid render cache size: " + mb);
+                    }
+                    renderCacheMb = mb.intValue();
+                }
+            }
+
+            if (cmd.hasOption('y')) {
+                String s = cmd.getOptionValue('y');
+                years = YearRange.parse(s);
+                if (years == null) {
+                    throw new ParseException("Invalid year or range of years: " + s);
+                }
+                if (!years.isAll() && years.getFirst() < 2000) {
+                    throw new ParseException("Year too small. Must be 4 digits: " + years.getFirst());
+                }
+                if (serverPort >= 0 && !years.isSingleYear()) {
+                    throw new ParseException("Server mode requires a single year: " + s);
+                }
+            }
+            else if (serverPort >= 0 || cdsTraining) {
+                years = YearRange.of(LocalDate.now().getYear());
+            }
+            else {
+                throw new ParseException("Missing required option: y");
+            }
+
             if (cmd.hasOption('l')) {
                 String s = cmd.getOptionValue('l');
                 locale = new Locale(s);
@@ -133,21 +326,116 @@ public class CmdLine
                 }
             }
 
+            watch = cmd.hasOption('w');
+            batch = cmd.hasOption('b') || watch;
+            referenceParser = cmd.hasOption('r');
+            if (cmd.hasOption('e')) {
+                String s = cmd.getOptionValue('e');
+                engine = Engine.fromName(s);
+                if (engine == null) {
+                    throw new ParseException("Unknown engine: " + s);
+                }
+            }
+            if (cmd.hasOption('t')) {
+                Long t = (Long) cmd.getParsedOptionValue("t");
+                if (t != null) {
+                    threads = t.intValue();
+                    if (threads < 1) {
+                        throw new ParseException("Number of threads must be positive: " + threads);
+                    }
+                }
+            }
+
+            if (cmd.hasOption('k')) {
+                categoriesFile = new File(cmd.getOptionValue('k'));
+                if (!categoriesFile.isFile()) {
+                    throw new ParseException("Categories file not found: " + categoriesFile);
+                }
+            }
+
+            if (batch && serverPort >= 0) {
+                throw new ParseException("Batch mode and server mode cannot be combined");
+            }
+
+            if (cmd.hasOption('j')) {
+                reportFile = new File(cmd.getOptionValue('j'));
+                if (serverPort >= 0 || cdsTraining) {
+                    throw new ParseException("Reports are not written in server mode or by the training run "
+                        + "(the server provides a JMX MBean instead)");
+                }
+            }
+
+            incremental = cmd.hasOption('i');
+            if (incremental && (serverPort >= 0 || cdsTraining)) {
+                throw new ParseException("Incremental mode is only available when converting files");
+            }
+
             if (cmd.hasOption('o')) {
                 outFile = new File(cmd.getOptionValue('o'));
             }
-            if (outFile == null) {
-                outFile = new File("Abfallkalender " + year + ".xlsx");
+            if (cmd.hasOption('f')) {
+                String s = cmd.getOptionValue('f');
+                format = Format.fromName(s);
+                if (format == null) {
+                    throw new ParseException("Unknown format: " + s);
+                }
+            }
+            else if (outFile != null && !batch && Format.fromFile(outFile) != null) {
+                format = Format.fromFile(outFile);
+            }
+            if (format != Format.Xlsx && serverPort >= 0) {
+                throw new ParseException("The server only returns Excel files");
+            }
+            if (outFile == null && !batch && serverPort < 0 && !cdsTraining) {
+                // with several years, the year is added to the file name by the Converter
+                outFile = new File((years.isSingleYear() ? "Abfallkalender " + years.getFirst() : "Abfallkalender")
+                    + "." + format.getExtension());
             }
 
             final List<String> args = cmd.getArgList();
-            if (args.size() > 1) {
+            final boolean needsInput = serverPort < 0 && !cdsTraining;
+            final boolean urls = !args.isEmpty() && FeedFetcher.isUrl(args.get(0));
+            if ((args.size() > 1 && batch && !urls) || (!needsInput && args.size() > 0)) {
                 throw new ParseException("Too many command line arguments");
             }
-            if (args.size() < 1) {
+            if (args.size() < 1 && needsInput) {
                 throw new ParseException("Input file not specified");
             }
-            inFile = new File(args.get(0));
+            if (urls) {
+                feeds.addAll(parseFeeds(args));
+            }
+            else if (args.size() > 0) {
+                inFile = new File(args.get(0));
+                for (final String arg : args.subList(1, args.size())) {
+                    if (FeedFetcher.isUrl(arg)) {
+                        throw new ParseException("Feed URLs and local files cannot be mixed: " + arg);
+                    }
+                    mergedFiles.add(new File(arg));
+                }
+            }
+            if (watch && (!feeds.isEmpty() || serverPort >= 0 || cdsTraining)) {
+                throw new ParseException("Watch mode requires a local directory or glob pattern as input");
+            }
+            multiSheet = cmd.hasOption('m');
+            if (multiSheet && (!batch || watch || incremental)) {
+                throw new ParseException("Multi-sheet mode requires batch mode, and cannot be combined with watch "
+                    + "mode or incremental mode");
+            }
+            if (multiSheet && (engine == Engine.Direct || format != Format.Xlsx)) {
+                throw new ParseException("Multi-sheet mode requires the xssf or sxssf engine and the xlsx format");
+            }
+            if (cmd.hasOption('q')) {
+                qrCode = cmd.getOptionValue('q');
+                try {
+                    QrCode.forText(qrCode.replace("{name}", ""));
+                }
+                catch (IllegalArgumentException e) {
+                    throw new ParseException(e.getMessage());
+                }
+            }
+            if (cmd.hasOption('d')) {
+                cacheDir = new File(cmd.getOptionValue('d'));
+            }
         }
         catch (ParseException e) {
             LOG.error(e.getMessage());
@@ -158,7 +446,38 @@ public class CmdLine
             LOG.error(e.getMessage(), e);
         }
 
-        return new Config(year, locale, inFile, outFile);
+        return Config.builder(years).locale(locale).inFileIcs(inFile).mergedFiles(mergedFiles).feeds(feeds)
+            .cacheDir(cacheDir).outFileXlsx(outFile).batch(batch).threads(threads).referenceParser(referenceParser)
+            .engine(engine).format(format).categoriesFile(categoriesFile).serverPort(serverPort)
+            .serverAddress(serverAddress).cdsTraining(cdsTraining).reportFile(reportFile).incremental(incremental)
+            .watch(watch).multiSheet(multiSheet).renderCacheMb(renderCacheMb).qrCode(qrCode).build();
+    }
+
+
+
+    private List<URI> parseFeeds(final List<String> pArgs)
+        throws ParseException
+    {
+        final List<URI> result = new ArrayList<>();
+        final Set<String> names = new HashSet<>();
+        for (final String arg : pArgs) {
+            if (!FeedFetcher.isUrl(arg)) {
+                throw new ParseException("Feed URLs and local files cannot be mixed: " + arg);
+            }
+            final URI feed;
+            try {
+                feed = new URI(arg);
+            }
+            catch (URISyntaxException e) {
+                throw new ParseException("Invalid feed URL: " + arg);
+            }
+            if (!names.add(FeedFetcher.getName(feed))) {
+                throw new ParseException("Two feeds have the same name '" + FeedFetcher.getName(feed)
+                    + "'. Add distinct names as URL fragments (#name).");
+            }
+            result.add(feed);
+        }
+        return result;
     }
 
 
@@ -168,8 +487,8 @@ public class CmdLine
         HelpFormatter formatter = new HelpFormatter();
         final int textWidthChars = 100;
         try (PrintWriter pw = IoBuilder.forLogger(LOG).setAutoFlush(true).setLevel(Level.INFO).buildPrintWriter()) {
-            formatter.printHelp(pw, textWidthChars, "abfall [options] <icsFile>", null, pOptions,
-                HelpFormatter.DEFAULT_LEFT_PAD, HelpFormatter.DEFAULT_DESC_PAD, null);
+            formatter.printHelp(pw, textWidthChars, "abfall [options] <icsFile... | icsDir | glob | feedUrl...>", null,
+                pOptions, HelpFormatter.DEFAULT_LEFT_PAD, HelpFormatter.DEFAULT_DESC_PAD, null);
         }
         LOG.info("");
     }
@@ -14,6 +14,11 @@
 package com.thomasjensen.abfall;
 
 import java.io.File;
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 
 
@@ -22,29 +27,237 @@ import java.util.Locale;
  */
 public class Config
 {
-    private final int year;
+    /** the years to create calendars for, one workbook per year */
+    private final YearRange years;
 
     private final Locale locale;
 
+    /** the ICS file, or in batch mode, a directory or glob pattern of ICS files; <code>null</code> with feeds */
     private final File inFileIcs;
 
+    /**
+     * further ICS files of the same household, whose events are merged with those of {@link #inFileIcs} into one
+     * calendar (not in batch mode); an empty list if there is only one
+     */
+    private final List<File> mergedFiles;
+
+    /**
+     * the URLs of the ICS feeds to download and convert instead of local files, or an empty list; outside of batch
+     * mode, several feeds are merged into one calendar
+     */
+    private final List<URI> feeds;
+
+    /** the directory where downloaded feeds are cached */
+    private final File cacheDir;
+
+    /** the Excel file, or in batch mode, the output directory (<code>null</code> means next to the input) */
     private final File outFileXlsx;
 
+    private final boolean batch;
+
+    /** number of worker threads, used by batch mode and the direct engine */
+    private final int threads;
+
+    /** read the ICS file using the Biweekly object model instead of the streaming reader */
+    private final boolean referenceParser;
+
+    private final Engine engine;
+
+    /** the type of output file; all formats except Excel are rendered without the {@link #engine} */
+    private final Format format;
+
+    /** the rules for classifying pickup dates, or <code>null</code> for the built-in rules */
+    private final File categoriesFile;
+
+    /** the port of the conversion {@link Server}, or -1 if not running as a server */
+    private final int serverPort;
+
+    /** the address the {@link Server} listens on, by default only the loopback address */
+    private final InetAddress serverAddress;
+
+    /** create the class data sharing archive by a {@link TrainingRun} instead of converting files */
+    private final boolean cdsTraining;
+
+    /** the JSON file to write the {@link RunReport} to, or <code>null</code> for no report */
+    private final File reportFile;
+
+    /** skip conversions whose inputs are unchanged according to the {@link Manifest} in the output directory */
+    private final boolean incremental;
+
+    /** keep running, and convert the input files again when they change (batch mode only) */
+    private final boolean watch;
+
+    /** write the calendars of all input files into one workbook per year, with one sheet per file (batch mode only) */
+    private final boolean multiSheet;
+
+    /** maximum size of the {@link RenderCache} of the {@link Server} in MiB, or 0 to disable the cache */
+    private final int renderCacheMb;
+
+    /**
+     * the text of the QR code, usually the URL of the calendar's online feed, in which <code>{name}</code> stands for
+     * the name of the ICS file; <code>null</code> for the link to the project
+     */
+    private final String qrCode;
+
+
+
+    private Config(final Builder pBuilder)
+    {
+        years = pBuilder.years;
+        locale = pBuilder.locale;
+        inFileIcs = pBuilder.inFileIcs;
+        mergedFiles = pBuilder.mergedFiles != null
+            ? Collections.unmodifiableList(pBuilder.mergedFiles) : Collections.emptyList();
+        feeds = pBuilder.feeds != null ? Collections.unmodifiableList(pBuilder.feeds) : Collections.emptyList();
+        cacheDir = pBuilder.cacheDir;
+        outFileXlsx = pBuilder.outFileXlsx;
+        batch = pBuilder.batch;
+        threads = pBuilder.threads;
+        referenceParser = pBuilder.referenceParser;
+        engine = pBuilder.engine;
+        format = pBuilder.format;
+        categoriesFile = pBuilder.categoriesFile;
+        serverPort = pBuilder.serverPort;
+        serverAddress = pBuilder.serverAddress;
+        cdsTraining = pBuilder.cdsTraining;
+        reportFile = pBuilder.reportFile;
+        incremental = pBuilder.incremental;
+        watch = pBuilder.watch;
+        multiSheet = pBuilder.multiSheet;
+        renderCacheMb = pBuilder.renderCacheMb;
+        qrCode = pBuilder.qrCode;
+    }
+
+
+
+    /**
+     * Create a builder for a new configuration.
+     *
+     * @param pYears the years to create calendars for
+     * @return the builder, which starts from the defaults: German locale, no files, one thread, the xssf engine, Excel
+     * output, not in batch or server mode (a server would listen on the loopback address only)
+     */
+    public static Builder builder(final YearRange pYears)
+    {
+        return new Builder(pYears);
+    }
+
+
+
+    /**
+     * Create a copy of this configuration which reads a downloaded feed. Unless a QR code was configured, the QR code
+     * links to the feed.
+     *
+     * @param pInFileIcs the cached ICS file of the feed
+     * @param pFeed the URL of the feed
+     * @return a new configuration with the given input file and no feeds, which is otherwise unchanged
+     */
+    public Config withInput(final File pInFileIcs, final URI pFeed)
+    {
+        return new Builder(this).inFileIcs(pInFileIcs).mergedFiles(null).feeds(null)
+            .qrCode(qrCode != null ? qrCode : FeedFetcher.stripFragment(pFeed).toString()).build();
+    }
+
 
 
-    public Config(final int pYear, final Locale pLocale, final File pInFileIcs, final File pOutFileXlsx)
+    /**
+     * Create a copy of this configuration which merges several downloaded feeds into one calendar. Unless a QR code
+     * was configured, the QR code links to the project, because it can only hold one of the feeds.
+     *
+     * @param pInFilesIcs the cached ICS files of the feeds, at least one
+     * @return a new configuration with the given input files and no feeds, which is otherwise unchanged
+     */
+    public Config withInputs(final List<File> pInFilesIcs)
     {
-        year = pYear;
-        locale = pLocale;
-        inFileIcs = pInFileIcs;
-        outFileXlsx = pOutFileXlsx;
+        return new Builder(this).inFileIcs(pInFilesIcs.get(0))
+            .mergedFiles(new ArrayList<>(pInFilesIcs.subList(1, pInFilesIcs.size()))).feeds(null).build();
     }
 
 
 
+    /**
+     * Create a copy of this configuration which converts a single file.
+     *
+     * @param pInFileIcs the ICS file to read
+     * @param pOutFileXlsx the Excel file to write
+     * @return a new configuration, which is not in batch mode, and uses one thread (the batch workers already run
+     * in parallel); the report is written by the batch
+     */
+    public Config withFiles(final File pInFileIcs, final File pOutFileXlsx)
+    {
+        return new Builder(this).inFileIcs(pInFileIcs).mergedFiles(null).feeds(null).outFileXlsx(pOutFileXlsx)
+            .batch(false).threads(1).serverPort(-1).cdsTraining(false).reportFile(null).watch(false)
+            .multiSheet(false).renderCacheMb(0).build();
+    }
+
+
+
+    /**
+     * Create a copy of this configuration which writes the calendar of a single year.
+     *
+     * @param pYear the year
+     * @param pOutFileXlsx the Excel file to write
+     * @return a new configuration
+     */
+    public Config withYear(final int pYear, final File pOutFileXlsx)
+    {
+        return new Builder(this).years(YearRange.of(pYear)).outFileXlsx(pOutFileXlsx).build();
+    }
+
+
+
+    /**
+     * Create a copy of this configuration with another QR code.
+     *
+     * @param pQrCode the text of the QR code, or <code>null</code> for the link to the project
+     * @return a new configuration, which is otherwise unchanged
+     */
+    public Config withQrCode(final String pQrCode)
+    {
+        return new Builder(this).qrCode(pQrCode).build();
+    }
+
+
+
+    /**
+     * Create a copy of this configuration which converts one request to the {@link Server}.
+     *
+     * @param pYear the year of the calendar
+     * @param pLocale the locale, or <code>null</code> to keep the configured locale
+     * @return a new configuration without files, which uses one thread (the requests already run in parallel)
+     */
+    public Config withRequest(final int pYear, final Locale pLocale)
+    {
+        return new Builder(this).years(YearRange.of(pYear)).locale(pLocale != null ? pLocale : locale)
+            .inFileIcs(null).mergedFiles(null).feeds(null).cacheDir(null).outFileXlsx(null).batch(false).threads(1)
+            .serverPort(-1).cdsTraining(false).reportFile(null).incremental(false).watch(false).multiSheet(false)
+            .build();
+    }
+
+
+
+    /**
+     * Getter.
+     *
+     * @return the year of the calendar, which is the first of the requested years if there are several
+     */
     public int getYear()
     {
-        return year;
+        return years.getFirst();
+    }
+
+
+
+    public YearRange getYears()
+    {
+        return years;
+    }
+
+
+
+    public boolean isMultiYear()
+    {
+        return !years.isSingleYear();
     }
 
 
@@ -63,8 +276,432 @@ public class Config
 
 
 
+    /**
+     * Getter.
+     *
+     * @return the ICS files whose events are merged into one calendar, starting with {@link #getInFileIcs()}; a list
+     * of one file unless several were given, or an empty list if there is no input file
+     */
+    public List<File> getInFilesIcs()
+    {
+        final List<File> result = new ArrayList<>(mergedFiles.size() + 1);
+        if (inFileIcs != null) {
+            result.add(inFileIcs);
+        }
+        result.addAll(mergedFiles);
+        return result;
+    }
+
+
+
+    public List<URI> getFeeds()
+    {
+        return feeds;
+    }
+
+
+
+    public File getCacheDir()
+    {
+        return cacheDir;
+    }
+
+
+
     public File getOutFileXlsx()
     {
         return outFileXlsx;
     }
+
+
+
+    public boolean isBatch()
+    {
+        return batch;
+    }
+
+
+
+    public int getThreads()
+    {
+        return threads;
+    }
+
+
+
+    public boolean isReferenceParser()
+    {
+        return referenceParser;
+    }
+
+
+
+    public Engine getEngine()
+    {
+        return engine;
+    }
+
+
+
+    public Format getFormat()
+    {
+        return format;
+    }
+
+
+
+    public File getCategoriesFile()
+    {
+        return categoriesFile;
+    }
+
+
+
+    public boolean isServer()
+    {
+        return serverPort >= 0;
+    }
+
+
+
+    public int getServerPort()
+    {
+        return serverPort;
+    }
+
+
+
+    public InetAddress getServerAddress()
+    {
+        return serverAddress;
+    }
+
+
+
+    public boolean isCdsTraining()
+    {
+        return cdsTraining;
+    }
+
+
+
+    public File getReportFile()
+    {
+        return reportFile;
+    }
+
+
+
+    public boolean isIncremental()
+    {
+        return incremental;
+    }
+
+
+
+    public boolean isWatch()
+    {
+        return watch;
+    }
+
+
+
+    public boolean isMultiSheet()
+    {
+        return multiSheet;
+    }
+
+
+
+    public int getRenderCacheMb()
+    {
+        return renderCacheMb;
+    }
+
+
+
+    /**
+     * Getter.
+     *
+     * @return the text of the QR code, with <code>{name}</code> replaced by the name of the ICS file without
+     * extension; <code>null</code> if the default QR code is used, which links to the project
+     */
+    public String getQrCode()
+    {
+        if (qrCode == null || inFileIcs == null) {
+            return qrCode;
+        }
+        return qrCode.replace("{name}", BatchRunner.getBaseName(inFileIcs));
+    }
+
+
+
+    /**
+     * Collects the settings of a new configuration, or of a modified copy of an existing one. See the fields of
+     * {@link Config} for the meaning of each setting.
+     */
+    public static final class Builder
+    {
+        private YearRange years;
+
+        private Locale locale = Locale.GERMAN;
+
+        private File inFileIcs = null;
+
+        private List<File> mergedFiles = null;
+
+        private List<URI> feeds = null;
+
+        private File cacheDir = null;
+
+        private File outFileXlsx = null;
+
+        private boolean batch = false;
+
+        private int threads = 1;
+
+        private boolean referenceParser = false;
+
+        private Engine engine = Engine.Xssf;
+
+        private Format format = Format.Xlsx;
+
+        private File categoriesFile = null;
+
+        private int serverPort = -1;
+
+        private InetAddress serverAddress = InetAddress.getLoopbackAddress();
+
+        private boolean cdsTraining = false;
+
+        private File reportFile = null;
+
+        private boolean incremental = false;
+
+        private boolean watch = false;
+
+        private boolean multiSheet = false;
+
+        private int renderCacheMb = 0;
+
+        private String qrCode = null;
+
+
+
+        private Builder(final YearRange pYears)
+        {
+            years = pYears;
+        }
+
+
+
+        private Builder(final Config pConfig)
+        {
+            years = pConfig.years;
+            locale = pConfig.locale;
+            inFileIcs = pConfig.inFileIcs;
+            mergedFiles = pConfig.mergedFiles;
+            feeds = pConfig.feeds;
+            cacheDir = pConfig.cacheDir;
+            outFileXlsx = pConfig.outFileXlsx;
+            batch = pConfig.batch;
+            threads = pConfig.threads;
+            referenceParser = pConfig.referenceParser;
+            engine = pConfig.engine;
+            format = pConfig.format;
+            categoriesFile = pConfig.categoriesFile;
+            serverPort = pConfig.serverPort;
+            serverAddress = pConfig.serverAddress;
+            cdsTraining = pConfig.cdsTraining;
+            reportFile = pConfig.reportFile;
+            incremental = pConfig.incremental;
+            watch = pConfig.watch;
+            multiSheet = pConfig.multiSheet;
+            renderCacheMb = pConfig.renderCacheMb;
+            qrCode = pConfig.qrCode;
+        }
+
+
+
+        public Builder years(final YearRange pYears)
+        {
+            years = pYears;
+            return this;
+        }
+
+
+
+        public Builder locale(final Locale pLocale)
+        {
+            locale = pLocale;
+            return this;
+        }
+
+
+
+        public Builder inFileIcs(final File pInFileIcs)
+        {
+            inFileIcs = pInFileIcs;
+            return this;
+        }
+
+
+
+        public Builder mergedFiles(final List<File> pMergedFiles)
+        {
+            mergedFiles = pMergedFiles;
+            return this;
+        }
+
+
+
+        public Builder feeds(final List<URI> pFeeds)
+        {
+            feeds = pFeeds;
+            return this;
+        }
+
+
+
+        public Builder cacheDir(final File pCacheDir)
+        {
+            cacheDir = pCacheDir;
+            return this;
+        }
+
+
+
+        public Builder outFileXlsx(final File pOutFileXlsx)
+        {
+            outFileXlsx = pOutFileXlsx;
+            return this;
+        }
+
+
+
+        public Builder batch(final boolean pBatch)
+        {
+            batch = pBatch;
+            return this;
+        }
+
+
+
+        public Builder threads(final int pThreads)
+        {
+            threads = pThreads;
+            return this;
+        }
+
+
+
+        public Builder referenceParser(final boolean pReferenceParser)
+        {
+            referenceParser = pReferenceParser;
+            return this;
+        }
+
+
+
+        public Builder engine(final Engine pEngine)
+        {
+            engine = pEngine;
+            return this;
+        }
+
+
+
+        public Builder format(final Format pFormat)
+        {
+            format = pFormat;
+            return this;
+        }
+
+
+
+        public Builder categoriesFile(final File pCategoriesFile)
+        {
+            categoriesFile = pCategoriesFile;
+            return this;
+        }
+
+
+
+        public Builder serverPort(final int pServerPort)
+        {
+            serverPort = pServerPort;
+            return this;
+        }
+
+
+
+        public Builder serverAddress(final InetAddress pServerAddress)
+        {
+            serverAddress = pServerAddress;
+            return this;
+        }
+
+
+
+        public Builder cdsTraining(final boolean pCdsTraining)
+        {
+            cdsTraining = pCdsTraining;
+            return this;
+        }
+
+
+
+        public Builder reportFile(final File pReportFile)
+        {
+            reportFile = pReportFile;
+            return this;
+        }
+
+
+
+        public Builder incremental(final boolean pIncremental)
+        {
+            incremental = pIncremental;
+            return this;
+        }
+
+
+
+        public Builder watch(final boolean pWatch)
+        {
+            watch = pWatch;
+            return this;
+        }
+
+
+
+        public Builder multiSheet(final boolean pMultiSheet)
+        {
+            multiSheet = pMultiSheet;
+            return this;
+        }
+
+
+
+        public Builder renderCacheMb(final int pRenderCacheMb)
+        {
+            renderCacheMb = pRenderCacheMb;
+            return this;
+        }
+
+
+
+        public Builder qrCode(final String pQrCode)
+        {
+            qrCode = pQrCode;
+            return this;
+        }
+
+
+
+        public Config build()
+        {
+            return new Config(this);
+        }
+    }
 }
@@ -0,0 +1,295 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * Latency histograms and counters of the conversions done by the {@link Server}, exposed as a JMX MXBean. The
+ * histograms have fixed buckets, so that recording a request is lock-free and needs no allocation.
+ */
+public class ConversionMetrics
+    implements ConversionMetricsMXBean
+{
+    private static final Logger LOG = LogManager.getLogger(ConversionMetrics.class);
+
+    public static final String OBJECT_NAME = "com.thomasjensen.abfall:type=ConversionMetrics";
+
+    /** upper limits of the histogram buckets in milliseconds, plus an unbounded last bucket */
+    private static final long[] BUCKET_LIMITS_MILLIS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000,
+        Long.MAX_VALUE};
+
+    private static final String TOTAL = "total";
+
+    private static final RunStats.Phase[] PHASES = RunStats.Phase.values();
+
+    /** the histogram of each phase, and of the total as the last element */
+    private final Histogram[] histograms = new Histogram[PHASES.length + 1];
+
+    private final LongAdder conversionCount = new LongAdder();
+
+    private final LongAdder failureCount = new LongAdder();
+
+    private final LongAdder outputBytes = new LongAdder();
+
+    private ObjectName objectName = null;
+
+
+
+    /**
+     * A latency histogram.
+     */
+    private static final class Histogram
+    {
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKET_LIMITS_MILLIS.length);
+
+        private final LongAdder sumNanos = new LongAdder();
+
+        private final LongAdder count = new LongAdder();
+
+
+
+        void record(final long pNanos)
+        {
+            final long millis = pNanos / 1000000L;
+            int bucket = 0;
+            while (millis >= BUCKET_LIMITS_MILLIS[bucket]) {
+                bucket++;
+            }
+            counts.incrementAndGet(bucket);
+            sumNanos.add(pNanos);
+            count.increment();
+        }
+
+
+
+        long[] getCounts()
+        {
+            final long[] result = new long[counts.length()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = counts.get(i);
+            }
+            return result;
+        }
+
+
+
+        double getMeanMillis()
+        {
+            final long n = count.sum();
+            return n > 0 ? sumNanos.sum() / 1000000d / n : 0d;
+        }
+
+
+
+        long getPercentileMillis(final double pFraction)
+        {
+            final long[] snapshot = getCounts();
+            final long n = Arrays.stream(snapshot).sum();
+            if (n == 0) {
+                return 0L;
+            }
+            final long rank = (long) Math.ceil(pFraction * n);
+            long seen = 0;
+            for (int i = 0; i < snapshot.length; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return BUCKET_LIMITS_MILLIS[i];
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+
+
+        void reset()
+        {
+            for (int i = 0; i < counts.length(); i++) {
+                counts.set(i, 0L);
+            }
+            sumNanos.reset();
+            count.reset();
+        }
+    }
+
+
+
+    public ConversionMetrics()
+    {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+    }
+
+
+
+    /**
+     * Record a successful conversion.
+     *
+     * @param pStats the timings and counters of the conversion
+     */
+    public void record(final RunStats pStats)
+    {
+        for (final RunStats.Phase phase : PHASES) {
+            final long nanos = pStats.getWallNanos(phase);
+            if (nanos > 0L) {
+                histograms[phase.ordinal()].record(nanos);
+            }
+        }
+        histograms[PHASES.length].record(pStats.getTotalNanos());
+        conversionCount.increment();
+        outputBytes.add(pStats.getOutputBytes());
+    }
+
+
+
+    public void recordFailure()
+    {
+        failureCount.increment();
+    }
+
+
+
+    /**
+     * Register this MXBean with the platform MBean server. Failure to do so is logged, but does not prevent the
+     * server from running.
+     */
+    public void register()
+    {
+        try {
+            final MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (mbeanServer.isRegistered(name)) {
+                mbeanServer.unregisterMBean(name);  // left over from a previous server in the same JVM
+            }
+            mbeanServer.registerMBean(this, name);
+            objectName = name;
+        }
+        catch (JMException | RuntimeException e) {
+            LOG.warn("Failed to register JMX MBean " + OBJECT_NAME + ": " + e);
+        }
+    }
+
+
+
+    public void unregister()
+    {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            }
+            catch (JMException | RuntimeException e) {
+                LOG.warn("Failed to unregister JMX MBean " + OBJECT_NAME + ": " + e);
+            }
+            objectName = null;
+        }
+    }
+
+
+
+    @Override
+    public long getConversionCount()
+    {
+        return conversionCount.sum();
+    }
+
+
+
+    @Override
+    public long getFailureCount()
+    {
+        return failureCount.sum();
+    }
+
+
+
+    @Override
+    public long getOutputBytes()
+    {
+        return outputBytes.sum();
+    }
+
+
+
+    @Override
+    public long[] getBucketLimitsMillis()
+    {
+        return BUCKET_LIMITS_MILLIS.clone();
+    }
+
+
+
+    @Override
+    public Map<String, long[]> getLatencyHistograms()
+    {
+        final Map<String, long[]> result = new LinkedHashMap<>();
+        for (final RunStats.Phase phase : PHASES) {
+            result.put(phase.getReportName(), histograms[phase.ordinal()].getCounts());
+        }
+        result.put(TOTAL, histograms[PHASES.length].getCounts());
+        return result;
+    }
+
+
+
+    @Override
+    public Map<String, Double> getMeanMillis()
+    {
+        final Map<String, Double> result = new LinkedHashMap<>();
+        for (final RunStats.Phase phase : PHASES) {
+            result.put(phase.getReportName(), histograms[phase.ordinal()].getMeanMillis());
+        }
+        result.put(TOTAL, histograms[PHASES.length].getMeanMillis());
+        return result;
+    }
+
+
+
+    @Override
+    public Map<String, Long> getTotalPercentilesMillis()
+    {
+        final Histogram total = histograms[PHASES.length];
+        final Map<String, Long> result = new LinkedHashMap<>();
+        result.put("p50", total.getPercentileMillis(0.50d));
+        result.put("p95", total.getPercentileMillis(0.95d));
+        result.put("p99", total.getPercentileMillis(0.99d));
+        return result;
+    }
+
+
+
+    @Override
+    public void reset()
+    {
+        for (final Histogram histogram : histograms) {
+            histogram.reset();
+        }
+        conversionCount.reset();
+        failureCount.reset();
+        outputBytes.reset();
+    }
+}
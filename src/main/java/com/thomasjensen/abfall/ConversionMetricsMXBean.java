@@ -0,0 +1,79 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.util.Map;
+
+
+/**
+ * JMX view of the {@link ConversionMetrics} of the conversion server. Latencies are given as histograms over the
+ * buckets of {@link #getBucketLimitsMillis()}, keyed by the phase name as used in the run report, and
+ * <code>total</code> for the whole request.
+ */
+public interface ConversionMetricsMXBean
+{
+    long getConversionCount();
+
+
+
+    long getFailureCount();
+
+
+
+    long getOutputBytes();
+
+
+
+    /**
+     * Getter.
+     *
+     * @return the upper limits of the histogram buckets in milliseconds; the last bucket is unbounded
+     */
+    long[] getBucketLimitsMillis();
+
+
+
+    /**
+     * Getter.
+     *
+     * @return the number of latencies in each bucket, per phase
+     */
+    Map<String, long[]> getLatencyHistograms();
+
+
+
+    /**
+     * Getter.
+     *
+     * @return the mean latency in milliseconds, per phase
+     */
+    Map<String, Double> getMeanMillis();
+
+
+
+    /**
+     * Getter.
+     *
+     * @return estimates of the 50th, 95th, and 99th percentile of the total latency in milliseconds (the upper
+     * limit of the bucket they fall into), keyed <code>p50</code>, <code>p95</code>, and <code>p99</code>
+     */
+    Map<String, Long> getTotalPercentilesMillis();
+
+
+
+    /**
+     * Start counting from zero.
+     */
+    void reset();
+}
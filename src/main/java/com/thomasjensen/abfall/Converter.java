@@ -0,0 +1,711 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import biweekly.Biweekly;
+import biweekly.ICalendar;
+import biweekly.component.VEvent;
+import biweekly.property.DateStart;
+import biweekly.property.Location;
+import biweekly.property.Summary;
+import biweekly.util.Recurrence;
+import biweekly.util.com.google.ical.compat.javautil.DateIterator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+
+/**
+ * Converts one ICS file into one Excel workbook per requested year. The file is parsed only once. Instances have no
+ * state, so they may be shared between threads.
+ */
+public class Converter
+{
+    private static final Logger LOG = LogManager.getLogger(Converter.class);
+
+    /** number of unclassified summaries to show in the warning */
+    private static final int MAX_UNMATCHED_EXAMPLES = 3;
+
+
+
+    /**
+     * Read the ICS file, and write the Excel files, as specified by the given configuration. If several years are
+     * requested, one Excel file is written for each year which has pickup dates, with the year added to its name.
+     * <p>In incremental mode, nothing is converted if the {@link Manifest} says that the Excel files were already
+     * generated from the same inputs.</p>
+     *
+     * @param pConfig the configuration (not in batch mode)
+     * @return timings and counters of the conversion
+     * @throws IOException reading or writing failed
+     */
+    public RunStats convert(final Config pConfig)
+        throws IOException
+    {
+        final long startNanos = System.nanoTime();
+        final RunStats stats = new RunStats(pConfig);
+        if (pConfig.isIncremental()) {
+            convertIncremental(pConfig, stats);
+        }
+        else {
+            writeCalendars(pConfig, readIcsFiles(pConfig, stats), stats);
+        }
+        stats.setTotalNanos(System.nanoTime() - startNanos);
+        return stats;
+    }
+
+
+
+    private void convertIncremental(final Config pConfig, final RunStats pStats)
+        throws IOException
+    {
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Reading ICS file: " + describeInput(pConfig) + " ...");
+        }
+        final Manifest manifest = Manifest.forOutput(pConfig.getOutFileXlsx());
+        final List<Callable<InputStream>> inputs = new ArrayList<>();
+        final String fingerprint;
+        try (RunStats.Timer timer = pStats.time(RunStats.Phase.Fingerprint)) {
+            // merged files are fingerprinted as if concatenated, so a single file keeps its fingerprint
+            final ByteArrayOutputStream ics = new ByteArrayOutputStream();
+            for (final File inFile : pConfig.getInFilesIcs()) {
+                final byte[] data = Files.readAllBytes(inFile.toPath());
+                inputs.add(() -> new ByteArrayInputStream(data));
+                ics.write(data);
+            }
+            fingerprint = Manifest.fingerprint(pConfig, ics.toByteArray());
+        }
+        if (manifest.isUpToDate(pConfig.getOutFileXlsx(), fingerprint)) {
+            pStats.setUnchanged();
+            if (LOG.isInfoEnabled()) {
+                LOG.info("Skipped " + describeInput(pConfig) + ", which is unchanged since the last run.");
+            }
+            return;
+        }
+
+        final Iterable<IcsEvent> events = readIcs(pConfig, inputs, pStats);
+        manifest.record(pConfig.getOutFileXlsx(), fingerprint, writeCalendars(pConfig, events, pStats));
+    }
+
+
+
+    /**
+     * Group the events, and write one Excel file per year.
+     *
+     * @param pConfig the configuration
+     * @param pEvents the events read from the ICS files, in date order if several files were merged
+     * @param pStats receives the timings and counters
+     * @return the Excel files written
+     * @throws IOException writing failed
+     */
+    private List<File> writeCalendars(final Config pConfig, final Iterable<IcsEvent> pEvents, final RunStats pStats)
+        throws IOException
+    {
+        final SortedMap<Integer, Schedule> termineByYear = groupByDay(pConfig, pEvents, pStats);
+        final List<File> result = new ArrayList<>();
+
+        if (!pConfig.isMultiYear()) {
+            writeCalendar(pConfig, termineByYear.getOrDefault(pConfig.getYear(), new Schedule()), pStats);
+            result.add(pConfig.getOutFileXlsx());
+            return result;
+        }
+
+        final YearRange years = pConfig.getYears();
+        if (termineByYear.isEmpty()) {
+            LOG.warn("No pickup dates found in " + years + ". No output file generated.");
+        }
+        else if (!years.isAll() && LOG.isWarnEnabled()) {
+            for (int year = years.getFirst(); year <= years.getLast(); year++) {
+                if (!termineByYear.containsKey(year)) {
+                    LOG.warn("No pickup dates found in " + year + ". No output file generated for this year.");
+                }
+            }
+        }
+        for (final Map.Entry<Integer, Schedule> entry : termineByYear.entrySet()) {
+            final int year = entry.getKey().intValue();
+            final File outFile = insertYear(pConfig.getOutFileXlsx(), year, pConfig.getFormat());
+            writeCalendar(pConfig.withYear(year, outFile), entry.getValue(), pStats);
+            result.add(outFile);
+        }
+        return result;
+    }
+
+
+
+    /**
+     * Read the pickup dates of a single year from ICS data, for example as uploaded to the {@link Server}.
+     *
+     * @param pConfig the configuration, which specifies a single year
+     * @param pInput the ICS data (UTF-8 encoded); the stream is not closed
+     * @return the pickup dates of the configured year
+     * @throws IOException reading failed
+     */
+    public Schedule readSchedule(final Config pConfig, final InputStream pInput)
+        throws IOException
+    {
+        return readSchedule(pConfig, pInput, new RunStats(pConfig));
+    }
+
+
+
+    /**
+     * Read the pickup dates of a single year from ICS data, recording timings and counters.
+     *
+     * @param pConfig the configuration, which specifies a single year
+     * @param pInput the ICS data (UTF-8 encoded); the stream is not closed
+     * @param pStats receives the timings and counters of parsing and grouping
+     * @return the pickup dates of the configured year
+     * @throws IOException reading failed
+     */
+    public Schedule readSchedule(final Config pConfig, final InputStream pInput, final RunStats pStats)
+        throws IOException
+    {
+        final List<IcsEvent> events = readIcs(pConfig, pInput, pStats);
+        return groupByDay(pConfig, events, pStats).getOrDefault(pConfig.getYear(), new Schedule());
+    }
+
+
+
+    /**
+     * Render the calendar of a single year, and write it as an Excel file or in the configured print format to the
+     * given stream.
+     *
+     * @param pConfig the configuration, which specifies a single year
+     * @param pTermine the pickup dates of that year
+     * @param pOutput the stream to write the file to; the stream is not closed
+     * @throws IOException writing failed
+     */
+    public void write(final Config pConfig, final Schedule pTermine, final OutputStream pOutput)
+        throws IOException
+    {
+        write(pConfig, pTermine, pOutput, new RunStats(pConfig));
+    }
+
+
+
+    /**
+     * Render the calendar of a single year, and write it as an Excel file or in the configured print format to the
+     * given stream, recording timings and counters.
+     *
+     * @param pConfig the configuration, which specifies a single year
+     * @param pTermine the pickup dates of that year
+     * @param pOutput the stream to write the file to; the stream is not closed
+     * @param pStats receives the timings and counters of rendering and writing
+     * @throws IOException writing failed
+     */
+    public void write(final Config pConfig, final Schedule pTermine, final OutputStream pOutput,
+        final RunStats pStats)
+        throws IOException
+    {
+        final CountingOutputStream out = new CountingOutputStream(pOutput);
+        if (pConfig.getFormat() != Format.Xlsx) {
+            final CalendarLayout layout;
+            try (RunStats.Timer timer = pStats.time(RunStats.Phase.Render)) {
+                layout = CalendarLayout.create(pConfig, pTermine);
+            }
+            pStats.addWorkbook(layout.getStyles().size(), layout.getMergedRegions().size());
+            try (RunStats.Timer timer = pStats.time(RunStats.Phase.Write)) {
+                new PrintRenderer(layout).write(pConfig.getFormat(), out);
+            }
+        }
+        else if (pConfig.getEngine() == Engine.Direct) {
+            final CalendarLayout layout;
+            try (RunStats.Timer timer = pStats.time(RunStats.Phase.Render)) {
+                layout = CalendarLayout.create(pConfig, pTermine);
+            }
+            pStats.addWorkbook(layout.getStyles().size(), layout.getMergedRegions().size());
+            try (RunStats.Timer timer = pStats.time(RunStats.Phase.Write)) {
+                new XlsxWriter(pConfig).write(layout, out);
+            }
+        }
+        else {
+            final Workbook workbook;
+            try (RunStats.Timer timer = pStats.time(RunStats.Phase.Render)) {
+                workbook = new ExcelCreator(pConfig).create(pTermine, pStats);
+            }
+            try (RunStats.Timer timer = pStats.time(RunStats.Phase.Write)) {
+                workbook.write(out);
+            }
+            finally {
+                if (workbook instanceof SXSSFWorkbook) {
+                    ((SXSSFWorkbook) workbook).dispose();  // delete temporary files
+                }
+            }
+        }
+        pStats.addOutputBytes(out.getCount());
+    }
+
+
+
+    /**
+     * Read the ICS file, and group its pickup dates by year, for combining them with those of other files.
+     *
+     * @param pConfig the configuration
+     * @param pStats receives the timings and counters of parsing and grouping
+     * @return the pickup dates of each configured year, sorted by year; with a single year configured, that year is
+     * always present
+     * @throws IOException reading failed
+     */
+    public SortedMap<Integer, Schedule> readSchedules(final Config pConfig, final RunStats pStats)
+        throws IOException
+    {
+        final SortedMap<Integer, Schedule> result = groupByDay(pConfig, readIcsFiles(pConfig, pStats), pStats);
+        if (!pConfig.isMultiYear()) {
+            final Schedule schedule = result.getOrDefault(pConfig.getYear(), new Schedule());
+            result.clear();
+            result.put(pConfig.getYear(), schedule);
+        }
+        return result;
+    }
+
+
+
+    /**
+     * Write the calendars of several ICS files into one Excel file, with one sheet per calendar, named after its ICS
+     * file. The sheets share the cell styles of the workbook, and sheets with the same QR code share its image.
+     *
+     * @param pConfig the configuration, which specifies a single year, the output file, and a POI engine
+     * @param pSheets the pickup dates of that year by the configuration of each ICS file, in the order of the sheets;
+     * the configuration provides the name and the QR code of the sheet
+     * @param pStats receives the timings and counters of rendering and writing
+     * @throws IOException writing failed
+     */
+    public void writeWorkbook(final Config pConfig, final Map<Config, Schedule> pSheets, final RunStats pStats)
+        throws IOException
+    {
+        final ExcelCreator creator = new ExcelCreator(pConfig);
+        final Workbook workbook;
+        try (RunStats.Timer timer = pStats.time(RunStats.Phase.Render)) {
+            for (final Map.Entry<Config, Schedule> sheet : pSheets.entrySet()) {
+                creator.addSheet(BatchRunner.getBaseName(sheet.getKey().getInFileIcs()), sheet.getKey(),
+                    sheet.getValue(), pStats);
+            }
+            workbook = creator.getWorkbook(pStats);
+        }
+        try (OutputStream fileOut = new BufferedOutputStream(new FileOutputStream(pConfig.getOutFileXlsx()))) {
+            final CountingOutputStream out = new CountingOutputStream(fileOut);
+            try (RunStats.Timer timer = pStats.time(RunStats.Phase.Write)) {
+                workbook.write(out);
+            }
+            pStats.addOutputBytes(out.getCount());
+        }
+        finally {
+            if (workbook instanceof SXSSFWorkbook) {
+                ((SXSSFWorkbook) workbook).dispose();  // delete temporary files
+            }
+        }
+        LOG.info("Generated output file at " + pConfig.getOutFileXlsx() + " with " + pSheets.size() + " sheets");
+    }
+
+
+
+    private void writeCalendar(final Config pConfig, final Schedule pTermine, final RunStats pStats)
+        throws IOException
+    {
+        try (OutputStream fileOut = new BufferedOutputStream(new FileOutputStream(pConfig.getOutFileXlsx()))) {
+            write(pConfig, pTermine, fileOut, pStats);
+        }
+        LOG.info("Generated output file at " + pConfig.getOutFileXlsx());
+    }
+
+
+
+    /**
+     * Add the year to the name of an output file, so that <code>Abfallkalender.xlsx</code> becomes
+     * <code>Abfallkalender 2026.xlsx</code>.
+     *
+     * @param pOutFile the output file as configured
+     * @param pYear the year of the calendar
+     * @param pFormat the output format, whose extension is added if the file name has none
+     * @return the output file for that year
+     */
+    static File insertYear(final File pOutFile, final int pYear, final Format pFormat)
+    {
+        final String name = pOutFile.getName();
+        final int dotPos = name.lastIndexOf('.');
+        final String newName = dotPos > 0
+            ? name.substring(0, dotPos) + " " + pYear + name.substring(dotPos)
+            : name + " " + pYear + "." + pFormat.getExtension();
+        return new File(pOutFile.getParentFile(), newName);
+    }
+
+
+
+    private SortedMap<Integer, Schedule> groupByDay(final Config pConfig, final Iterable<IcsEvent> pEvents,
+        final RunStats pStats)
+        throws IOException
+    {
+        final CategoryClassifier classifier = pConfig.getCategoriesFile() != null
+            ? CategoryClassifier.forFile(pConfig.getCategoriesFile()) : CategoryClassifier.getDefault();
+        try (RunStats.Timer timer = pStats.time(RunStats.Phase.Group)) {
+            return groupByDay(pEvents, classifier);
+        }
+    }
+
+
+
+    /**
+     * Group the pickup dates by year, and within each year by day. The events are consumed as they are iterated, so
+     * that the events merged from several files by an {@link EventMerger} are grouped without building a merged list.
+     *
+     * @param pEvents the events read from the ICS file, or merged from several files
+     * @param pClassifier determines the trash category of each event
+     * @return the pickup dates of each year, sorted by year; years without pickup dates are absent
+     */
+    SortedMap<Integer, Schedule> groupByDay(final Iterable<IcsEvent> pEvents,
+        final CategoryClassifier pClassifier)
+    {
+        final SortedMap<Integer, Schedule> result = new TreeMap<>();
+        int unmatched = 0;
+        final Set<String> unmatchedExamples = new LinkedHashSet<>();
+        for (final IcsEvent event : pEvents) {
+            final int jahr = event.getYear();
+            final int monat = event.getMonth();
+            final int tag = event.getDay();
+
+            final Art art = pClassifier.classify(event.getSummary(), event.getLocation());
+            if (art == null) {
+                unmatched++;
+                if (unmatchedExamples.size() < MAX_UNMATCHED_EXAMPLES) {
+                    unmatchedExamples.add(event.getSummary());
+                }
+                continue;
+            }
+
+            final Schedule schedule = result.computeIfAbsent(jahr, y -> new Schedule());
+            if (schedule.add(monat, tag, art) > Schedule.MAX_PER_DAY) {
+                throw new IllegalStateException("too many events per day on " + tag + "." + monat + "." + jahr);
+            }
+        }
+
+        if (unmatched > 0 && LOG.isWarnEnabled()) {
+            LOG.warn("Could not determine the category of " + unmatched + " events, for example: "
+                + unmatchedExamples);
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Pickup dates: " + result);
+        }
+        return result;
+    }
+
+
+
+    private Iterable<IcsEvent> readIcsFiles(final Config pConfig, final RunStats pStats)
+        throws IOException
+    {
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Reading ICS file: " + describeInput(pConfig) + " ...");
+        }
+
+        final List<Callable<InputStream>> inputs = new ArrayList<>();
+        for (final File inFile : pConfig.getInFilesIcs()) {
+            inputs.add(() -> new BufferedInputStream(new FileInputStream(inFile)));
+        }
+        return readIcs(pConfig, inputs, pStats);
+    }
+
+
+
+    /**
+     * Getter.
+     *
+     * @param pConfig the configuration
+     * @return the input file for log messages, or the list of files if several are merged
+     */
+    private static String describeInput(final Config pConfig)
+    {
+        final List<File> inFiles = pConfig.getInFilesIcs();
+        return inFiles.size() == 1 ? inFiles.get(0).toString() : inFiles.toString();
+    }
+
+
+
+    /**
+     * Parse the ICS data of one calendar. Several inputs are parsed concurrently into one list of events each, which an
+     * {@link EventMerger} then merges in date order, dropping the events found in more than one input.
+     *
+     * @param pConfig the configuration
+     * @param pInputs opens the ICS data of each input, which is closed after parsing; at least one
+     * @param pStats receives the timing and event counts of parsing
+     * @return the events starting in the configured years
+     * @throws IOException reading failed
+     */
+    private Iterable<IcsEvent> readIcs(final Config pConfig, final List<Callable<InputStream>> pInputs,
+        final RunStats pStats)
+        throws IOException
+    {
+        if (pInputs.size() == 1) {
+            try (InputStream is = call(pInputs.get(0))) {
+                return readIcs(pConfig, is, pStats);
+            }
+        }
+
+        final List<List<IcsEvent>> sources = new ArrayList<>();
+        final ExecutorService pool = Executors.newFixedThreadPool(Math.max(1,
+            Math.min(pConfig.getThreads(), pInputs.size())));
+        try (RunStats.Timer timer = pStats.time(RunStats.Phase.Parse)) {
+            final Map<Future<List<IcsEvent>>, RunStats> jobs = new LinkedHashMap<>();
+            for (final Callable<InputStream> input : pInputs) {
+                final RunStats inputStats = new RunStats(pConfig);  // RunStats is not thread-safe
+                jobs.put(pool.submit(() -> {
+                    try (InputStream is = input.call()) {
+                        return readIcs(pConfig, is, inputStats);
+                    }
+                }), inputStats);
+            }
+            for (final Map.Entry<Future<List<IcsEvent>>, RunStats> job : jobs.entrySet()) {
+                sources.add(job.getKey().get());
+                pStats.addEvents(job.getValue().getEventCount(), job.getValue().getSkippedCount());
+            }
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading the ICS files", e);
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        return new EventMerger(sources);
+    }
+
+
+
+    private static InputStream call(final Callable<InputStream> pInput)
+        throws IOException
+    {
+        try {
+            return pInput.call();
+        }
+        catch (IOException | RuntimeException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+
+
+    /**
+     * Parse ICS data using the parser selected by the configuration.
+     *
+     * @param pConfig the configuration
+     * @param pInput the ICS data (UTF-8 encoded); the stream is not closed
+     * @param pStats receives the timing and event counts of parsing
+     * @return the events starting in the configured years
+     * @throws IOException reading failed
+     */
+    List<IcsEvent> readIcs(final Config pConfig, final InputStream pInput, final RunStats pStats)
+        throws IOException
+    {
+        final List<IcsEvent> events;
+        int skipped = 0;
+        try (RunStats.Timer timer = pStats.time(RunStats.Phase.Parse)) {
+            if (pConfig.isReferenceParser()) {
+                events = readIcsBiweekly(pInput, pConfig.getYears());
+            }
+            else {
+                final IcsReader reader = new IcsReader(pConfig.getYears());
+                events = reader.read(pInput);
+                skipped = reader.getSkippedCount();
+            }
+        }
+        pStats.addEvents(events.size(), skipped);
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Parsed " + events.size() + " dates from the ICS file."
+                + (skipped > 0 ? " Skipped " + skipped + " events outside of " + pConfig.getYears() + "." : ""));
+        }
+        return events;
+    }
+
+
+
+    /**
+     * Reference implementation of reading the ICS file, which uses the full Biweekly object model. It is slower than
+     * {@link IcsReader}, but useful for correctness comparisons. Recurring events are expanded by Biweekly, too.
+     *
+     * @param pInput the ICS data
+     * @param pYears only events starting in these years are returned
+     * @return the events starting in the requested years
+     * @throws IOException reading failed
+     */
+    private List<IcsEvent> readIcsBiweekly(final InputStream pInput, final YearRange pYears)
+        throws IOException
+    {
+        // http://sourceforge.net/p/biweekly/wiki/Quick%20Start/
+        final ICalendar cal = Biweekly.parse(pInput).first();
+        final List<IcsEvent> result = new ArrayList<>();
+        final List<VEvent> recurring = new ArrayList<>();
+        final Map<String, Set<Integer>> replaced = new HashMap<>();
+        int lastYear = Integer.MIN_VALUE;
+        for (final VEvent event : cal.getEvents()) {
+            final DateStart dateStart = event.getProperty(DateStart.class);
+            if (dateStart == null || dateStart.getValue() == null) {
+                continue;
+            }
+            final int date = toDate(dateStart.getValue());
+            lastYear = Math.max(lastYear, date / 10000);
+            if (event.getRecurrenceRule() != null || !event.getRecurrenceDates().isEmpty()) {
+                recurring.add(event);
+                continue;
+            }
+            if (event.getRecurrenceId() != null && event.getRecurrenceId().getValue() != null) {
+                if (event.getUid() != null) {
+                    replaced.computeIfAbsent(event.getUid().getValue(), k -> new HashSet<>())
+                        .add(toDate(event.getRecurrenceId().getValue()));
+                }
+                if (event.getStatus() != null && event.getStatus().isCancelled()) {
+                    continue;
+                }
+            }
+            if (pYears.contains(date / 10000)) {
+                result.add(toIcsEvent(date, event));
+            }
+        }
+
+        for (final VEvent event : recurring) {
+            final Set<Integer> replacedDates = event.getUid() != null
+                ? replaced.getOrDefault(event.getUid().getValue(), Collections.emptySet()) : Collections.emptySet();
+            int last = pYears.getLast();
+            if (pYears.isAll()) {
+                // a series with COUNT or UNTIL runs to its end, an endless one up to the last year of the file's
+                // events, as in IcsReader
+                final Recurrence rule = event.getRecurrenceRule() != null
+                    ? event.getRecurrenceRule().getValue() : null;
+                final boolean bounded = rule != null && (rule.getCount() != null || rule.getUntil() != null);
+                last = bounded ? IcsReader.MAX_YEAR : lastYear;
+            }
+            final DateIterator dates = event.getDateIterator(TimeZone.getDefault());
+            if (!pYears.isAll()) {
+                dates.advanceTo(new GregorianCalendar(pYears.getFirst(), Calendar.JANUARY, 1).getTime());
+            }
+            while (dates.hasNext()) {
+                final int date = toDate(dates.next());
+                if (date / 10000 > last) {
+                    break;
+                }
+                if (pYears.contains(date / 10000) && !replacedDates.contains(date)) {
+                    result.add(toIcsEvent(date, event));
+                }
+            }
+        }
+        return result;
+    }
+
+
+
+    @SuppressWarnings("deprecation")
+    private static int toDate(final Date pDate)
+    {
+        return (pDate.getYear() + 1900) * 10000 + (pDate.getMonth() + 1) * 100 + pDate.getDate();
+    }
+
+
+
+    private static IcsEvent toIcsEvent(final int pDate, final VEvent pEvent)
+    {
+        final Summary summary = pEvent.getProperty(Summary.class);
+        final Location location = pEvent.getProperty(Location.class);
+        return new IcsEvent(pDate / 10000, pDate / 100 % 100, pDate % 100, summary != null ? summary.getValue() : null,
+            location != null ? location.getValue() : null);
+    }
+
+
+
+    /**
+     * Counts the bytes written to the underlying stream, which is not closed.
+     */
+    private static final class CountingOutputStream
+        extends FilterOutputStream
+    {
+        private long count = 0L;
+
+
+
+        CountingOutputStream(final OutputStream pOut)
+        {
+            super(pOut);
+        }
+
+
+
+        @Override
+        public void write(final int pByte)
+            throws IOException
+        {
+            out.write(pByte);
+            count++;
+        }
+
+
+
+        @Override
+        public void write(final byte[] pBytes, final int pOffset, final int pLength)
+            throws IOException
+        {
+            out.write(pBytes, pOffset, pLength);
+            count += pLength;
+        }
+
+
+
+        long getCount()
+        {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+/**
+ * The rendering engine which produces the Excel file. All engines produce visually identical output.
+ */
+public enum Engine
+{
+    /** POI's in-memory workbook (the default) */
+    Xssf,
+
+    /** POI's streaming workbook, which writes rows to a temporary file as they are produced, keeping heap use low */
+    Sxssf,
+
+    /** writes the XML of the Excel file directly without POI, which is much faster (see {@link XlsxWriter}) */
+    Direct;
+
+
+
+    /**
+     * Find an engine by its name, ignoring case.
+     *
+     * @param pName the name of the engine
+     * @return the engine, or <code>null</code> if there is no such engine
+     */
+    public static Engine fromName(final String pName)
+    {
+        for (final Engine engine : values()) {
+            if (engine.name().equalsIgnoreCase(pName)) {
+                return engine;
+            }
+        }
+        return null;
+    }
+}
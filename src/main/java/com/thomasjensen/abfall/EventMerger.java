@@ -0,0 +1,229 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * Merges the events of several ICS files of one household into a single sequence in date order, by a k-way merge of
+ * the events of each file. An event which an earlier file already has on the same day, with the same summary and
+ * location, is dropped, so that a pickup date published in two feeds is counted only once. Duplicates within one file
+ * are kept, just as when that file is read alone.
+ * <p>The events of each file are read completely and sorted first, because a file need not list its events in date
+ * order, and its recurring events are expanded only at its end. The merge of the sorted lists then runs lazily while
+ * the events are iterated, so the merged sequence is never built as a list; for detecting duplicates, only the events
+ * of the current day are remembered. Each call of {@link #iterator()} starts a new merge.</p>
+ */
+public final class EventMerger
+    implements Iterable<IcsEvent>
+{
+    private static final Logger LOG = LogManager.getLogger(EventMerger.class);
+
+    /** the events of each file, sorted by date */
+    private final List<List<IcsEvent>> sources;
+
+
+
+    /**
+     * Constructor.
+     *
+     * @param pSources the events of each file, in the order of the files; they need not be sorted, but the events of
+     * a day keep their order
+     */
+    public EventMerger(final List<List<IcsEvent>> pSources)
+    {
+        final List<List<IcsEvent>> sorted = new ArrayList<>(pSources.size());
+        for (final List<IcsEvent> source : pSources) {
+            final List<IcsEvent> events = new ArrayList<>(source);
+            events.sort(Comparator.comparingInt(EventMerger::getDateKey));  // stable, and linear if already sorted
+            sorted.add(events);
+        }
+        sources = sorted;
+    }
+
+
+
+    /**
+     * Getter.
+     *
+     * @param pEvent an event
+     * @return the day of the event as a number of the form <i>yyyymmdd</i>, which sorts like the dates
+     */
+    static int getDateKey(final IcsEvent pEvent)
+    {
+        return (pEvent.getYear() * 100 + pEvent.getMonth()) * 100 + pEvent.getDay();
+    }
+
+
+
+    @Override
+    public Iterator<IcsEvent> iterator()
+    {
+        return new Merge();
+    }
+
+
+
+    /**
+     * The position of the merge in one file.
+     */
+    private static final class Cursor
+        implements Comparable<Cursor>
+    {
+        /** index of the file */
+        private final int source;
+
+        private final Iterator<IcsEvent> events;
+
+        /** the next event of the file to be merged */
+        private IcsEvent head = null;
+
+        /** the {@link #getDateKey date key} of {@link #head} */
+        private int dateKey = 0;
+
+
+
+        Cursor(final int pSource, final Iterator<IcsEvent> pEvents)
+        {
+            source = pSource;
+            events = pEvents;
+        }
+
+
+
+        /**
+         * Move to the next event of the file.
+         *
+         * @return <code>true</code> if there was one, <code>false</code> if the file is exhausted
+         */
+        boolean advance()
+        {
+            if (!events.hasNext()) {
+                return false;
+            }
+            head = events.next();
+            dateKey = getDateKey(head);
+            return true;
+        }
+
+
+
+        @Override
+        public int compareTo(final Cursor pOther)
+        {
+            final int result = Integer.compare(dateKey, pOther.dateKey);
+            return result != 0 ? result : Integer.compare(source, pOther.source);
+        }
+    }
+
+
+
+    /**
+     * One pass of the merge. The files are ordered by the date of their next event, and by index for the same date,
+     * so that the events of a day arrive file by file.
+     */
+    private final class Merge
+        implements Iterator<IcsEvent>
+    {
+        private final PriorityQueue<Cursor> cursors = new PriorityQueue<>();
+
+        /** the date key of the day whose events are in {@link #seenToday} */
+        private int today = -1;
+
+        /** summary and location of the events returned for the current day, with the index of their file */
+        private final Map<List<String>, Integer> seenToday = new HashMap<>();
+
+        /** the event to be returned next, or <code>null</code> at the end */
+        private IcsEvent next = null;
+
+        private int duplicateCount = 0;
+
+
+
+        Merge()
+        {
+            for (int i = 0; i < sources.size(); i++) {
+                final Cursor cursor = new Cursor(i, sources.get(i).iterator());
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+            }
+            findNext();
+        }
+
+
+
+        private void findNext()
+        {
+            while (!cursors.isEmpty()) {
+                final Cursor cursor = cursors.poll();
+                final IcsEvent event = cursor.head;
+                final int source = cursor.source;
+                if (cursor.dateKey != today) {
+                    today = cursor.dateKey;
+                    seenToday.clear();
+                }
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+
+                final Integer firstSource = seenToday.putIfAbsent(
+                    Arrays.asList(event.getSummary(), event.getLocation()), Integer.valueOf(source));
+                if (firstSource == null || firstSource.intValue() == source) {
+                    next = event;
+                    return;
+                }
+                duplicateCount++;
+            }
+
+            next = null;
+            if (duplicateCount > 0 && LOG.isInfoEnabled()) {
+                LOG.info("Removed " + duplicateCount + " duplicate events found in more than one ICS file.");
+            }
+        }
+
+
+
+        @Override
+        public boolean hasNext()
+        {
+            return next != null;
+        }
+
+
+
+        @Override
+        public IcsEvent next()
+        {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            final IcsEvent result = next;
+            findNext();
+            return result;
+        }
+    }
+}
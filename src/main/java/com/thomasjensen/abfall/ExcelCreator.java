@@ -13,245 +13,255 @@
  */
 package com.thomasjensen.abfall;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.time.DayOfWeek;
-import java.time.format.TextStyle;
-import java.util.Calendar;
-import java.util.Locale;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.SortedSet;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.apache.poi.ooxml.POIXMLProperties;
 import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Drawing;
+import org.apache.poi.ss.usermodel.Picture;
+import org.apache.poi.ss.usermodel.PrintSetup;
 import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFClientAnchor;
-import org.apache.poi.xssf.usermodel.XSSFDrawing;
-import org.apache.poi.xssf.usermodel.XSSFPicture;
-import org.apache.poi.xssf.usermodel.XSSFPrintSetup;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 
 /**
- * Create an Excel workbook (our output).
+ * Create an Excel workbook (our output). Depending on the configured {@link Engine}, the workbook is either held in
+ * memory completely, or streamed, so that only a small window of rows is in memory at any time. The content of the
+ * sheet is taken from the {@link CalendarLayout}.
+ * <p>A workbook normally holds one calendar, but several calendars of the same year can be added as separate sheets
+ * (see {@link #addSheet}). The sheets share the cell styles and fonts of the workbook, and sheets with the same QR code
+ * share its image.</p>
  */
 public class ExcelCreator
 {
-    private static final int ROWS_PER_DAY = 3;
+    private static final Logger LOG = LogManager.getLogger(ExcelCreator.class);
+
+    /** number of rows kept in memory by the streaming engine */
+    private static final int STREAMING_WINDOW_ROWS = 4 * CalendarLayout.ROWS_PER_DAY;
+
+    /** name of the sheet of a workbook which holds a single calendar */
+    private static final String DEFAULT_SHEET_NAME = "Abholtermine";
+
+    /** maximum length of a sheet name allowed by Excel */
+    private static final int MAX_SHEET_NAME_LENGTH = 31;
 
     private final Config config;
 
-    private final XSSFWorkbook workbook;
+    private final Workbook workbook;
 
-    private final XSSFSheet sheet;
+    /** the underlying workbook, which holds styles and properties also when streaming */
+    private final XSSFWorkbook xssfWorkbook;
 
     private final CellStyleFactory cellStyleFactory;
 
-    private int xlRowNum = 0;
+    /** index of each QR code image in the workbook, by identity of the image (equal QR codes share the image) */
+    private final Map<byte[], Integer> pictureIndexes = new IdentityHashMap<>();
+
+    /** number of merged regions on all sheets */
+    private int mergedRegionCount = 0;
 
 
 
     public ExcelCreator(final Config pConfig)
     {
         config = pConfig;
-        workbook = new XSSFWorkbook();
-        sheet = workbook.createSheet("Abholtermine");
-        cellStyleFactory = new CellStyleFactory(workbook);
+        xssfWorkbook = new XSSFWorkbook();
+        if (pConfig.getEngine() == Engine.Sxssf) {
+            final SXSSFWorkbook streamingWorkbook = new SXSSFWorkbook(xssfWorkbook, STREAMING_WINDOW_ROWS);
+            streamingWorkbook.setCompressTempFiles(true);
+            workbook = streamingWorkbook;
+        }
+        else {
+            workbook = xssfWorkbook;
+        }
+        cellStyleFactory = new CellStyleFactory(xssfWorkbook);
     }
 
 
 
-    public XSSFWorkbook create(final Map<DayOnCalendar, SortedSet<Art>> pTermine)
+    public Workbook create(final Schedule pTermine)
     {
-        createHeadings();
-
-        for (int month = Calendar.JANUARY; month <= Calendar.DECEMBER; month++) {
-            for (int dayRowIdx = 0; dayRowIdx < ROWS_PER_DAY; dayRowIdx++) {
-                final Position pos = new Position(config.getYear(), month + 1, dayRowIdx, ROWS_PER_DAY);
-
-                final Row xlRow = sheet.createRow(xlRowNum++);
-                addMonthHeadingCell(xlRow, pos);
-
-                for (int day = 1; day <= 31; day++) {
-                    pos.setDay(day);
-
-                    SortedSet<Art> categories = pTermine.get(new DayOnCalendar(pos));
-                    addDayCell(xlRow, pos, categories);
-                }
-            }
-        }
-
-        mergeMonthNames();
-        addNotices();
-        addQrCode();
-        setPrintSetup();
-        setWorkbookProperties();
-
-        return workbook;
+        return create(pTermine, new RunStats(config));
     }
 
 
 
-    private void createHeadings()
+    /**
+     * Create the workbook, recording the timings of the parts of the sheet and the resulting counters.
+     *
+     * @param pTermine the pickup dates of the configured year
+     * @param pStats receives the timings and counters
+     * @return the workbook, which is not written yet
+     */
+    public Workbook create(final Schedule pTermine, final RunStats pStats)
     {
-        Row xlRow = sheet.createRow(xlRowNum++);
-        xlRow.setHeightInPoints(35.25f);
-        Cell headingCell = xlRow.createCell(1);
-        headingCell.setCellValue("Abholtermine");
-        headingCell.setCellStyle(cellStyleFactory.heading());
-
-        xlRow = sheet.createRow(xlRowNum++);
-        xlRow.setHeightInPoints(29.25f);
-        Cell excelCell = xlRow.createCell(0);
-        excelCell.setCellValue(config.getYear());
-        excelCell.setCellStyle(cellStyleFactory.yearHeading());
-        sheet.setColumnWidth(0, 4064);  // column width 13.86
-
-        for (int i = 1; i <= 31; i++) {
-            Cell c = xlRow.createCell(i);
-            c.setCellValue(i);
-            c.setCellStyle(cellStyleFactory.columnHeading(i));
-            sheet.setColumnWidth(i, 1340);  // column width 4.57
-        }
+        addSheet(DEFAULT_SHEET_NAME, config, pTermine, pStats);
+        return getWorkbook(pStats);
     }
 
 
 
-    private void addMonthHeadingCell(final Row pRow, final Position pPos)
+    /**
+     * Add a sheet with the calendar of the configured year, recording the timings of its parts. The sheet is rendered
+     * from the {@link CalendarLayout}, which makes all layout decisions, so that this class only translates it into
+     * POI calls.
+     *
+     * @param pName the name of the sheet, which is made valid and unique if necessary
+     * @param pSheetConfig the configuration of the sheet, which has the year of the workbook, and provides the QR code
+     * @param pTermine the pickup dates of the configured year
+     * @param pStats receives the timings
+     */
+    public void addSheet(final String pName, final Config pSheetConfig, final Schedule pTermine,
+        final RunStats pStats)
     {
-        final Cell excelCell = pRow.createCell(0);
+        final Sheet sheet = workbook.createSheet(getUniqueSheetName(pName));
+        final CalendarLayout layout = CalendarLayout.create(pSheetConfig, pTermine);
+        final List<CalendarLayout.Row> rows = layout.getRows();
 
-        if (pPos.isFirstRowOfDay()) {
-            excelCell.setCellValue(" " + pPos.getMonth().getDisplayName(TextStyle.FULL, config.getLocale()));
+        try (RunStats.Timer timer = pStats.time(RunStats.Phase.Headings)) {
+            for (int column = 0; column < CalendarLayout.NUM_COLUMNS; column++) {
+                sheet.setColumnWidth(column, layout.getColumnWidth(column));
+            }
+            addRows(sheet, rows.subList(0, CalendarLayout.FIRST_MONTH_ROW));
+        }
+        try (RunStats.Timer timer = pStats.time(RunStats.Phase.Grid)) {
+            addRows(sheet, rows.subList(CalendarLayout.FIRST_MONTH_ROW, rows.size()));
+        }
+        try (RunStats.Timer timer = pStats.time(RunStats.Phase.Merges)) {
+            addMergedRegions(sheet, layout.getMergedRegions());
         }
-        excelCell.setCellStyle(cellStyleFactory.monthHeading(pPos));
+        try (RunStats.Timer timer = pStats.time(RunStats.Phase.Picture)) {
+            addQrCode(sheet, layout.getQrCodePng(), layout.getQrCodeAnchor());
+        }
+        setPrintSetup(sheet, layout.getLastRow());
+        mergedRegionCount += sheet.getNumMergedRegions();
     }
 
 
 
-    private void addDayCell(final Row pRow, final Position pPos, final SortedSet<Art> pCategories)
+    /**
+     * Finish the workbook after all sheets were added.
+     *
+     * @param pStats receives the counters of the workbook
+     * @return the workbook, which is not written yet
+     */
+    public Workbook getWorkbook(final RunStats pStats)
     {
-        final Cell excelCell = pRow.createCell(pPos.getDay());
+        setWorkbookProperties();
+        pStats.addWorkbook(cellStyleFactory.getStyleCount(), mergedRegionCount);
 
-        final boolean isDayEmpty = pCategories == null || pCategories.isEmpty();
-        if (!pPos.dayExists()) {
-            excelCell.setBlank();
-            excelCell.setCellStyle(cellStyleFactory.emptyDay(pPos));
-        }
-        else if (isDayEmpty) {
-            if (pPos.isFirstRowOfDay()) {
-                excelCell.setCellValue(getDayOfWeekDisplay(pPos.getDayOfWeek(), config.getLocale()));
-            }
-            if (pPos.isSunday()) {
-                excelCell.setCellStyle(cellStyleFactory.sunday(pPos));
-            }
-            else {
-                excelCell.setCellStyle(cellStyleFactory.emptyDay(pPos));
-            }
-        }
-        else if (pPos.isFirstRowOfDay()) {
-            excelCell.setCellValue(getDayOfWeekDisplay(pPos.getDayOfWeek(), config.getLocale()));
-            excelCell.setCellStyle(cellStyleFactory.dayHeading(pPos, pCategories.first()));
-        }
-        else {
-            if (pCategories.size() >= pPos.getDayRowIdx()) {
-                final Art category = pPos.getDayRowIdx() == 1 ? pCategories.first() : pCategories.last();
-                excelCell.setCellValue(category.getKuerzel());
-                excelCell.setCellStyle(cellStyleFactory.dayCell(pPos, category));
-            }
-            else {
-                excelCell.setBlank();
-                excelCell.setCellStyle(cellStyleFactory.centered(pPos));
-            }
-            if (pPos.getDayRowIdx() == 2 && pCategories.size() == 1) {
-                sheet.addMergedRegion(new CellRangeAddress(xlRowNum - 2, xlRowNum - 1, pPos.getDay(), pPos.getDay()));
-            }
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Created " + cellStyleFactory.getStyleCount() + " cell styles using "
+                + cellStyleFactory.getFontCount() + " fonts" + (workbook.getNumberOfSheets() > 1
+                ? " for " + workbook.getNumberOfSheets() + " sheets." : "."));
         }
+        return workbook;
     }
 
 
 
-    private String getDayOfWeekDisplay(final DayOfWeek pDayOfWeek, final Locale pLocale)
+    /**
+     * Make a sheet name valid for Excel, and unique in the workbook (ignoring case, as Excel does).
+     *
+     * @param pName the desired name
+     * @return the name to use
+     */
+    private String getUniqueSheetName(final String pName)
     {
-        return pDayOfWeek.getDisplayName(TextStyle.SHORT_STANDALONE, pLocale);
+        final String safeName = WorkbookUtil.createSafeSheetName(pName);
+        String result = safeName;
+        for (int n = 2; workbook.getSheet(result) != null; n++) {
+            final String suffix = " (" + n + ")";
+            result = safeName.substring(0, Math.min(safeName.length(), MAX_SHEET_NAME_LENGTH - suffix.length()))
+                + suffix;
+        }
+        return result;
     }
 
 
 
-    private void mergeMonthNames()
+    /**
+     * Add the given rows to the sheet. In streaming mode, rows must be added in ascending order.
+     *
+     * @param pRows rows of the layout
+     */
+    private void addRows(final Sheet pSheet, final List<CalendarLayout.Row> pRows)
     {
-        for (int month = Calendar.JANUARY; month <= Calendar.DECEMBER; month++) {
-            int xlRowNum = month * ROWS_PER_DAY + 2;
-            sheet.addMergedRegion(new CellRangeAddress(xlRowNum, xlRowNum + ROWS_PER_DAY - 1, 0, 0));
+        for (final CalendarLayout.Row row : pRows) {
+            final Row xlRow = pSheet.createRow(row.getIndex());
+            if (row.hasHeight()) {
+                xlRow.setHeightInPoints(row.getHeight());
+            }
+            for (final CalendarLayout.Cell cell : row.getCells()) {
+                final Cell excelCell = xlRow.createCell(cell.getColumn());
+                if (cell.isNumeric()) {
+                    excelCell.setCellValue(cell.getNumber());
+                }
+                else if (cell.getText() != null) {
+                    excelCell.setCellValue(cell.getText());
+                }
+                if (cell.getStyle() != null) {
+                    excelCell.setCellStyle(cellStyleFactory.getStyle(cell.getStyle()));
+                }
+            }
         }
     }
 
 
 
-    private void addNotices()
+    /**
+     * Add the merged regions in bulk. The layout guarantees that they do not overlap, so we skip POI's validation,
+     * which compares each new region with all existing ones, making the merges quadratic in their number.
+     *
+     * @param pRegions the merged regions of the layout
+     */
+    private void addMergedRegions(final Sheet pSheet, final List<CalendarLayout.Region> pRegions)
     {
-        sheet.createRow(xlRowNum++);
-        Row xlRow = sheet.createRow(xlRowNum++);
-        Cell excelCell = xlRow.createCell(1);
-        excelCell.setCellValue("Öffnungszeiten Hafen:  Mo. - Fr.:  7 - 12 und 13 - 17 Uhr,   "
-            + "Samstag:  8 - 14 Uhr,   Mo./Di. kein Sondermüll");
-        excelCell.setCellStyle(cellStyleFactory.noteBig());
-
-        xlRow = sheet.createRow(xlRowNum++);
-        excelCell = xlRow.createCell(1);
-        excelCell.setCellValue("Gartenabfallsammlungen:");
-        excelCell.setCellStyle(cellStyleFactory.noteBig());
-        excelCell = xlRow.createCell(7);
-        excelCell.setCellValue("verschiedene Standorte");
-        excelCell.setCellStyle(cellStyleFactory.noteSmall());
-        excelCell = xlRow.createCell(13);
-        excelCell.setCellValue("Schadstoffmobil:");
-        excelCell.setCellStyle(cellStyleFactory.noteBig());
-        excelCell = xlRow.createCell(17);
-        excelCell.setCellValue("ab 1.1.2019 abgeschafft");
-        excelCell.setCellStyle(cellStyleFactory.noteSmall());
-
-        sheet.createRow(xlRowNum++);  // for inclusion in print area, and extra notes
-        sheet.createRow(xlRowNum);
+        for (final CalendarLayout.Region region : pRegions) {
+            pSheet.addMergedRegionUnsafe(new CellRangeAddress(region.getFirstRow(), region.getLastRow(),
+                region.getFirstColumn(), region.getLastColumn()));
+        }
     }
 
 
 
-    private void addQrCode()
+    private void addQrCode(final Sheet pSheet, final byte[] pPng, final CalendarLayout.Region pAnchor)
     {
-        int pictureIndex;
-        try (final InputStream fis = getClass().getResourceAsStream("qrcode.png")) {
-            pictureIndex = workbook.addPicture(fis, XSSFWorkbook.PICTURE_TYPE_PNG);
-        }
-        catch (IOException e) {
-            throw new RuntimeException(e.getMessage(), e);
-        }
+        final int pictureIndex = pictureIndexes.computeIfAbsent(pPng,
+            png -> workbook.addPicture(png, Workbook.PICTURE_TYPE_PNG)).intValue();
 
-        final int logoSizeRows = 3;
-        final int logoRow = xlRowNum + 1 - logoSizeRows;
-        final XSSFClientAnchor anchor = new XSSFClientAnchor(0, 0, 0, 0, 30, logoRow, 32, logoRow + logoSizeRows);
+        final XSSFClientAnchor anchor = new XSSFClientAnchor(0, 0, 0, 0, pAnchor.getFirstColumn(),
+            pAnchor.getFirstRow(), pAnchor.getLastColumn() + 1, pAnchor.getLastRow() + 1);
         anchor.setAnchorType(XSSFClientAnchor.AnchorType.DONT_MOVE_AND_RESIZE);
 
-        final XSSFDrawing drawing = sheet.createDrawingPatriarch();
-        final XSSFPicture picture = drawing.createPicture(anchor, pictureIndex);
-        picture.resize(0.88d, 1);
+        final Drawing<?> drawing = pSheet.createDrawingPatriarch();
+        final Picture picture = drawing.createPicture(anchor, pictureIndex);
+        picture.resize(CalendarLayout.QR_CODE_SCALE_X, 1);
     }
 
 
 
-    private void setPrintSetup()
+    private void setPrintSetup(final Sheet pSheet, final int pLastRow)
     {
-        final XSSFPrintSetup printSetup = sheet.getPrintSetup();
+        final PrintSetup printSetup = pSheet.getPrintSetup();
         workbook.setPrintArea(
-            0,   // sheet index
+            workbook.getSheetIndex(pSheet),  // sheet index
             0,   // start column
-            31,  // end column
+            CalendarLayout.NUM_COLUMNS - 1,  // end column
             0,   // start row
-            xlRowNum // end row
+            pLastRow // end row
         );
-        printSetup.setPaperSize(XSSFPrintSetup.A4_PAPERSIZE);
+        printSetup.setPaperSize(PrintSetup.A4_PAPERSIZE);
         printSetup.setLandscape(true);
     }
 
@@ -259,7 +269,7 @@ public class ExcelCreator
 
     private void setWorkbookProperties()
     {
-        final POIXMLProperties.CoreProperties workbookProps = workbook.getProperties().getCoreProperties();
+        final POIXMLProperties.CoreProperties workbookProps = xssfWorkbook.getProperties().getCoreProperties();
         workbookProps.setTitle("Abfallkalender " + config.getYear());
         workbookProps.setCreator("abfall");
         workbookProps.setDescription("Generated by \"abfall\" from https://github.com/tsjensen/abfall");
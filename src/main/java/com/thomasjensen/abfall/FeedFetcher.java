@@ -0,0 +1,339 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * Downloads ICS feeds given by URL into a local cache directory. Requests are conditional (ETag and
+ * Last-Modified), so that a feed which has not changed since the last download is answered with 304 and not
+ * transferred again. All downloads share one HTTP client, which keeps connections open for reuse, and no more than
+ * {@link #MAX_REQUESTS_PER_HOST} requests go to the same host at the same time.
+ * <p>Each feed is cached as <code>&lt;name&gt;.ics</code>, plus a properties file with its URL and validators. The
+ * name is the URL's fragment if it has one (<code>https://example.com/ical.ics?id=42#Nordstadt</code>), which is
+ * not sent to the server, else it is derived from the URL.</p>
+ */
+public class FeedFetcher
+{
+    private static final Logger LOG = LogManager.getLogger(FeedFetcher.class);
+
+    /** upper limit of concurrent requests to the same host, in order to be nice to the calendar providers */
+    public static final int MAX_REQUESTS_PER_HOST = 4;
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(2);
+
+    private static final String USER_AGENT = "abfall (https://github.com/tsjensen/abfall)";
+
+    private static final String META_SUFFIX = ".properties";
+
+    private static final String KEY_URL = "url";
+
+    private static final String KEY_ETAG = "etag";
+
+    private static final String KEY_LAST_MODIFIED = "lastModified";
+
+    private final File cacheDir;
+
+    private final int threads;
+
+    private final HttpClient client;
+
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+
+
+    /**
+     * Constructor.
+     *
+     * @param pCacheDir the cache directory, which is created if needed
+     * @param pThreads upper limit of concurrent downloads overall
+     */
+    public FeedFetcher(final File pCacheDir, final int pThreads)
+    {
+        cacheDir = pCacheDir;
+        threads = pThreads;
+        client = HttpClient.newBuilder()
+            .connectTimeout(CONNECT_TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+    }
+
+
+
+    /**
+     * Determine if a command line argument is a feed URL rather than a file.
+     *
+     * @param pArg the argument
+     * @return <code>true</code> if it is an HTTP or HTTPS URL
+     */
+    public static boolean isUrl(final String pArg)
+    {
+        final String lower = pArg.toLowerCase(Locale.ENGLISH);
+        return lower.startsWith("http://") || lower.startsWith("https://");
+    }
+
+
+
+    /**
+     * Determine the name of a feed, which is used for the cached file and the Excel file.
+     *
+     * @param pFeed the URL of the feed
+     * @return the URL's fragment, if it has one, else the last path segment without extension plus a short hash of
+     * the URL (since the path is often the same for all feeds of a provider)
+     */
+    public static String getName(final URI pFeed)
+    {
+        String result = pFeed.getFragment();
+        if (result == null || result.trim().isEmpty()) {
+            final String path = pFeed.getPath() != null ? pFeed.getPath() : "";
+            String segment = path.substring(path.lastIndexOf('/') + 1);
+            final int dotPos = segment.lastIndexOf('.');
+            if (dotPos > 0) {
+                segment = segment.substring(0, dotPos);
+            }
+            result = (segment.isEmpty() ? pFeed.getHost() : segment) + "-"
+                + String.format("%08x", stripFragment(pFeed).toString().hashCode());
+        }
+        return result.trim().replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_");
+    }
+
+
+
+    static URI stripFragment(final URI pFeed)
+    {
+        final String s = pFeed.toString();
+        final int hashPos = s.indexOf('#');
+        return hashPos >= 0 ? URI.create(s.substring(0, hashPos)) : pFeed;
+    }
+
+
+
+    /**
+     * Download several feeds concurrently. A feed which cannot be downloaded is reported, but does not stop the other
+     * downloads.
+     *
+     * @param pFeeds the URLs of the feeds
+     * @return the cached ICS file of each feed that was downloaded successfully, in the given order
+     * @throws IllegalArgumentException two feeds have the same {@link #getName name}, so they would overwrite each
+     * other's cached files
+     */
+    public Map<URI, File> fetchAll(final List<URI> pFeeds)
+    {
+        final Set<String> names = new HashSet<>();
+        for (final URI feed : pFeeds) {
+            if (!names.add(getName(feed))) {
+                throw new IllegalArgumentException("Two feeds have the same name '" + getName(feed)
+                    + "'. Add distinct names as URL fragments (#name).");
+            }
+        }
+
+        final Map<URI, File> result = new LinkedHashMap<>();
+        final ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, pFeeds.size())));
+        try {
+            final Map<URI, Future<File>> jobs = new LinkedHashMap<>();
+            for (final URI feed : pFeeds) {
+                jobs.put(feed, pool.submit(() -> fetch(feed)));
+            }
+            for (final Map.Entry<URI, Future<File>> job : jobs.entrySet()) {
+                try {
+                    result.put(job.getKey(), job.getValue().get());
+                }
+                catch (ExecutionException e) {
+                    LOG.error("Failed to download " + job.getKey() + ": " + e.getCause(), e.getCause());
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.error("Download interrupted");
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        return result;
+    }
+
+
+
+    /**
+     * Download a feed, unless the cached copy is still current.
+     *
+     * @param pFeed the URL of the feed
+     * @return the cached ICS file
+     * @throws IOException the download failed, or the server responded with an error
+     */
+    public File fetch(final URI pFeed)
+        throws IOException
+    {
+        final Semaphore permits = hostPermits.computeIfAbsent(String.valueOf(pFeed.getHost()),
+            h -> new Semaphore(MAX_REQUESTS_PER_HOST));
+        try {
+            permits.acquire();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to download " + pFeed, e);
+        }
+        try {
+            return download(stripFragment(pFeed), getName(pFeed));
+        }
+        finally {
+            permits.release();
+        }
+    }
+
+
+
+    private File download(final URI pUrl, final String pName)
+        throws IOException
+    {
+        Files.createDirectories(cacheDir.toPath());
+        final File icsFile = new File(cacheDir, pName + ".ics");
+        final File metaFile = new File(cacheDir, pName + ".ics" + META_SUFFIX);
+        final Properties meta = readMeta(metaFile, pUrl);
+
+        final HttpRequest.Builder request = HttpRequest.newBuilder(pUrl)
+            .timeout(REQUEST_TIMEOUT)
+            .header("User-Agent", USER_AGENT)
+            .header("Accept-Encoding", "gzip")
+            .GET();
+        if (icsFile.isFile()) {
+            if (meta.getProperty(KEY_ETAG) != null) {
+                request.header("If-None-Match", meta.getProperty(KEY_ETAG));
+            }
+            if (meta.getProperty(KEY_LAST_MODIFIED) != null) {
+                request.header("If-Modified-Since", meta.getProperty(KEY_LAST_MODIFIED));
+            }
+        }
+
+        final long startMillis = System.currentTimeMillis();
+        final HttpResponse<InputStream> response;
+        try {
+            response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading " + pUrl, e);
+        }
+
+        try (InputStream body = response.body()) {
+            if (response.statusCode() == 304 && icsFile.isFile()) {
+                if (LOG.isInfoEnabled()) {
+                    LOG.info("Feed " + pName + " not modified, using cached " + icsFile);
+                }
+                return icsFile;
+            }
+            if (response.statusCode() != 200) {
+                throw new IOException("HTTP status " + response.statusCode() + " from " + pUrl);
+            }
+
+            final boolean gzipped = response.headers().firstValue("Content-Encoding")
+                .map(enc -> enc.equalsIgnoreCase("gzip")).orElse(Boolean.FALSE).booleanValue();
+            // unique temporary files, in case another thread or process downloads the same feed into the same cache
+            final Path tmpFile = Files.createTempFile(cacheDir.toPath(), pName + ".", ".ics.tmp");
+            final long size;
+            try {
+                try (InputStream is = gzipped ? new GZIPInputStream(body) : body;
+                    OutputStream os = Files.newOutputStream(tmpFile))
+                {
+                    size = is.transferTo(os);
+                }
+                // atomic, because replacing first deletes the target, which fails if another download just moved it
+                Files.move(tmpFile, icsFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            finally {
+                Files.deleteIfExists(tmpFile);
+            }
+
+            meta.clear();
+            meta.setProperty(KEY_URL, pUrl.toString());
+            response.headers().firstValue("ETag").ifPresent(v -> meta.setProperty(KEY_ETAG, v));
+            response.headers().firstValue("Last-Modified").ifPresent(v -> meta.setProperty(KEY_LAST_MODIFIED, v));
+            final Path tmpMetaFile = Files.createTempFile(cacheDir.toPath(), pName + ".", META_SUFFIX + ".tmp");
+            try {
+                try (OutputStream os = Files.newOutputStream(tmpMetaFile)) {
+                    meta.store(os, "abfall feed cache");
+                }
+                Files.move(tmpMetaFile, metaFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            finally {
+                Files.deleteIfExists(tmpMetaFile);
+            }
+
+            if (LOG.isInfoEnabled()) {
+                LOG.info("Downloaded feed " + pName + " (" + size + " bytes" + (gzipped ? ", gzip" : "") + ") in "
+                    + (System.currentTimeMillis() - startMillis) + " ms");
+            }
+            return icsFile;
+        }
+    }
+
+
+
+    /**
+     * Read the validators of a cached feed.
+     *
+     * @param pMetaFile the properties file of the cached feed
+     * @param pUrl the URL of the feed
+     * @return the validators, or empty properties if there are none for this URL
+     */
+    private Properties readMeta(final File pMetaFile, final URI pUrl)
+    {
+        final Properties result = new Properties();
+        if (pMetaFile.isFile()) {
+            try (InputStream is = Files.newInputStream(pMetaFile.toPath())) {
+                result.load(is);
+            }
+            catch (IOException | IllegalArgumentException e) {
+                LOG.warn("Could not read " + pMetaFile + ", downloading again: " + e);
+                result.clear();
+            }
+            if (!pUrl.toString().equals(result.getProperty(KEY_URL))) {
+                result.clear();  // the name was used for a different URL before
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.File;
+
+
+/**
+ * The type of output file. Only Excel files can be edited afterwards; the other formats are for printing, and are
+ * rendered directly from the {@link CalendarLayout} without needing Excel (see {@link PrintRenderer}).
+ */
+public enum Format
+{
+    /** Excel workbook, rendered by the configured {@link Engine} (the default) */
+    Xlsx("xlsx"),
+
+    /** one page A4 landscape PDF */
+    Pdf("pdf"),
+
+    /** one page A4 landscape SVG image */
+    Svg("svg");
+
+    //
+
+    private final String extension;
+
+
+
+    private Format(final String pExtension)
+    {
+        extension = pExtension;
+    }
+
+
+
+    /**
+     * Getter.
+     * @return the file name extension of this format, without the dot
+     */
+    public String getExtension()
+    {
+        return extension;
+    }
+
+
+
+    /**
+     * Find a format by its name, ignoring case.
+     *
+     * @param pName the name of the format
+     * @return the format, or <code>null</code> if there is no such format
+     */
+    public static Format fromName(final String pName)
+    {
+        for (final Format format : values()) {
+            if (format.name().equalsIgnoreCase(pName)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+
+
+    /**
+     * Determine the format from the extension of a file name.
+     *
+     * @param pFile the file
+     * @return the format, or <code>null</code> if the file name does not have the extension of a known format
+     */
+    public static Format fromFile(final File pFile)
+    {
+        final String name = pFile.getName();
+        final int dotPos = name.lastIndexOf('.');
+        return dotPos > 0 ? fromName(name.substring(dotPos + 1)) : null;
+    }
+}
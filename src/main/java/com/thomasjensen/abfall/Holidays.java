@@ -17,62 +17,190 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 
 /**
  * Knows public holidays from the properties file, and can tell whether a day is a holiday.
+ * <p>The properties file is read only once. For each year, the holidays are compiled into a set of days of the year,
+ * so that a lookup is just a bit test. Movable holidays are computed from the date of Easter in that year.
+ * Instances are immutable and shared; get them via {@link #forYear(int)}.</p>
  */
 public final class Holidays
 {
-    private static final Pattern DATE_PATTERN = Pattern.compile("(\\d{4})-(\\d\\d?)-(\\d\\d?)");
+    /** fixed holiday, given as month and day (a year, if present, is ignored) */
+    private static final Pattern DATE_PATTERN = Pattern.compile("(?:\\d{4}-)?(\\d\\d?)-(\\d\\d?)");
 
-    private final Properties holidays;
+    /** movable holiday, given as number of days relative to Easter Sunday */
+    private static final Pattern EASTER_PATTERN = Pattern.compile("Ostern\\s*(?:([+-])\\s*(\\d+))?",
+        Pattern.CASE_INSENSITIVE);
 
+    /** limit of the distance of a movable holiday from Easter Sunday, so it falls into Easter's year or next to it */
+    private static final int MAX_EASTER_OFFSET = 366;
 
+    private static final List<MonthDay> FIXED_HOLIDAYS = new ArrayList<>();
 
-    public Holidays()
+    private static final List<Integer> EASTER_OFFSETS = new ArrayList<>();
+
+    private static final Map<Integer, Holidays> BY_YEAR = new ConcurrentHashMap<>();
+
+    static {
+        readPropertyFile();
+    }
+
+    //
+
+    private final int year;
+
+    /** indexed by day of year (1-366) */
+    private final BitSet days;
+
+
+
+    private Holidays(final int pYear)
     {
-        holidays = readPropertyFile();
+        year = pYear;
+        days = compile(pYear, FIXED_HOLIDAYS, EASTER_OFFSETS);
     }
 
 
 
-    private Properties readPropertyFile()
+    /**
+     * Get the holidays of the given year. The instance is computed on first access and shared afterwards.
+     *
+     * @param pYear the four-digit year
+     * @return the holidays of that year
+     */
+    public static Holidays forYear(final int pYear)
     {
-        Properties result = new Properties();
-        try (InputStream is = getClass().getResourceAsStream("feiertage.properties")) {
-            result.load(new InputStreamReader(is, StandardCharsets.UTF_8));
-        }
-        catch (IOException e) {
-            throw new RuntimeException("failed to load feiertage.properties", e);
-        }
-        return result;
+        return BY_YEAR.computeIfAbsent(pYear, Holidays::new);
     }
 
 
 
-    public boolean isHoliday(final Position pPos)
+    private static void readPropertyFile()
     {
-        boolean result = false;
-        for (final Enumeration<?> h = holidays.propertyNames(); h.hasMoreElements(); ) {
+        final Properties props = new Properties();
+        try (InputStream is = Holidays.class.getResourceAsStream("feiertage.properties")) {
+            props.load(new InputStreamReader(is, StandardCharsets.UTF_8));
+        }
+        catch (IOException e) {
+            throw new RuntimeException("failed to load feiertage.properties", e);
+        }
+
+        for (final Enumeration<?> h = props.propertyNames(); h.hasMoreElements(); ) {
             final String holiday = (String) h.nextElement();
-            final Matcher m = DATE_PATTERN.matcher(holidays.getProperty(holiday));
-            if (m.matches()) {
-                int month = Integer.parseInt(m.group(2));
-                int day = Integer.parseInt(m.group(3));
-                if (month == pPos.getMonth().getValue() && day == pPos.getDay()) {
-                    result = true;
-                    break;
+            final String value = props.getProperty(holiday).trim();
+            final Matcher dm = DATE_PATTERN.matcher(value);
+            final Matcher em = EASTER_PATTERN.matcher(value);
+            if (dm.matches()) {
+                FIXED_HOLIDAYS.add(MonthDay.of(Integer.parseInt(dm.group(1)), Integer.parseInt(dm.group(2))));
+            }
+            else if (em.matches()) {
+                int offset = em.group(2) != null ? Integer.parseInt(em.group(2)) : 0;
+                if ("-".equals(em.group(1))) {
+                    offset = -offset;
+                }
+                if (Math.abs(offset) > MAX_EASTER_OFFSET) {
+                    throw new IllegalStateException("Holiday too far from Easter in feiertage.properties: " + holiday);
                 }
+                EASTER_OFFSETS.add(offset);
             }
             else {
                 throw new IllegalStateException("Did not understand date in feiertage.properties: " + holiday);
             }
         }
+    }
+
+
+
+    /**
+     * Compute the holidays of a year.
+     *
+     * @param pYear the four-digit year
+     * @param pFixedHolidays the holidays on the same day every year
+     * @param pEasterOffsets the movable holidays, as days relative to Easter Sunday; a large offset may move a holiday
+     * into the year before or after the year of its Easter Sunday
+     * @return the days of the year (1-366) which are holidays
+     */
+    static BitSet compile(final int pYear, final List<MonthDay> pFixedHolidays, final List<Integer> pEasterOffsets)
+    {
+        final BitSet result = new BitSet(367);
+        for (final MonthDay monthDay : pFixedHolidays) {
+            if (monthDay.isValidYear(pYear)) {
+                result.set(monthDay.atYear(pYear).getDayOfYear());
+            }
+        }
+        for (int easterYear = pYear - 1; easterYear <= pYear + 1; easterYear++) {
+            final LocalDate easter = easterSunday(easterYear);
+            for (final int offset : pEasterOffsets) {
+                final LocalDate date = easter.plusDays(offset);
+                if (date.getYear() == pYear) {
+                    result.set(date.getDayOfYear());
+                }
+            }
+        }
         return result;
     }
+
+
+
+    /**
+     * Compute the date of Easter Sunday in the Gregorian calendar (anonymous Gregorian algorithm, also known as
+     * Meeus/Jones/Butcher).
+     *
+     * @param pYear the four-digit year
+     * @return the date of Easter Sunday in that year
+     */
+    static LocalDate easterSunday(final int pYear)
+    {
+        final int a = pYear % 19;
+        final int b = pYear / 100;
+        final int c = pYear % 100;
+        final int d = b / 4;
+        final int e = b % 4;
+        final int f = (b + 8) / 25;
+        final int g = (b - f + 1) / 3;
+        final int h = (19 * a + b - d - g + 15) % 30;
+        final int i = c / 4;
+        final int k = c % 4;
+        final int l = (32 + 2 * e + 2 * i - h - k) % 7;
+        final int m = (a + 11 * h + 22 * l) / 451;
+        final int month = (h + l - 7 * m + 114) / 31;
+        final int day = (h + l - 7 * m + 114) % 31 + 1;
+        return LocalDate.of(pYear, month, day);
+    }
+
+
+
+    public int getYear()
+    {
+        return year;
+    }
+
+
+
+    /**
+     * Determine whether a day is a holiday.
+     *
+     * @param pPos the day; if it is in another year than this instance, the holidays of its year are used
+     * @return <code>true</code> if the day exists and is a holiday
+     */
+    public boolean isHoliday(final Position pPos)
+    {
+        if (pPos.getYear() != year) {
+            return forYear(pPos.getYear()).isHoliday(pPos);
+        }
+        return pPos.dayExists() && days.get(pPos.getDayOfYear());
+    }
 }
@@ -0,0 +1,89 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+/**
+ * The parts of an ICS event that we need: the day when it starts, its summary, and its location.
+ */
+public class IcsEvent
+{
+    private final int year;
+
+    /** month number, 1-12 */
+    private final int month;
+
+    /** day of month, 1-31 */
+    private final int day;
+
+    /** the SUMMARY, or an empty string if the event has none */
+    private final String summary;
+
+    /** the LOCATION, or <code>null</code> if the event has none */
+    private final String location;
+
+
+
+    public IcsEvent(final int pYear, final int pMonth, final int pDay, final String pSummary,
+        final String pLocation)
+    {
+        year = pYear;
+        month = pMonth;
+        day = pDay;
+        summary = pSummary != null ? pSummary : "";
+        location = pLocation;
+    }
+
+
+
+    public int getYear()
+    {
+        return year;
+    }
+
+
+
+    public int getMonth()
+    {
+        return month;
+    }
+
+
+
+    public int getDay()
+    {
+        return day;
+    }
+
+
+
+    public String getSummary()
+    {
+        return summary;
+    }
+
+
+
+    public String getLocation()
+    {
+        return location;
+    }
+
+
+
+    @Override
+    public String toString()
+    {
+        return year + "-" + month + "-" + day + " " + summary;
+    }
+}
@@ -0,0 +1,833 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * Lightweight streaming reader for ICS files. It unfolds the content lines and extracts only DTSTART, SUMMARY, and
+ * LOCATION of each VEVENT, plus the properties of recurring events. Events outside the requested years are dropped
+ * before any objects are allocated for them.
+ * <p>A recurring event (one with an RRULE or RDATE) is expanded after the whole file was read, because the events
+ * which replace or cancel single occurrences (via RECURRENCE-ID) may come later. Only the occurrences in the requested
+ * years are generated (see {@link RecurrenceRule}); EXDATE removes occurrences. When all years are requested, a series
+ * with COUNT or UNTIL is expanded to its end, and an endless one up to the last year in which an event of the file
+ * starts.</p>
+ * <p>Instances keep parsing state, so they must not be shared between threads.</p>
+ */
+public class IcsReader
+{
+    private static final Logger LOG = LogManager.getLogger(IcsReader.class);
+
+    private static final int NONE = -2;
+
+    /**
+     * the last year in which a series with COUNT or UNTIL is expanded when all years are requested, because calendars
+     * have four-digit years
+     */
+    static final int MAX_YEAR = 9999;
+
+    private final YearRange years;
+
+    private final char[] buffer = new char[16384];
+
+    private Reader reader;
+
+    private int bufPos;
+
+    private int bufLimit;
+
+    /** a character which was read ahead, or {@link #NONE} */
+    private int pending;
+
+    /** the current unfolded content line */
+    private final StringBuilder line = new StringBuilder(256);
+
+    private final StringBuilder summary = new StringBuilder(64);
+
+    private final StringBuilder location = new StringBuilder(128);
+
+    private boolean hasLocation;
+
+    private final StringBuilder uid = new StringBuilder(64);
+
+    /** the DTSTART of the current event as yyyyMMdd in its own time zone, or -1 if there is none we can read */
+    private int startDate;
+
+    /** the time of day of the DTSTART in seconds, or -1 if it is a date */
+    private int startSecond;
+
+    /** the time zone of the DTSTART, or <code>null</code> if it is a date or a floating time */
+    private ZoneId startZone;
+
+    /** the RRULE of the current event, or <code>null</code> */
+    private String rule;
+
+    /** the RDATE values of the current event, as yyyyMMdd */
+    private final List<Integer> recurrenceDates = new ArrayList<>();
+
+    /** the EXDATE values of the current event, as yyyyMMdd */
+    private final List<Integer> exceptionDates = new ArrayList<>();
+
+    /** the RECURRENCE-ID of the current event as yyyyMMdd, or -1 if it does not replace an occurrence */
+    private int recurrenceId;
+
+    private boolean cancelled;
+
+    /** the recurring events, which are expanded at the end of the file */
+    private final List<Series> series = new ArrayList<>();
+
+    /** the occurrences (yyyyMMdd) of recurring events which were replaced or cancelled, by UID */
+    private final Map<String, Set<Integer>> replaced = new HashMap<>();
+
+    /** the last year in which an event of the file starts */
+    private int lastYear;
+
+    private int skippedCount;
+
+
+
+    /**
+     * Constructor.
+     *
+     * @param pYear only events starting in this year are returned
+     */
+    public IcsReader(final int pYear)
+    {
+        this(YearRange.of(pYear));
+    }
+
+
+
+    /**
+     * Constructor.
+     *
+     * @param pYears only events starting in these years are returned
+     */
+    public IcsReader(final YearRange pYears)
+    {
+        years = pYears;
+    }
+
+
+
+    /**
+     * Read the events from the given ICS data.
+     *
+     * @param pInput the ICS data (UTF-8 encoded); the stream is not closed
+     * @return the events starting in the requested years, in file order, followed by the occurrences of recurring
+     * events
+     * @throws IOException reading failed
+     */
+    public List<IcsEvent> read(final InputStream pInput)
+        throws IOException
+    {
+        reader = new InputStreamReader(pInput, StandardCharsets.UTF_8);
+        bufPos = 0;
+        bufLimit = 0;
+        pending = NONE;
+        skippedCount = 0;
+        lastYear = Integer.MIN_VALUE;
+
+        final List<IcsEvent> result = new ArrayList<>();
+        boolean inEvent = false;
+        int nesting = 0;
+
+        while (readLine()) {
+            final int nameEnd = findNameEnd();
+            final int valueStart = findValueStart(nameEnd);
+            if (valueStart < 0) {
+                continue;
+            }
+
+            if (nameIs(nameEnd, "BEGIN")) {
+                if (inEvent) {
+                    nesting++;
+                }
+                else if (valueIs(valueStart, "VEVENT")) {
+                    inEvent = true;
+                    nesting = 0;
+                    startEvent();
+                }
+            }
+            else if (!inEvent) {
+                continue;
+            }
+            else if (nameIs(nameEnd, "END")) {
+                if (nesting > 0) {
+                    nesting--;
+                }
+                else {
+                    inEvent = false;
+                    endEvent(result);
+                }
+            }
+            else if (nesting == 0) {
+                readProperty(nameEnd, valueStart);
+            }
+        }
+
+        try {
+            for (final Series recurring : series) {
+                final int size = result.size();
+                expand(recurring, result);
+                if (result.size() == size) {
+                    skippedCount++;
+                }
+            }
+        }
+        finally {
+            series.clear();
+            replaced.clear();
+        }
+        return result;
+    }
+
+
+
+    /**
+     * Getter.
+     * @return the number of events in the most recent {@link #read} which were dropped, because they were outside
+     * the requested years or had no valid start date
+     */
+    public int getSkippedCount()
+    {
+        return skippedCount;
+    }
+
+
+
+    private void startEvent()
+    {
+        startDate = -1;
+        startSecond = -1;
+        startZone = null;
+        hasLocation = false;
+        summary.setLength(0);
+        location.setLength(0);
+        uid.setLength(0);
+        rule = null;
+        recurrenceDates.clear();
+        exceptionDates.clear();
+        recurrenceId = -1;
+        cancelled = false;
+    }
+
+
+
+    private void readProperty(final int pNameEnd, final int pValueStart)
+    {
+        final int valueEnd = line.length();
+        if (nameIs(pNameEnd, "DTSTART")) {
+            startDate = parseLocalDate(pValueStart, valueEnd);
+            startSecond = startDate >= 0 ? parseSecondOfDay(pValueStart, valueEnd) : -1;
+            startZone = startSecond >= 0 ? getZone(pNameEnd, pValueStart, valueEnd) : null;
+        }
+        else if (nameIs(pNameEnd, "SUMMARY")) {
+            unescape(pValueStart, summary);
+        }
+        else if (nameIs(pNameEnd, "LOCATION")) {
+            unescape(pValueStart, location);
+            hasLocation = true;
+        }
+        else if (nameIs(pNameEnd, "UID")) {
+            uid.setLength(0);
+            uid.append(line, pValueStart, valueEnd);
+        }
+        else if (nameIs(pNameEnd, "RRULE")) {
+            if (rule == null) {
+                rule = line.substring(pValueStart);
+            }
+        }
+        else if (nameIs(pNameEnd, "RDATE")) {
+            parseDates(pNameEnd, pValueStart, recurrenceDates);
+        }
+        else if (nameIs(pNameEnd, "EXDATE")) {
+            parseDates(pNameEnd, pValueStart, exceptionDates);
+        }
+        else if (nameIs(pNameEnd, "RECURRENCE-ID")) {
+            recurrenceId = parseDate(pNameEnd, pValueStart, pValueStart, valueEnd);
+        }
+        else if (nameIs(pNameEnd, "STATUS")) {
+            cancelled = valueIs(pValueStart, "CANCELLED");
+        }
+    }
+
+
+
+    /**
+     * Finish the current event. A single event is added to the result right away if it is in the requested years,
+     * while a recurring event is kept for expansion at the end of the file.
+     *
+     * @param pResult the events read so far
+     */
+    private void endEvent(final List<IcsEvent> pResult)
+    {
+        if (startDate < 0) {
+            skippedCount++;  // no DTSTART, or one we cannot read
+            return;
+        }
+        if (recurrenceId >= 0) {
+            if (uid.length() > 0) {
+                replaced.computeIfAbsent(uid.toString(), k -> new HashSet<>()).add(recurrenceId);
+            }
+            if (cancelled) {
+                return;  // not an event of its own
+            }
+        }
+        else if (rule != null || !recurrenceDates.isEmpty()) {
+            final RecurrenceRule recurrenceRule = parseRule();
+            if (recurrenceRule != null || !recurrenceDates.isEmpty()) {
+                addSeries(recurrenceRule);
+                return;
+            }
+        }
+
+        final int date = toDefaultZone(startDate, startSecond, startZone);
+        if (date >= 0) {
+            lastYear = Math.max(lastYear, date / 10000);
+        }
+        if (date < 0 || !years.contains(date / 10000)) {
+            skippedCount++;
+            return;
+        }
+        pResult.add(new IcsEvent(date / 10000, date / 100 % 100, date % 100, summary.toString(),
+            hasLocation ? location.toString() : null));
+    }
+
+
+
+    /**
+     * Parse the RRULE of the current event.
+     *
+     * @return the rule, or <code>null</code> if the event has none, or one we cannot expand (the event then counts
+     * only on its start date)
+     */
+    private RecurrenceRule parseRule()
+    {
+        if (rule == null) {
+            return null;
+        }
+        try {
+            return RecurrenceRule.parse(rule);
+        }
+        catch (IllegalArgumentException e) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("Ignoring the recurrence rule of event '" + summary + "' (" + e.getMessage() + "): " + rule);
+            }
+            return null;
+        }
+    }
+
+
+
+    private void addSeries(final RecurrenceRule pRule)
+    {
+        final int[] rdates = toSortedArray(recurrenceDates);
+        final int firstDate = toDefaultZone(startDate, startSecond, startZone);
+        lastYear = Math.max(lastYear, firstDate / 10000);
+        if (rdates.length > 0) {
+            lastYear = Math.max(lastYear, rdates[rdates.length - 1] / 10000);
+        }
+        series.add(new Series(uid.length() > 0 ? uid.toString() : null, startDate, startSecond, startZone, pRule,
+            rdates, toSortedArray(exceptionDates), summary.toString(), hasLocation ? location.toString() : null));
+    }
+
+
+
+    private static int[] toSortedArray(final List<Integer> pDates)
+    {
+        final int[] result = new int[pDates.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = pDates.get(i).intValue();
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+
+
+    /**
+     * Add the occurrences of a recurring event in the requested years to the result. These are the occurrences of the
+     * rule (which include the start date) and the RDATE values, less the EXDATE values and the occurrences which were
+     * replaced or cancelled by other events.
+     *
+     * @param pSeries the recurring event
+     * @param pResult the events read so far
+     */
+    private void expand(final Series pSeries, final List<IcsEvent> pResult)
+    {
+        final LocalDate start;
+        try {
+            start = LocalDate.of(pSeries.startDate / 10000, pSeries.startDate / 100 % 100, pSeries.startDate % 100);
+        }
+        catch (DateTimeException e) {
+            return;
+        }
+        final Iterator<LocalDate> occurrences;
+        if (pSeries.rule == null) {
+            occurrences = Collections.singletonList(start).iterator();
+        }
+        else if (years.isAll()) {
+            // a series with COUNT or UNTIL runs to its end, an endless one up to the last year of the file's events
+            final boolean bounded = pSeries.rule.getCount() > 0 || pSeries.rule.getUntil() != null;
+            occurrences = pSeries.rule.occurrences(start, start,
+                LocalDate.of(bounded ? MAX_YEAR : lastYear, 12, 31).plusDays(1));
+        }
+        else {
+            // one day more on either side, because the time zone may move an occurrence into the requested years
+            occurrences = pSeries.rule.occurrences(start, LocalDate.of(years.getFirst(), 1, 1).minusDays(1),
+                LocalDate.of(years.getLast(), 12, 31).plusDays(1));
+        }
+        final Set<Integer> replacedDates = pSeries.uid != null
+            ? replaced.getOrDefault(pSeries.uid, Collections.emptySet()) : Collections.emptySet();
+
+        // merge the occurrences of the rule with the RDATE values, both in ascending order
+        int date = nextDate(occurrences, pSeries);
+        int rdatePos = 0;
+        while (date != Integer.MAX_VALUE || rdatePos < pSeries.recurrenceDates.length) {
+            final int rdate = rdatePos < pSeries.recurrenceDates.length
+                ? pSeries.recurrenceDates[rdatePos] : Integer.MAX_VALUE;
+            final int current = Math.min(date, rdate);
+            if (date == current) {
+                date = nextDate(occurrences, pSeries);
+            }
+            while (rdatePos < pSeries.recurrenceDates.length && pSeries.recurrenceDates[rdatePos] == current) {
+                rdatePos++;
+            }
+            if (years.contains(current / 10000) && Arrays.binarySearch(pSeries.exceptionDates, current) < 0
+                && !replacedDates.contains(current)) {
+                pResult.add(new IcsEvent(current / 10000, current / 100 % 100, current % 100, pSeries.summary,
+                    pSeries.location));
+            }
+        }
+    }
+
+
+
+    /**
+     * Get the next occurrence of a rule, in the default time zone.
+     *
+     * @param pOccurrences the occurrences of the rule
+     * @param pSeries the recurring event, which provides time of day and time zone
+     * @return the date as yyyyMMdd, or {@link Integer#MAX_VALUE} if there are no more occurrences
+     */
+    private int nextDate(final Iterator<LocalDate> pOccurrences, final Series pSeries)
+    {
+        while (pOccurrences.hasNext()) {
+            final LocalDate occurrence = pOccurrences.next();
+            final int date = toDefaultZone(occurrence.getYear() * 10000 + occurrence.getMonthValue() * 100
+                + occurrence.getDayOfMonth(), pSeries.startSecond, pSeries.startZone);
+            if (date >= 0) {
+                return date;
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+
+
+    private int nextChar()
+        throws IOException
+    {
+        if (pending != NONE) {
+            final int result = pending;
+            pending = NONE;
+            return result;
+        }
+        if (bufPos >= bufLimit) {
+            bufLimit = reader.read(buffer, 0, buffer.length);
+            bufPos = 0;
+            if (bufLimit <= 0) {
+                bufLimit = 0;
+                return -1;
+            }
+        }
+        return buffer[bufPos++];
+    }
+
+
+
+    /**
+     * Read the next content line into {@link #line}, unfolding continuation lines as per RFC 5545 section 3.1.
+     *
+     * @return <code>false</code> if the end of the input was reached
+     * @throws IOException reading failed
+     */
+    private boolean readLine()
+        throws IOException
+    {
+        line.setLength(0);
+        int c = nextChar();
+        if (c < 0) {
+            return false;
+        }
+        while (c >= 0) {
+            if (c == '\r' || c == '\n') {
+                if (c == '\r') {
+                    c = nextChar();
+                    if (c != '\n') {
+                        pending = c;
+                    }
+                }
+                c = nextChar();
+                if (c != ' ' && c != '\t') {
+                    pending = c;
+                    break;
+                }
+            }
+            else {
+                line.append((char) c);
+            }
+            c = nextChar();
+        }
+        return true;
+    }
+
+
+
+    private int findNameEnd()
+    {
+        final int len = line.length();
+        for (int i = 0; i < len; i++) {
+            final char c = line.charAt(i);
+            if (c == ';' || c == ':') {
+                return i;
+            }
+        }
+        return len;
+    }
+
+
+
+    private int findValueStart(final int pNameEnd)
+    {
+        boolean quoted = false;
+        final int len = line.length();
+        for (int i = pNameEnd; i < len; i++) {
+            final char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            }
+            else if (c == ':' && !quoted) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+
+
+    private boolean nameIs(final int pNameEnd, final String pName)
+    {
+        return pNameEnd == pName.length() && regionMatches(0, pName);
+    }
+
+
+
+    private boolean valueIs(final int pValueStart, final String pValue)
+    {
+        return line.length() - pValueStart == pValue.length() && regionMatches(pValueStart, pValue);
+    }
+
+
+
+    private boolean regionMatches(final int pStart, final String pText)
+    {
+        for (int i = 0; i < pText.length(); i++) {
+            if (Character.toUpperCase(line.charAt(pStart + i)) != pText.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+
+    /**
+     * Parse the dates of an RDATE or EXDATE value, which may be a comma-separated list. For a PERIOD, only its start
+     * counts.
+     *
+     * @param pNameEnd end of the property name (start of the parameters)
+     * @param pValueStart start of the value
+     * @param pTarget receives the dates as yyyyMMdd
+     */
+    private void parseDates(final int pNameEnd, final int pValueStart, final List<Integer> pTarget)
+    {
+        int start = pValueStart;
+        while (start < line.length()) {
+            int end = start;
+            while (end < line.length() && line.charAt(end) != ',') {
+                end++;
+            }
+            int dateEnd = start;
+            while (dateEnd < end && line.charAt(dateEnd) != '/') {
+                dateEnd++;
+            }
+            final int date = parseDate(pNameEnd, pValueStart, start, dateEnd);
+            if (date >= 0) {
+                pTarget.add(date);
+            }
+            start = end + 1;
+        }
+    }
+
+
+
+    /**
+     * Parse a DATE or DATE-TIME value. Date-time values in UTC or with a time zone are converted to the default time
+     * zone, which is what Biweekly does, too.
+     *
+     * @param pNameEnd end of the property name (start of the parameters)
+     * @param pValueStart start of the value of the property
+     * @param pStart start of the date, which may be an element of a list
+     * @param pEnd end of the date
+     * @return the date as yyyyMMdd, or -1 if the value could not be parsed
+     */
+    private int parseDate(final int pNameEnd, final int pValueStart, final int pStart, final int pEnd)
+    {
+        final int date = parseLocalDate(pStart, pEnd);
+        final int second = date >= 0 ? parseSecondOfDay(pStart, pEnd) : -1;
+        return second >= 0 ? toDefaultZone(date, second, getZone(pNameEnd, pValueStart, pEnd)) : date;
+    }
+
+
+
+    /**
+     * Parse the date part of a DATE or DATE-TIME value.
+     *
+     * @param pStart start of the value
+     * @param pEnd end of the value
+     * @return the date as yyyyMMdd, or -1 if the value could not be parsed or the day does not exist in its month (an
+     * event with such a start date is skipped)
+     */
+    private int parseLocalDate(final int pStart, final int pEnd)
+    {
+        if (pEnd - pStart < 8) {
+            return -1;
+        }
+        final int y = parseDigits(pStart, 4);
+        final int m = parseDigits(pStart + 4, 2);
+        final int d = parseDigits(pStart + 6, 2);
+        if (y < 0 || m < 1 || m > 12 || d < 1) {
+            return -1;
+        }
+        if (d > YearMonth.of(y, m).lengthOfMonth()) {
+            if (LOG.isWarnEnabled()) {
+                LOG.warn("Ignoring nonexistent date: " + line.substring(pStart, pEnd));
+            }
+            return -1;
+        }
+        return y * 10000 + m * 100 + d;
+    }
+
+
+
+    /**
+     * Parse the time part of a DATE-TIME value.
+     *
+     * @param pStart start of the value
+     * @param pEnd end of the value
+     * @return the time of day in seconds, or -1 if the value is a date or has no valid time
+     */
+    private int parseSecondOfDay(final int pStart, final int pEnd)
+    {
+        if (pEnd - pStart < 15 || line.charAt(pStart + 8) != 'T') {
+            return -1;
+        }
+        final int hh = parseDigits(pStart + 9, 2);
+        final int mm = parseDigits(pStart + 11, 2);
+        final int ss = parseDigits(pStart + 13, 2);
+        if (hh < 0 || hh > 23 || mm < 0 || mm > 59 || ss < 0 || ss > 59) {
+            return -1;
+        }
+        return hh * 3600 + mm * 60 + ss;
+    }
+
+
+
+    /**
+     * Determine the time zone of a DATE-TIME value.
+     *
+     * @param pNameEnd end of the property name (start of the parameters)
+     * @param pValueStart start of the value of the property
+     * @param pEnd end of the date-time
+     * @return UTC for a value ending in Z, else the zone of the TZID parameter, or <code>null</code> for a floating
+     * time
+     */
+    private ZoneId getZone(final int pNameEnd, final int pValueStart, final int pEnd)
+    {
+        return line.charAt(pEnd - 1) == 'Z' ? ZoneOffset.UTC : getTimeZone(pNameEnd, pValueStart);
+    }
+
+
+
+    /**
+     * Convert a date and time to the date in the default time zone.
+     *
+     * @param pDate the date as yyyyMMdd
+     * @param pSecond the time of day in seconds, or -1 for a date without time
+     * @param pZone the time zone, or <code>null</code> for a date or a floating time, which are not converted
+     * @return the date in the default time zone as yyyyMMdd, or -1 if the date does not exist
+     */
+    private static int toDefaultZone(final int pDate, final int pSecond, final ZoneId pZone)
+    {
+        if (pSecond < 0 || pZone == null) {
+            return pDate;
+        }
+        try {
+            final LocalDate local = LocalDateTime.of(pDate / 10000, pDate / 100 % 100, pDate % 100, 0, 0)
+                .plusSeconds(pSecond).atZone(pZone).withZoneSameInstant(ZoneId.systemDefault()).toLocalDate();
+            return local.getYear() * 10000 + local.getMonthValue() * 100 + local.getDayOfMonth();
+        }
+        catch (DateTimeException e) {
+            return -1;
+        }
+    }
+
+
+
+    private ZoneId getTimeZone(final int pNameEnd, final int pValueStart)
+    {
+        final String params = line.substring(pNameEnd, pValueStart - 1);
+        final int tzPos = params.toUpperCase().indexOf(";TZID=");
+        if (tzPos < 0) {
+            return null;
+        }
+        int end = params.indexOf(';', tzPos + 1);
+        if (end < 0) {
+            end = params.length();
+        }
+        String tzid = params.substring(tzPos + ";TZID=".length(), end);
+        if (tzid.length() > 1 && tzid.charAt(0) == '"' && tzid.charAt(tzid.length() - 1) == '"') {
+            tzid = tzid.substring(1, tzid.length() - 1);
+        }
+        try {
+            return ZoneId.of(tzid);
+        }
+        catch (DateTimeException e) {
+            return null;  // unknown time zone, so we treat the time as floating
+        }
+    }
+
+
+
+    private int parseDigits(final int pStart, final int pCount)
+    {
+        int result = 0;
+        for (int i = pStart; i < pStart + pCount; i++) {
+            final char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+
+
+    /**
+     * Copy a TEXT value into the target buffer, resolving the escapes defined in RFC 5545 section 3.3.11.
+     *
+     * @param pValueStart start of the value in {@link #line}
+     * @param pTarget the target buffer
+     */
+    private void unescape(final int pValueStart, final StringBuilder pTarget)
+    {
+        pTarget.setLength(0);
+        final int len = line.length();
+        for (int i = pValueStart; i < len; i++) {
+            char c = line.charAt(i);
+            if (c == '\\' && i + 1 < len) {
+                c = line.charAt(++i);
+                if (c == 'n' || c == 'N') {
+                    c = '\n';
+                }
+            }
+            pTarget.append(c);
+        }
+    }
+
+
+
+    /**
+     * A recurring event, as read from the file.
+     */
+    private static final class Series
+    {
+        /** the UID, or <code>null</code> if the event has none */
+        private final String uid;
+
+        /** the DTSTART as yyyyMMdd in its own time zone */
+        private final int startDate;
+
+        private final int startSecond;
+
+        private final ZoneId startZone;
+
+        /** the RRULE, or <code>null</code> if the event has only RDATE values */
+        private final RecurrenceRule rule;
+
+        /** the RDATE values in the default time zone, sorted */
+        private final int[] recurrenceDates;
+
+        /** the EXDATE values in the default time zone, sorted */
+        private final int[] exceptionDates;
+
+        private final String summary;
+
+        private final String location;
+
+
+
+        Series(final String pUid, final int pStartDate, final int pStartSecond, final ZoneId pStartZone,
+            final RecurrenceRule pRule, final int[] pRecurrenceDates, final int[] pExceptionDates,
+            final String pSummary, final String pLocation)
+        {
+            uid = pUid;
+            startDate = pStartDate;
+            startSecond = pStartSecond;
+            startZone = pStartZone;
+            rule = pRule;
+            recurrenceDates = pRecurrenceDates;
+            exceptionDates = pExceptionDates;
+            summary = pSummary;
+            location = pLocation;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Finds out which of a fixed set of keywords occur in a text, ignoring case. All keywords are found in a single pass
+ * over the text (Aho-Corasick). The automaton is compiled into a transition table once, so that matching does not
+ * allocate any objects. Instances are immutable.
+ */
+public final class KeywordMatcher
+{
+    /** maximum number of keywords, because matches are reported as a bit mask */
+    public static final int MAX_KEYWORDS = Long.SIZE;
+
+    /** character class of each ASCII character, 0 if it does not occur in any keyword */
+    private final int[] asciiClasses = new int[128];
+
+    /** the non-ASCII characters occurring in keywords, sorted */
+    private final char[] otherChars;
+
+    /** character classes of {@link #otherChars} */
+    private final int[] otherClasses;
+
+    private final int numClasses;
+
+    /** next state, indexed by <code>state * numClasses + characterClass</code>; state 0 is the start state */
+    private final int[] transitions;
+
+    /** the keywords found when reaching each state */
+    private final long[] outputs;
+
+
+
+    /**
+     * Constructor.
+     *
+     * @param pKeywords the keywords, at most {@link #MAX_KEYWORDS}, none of them empty
+     */
+    public KeywordMatcher(final List<String> pKeywords)
+    {
+        if (pKeywords.size() > MAX_KEYWORDS) {
+            throw new IllegalArgumentException("too many keywords: " + pKeywords.size() + " > " + MAX_KEYWORDS);
+        }
+
+        final Map<Character, Integer> others = new TreeMap<>();
+        int classes = 1;
+        for (final String keyword : pKeywords) {
+            if (keyword.isEmpty()) {
+                throw new IllegalArgumentException("empty keyword");
+            }
+            for (int i = 0; i < keyword.length(); i++) {
+                final char c = fold(keyword.charAt(i));
+                if (c < asciiClasses.length) {
+                    if (asciiClasses[c] == 0) {
+                        asciiClasses[c] = classes++;
+                    }
+                }
+                else if (!others.containsKey(c)) {
+                    others.put(c, classes++);
+                }
+            }
+        }
+        numClasses = classes;
+        otherChars = new char[others.size()];
+        otherClasses = new int[others.size()];
+        int idx = 0;
+        for (final Map.Entry<Character, Integer> entry : others.entrySet()) {
+            otherChars[idx] = entry.getKey().charValue();
+            otherClasses[idx++] = entry.getValue().intValue();
+        }
+
+        final List<int[]> trie = new ArrayList<>();
+        final List<Long> trieOutputs = new ArrayList<>();
+        trie.add(newState());
+        trieOutputs.add(0L);
+        for (int k = 0; k < pKeywords.size(); k++) {
+            final String keyword = pKeywords.get(k);
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                final int cls = classOf(fold(keyword.charAt(i)));
+                if (trie.get(state)[cls] < 0) {
+                    trie.get(state)[cls] = trie.size();
+                    trie.add(newState());
+                    trieOutputs.add(0L);
+                }
+                state = trie.get(state)[cls];
+            }
+            trieOutputs.set(state, trieOutputs.get(state) | (1L << k));
+        }
+
+        transitions = new int[trie.size() * numClasses];
+        outputs = new long[trie.size()];
+        compile(trie, trieOutputs);
+    }
+
+
+
+    private int[] newState()
+    {
+        final int[] result = new int[numClasses];
+        Arrays.fill(result, -1);
+        return result;
+    }
+
+
+
+    /**
+     * Turn the trie into a deterministic automaton by following the failure links breadth first.
+     */
+    private void compile(final List<int[]> pTrie, final List<Long> pTrieOutputs)
+    {
+        final int[] failure = new int[pTrie.size()];
+        final Deque<Integer> queue = new ArrayDeque<>();
+        for (int cls = 0; cls < numClasses; cls++) {
+            final int next = pTrie.get(0)[cls];
+            if (next > 0) {
+                queue.add(next);
+            }
+            transitions[cls] = Math.max(next, 0);
+        }
+        outputs[0] = pTrieOutputs.get(0);
+
+        while (!queue.isEmpty()) {
+            final int state = queue.remove();
+            outputs[state] = pTrieOutputs.get(state) | outputs[failure[state]];
+            for (int cls = 0; cls < numClasses; cls++) {
+                final int next = pTrie.get(state)[cls];
+                if (next > 0) {
+                    failure[next] = transitions[failure[state] * numClasses + cls];
+                    queue.add(next);
+                    transitions[state * numClasses + cls] = next;
+                }
+                else {
+                    transitions[state * numClasses + cls] = transitions[failure[state] * numClasses + cls];
+                }
+            }
+        }
+    }
+
+
+
+    private static char fold(final char pChar)
+    {
+        return Character.toLowerCase(pChar);
+    }
+
+
+
+    private int classOf(final char pFoldedChar)
+    {
+        if (pFoldedChar < asciiClasses.length) {
+            return asciiClasses[pFoldedChar];
+        }
+        final int idx = Arrays.binarySearch(otherChars, pFoldedChar);
+        return idx >= 0 ? otherClasses[idx] : 0;
+    }
+
+
+
+    /**
+     * Find the keywords which occur in the given text.
+     *
+     * @param pText the text, may be <code>null</code>
+     * @return bit mask of the keywords found, bit <i>n</i> representing the <i>n</i>-th keyword
+     */
+    public long match(final CharSequence pText)
+    {
+        long result = 0L;
+        if (pText != null) {
+            int state = 0;
+            for (int i = 0; i < pText.length(); i++) {
+                state = transitions[state * numClasses + classOf(fold(pText.charAt(i)))];
+                result |= outputs[state];
+            }
+        }
+        return result;
+    }
+}
@@ -13,25 +13,14 @@
  */
 package com.thomasjensen.abfall;
 
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.util.List;
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.Map;
-import java.util.SortedSet;
-import java.util.TreeMap;
-import java.util.TreeSet;
 
-import biweekly.Biweekly;
-import biweekly.ICalendar;
-import biweekly.component.VEvent;
-import biweekly.property.DateStart;
-import biweekly.property.Location;
-import biweekly.property.Summary;
-import biweekly.util.ICalDate;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 
 public class Main
@@ -43,127 +32,88 @@ public class Main
     public static void main(final String[] pArgs)
         throws IOException
     {
-        new Main().entrypoint(pArgs);
+        final int exitCode = new Main().entrypoint(pArgs);
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
     }
 
 
 
-    public void entrypoint(final String[] pArgs)
+    /**
+     * Run the program as specified by the command line arguments. The JVM is not exited, so that this can also be
+     * called from other code; to convert ICS data in a running application, {@link Abfall} is a better fit, though.
+     *
+     * @param pArgs command line arguments
+     * @return the exit code: 0 on success, including when the usage was printed, or 1 if a conversion failed
+     * @throws IOException reading or writing failed
+     */
+    public int entrypoint(final String[] pArgs)
         throws IOException
     {
         printLicenseHeader();
         final Config config = new CmdLine().parse(pArgs);
         if (config == null) {
-            System.exit(0);
+            return 0;
         }
 
-        final List<VEvent> events = readIcsFile(config);
-        final Map<DayOnCalendar, SortedSet<Art>> termine = groupByDay(events);
-        final XSSFWorkbook workbook = new ExcelCreator(config).create(termine);
-
-        writeWorkbook(workbook, config);
-    }
-
-
-
-    private void printLicenseHeader()
-    {
-        LOG.info("abfall - convert ICS format trash calendar into a single Excel sheet");
-        LOG.info("Copyright (C) 2011-2026 Thomas Jensen, https://github.com/tsjensen/abfall");
-        LOG.info("This program comes with ABSOLUTELY NO WARRANTY; see LICENSE.md for details.");
-        LOG.info("This is free software, and you are welcome to redistribute it under certain conditions; "
-            + "see LICENSE.md for details.\n");
-    }
-
-
-
-    private Map<DayOnCalendar, SortedSet<Art>> groupByDay(final List<VEvent> pEvents)
-    {
-        final Map<DayOnCalendar, SortedSet<Art>> result = new TreeMap<>();
-        for (final VEvent event : pEvents) {
-            final ICalDate datum = event.getProperty(DateStart.class).getValue();
-            @SuppressWarnings("deprecation")
-            final int monat = datum.getMonth() + 1;
-            @SuppressWarnings("deprecation")
-            final int tag = datum.getDate();
-
-            final String desc = event.getProperty(Summary.class).getValue().toLowerCase();
-            Art art = null;
-            if (desc.contains("bio")) {
-                art = Art.Bio;
+        if (config.isCdsTraining()) {
+            final boolean success = new TrainingRun().createArchive();
+            if (!success) {
+                return 1;
             }
-            else if (desc.contains("papier")) {
-                art = Art.Papier;
-            }
-            else if (desc.contains("rest")) {
-                art = Art.Rest;
-            }
-            else if (desc.contains("sack")) {
-                art = Art.GelberSack;
+        }
+        else if (config.isServer()) {
+            final Server server = new Server(config);
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        }
+        else if (config.isWatch()) {
+            final Watcher watcher = new Watcher(config);
+            Runtime.getRuntime().addShutdownHook(new Thread(watcher::stop));
+            watcher.run();
+        }
+        else if (config.isBatch()) {
+            final boolean success = new BatchRunner(config).run();
+            if (!success) {
+                return 1;
             }
-            else if (desc.contains("garten")) {
-                art = Art.Gartenabfall;
+        }
+        else {
+            final RunReport report = new RunReport();
+            Config conversion = config;
+            if (config.getFeeds().size() == 1) {
+                final FeedFetcher fetcher = new FeedFetcher(config.getCacheDir(), 1);
+                final URI feed = config.getFeeds().get(0);
+                conversion = config.withInput(fetcher.fetch(feed), feed);
             }
-            else if (desc.contains("schadstoff")) {
-                // this logic is currently unused because "Schadstoffmobil" was discontinued
-                String loc = event.getProperty(Location.class).getValue();
-                loc = loc.substring(loc.indexOf("Info: ") + "Info: ".length()).toLowerCase();
-                if (loc.contains("some street 1")) {
-                    art = Art.Schadstoff1;
+            else if (!config.getFeeds().isEmpty()) {
+                // several feeds of one household are merged into one calendar, which is useless if one is missing
+                final FeedFetcher fetcher = new FeedFetcher(config.getCacheDir(), config.getThreads());
+                final Map<URI, File> files = fetcher.fetchAll(config.getFeeds());
+                if (files.size() < config.getFeeds().size()) {
+                    LOG.error("Only " + files.size() + " of " + config.getFeeds().size()
+                        + " feeds could be downloaded. No output file generated.");
+                    return 1;
                 }
-                else if (loc.contains("some other street 2")) {
-                    art = Art.Schadstoff2;
-                }
-                else {
-                    art = Art.Schadstoff3;
-                }
-            }
-
-            final DayOnCalendar z = new DayOnCalendar(monat, tag);
-            SortedSet<Art> arten = result.computeIfAbsent(z, k -> new TreeSet<>());
-            arten.add(art);
-            if (arten.size() > 2) {
-                throw new IllegalStateException("too many events per day on " + z);
+                conversion = config.withInputs(new ArrayList<>(files.values()));
             }
-        }
-
-        if (LOG.isDebugEnabled()) {
-            for (Map.Entry<DayOnCalendar, SortedSet<Art>> entry : result.entrySet()) {
-                for (final Art art : entry.getValue()) {
-                    LOG.debug(entry.getKey() + " -> " + art.toString());
-                }
+            report.add(new Converter().convert(conversion));
+            if (config.getReportFile() != null) {
+                report.write(config.getReportFile());
             }
         }
-        return result;
+        return 0;
     }
 
 
 
-    private List<VEvent> readIcsFile(final Config pConfig)
-        throws IOException
-    {
-        if (LOG.isInfoEnabled()) {
-            LOG.info("Reading ICS file: " + pConfig.getInFileIcs() + " ...");
-        }
-
-        // http://sourceforge.net/p/biweekly/wiki/Quick%20Start/
-        final ICalendar cal = Biweekly.parse(pConfig.getInFileIcs()).first();
-        final List<VEvent> events = cal.getEvents();
-
-        if (LOG.isInfoEnabled()) {
-            LOG.info("Parsed " + events.size() + " dates from the ICS file.");
-        }
-        return events;
-    }
-
-
-
-    private void writeWorkbook(final XSSFWorkbook pWorkbook, final Config pConfig)
-        throws IOException
+    private void printLicenseHeader()
     {
-        try (OutputStream fileOut = new FileOutputStream(pConfig.getOutFileXlsx())) {
-            pWorkbook.write(fileOut);
-            LOG.info("Generated output file at " + pConfig.getOutFileXlsx());
-        }
+        LOG.info("abfall - convert ICS format trash calendar into a single Excel sheet");
+        LOG.info("Copyright (C) 2011-2026 Thomas Jensen, https://github.com/tsjensen/abfall");
+        LOG.info("This program comes with ABSOLUTELY NO WARRANTY; see LICENSE.md for details.");
+        LOG.info("This is free software, and you are welcome to redistribute it under certain conditions; "
+            + "see LICENSE.md for details.\n");
     }
 }
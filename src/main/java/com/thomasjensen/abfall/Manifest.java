@@ -0,0 +1,182 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * The record of earlier conversions kept in an output directory, which allows incremental runs to skip conversions
+ * whose inputs have not changed. For each configured output file, it stores a fingerprint of everything the output
+ * depends on, and the names of the Excel files written.
+ * <p>There is one instance per directory, which may be shared by the threads of a batch. An unreadable manifest is
+ * treated as empty, so that everything is converted again.</p>
+ */
+public final class Manifest
+{
+    private static final Logger LOG = LogManager.getLogger(Manifest.class);
+
+    public static final String FILE_NAME = "abfall-manifest.properties";
+
+    /** suffix of the keys which list the Excel files written for an output */
+    private static final String OUTPUTS_SUFFIX = ".outputs";
+
+    private static final String OUTPUTS_SEPARATOR = "|";
+
+    private static final Map<File, Manifest> BY_DIRECTORY = new ConcurrentHashMap<>();
+
+    private final File file;
+
+    private final Properties entries = new Properties();
+
+
+
+    private Manifest(final File pDirectory)
+    {
+        file = new File(pDirectory, FILE_NAME);
+        if (file.isFile()) {
+            try (InputStream is = Files.newInputStream(file.toPath())) {
+                entries.load(is);
+            }
+            catch (IOException | IllegalArgumentException e) {
+                LOG.warn("Could not read " + file + ", converting all files again: " + e);
+                entries.clear();
+            }
+        }
+    }
+
+
+
+    /**
+     * Get the manifest of the directory of the given output file.
+     *
+     * @param pOutFile the configured output file
+     * @return the manifest, which is read from disk only once
+     */
+    public static Manifest forOutput(final File pOutFile)
+    {
+        final File dir = pOutFile.getAbsoluteFile().getParentFile();
+        return BY_DIRECTORY.computeIfAbsent(dir, Manifest::new);
+    }
+
+
+
+    /**
+     * Compute the fingerprint of a conversion, which covers everything the output files depend on: the ICS data, the
+     * configured years, locale, engine, and format, the category rules, the text of the QR code, and the
+     * {@link CalendarLayout#TEMPLATE_VERSION}.
+     *
+     * @param pConfig the configuration of the conversion
+     * @param pIcs the content of the ICS file
+     * @return the fingerprint
+     * @throws IOException the categories file could not be read
+     */
+    public static String fingerprint(final Config pConfig, final byte[] pIcs)
+        throws IOException
+    {
+        final String categories = pConfig.getCategoriesFile() != null
+            ? sha256(Files.readAllBytes(pConfig.getCategoriesFile().toPath())) : "built-in";
+        return "ics=" + sha256(pIcs) + " years=" + pConfig.getYears() + " locale=" + pConfig.getLocale()
+            + " engine=" + pConfig.getEngine() + " format=" + pConfig.getFormat() + " categories=" + categories
+            + " qr=" + pConfig.getQrCode() + " template=" + CalendarLayout.TEMPLATE_VERSION;
+    }
+
+
+
+    private static String sha256(final byte[] pData)
+    {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not supported by this JVM", e);  // required by the Java spec
+        }
+        final StringBuilder sb = new StringBuilder(64);
+        for (final byte b : digest.digest(pData)) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+
+
+    /**
+     * Determine if an output is up to date.
+     *
+     * @param pOutFile the configured output file
+     * @param pFingerprint the fingerprint of the conversion
+     * @return <code>true</code> if the last conversion for this output had the same fingerprint, and the Excel files
+     * it wrote still exist
+     */
+    public synchronized boolean isUpToDate(final File pOutFile, final String pFingerprint)
+    {
+        final String name = pOutFile.getName();
+        if (!pFingerprint.equals(entries.getProperty(name))) {
+            return false;
+        }
+        final String outputs = entries.getProperty(name + OUTPUTS_SUFFIX, "");
+        for (final String output : outputs.split("\\" + OUTPUTS_SEPARATOR)) {
+            if (!output.isEmpty() && !new File(file.getParentFile(), output).isFile()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+
+    /**
+     * Record a successful conversion, and save the manifest right away, so that the record survives an aborted
+     * batch.
+     *
+     * @param pOutFile the configured output file
+     * @param pFingerprint the fingerprint of the conversion
+     * @param pOutputs the Excel files written, which are in the same directory as the configured output file
+     * @throws IOException saving the manifest failed
+     */
+    public synchronized void record(final File pOutFile, final String pFingerprint, final List<File> pOutputs)
+        throws IOException
+    {
+        final StringBuilder outputs = new StringBuilder();
+        for (final File output : pOutputs) {
+            if (outputs.length() > 0) {
+                outputs.append(OUTPUTS_SEPARATOR);
+            }
+            outputs.append(output.getName());
+        }
+        entries.setProperty(pOutFile.getName(), pFingerprint);
+        entries.setProperty(pOutFile.getName() + OUTPUTS_SUFFIX, outputs.toString());
+
+        final File tmpFile = new File(file.getPath() + ".tmp");
+        try (OutputStream os = Files.newOutputStream(tmpFile.toPath())) {
+            entries.store(os, "abfall incremental conversions - do not edit");
+        }
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
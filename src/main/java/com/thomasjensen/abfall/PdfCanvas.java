@@ -0,0 +1,546 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+
+
+/**
+ * Writes the page as a PDF file, without using a library. The text is set in the standard fonts Helvetica and
+ * Helvetica-Bold, which every PDF viewer provides, so that no fonts need to be embedded; this limits the text to the
+ * Windows-1252 character set, other characters are replaced by question marks. The path gradients are drawn by axial
+ * shadings, and PNG images are embedded without decoding them, because PDF supports their compression.
+ */
+public class PdfCanvas
+    extends PrintCanvas
+{
+    private static final Charset WIN_ANSI = Charset.forName("windows-1252");
+
+    /** advance widths of the characters from space to tilde in Helvetica, in 1/1000 of the font size */
+    private static final int[] HELVETICA_WIDTHS = {
+        278, 278, 355, 556, 556, 889, 667, 191, 333, 333, 389, 584, 278, 333, 278, 278,  // space to slash
+        556, 556, 556, 556, 556, 556, 556, 556, 556, 556, 278, 278, 584, 584, 584, 556,  // 0 to ?
+        1015, 667, 667, 722, 722, 667, 611, 778, 722, 278, 500, 667, 556, 833, 722, 778, // @ to O
+        667, 778, 722, 667, 611, 722, 667, 944, 667, 667, 611, 278, 278, 278, 469, 556,  // P to _
+        333, 556, 556, 500, 556, 556, 278, 556, 556, 222, 222, 500, 222, 833, 556, 556,  // ` to o
+        556, 556, 333, 500, 278, 556, 500, 722, 500, 500, 500, 334, 260, 334, 584};      // p to ~
+
+    /** advance widths of the characters from space to tilde in Helvetica-Bold, in 1/1000 of the font size */
+    private static final int[] HELVETICA_BOLD_WIDTHS = {
+        278, 333, 474, 556, 556, 889, 722, 238, 333, 333, 389, 584, 278, 333, 278, 278,  // space to slash
+        556, 556, 556, 556, 556, 556, 556, 556, 556, 556, 333, 333, 584, 584, 584, 611,  // 0 to ?
+        975, 722, 722, 722, 722, 667, 611, 778, 722, 278, 556, 722, 611, 833, 722, 778,  // @ to O
+        667, 778, 722, 667, 611, 722, 667, 944, 667, 667, 611, 333, 278, 333, 584, 556,  // P to _
+        333, 556, 611, 556, 611, 556, 333, 611, 611, 278, 278, 556, 278, 889, 611, 611,  // ` to o
+        611, 611, 389, 556, 333, 611, 556, 778, 556, 556, 500, 389, 280, 389, 584};      // p to ~
+
+    /** width of characters not covered by the tables above, except for accented letters */
+    private static final int DEFAULT_CHAR_WIDTH = 556;
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    /** the objects which are always present, numbered from 1; shadings and images follow */
+    private static final int NUM_FIXED_OBJECTS = 7;
+
+    /** the content stream of the page */
+    private final StringBuilder content = new StringBuilder();
+
+    /** names of the shadings by their colors */
+    private final Map<String, String> shadingNames = new HashMap<>();
+
+    /** dictionaries of the shadings by their names */
+    private final Map<String, String> shadings = new LinkedHashMap<>();
+
+    /** names of the images by their PNG data */
+    private final Map<byte[], String> imageNames = new IdentityHashMap<>();
+
+    /** the images by their names */
+    private final Map<String, PngImage> images = new LinkedHashMap<>();
+
+
+
+    /**
+     * A PNG image, split into the parts which are needed to embed it.
+     */
+    private static final class PngImage
+    {
+        private final int width;
+
+        private final int height;
+
+        private final int bitDepth;
+
+        /** 0 for grayscale, 2 for RGB, 3 for palette images */
+        private final int colorType;
+
+        /** the RGB entries of the palette, or <code>null</code> */
+        private final byte[] palette;
+
+        /** the concatenated content of the IDAT chunks, which is a zlib stream */
+        private final byte[] data;
+
+
+
+        private PngImage(final int pWidth, final int pHeight, final int pBitDepth, final int pColorType,
+            final byte[] pPalette, final byte[] pData)
+        {
+            width = pWidth;
+            height = pHeight;
+            bitDepth = pBitDepth;
+            colorType = pColorType;
+            palette = pPalette;
+            data = pData;
+        }
+
+
+
+        static PngImage parse(final byte[] pPng)
+            throws IOException
+        {
+            if (pPng.length < PNG_SIGNATURE.length
+                || !Arrays.equals(Arrays.copyOf(pPng, PNG_SIGNATURE.length), PNG_SIGNATURE)) {
+                throw new IOException("Not a PNG image");
+            }
+            final ByteBuffer buffer = ByteBuffer.wrap(pPng);
+            buffer.position(PNG_SIGNATURE.length);
+            final ByteArrayOutputStream idat = new ByteArrayOutputStream(pPng.length);
+            byte[] header = null;
+            byte[] palette = null;
+            while (buffer.remaining() >= 12) {
+                final int length = buffer.getInt();
+                final String type = new String(pPng, buffer.position(), 4, StandardCharsets.US_ASCII);
+                final int start = buffer.position() + 4;
+                if (length < 0 || length > pPng.length - start - 4) {
+                    throw new IOException("Corrupt PNG image");
+                }
+                if ("IHDR".equals(type)) {
+                    header = Arrays.copyOfRange(pPng, start, start + length);
+                }
+                else if ("PLTE".equals(type)) {
+                    palette = Arrays.copyOfRange(pPng, start, start + length);
+                }
+                else if ("IDAT".equals(type)) {
+                    idat.write(pPng, start, length);
+                }
+                else if ("IEND".equals(type)) {
+                    break;
+                }
+                buffer.position(start + length + 4);  // skip the CRC
+            }
+
+            if (header == null || header.length < 13 || idat.size() == 0) {
+                throw new IOException("Corrupt PNG image");
+            }
+            final ByteBuffer ihdr = ByteBuffer.wrap(header);
+            final int colorType = header[9] & 0xff;
+            final boolean interlaced = header[12] != 0;
+            if (interlaced || (colorType != 0 && colorType != 2 && colorType != 3)
+                || (colorType == 3 && palette == null)) {
+                throw new IOException("Unsupported PNG image (only non-interlaced grayscale, RGB, or palette images "
+                    + "without alpha channel can be embedded)");
+            }
+            return new PngImage(ihdr.getInt(0), ihdr.getInt(4), header[8] & 0xff, colorType, palette,
+                idat.toByteArray());
+        }
+
+
+
+        /**
+         * Getter.
+         * @return the entries of the image dictionary, except for the length
+         */
+        String getDictionaryEntries()
+        {
+            final String colorSpace;
+            if (colorType == 3) {
+                final StringBuilder hex = new StringBuilder(palette.length * 2);
+                for (final byte b : palette) {
+                    hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+                }
+                colorSpace = "[/Indexed /DeviceRGB " + (palette.length / 3 - 1) + " <" + hex + ">]";
+            }
+            else {
+                colorSpace = colorType == 2 ? "/DeviceRGB" : "/DeviceGray";
+            }
+            return "/Type /XObject /Subtype /Image /Width " + width + " /Height " + height
+                + " /ColorSpace " + colorSpace + " /BitsPerComponent " + bitDepth
+                + " /Filter /FlateDecode /DecodeParms << /Predictor 15 /Colors " + (colorType == 2 ? 3 : 1)
+                + " /BitsPerComponent " + bitDepth + " /Columns " + width + " >>";
+        }
+    }
+
+
+
+    public PdfCanvas(final String pTitle, final double pSheetWidth, final double pSheetHeight)
+    {
+        super(pTitle, pSheetWidth, pSheetHeight);
+
+        // flip the y axis, so that we can use the coordinates of the sheet; square line caps join borders in corners
+        content.append("q ");
+        appendNumbers(scale, 0, 0, -scale, offsetX, PAGE_HEIGHT - offsetY);
+        content.append("cm 2 J\n");
+    }
+
+
+
+    @Override
+    public void fillRect(final double pX, final double pY, final double pWidth, final double pHeight,
+        final Rgb pColor)
+    {
+        appendColor(pColor, "rg");
+        appendNumbers(pX, pY, pWidth, pHeight);
+        content.append("re f\n");
+    }
+
+
+
+    @Override
+    public void fillHatched(final double pX, final double pY, final double pWidth, final double pHeight,
+        final Rgb pColor)
+    {
+        fillRect(pX, pY, pWidth, pHeight, StyleKey.WHITE);
+        content.append("q ");
+        appendNumbers(pX, pY, pWidth, pHeight);
+        content.append("re W n 0 J ");
+        appendNumbers(HATCH_LINE_WIDTH);
+        content.append("w ");
+        appendColor(pColor, "RG");
+
+        // the lines are those where x + y is a multiple of the spacing, so that they continue in adjacent cells
+        final double first = Math.ceil((pX + pY) / HATCH_SPACING) * HATCH_SPACING;
+        for (double sum = first; sum < pX + pY + pWidth + pHeight; sum += HATCH_SPACING) {
+            appendNumbers(sum - pY - pHeight, pY + pHeight);
+            content.append("m ");
+            appendNumbers(sum - pY, pY);
+            content.append("l\n");
+        }
+        content.append("S Q\n");
+    }
+
+
+
+    @Override
+    public void fillPathGradient(final double pX, final double pY, final double pWidth, final double pHeight,
+        final Rgb pInner, final Rgb pOuter)
+    {
+        fillRect(pX, pY, pWidth, pHeight, pOuter);  // covers hairline gaps which viewers leave between the triangles
+        if (pWidth <= 0d || pHeight <= 0d) {
+            return;
+        }
+        final String shading = getShading(pInner, pOuter);
+        final double centerX = pX + pWidth / 2;
+        final double centerY = pY + pHeight / 2;
+        fillTriangle(shading, centerX, centerY, pX, pY, pX + pWidth, pY);
+        fillTriangle(shading, centerX, centerY, pX + pWidth, pY, pX + pWidth, pY + pHeight);
+        fillTriangle(shading, centerX, centerY, pX + pWidth, pY + pHeight, pX, pY + pHeight);
+        fillTriangle(shading, centerX, centerY, pX, pY + pHeight, pX, pY);
+    }
+
+
+
+    /**
+     * Fill the triangle between the center of a rectangle and one of its edges. The shading runs from 0 to 1 along
+     * the x axis, which is mapped onto the line from the center to the middle of the edge.
+     */
+    private void fillTriangle(final String pShading, final double pCenterX, final double pCenterY, final double pX1,
+        final double pY1, final double pX2, final double pY2)
+    {
+        final double dx = (pX1 + pX2) / 2 - pCenterX;
+        final double dy = (pY1 + pY2) / 2 - pCenterY;
+        content.append("q ");
+        appendNumbers(pCenterX, pCenterY);
+        content.append("m ");
+        appendNumbers(pX1, pY1);
+        content.append("l ");
+        appendNumbers(pX2, pY2);
+        content.append("l h W n ");
+        appendNumbers(dx, dy, -dy, dx, pCenterX, pCenterY);
+        content.append("cm /").append(pShading).append(" sh Q\n");
+    }
+
+
+
+    private String getShading(final Rgb pInner, final Rgb pOuter)
+    {
+        return shadingNames.computeIfAbsent(pInner.toArgbHex() + pOuter.toArgbHex(), k -> {
+            final String name = "Sh" + (shadings.size() + 1);
+            shadings.put(name, "<< /ShadingType 2 /ColorSpace /DeviceRGB /Coords [0 0 1 0] /Extend [true true] "
+                + "/Function << /FunctionType 2 /Domain [0 1] /C0 [" + toPdfColor(pInner) + "] /C1 ["
+                + toPdfColor(pOuter) + "] /N 1 >> >>");
+            return name;
+        });
+    }
+
+
+
+    @Override
+    public void drawLine(final double pX1, final double pY1, final double pX2, final double pY2,
+        final double pWidth, final Rgb pColor)
+    {
+        appendColor(pColor, "RG");
+        appendNumbers(pWidth);
+        content.append("w ");
+        appendNumbers(pX1, pY1);
+        content.append("m ");
+        appendNumbers(pX2, pY2);
+        content.append("l S\n");
+    }
+
+
+
+    @Override
+    public void drawText(final double pX, final double pY, final String pText, final StyleKey.Font pFont,
+        final Anchor pAnchor)
+    {
+        final byte[] encoded = pText.getBytes(WIN_ANSI);
+        final String printable = new String(encoded, WIN_ANSI);
+        final boolean bold = isBold(pFont);
+        final double size = getFontSize(pFont);
+        double width = 0d;
+        for (int i = 0; i < printable.length(); i++) {
+            width += getCharWidth(printable.charAt(i), bold);
+        }
+        width = width * size / 1000d;
+
+        double x = pX;
+        if (pAnchor == Anchor.Middle) {
+            x -= width / 2;
+        }
+        else if (pAnchor == Anchor.End) {
+            x -= width;
+        }
+        final Rgb color = getTextColor(pFont);
+        content.append("BT /").append(bold ? "F2 " : "F1 ");
+        appendNumbers(size);
+        content.append("Tf ");
+        appendColor(color, "rg");
+        appendNumbers(1, 0, 0, -1, x, pY);  // flip the glyphs back
+        content.append("Tm ");
+        appendString(encoded);
+        content.append(" Tj ET\n");
+
+        if (pFont == StyleKey.Font.Underlined) {
+            // position and thickness of the underline as given by the metrics of Helvetica
+            content.append("q 0 J ");
+            appendColor(color, "RG");
+            appendNumbers(size * 0.05d);
+            content.append("w ");
+            appendNumbers(x, pY + size * 0.1d);
+            content.append("m ");
+            appendNumbers(x + width, pY + size * 0.1d);
+            content.append("l S Q\n");
+        }
+    }
+
+
+
+    private static int getCharWidth(final char pChar, final boolean pBold)
+    {
+        final int[] widths = pBold ? HELVETICA_BOLD_WIDTHS : HELVETICA_WIDTHS;
+        if (pChar >= ' ' && pChar - ' ' < widths.length) {
+            return widths[pChar - ' '];
+        }
+        if (pChar == 'ß') {
+            return 611;  // sharp s, the same in both fonts
+        }
+        // accented letters are as wide as the letter without the accent
+        final char base = Normalizer.normalize(String.valueOf(pChar), Normalizer.Form.NFD).charAt(0);
+        if (base != pChar && base >= ' ' && base - ' ' < widths.length) {
+            return widths[base - ' '];
+        }
+        return DEFAULT_CHAR_WIDTH;
+    }
+
+
+
+    @Override
+    public void drawPng(final byte[] pPng, final double pX, final double pY, final double pWidth,
+        final double pHeight)
+        throws IOException
+    {
+        String name = imageNames.get(pPng);
+        if (name == null) {
+            name = "Im" + (images.size() + 1);
+            images.put(name, PngImage.parse(pPng));
+            imageNames.put(pPng, name);
+        }
+        // the image occupies the unit square with its first row at the top, which is flipped twice
+        content.append("q ");
+        appendNumbers(pWidth, 0, 0, -pHeight, pX, pY + pHeight);
+        content.append("cm /").append(name).append(" Do Q\n");
+    }
+
+
+
+    @Override
+    public void finish(final OutputStream pOutput)
+        throws IOException
+    {
+        content.append("Q\n");
+        final List<byte[]> objects = new ArrayList<>();
+        final StringBuilder resources = new StringBuilder("<< /Font << /F1 5 0 R /F2 6 0 R >>");
+        int objNum = NUM_FIXED_OBJECTS + 1;
+        final List<byte[]> extraObjects = new ArrayList<>();
+        if (!shadings.isEmpty()) {
+            resources.append(" /Shading <<");
+            for (final Map.Entry<String, String> entry : shadings.entrySet()) {
+                resources.append(" /").append(entry.getKey()).append(' ').append(objNum++).append(" 0 R");
+                extraObjects.add(ascii(entry.getValue()));
+            }
+            resources.append(" >>");
+        }
+        if (!images.isEmpty()) {
+            resources.append(" /XObject <<");
+            for (final Map.Entry<String, PngImage> entry : images.entrySet()) {
+                resources.append(" /").append(entry.getKey()).append(' ').append(objNum++).append(" 0 R");
+                extraObjects.add(stream(entry.getValue().getDictionaryEntries(), entry.getValue().data));
+            }
+            resources.append(" >>");
+        }
+        resources.append(" >>");
+
+        objects.add(ascii("<< /Type /Catalog /Pages 2 0 R >>"));
+        objects.add(ascii("<< /Type /Pages /Kids [3 0 R] /Count 1 >>"));
+        objects.add(ascii("<< /Type /Page /Parent 2 0 R /MediaBox [0 0 " + format(PAGE_WIDTH) + " "
+            + format(PAGE_HEIGHT) + "] /Resources " + resources + " /Contents 4 0 R >>"));
+        objects.add(stream("/Filter /FlateDecode", deflate(ascii(content.toString()))));
+        objects.add(ascii("<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica /Encoding /WinAnsiEncoding >>"));
+        objects.add(ascii("<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica-Bold /Encoding /WinAnsiEncoding >>"));
+        final StringBuilder info = new StringBuilder("<< /Title ");
+        appendString(info, title.getBytes(WIN_ANSI));
+        info.append(" /Creator (abfall) /Producer (abfall) >>");
+        objects.add(ascii(info.toString()));
+        objects.addAll(extraObjects);
+
+        final ByteArrayOutputStream pdf = new ByteArrayOutputStream(16384);
+        pdf.write(new byte[]{'%', 'P', 'D', 'F', '-', '1', '.', '4', '\n', '%', (byte) 0xe2, (byte) 0xe3, (byte) 0xcf,
+            (byte) 0xd3, '\n'});  // the binary comment tells transfer programs that the file is not text
+        final int[] offsets = new int[objects.size()];
+        for (int i = 0; i < objects.size(); i++) {
+            offsets[i] = pdf.size();
+            pdf.write(ascii((i + 1) + " 0 obj\n"));
+            pdf.write(objects.get(i));
+            pdf.write(ascii("\nendobj\n"));
+        }
+        final int xrefOffset = pdf.size();
+        final StringBuilder xref = new StringBuilder("xref\n0 " + (objects.size() + 1) + "\n0000000000 65535 f \n");
+        for (final int offset : offsets) {
+            xref.append(String.format("%010d 00000 n \n", offset));
+        }
+        xref.append("trailer\n<< /Size ").append(objects.size() + 1).append(" /Root 1 0 R /Info 7 0 R >>\n")
+            .append("startxref\n").append(xrefOffset).append("\n%%EOF\n");
+        pdf.write(ascii(xref.toString()));
+        pdf.writeTo(pOutput);
+    }
+
+
+
+    private void appendNumbers(final double... pValues)
+    {
+        for (final double value : pValues) {
+            content.append(format(value)).append(' ');
+        }
+    }
+
+
+
+    private void appendColor(final Rgb pColor, final String pOperator)
+    {
+        content.append(toPdfColor(pColor)).append(' ').append(pOperator).append(' ');
+    }
+
+
+
+    private static String toPdfColor(final Rgb pColor)
+    {
+        return format(pColor.getRed() / 255d) + " " + format(pColor.getGreen() / 255d) + " "
+            + format(pColor.getBlue() / 255d);
+    }
+
+
+
+    private void appendString(final byte[] pEncoded)
+    {
+        appendString(content, pEncoded);
+    }
+
+
+
+    /**
+     * Append a PDF string literal. Bytes outside of printable ASCII are written as octal escapes, so that the content
+     * stream remains ASCII.
+     */
+    private static void appendString(final StringBuilder pSb, final byte[] pEncoded)
+    {
+        pSb.append('(');
+        for (final byte b : pEncoded) {
+            final int c = b & 0xff;
+            if (c == '(' || c == ')' || c == '\\') {
+                pSb.append('\\').append((char) c);
+            }
+            else if (c < ' ' || c > '~') {
+                pSb.append('\\').append(Integer.toOctalString(c | 0x200).substring(1));  // always three digits
+            }
+            else {
+                pSb.append((char) c);
+            }
+        }
+        pSb.append(')');
+    }
+
+
+
+    private static byte[] stream(final String pDictionaryEntries, final byte[] pData)
+    {
+        final byte[] head = ascii("<< " + pDictionaryEntries + " /Length " + pData.length + " >>\nstream\n");
+        final byte[] tail = ascii("\nendstream");
+        final byte[] result = Arrays.copyOf(head, head.length + pData.length + tail.length);
+        System.arraycopy(pData, 0, result, head.length, pData.length);
+        System.arraycopy(tail, 0, result, head.length + pData.length, tail.length);
+        return result;
+    }
+
+
+
+    private static byte[] deflate(final byte[] pData)
+        throws IOException
+    {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream(pData.length / 4);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(result)) {
+            out.write(pData);
+        }
+        return result.toByteArray();
+    }
+
+
+
+    private static byte[] ascii(final String pText)
+    {
+        return pText.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -41,6 +41,9 @@ public class Position
 
     private DayOfWeek dayOfWeek = null;
 
+    /** day of the year (1-366), or -1 if the day does not exist in the current month */
+    private int dayOfYear = -1;
+
 
 
     public Position(final int pYear, final int pMonth, final int pDayRowIdx, final int pRowsPerDay)
@@ -57,12 +60,24 @@ public class Position
     {
         day = pDay;
         if (pDay <= monthObj.lengthOfMonth()) {
-            dayOfWeek = LocalDate.of(year, getMonthNumeric1(), pDay).getDayOfWeek();
+            final LocalDate date = LocalDate.of(year, getMonthNumeric1(), pDay);
+            dayOfWeek = date.getDayOfWeek();
+            dayOfYear = date.getDayOfYear();
+        }
+        else {
+            dayOfYear = -1;
         }
     }
 
 
 
+    public int getYear()
+    {
+        return year;
+    }
+
+
+
     public Month getMonth()
     {
         return monthObj.getMonth();
@@ -163,4 +178,11 @@ public class Position
     {
         return day;
     }
+
+
+
+    public int getDayOfYear()
+    {
+        return dayOfYear;
+    }
 }
@@ -0,0 +1,216 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+
+
+/**
+ * A drawing surface for the {@link PrintRenderer}, which produces one page of a vector format. The coordinates are
+ * those of the sheet, in points, with the origin in the top left corner and y growing downwards. The canvas scales the
+ * sheet to fit on an A4 landscape page and centers it.
+ */
+public abstract class PrintCanvas
+{
+    /**
+     * Horizontal placement of a text relative to its x coordinate.
+     */
+    public enum Anchor
+    {
+        Start,
+        Middle,
+        End;
+    }
+
+    //
+
+    /** width of an A4 page in landscape orientation, in points */
+    public static final double PAGE_WIDTH = 842d;
+
+    /** height of an A4 page in landscape orientation, in points */
+    public static final double PAGE_HEIGHT = 595d;
+
+    /** minimum distance of the sheet from the edges of the page, in points (1 cm) */
+    private static final double MARGIN = 28.35d;
+
+    /** text color of all fonts except {@link StyleKey.Font#White} */
+    static final Rgb BLACK = new Rgb(0, 0, 0);
+
+    /** distance of the lines of a hatched fill, in points; Excel draws them four pixels apart */
+    static final double HATCH_SPACING = 3d;
+
+    /** width of the lines of a hatched fill, in points (one pixel) */
+    static final double HATCH_LINE_WIDTH = 0.75d;
+
+    /** the title of the document */
+    protected final String title;
+
+    /** factor by which the sheet is scaled to fit on the page */
+    protected final double scale;
+
+    /** left edge of the sheet on the page */
+    protected final double offsetX;
+
+    /** top edge of the sheet on the page */
+    protected final double offsetY;
+
+
+
+    protected PrintCanvas(final String pTitle, final double pSheetWidth, final double pSheetHeight)
+    {
+        title = pTitle;
+        scale = Math.min((PAGE_WIDTH - 2 * MARGIN) / pSheetWidth, (PAGE_HEIGHT - 2 * MARGIN) / pSheetHeight);
+        offsetX = (PAGE_WIDTH - scale * pSheetWidth) / 2;
+        offsetY = (PAGE_HEIGHT - scale * pSheetHeight) / 2;
+    }
+
+
+
+    public abstract void fillRect(double pX, double pY, double pWidth, double pHeight, Rgb pColor);
+
+
+
+    /**
+     * Fill a rectangle with thin diagonal lines from bottom left to top right on white, like Excel's "thin forward
+     * diagonal" pattern.
+     *
+     * @param pX left edge
+     * @param pY top edge
+     * @param pWidth width
+     * @param pHeight height
+     * @param pColor color of the lines
+     */
+    public abstract void fillHatched(double pX, double pY, double pWidth, double pHeight, Rgb pColor);
+
+
+
+    /**
+     * Fill a rectangle with a path gradient, which goes from the inner color in the center to the outer color on all
+     * four edges, like Excel's gradient fill of type "path". The rectangle is split into four triangles along its
+     * diagonals, each of which gets a linear gradient from the center towards its edge.
+     *
+     * @param pX left edge
+     * @param pY top edge
+     * @param pWidth width
+     * @param pHeight height
+     * @param pInner color in the center
+     * @param pOuter color on the edges
+     */
+    public abstract void fillPathGradient(double pX, double pY, double pWidth, double pHeight, Rgb pInner,
+        Rgb pOuter);
+
+
+
+    /**
+     * Draw a straight line. The ends are extended by half the line width, so that lines meeting in a corner join.
+     *
+     * @param pX1 x coordinate of the start
+     * @param pY1 y coordinate of the start
+     * @param pX2 x coordinate of the end
+     * @param pY2 y coordinate of the end
+     * @param pWidth line width
+     * @param pColor line color
+     */
+    public abstract void drawLine(double pX1, double pY1, double pX2, double pY2, double pWidth, Rgb pColor);
+
+
+
+    /**
+     * Draw a single line of text.
+     *
+     * @param pX x coordinate of the anchor point
+     * @param pY y coordinate of the baseline
+     * @param pText the text
+     * @param pFont the font, which determines size, weight, color, and underlining
+     * @param pAnchor which part of the text is placed at the x coordinate
+     */
+    public abstract void drawText(double pX, double pY, String pText, StyleKey.Font pFont, Anchor pAnchor);
+
+
+
+    /**
+     * Draw a PNG image, stretched to the given rectangle.
+     *
+     * @param pPng the PNG file
+     * @param pX left edge
+     * @param pY top edge
+     * @param pWidth width
+     * @param pHeight height
+     * @throws IOException the image is not a PNG file which the canvas supports
+     */
+    public abstract void drawPng(byte[] pPng, double pX, double pY, double pWidth, double pHeight)
+        throws IOException;
+
+
+
+    /**
+     * Write the page to the given stream. The canvas cannot be used afterwards.
+     *
+     * @param pOutput the stream to write to; the stream is not closed
+     * @throws IOException writing failed
+     */
+    public abstract void finish(OutputStream pOutput)
+        throws IOException;
+
+
+
+    static double getFontSize(final StyleKey.Font pFont)
+    {
+        switch (pFont) {
+            case Bold24:
+                return 24d;
+            case Bold20:
+                return 20d;
+            case Bold14:
+            case Plain14:
+                return 14d;
+            default:
+                return 11d;
+        }
+    }
+
+
+
+    static boolean isBold(final StyleKey.Font pFont)
+    {
+        return pFont == StyleKey.Font.Bold24 || pFont == StyleKey.Font.Bold20 || pFont == StyleKey.Font.Bold14;
+    }
+
+
+
+    static Rgb getTextColor(final StyleKey.Font pFont)
+    {
+        return pFont == StyleKey.Font.White ? StyleKey.WHITE : BLACK;
+    }
+
+
+
+    /**
+     * Format a coordinate or other number for the output, with at most three decimal places, which is much finer than
+     * any printer can resolve.
+     *
+     * @param pValue the number
+     * @return its shortest decimal representation, independent of the locale
+     */
+    static String format(final double pValue)
+    {
+        final long thousandths = Math.round(pValue * 1000d);
+        if (thousandths % 1000 == 0) {
+            return Long.toString(thousandths / 1000);
+        }
+        return BigDecimal.valueOf(thousandths, 3).stripTrailingZeros().toPlainString();
+    }
+}
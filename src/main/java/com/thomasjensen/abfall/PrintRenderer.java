@@ -0,0 +1,292 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Draws a {@link CalendarLayout} onto a {@link PrintCanvas}, so that the calendar can be printed without Excel. The
+ * sheet is reproduced as Excel would print it: column widths and row heights are converted to points, merged cells
+ * are drawn as one, and the borders are drawn after all fills, heavier borders last, so that they are not covered.
+ */
+public class PrintRenderer
+{
+    /** width of a thin border in points; Excel draws it one pixel wide */
+    private static final double THIN_LINE_WIDTH = 0.75d;
+
+    /** width of a medium border in points (two pixels) */
+    private static final double MEDIUM_LINE_WIDTH = 1.5d;
+
+    /** distance of left aligned text from the cell border, in points */
+    private static final double TEXT_INDENT = 2d;
+
+    private final CalendarLayout layout;
+
+    /** left edge of each column, followed by the right edge of the last column */
+    private final double[] columnX = new double[CalendarLayout.NUM_COLUMNS + 1];
+
+    /** top edge of each row of the print area, followed by the bottom edge of the last row */
+    private final double[] rowY;
+
+    /** the merged region covering each merged cell, by {@link #getCellKey} */
+    private final Map<Integer, CalendarLayout.Region> regions = new HashMap<>();
+
+
+
+    public PrintRenderer(final CalendarLayout pLayout)
+    {
+        layout = pLayout;
+        for (int column = 0; column < CalendarLayout.NUM_COLUMNS; column++) {
+            columnX[column + 1] = columnX[column] + toPoints(layout.getColumnWidth(column));
+        }
+        rowY = new double[layout.getLastRow() + 2];
+        for (int row = 0; row <= layout.getLastRow(); row++) {
+            rowY[row + 1] = rowY[row] + layout.getRowHeight(row);
+        }
+        for (final CalendarLayout.Region region : layout.getMergedRegions()) {
+            for (int row = region.getFirstRow(); row <= region.getLastRow(); row++) {
+                for (int column = region.getFirstColumn(); column <= region.getLastColumn(); column++) {
+                    regions.put(getCellKey(row, column), region);
+                }
+            }
+        }
+    }
+
+
+
+    /**
+     * Convert a column width to points the way Excel does: the width is given in characters of the default font,
+     * whose digits are 7 pixels wide, plus some padding, and rounded down to whole pixels at 96 dpi.
+     *
+     * @param pWidth column width in 1/256 of a character
+     * @return column width in points
+     */
+    static double toPoints(final int pWidth)
+    {
+        final int pixels = (int) ((pWidth + 128 / 7) / 256d * 7);
+        return pixels * 0.75d;
+    }
+
+
+
+    private static int getCellKey(final int pRow, final int pColumn)
+    {
+        return pRow * CalendarLayout.NUM_COLUMNS + pColumn;
+    }
+
+
+
+    /**
+     * Render the calendar as a one page document, and write it to the given stream.
+     *
+     * @param pFormat the document format, PDF or SVG
+     * @param pOutput the stream to write to; the stream is not closed
+     * @throws IOException writing failed
+     */
+    public void write(final Format pFormat, final OutputStream pOutput)
+        throws IOException
+    {
+        final String title = "Abfallkalender " + layout.getYear();
+        final double width = columnX[columnX.length - 1];
+        final double height = rowY[rowY.length - 1];
+        final PrintCanvas canvas;
+        switch (pFormat) {
+            case Pdf:
+                canvas = new PdfCanvas(title, width, height);
+                break;
+            case Svg:
+                canvas = new SvgCanvas(title, width, height);
+                break;
+            default:
+                throw new IllegalArgumentException("not a print format: " + pFormat);
+        }
+        render(canvas);
+        canvas.finish(pOutput);
+    }
+
+
+
+    /**
+     * Draw the calendar onto the given canvas.
+     *
+     * @param pCanvas the canvas
+     * @throws IOException the QR code could not be drawn
+     */
+    public void render(final PrintCanvas pCanvas)
+        throws IOException
+    {
+        final List<CalendarLayout.Cell> cells = getPrintedCells();
+        for (final CalendarLayout.Cell cell : cells) {
+            if (isDrawn(cell)) {
+                drawFill(pCanvas, cell);
+            }
+        }
+        for (final CalendarLayout.Cell cell : cells) {
+            drawBorders(pCanvas, cell, StyleKey.Border.Thin);
+        }
+        for (final CalendarLayout.Cell cell : cells) {
+            drawBorders(pCanvas, cell, StyleKey.Border.Medium);
+        }
+        for (final CalendarLayout.Cell cell : cells) {
+            if (!cell.isBlank() && isDrawn(cell)) {
+                drawText(pCanvas, cell);
+            }
+        }
+
+        final CalendarLayout.Region qrCode = layout.getQrCodeAnchor();
+        pCanvas.drawPng(layout.getQrCodePng(), columnX[qrCode.getFirstColumn()], rowY[qrCode.getFirstRow()],
+            (columnX[qrCode.getLastColumn() + 1] - columnX[qrCode.getFirstColumn()]) * CalendarLayout.QR_CODE_SCALE_X,
+            rowY[qrCode.getLastRow() + 1] - rowY[qrCode.getFirstRow()]);
+    }
+
+
+
+    private List<CalendarLayout.Cell> getPrintedCells()
+    {
+        final List<CalendarLayout.Cell> result = new ArrayList<>();
+        for (final CalendarLayout.Row row : layout.getRows()) {
+            if (row.getIndex() <= layout.getLastRow()) {
+                for (final CalendarLayout.Cell cell : row.getCells()) {
+                    if (cell.getStyle() != null) {
+                        result.add(cell);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+
+
+    /**
+     * Determine if the fill and text of a cell are drawn. Of a merged region, only the top left cell is drawn, but
+     * covering the whole region.
+     */
+    private boolean isDrawn(final CalendarLayout.Cell pCell)
+    {
+        final CalendarLayout.Region region = regions.get(getCellKey(pCell.getRow(), pCell.getColumn()));
+        return region == null
+            || (region.getFirstRow() == pCell.getRow() && region.getFirstColumn() == pCell.getColumn());
+    }
+
+
+
+    private void drawFill(final PrintCanvas pCanvas, final CalendarLayout.Cell pCell)
+    {
+        final StyleKey style = pCell.getStyle();
+        final CalendarLayout.Region area = getArea(pCell);
+        final double x = columnX[area.getFirstColumn()];
+        final double y = rowY[area.getFirstRow()];
+        final double width = columnX[area.getLastColumn() + 1] - x;
+        final double height = rowY[area.getLastRow() + 1] - y;
+        switch (style.getFill()) {
+            case Solid:
+                pCanvas.fillRect(x, y, width, height, style.getFillColor());
+                break;
+            case Hatched:
+                pCanvas.fillHatched(x, y, width, height, style.getFillColor());
+                break;
+            case Gradient:
+                pCanvas.fillPathGradient(x, y, width, height, style.getGradientInnerColor(), style.getFillColor());
+                break;
+            default:
+                break;
+        }
+    }
+
+
+
+    /**
+     * Draw those borders of a cell which have the given line style. Borders inside of a merged region are hidden.
+     */
+    private void drawBorders(final PrintCanvas pCanvas, final CalendarLayout.Cell pCell,
+        final StyleKey.Border pBorder)
+    {
+        final StyleKey style = pCell.getStyle();
+        final CalendarLayout.Region area = getArea(pCell);
+        final int row = pCell.getRow();
+        final int column = pCell.getColumn();
+        final double left = columnX[column];
+        final double right = columnX[column + 1];
+        final double top = rowY[row];
+        final double bottom = rowY[row + 1];
+        final double width = pBorder == StyleKey.Border.Medium ? MEDIUM_LINE_WIDTH : THIN_LINE_WIDTH;
+        if (style.getTop() == pBorder && row == area.getFirstRow()) {
+            pCanvas.drawLine(left, top, right, top, width, PrintCanvas.BLACK);
+        }
+        if (style.getBottom() == pBorder && row == area.getLastRow()) {
+            pCanvas.drawLine(left, bottom, right, bottom, width, PrintCanvas.BLACK);
+        }
+        if (style.getLeft() == pBorder && column == area.getFirstColumn()) {
+            pCanvas.drawLine(left, top, left, bottom, width,
+                pBorder == StyleKey.Border.Thin ? StyleKey.SEPARATOR_COLOR : PrintCanvas.BLACK);
+        }
+        if (style.getRight() == pBorder && column == area.getLastColumn()) {
+            pCanvas.drawLine(right, top, right, bottom, width, PrintCanvas.BLACK);
+        }
+    }
+
+
+
+    /**
+     * Draw the text of a cell. As in Excel, text which is too long for its cell runs into the following cells, and
+     * cells with general alignment have their text at the bottom of the cell.
+     */
+    private void drawText(final PrintCanvas pCanvas, final CalendarLayout.Cell pCell)
+    {
+        final StyleKey style = pCell.getStyle();
+        final String text = pCell.isNumeric() ? String.valueOf(pCell.getNumber()) : pCell.getText();
+        final CalendarLayout.Region area = getArea(pCell);
+        final double left = columnX[area.getFirstColumn()];
+        final double right = columnX[area.getLastColumn() + 1];
+        final double top = rowY[area.getFirstRow()];
+        final double bottom = rowY[area.getLastRow() + 1];
+        final double fontSize = PrintCanvas.getFontSize(style.getFont());
+        final double middleBaseline = (top + bottom) / 2 + 0.35d * fontSize;  // half the height of capital letters
+        switch (style.getAlignment()) {
+            case Left:
+                pCanvas.drawText(left + TEXT_INDENT, middleBaseline, text, style.getFont(), PrintCanvas.Anchor.Start);
+                break;
+            case Center:
+                pCanvas.drawText((left + right) / 2, middleBaseline, text, style.getFont(),
+                    PrintCanvas.Anchor.Middle);
+                break;
+            default:
+                pCanvas.drawText(left + TEXT_INDENT, bottom - 0.25d * fontSize, text, style.getFont(),
+                    PrintCanvas.Anchor.Start);  // leave room for the descenders
+                break;
+        }
+    }
+
+
+
+    /**
+     * Determine the area which a cell covers.
+     *
+     * @param pCell the cell
+     * @return the merged region containing the cell, or a region of only the cell if it is not merged
+     */
+    private CalendarLayout.Region getArea(final CalendarLayout.Cell pCell)
+    {
+        final CalendarLayout.Region result = regions.get(getCellKey(pCell.getRow(), pCell.getColumn()));
+        return result != null ? result
+            : new CalendarLayout.Region(pCell.getRow(), pCell.getRow(), pCell.getColumn(), pCell.getColumn());
+    }
+}
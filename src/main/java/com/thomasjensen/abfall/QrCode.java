@@ -0,0 +1,780 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+
+/**
+ * Encoder for QR codes of short texts such as URLs, so that each calendar can link to its own online feed. Texts are
+ * encoded in byte mode (UTF-8), using the smallest of the QR code versions 1 to 10 which fits the text, which is
+ * enough for about 200 characters.
+ * <p>Instances are immutable. Encoded QR codes are cached by text, and the PNG image of a QR code is only created once,
+ * so that rendering many calendars with the same link costs nothing extra.</p>
+ */
+public final class QrCode
+{
+    /**
+     * Error correction level, which determines how much of the QR code may be damaged or covered.
+     */
+    public enum Ecc
+    {
+        /** about 7 % */
+        L(1),
+
+        /** about 15 % */
+        M(0),
+
+        /** about 25 % */
+        Q(3),
+
+        /** about 30 % */
+        H(2);
+
+        //
+
+        /** the value of the level in the format information */
+        private final int formatBits;
+
+
+
+        private Ecc(final int pFormatBits)
+        {
+            formatBits = pFormatBits;
+        }
+    }
+
+    //
+
+    /** error correction level of the QR codes printed on the calendars, which survives a crease or a smudge */
+    public static final Ecc DEFAULT_ECC = Ecc.M;
+
+    private static final int MAX_VERSION = 10;
+
+    /** number of error correction codewords per block, by level and version */
+    private static final int[][] ECC_CODEWORDS_PER_BLOCK = {
+        {-1, 7, 10, 15, 20, 26, 18, 20, 24, 30, 18},
+        {-1, 10, 16, 26, 18, 24, 16, 18, 22, 22, 26},
+        {-1, 13, 22, 18, 26, 18, 24, 18, 22, 20, 24},
+        {-1, 17, 28, 22, 16, 22, 28, 26, 26, 24, 28}};
+
+    /** number of error correction blocks, by level and version */
+    private static final int[][] NUM_BLOCKS = {
+        {-1, 1, 1, 1, 1, 1, 2, 2, 2, 2, 4},
+        {-1, 1, 1, 1, 2, 2, 4, 4, 4, 5, 5},
+        {-1, 1, 1, 2, 2, 4, 4, 6, 6, 8, 8},
+        {-1, 1, 1, 2, 4, 4, 4, 5, 6, 8, 8}};
+
+    /** the images are at least this wide, so that they stay sharp when scaled to the size of the logo */
+    private static final int MIN_IMAGE_SIZE_PX = 400;
+
+    /** penalty weights of the mask evaluation, as given by the QR code standard */
+    private static final int PENALTY_RUN = 3;
+
+    private static final int PENALTY_BLOCK = 3;
+
+    private static final int PENALTY_FINDER_LIKE = 40;
+
+    private static final int PENALTY_BALANCE = 10;
+
+    /** encoded QR codes by text, using the {@link #DEFAULT_ECC} */
+    private static final Map<String, QrCode> CACHE = new ConcurrentHashMap<>();
+
+    private final int version;
+
+    /** width and height in modules */
+    private final int size;
+
+    /** the mask pattern which was applied */
+    private final int mask;
+
+    /** the dark modules, row by row */
+    private final boolean[] modules;
+
+    /** the PNG image, created when it is first needed */
+    private volatile byte[] png = null;
+
+
+
+    private QrCode(final int pVersion, final int pMask, final boolean[] pModules)
+    {
+        version = pVersion;
+        size = getSize(pVersion);
+        mask = pMask;
+        modules = pModules;
+    }
+
+
+
+    /**
+     * Get the QR code of the given text, using the {@link #DEFAULT_ECC}. It is encoded only on the first request.
+     *
+     * @param pText the text, for example a URL
+     * @return the QR code
+     * @throws IllegalArgumentException the text is too long
+     */
+    public static QrCode forText(final String pText)
+    {
+        return CACHE.computeIfAbsent(pText, t -> encode(t, DEFAULT_ECC));
+    }
+
+
+
+    /**
+     * Encode a text as a QR code, using the smallest version which fits it, and the mask with the lowest penalty.
+     *
+     * @param pText the text, for example a URL
+     * @param pEcc the error correction level
+     * @return the QR code
+     * @throws IllegalArgumentException the text is too long
+     */
+    public static QrCode encode(final String pText, final Ecc pEcc)
+    {
+        final byte[] data = pText.getBytes(StandardCharsets.UTF_8);
+        int ver = 1;
+        while (getNumDataCodewords(ver, pEcc) * 8 < 4 + getCountBits(ver) + data.length * 8) {
+            if (++ver > MAX_VERSION) {
+                final int maxBytes = (getNumDataCodewords(MAX_VERSION, pEcc) * 8 - 4 - getCountBits(MAX_VERSION)) / 8;
+                throw new IllegalArgumentException("Text too long for a QR code: " + data.length + " bytes (UTF-8), "
+                    + "at most " + maxBytes + " allowed");
+            }
+        }
+        final byte[] codewords = addErrorCorrection(encodeData(data, ver, pEcc), ver, pEcc);
+
+        final int sz = getSize(ver);
+        final boolean[] dark = new boolean[sz * sz];
+        final boolean[] function = new boolean[sz * sz];
+        drawFunctionPatterns(dark, function, ver, pEcc);
+        drawCodewords(dark, function, sz, codewords);
+
+        int bestMask = 0;
+        int bestPenalty = Integer.MAX_VALUE;
+        for (int m = 0; m < 8; m++) {
+            applyMask(dark, function, sz, m);
+            drawFormatBits(dark, function, sz, pEcc, m);
+            final int penalty = getPenalty(dark, sz);
+            if (penalty < bestPenalty) {
+                bestMask = m;
+                bestPenalty = penalty;
+            }
+            applyMask(dark, function, sz, m);  // XOR again to undo
+        }
+        applyMask(dark, function, sz, bestMask);
+        drawFormatBits(dark, function, sz, pEcc, bestMask);
+        return new QrCode(ver, bestMask, dark);
+    }
+
+
+
+    public int getVersion()
+    {
+        return version;
+    }
+
+
+
+    /**
+     * Getter.
+     * @return the width and height in modules, without quiet zone
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+
+
+    public int getMask()
+    {
+        return mask;
+    }
+
+
+
+    /**
+     * Determine the color of a module.
+     *
+     * @param pX column, from the left
+     * @param pY row, from the top
+     * @return <code>true</code> if the module is dark
+     */
+    public boolean isDark(final int pX, final int pY)
+    {
+        return modules[pY * size + pX];
+    }
+
+
+
+    /**
+     * Get the QR code as a black and white PNG image without quiet zone, which is created on the first call.
+     *
+     * @return the PNG file; the array must not be modified, because it is shared
+     */
+    public byte[] getPng()
+    {
+        byte[] result = png;
+        if (result == null) {
+            result = createPng();
+            png = result;
+        }
+        return result;
+    }
+
+
+
+    private byte[] createPng()
+    {
+        final int scale = (MIN_IMAGE_SIZE_PX + size - 1) / size;
+        final int width = size * scale;
+        final int rowBytes = (width + 7) / 8;
+        final byte[] raw = new byte[(rowBytes + 1) * width];
+        for (int y = 0; y < width; y++) {
+            final int rowStart = y * (rowBytes + 1) + 1;  // after the filter type byte, which is 0 (none)
+            for (int x = 0; x < width; x++) {
+                if (isDark(x / scale, y / scale)) {
+                    raw[rowStart + x / 8] |= 0x80 >>> (x % 8);
+                }
+            }
+        }
+
+        try {
+            final ByteArrayOutputStream idat = new ByteArrayOutputStream();
+            final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try (DeflaterOutputStream dos = new DeflaterOutputStream(idat, deflater)) {
+                dos.write(raw);
+            }
+            finally {
+                deflater.end();
+            }
+
+            final ByteArrayOutputStream result = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(result);
+            out.write(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'});
+            final ByteArrayOutputStream ihdr = new ByteArrayOutputStream();
+            final DataOutputStream ihdrOut = new DataOutputStream(ihdr);
+            ihdrOut.writeInt(width);
+            ihdrOut.writeInt(width);
+            ihdrOut.write(new byte[]{1, 3, 0, 0, 0});  // bit depth 1, indexed color, no interlace
+            writeChunk(out, "IHDR", ihdr.toByteArray());
+            writeChunk(out, "PLTE", new byte[]{(byte) 0xff, (byte) 0xff, (byte) 0xff, 0, 0, 0});
+            writeChunk(out, "IDAT", idat.toByteArray());
+            writeChunk(out, "IEND", new byte[0]);
+            return result.toByteArray();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);  // cannot happen when writing to memory
+        }
+    }
+
+
+
+    private static void writeChunk(final DataOutputStream pOut, final String pType, final byte[] pData)
+        throws IOException
+    {
+        final byte[] type = pType.getBytes(StandardCharsets.US_ASCII);
+        final CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(pData);
+        pOut.writeInt(pData.length);
+        pOut.write(type);
+        pOut.write(pData);
+        pOut.writeInt((int) crc.getValue());
+    }
+
+
+
+    private static int getSize(final int pVersion)
+    {
+        return pVersion * 4 + 17;
+    }
+
+
+
+    /**
+     * Determine the number of bits of the version which can hold codewords, which is everything except the function
+     * patterns.
+     */
+    private static int getNumRawDataModules(final int pVersion)
+    {
+        int result = (16 * pVersion + 128) * pVersion + 64;
+        if (pVersion >= 2) {
+            final int numAlign = pVersion / 7 + 2;
+            result -= (25 * numAlign - 10) * numAlign - 55;
+            if (pVersion >= 7) {
+                result -= 36;
+            }
+        }
+        return result;
+    }
+
+
+
+    private static int getNumDataCodewords(final int pVersion, final Ecc pEcc)
+    {
+        return getNumRawDataModules(pVersion) / 8
+            - ECC_CODEWORDS_PER_BLOCK[pEcc.ordinal()][pVersion] * NUM_BLOCKS[pEcc.ordinal()][pVersion];
+    }
+
+
+
+    /** number of bits of the character count of byte mode */
+    private static int getCountBits(final int pVersion)
+    {
+        return pVersion < 10 ? 8 : 16;
+    }
+
+
+
+    /**
+     * Create the data codewords: the mode indicator of byte mode, the length, the data, a terminator, and padding.
+     */
+    private static byte[] encodeData(final byte[] pData, final int pVersion, final Ecc pEcc)
+    {
+        final byte[] result = new byte[getNumDataCodewords(pVersion, pEcc)];
+        int bitPos = appendBits(result, 0, 0x4, 4);
+        bitPos = appendBits(result, bitPos, pData.length, getCountBits(pVersion));
+        for (final byte b : pData) {
+            bitPos = appendBits(result, bitPos, b & 0xff, 8);
+        }
+        bitPos += Math.min(4, result.length * 8 - bitPos);  // terminator, which is zero
+        bitPos = (bitPos + 7) / 8 * 8;
+        for (int pad = 0xec; bitPos < result.length * 8; pad ^= 0xec ^ 0x11) {
+            bitPos = appendBits(result, bitPos, pad, 8);
+        }
+        return result;
+    }
+
+
+
+    private static int appendBits(final byte[] pBuffer, final int pBitPos, final int pValue, final int pLength)
+    {
+        for (int i = pLength - 1; i >= 0; i--) {
+            final int pos = pBitPos + pLength - 1 - i;
+            if (((pValue >>> i) & 1) != 0) {
+                pBuffer[pos >>> 3] |= 0x80 >>> (pos & 7);
+            }
+        }
+        return pBitPos + pLength;
+    }
+
+
+
+    /**
+     * Split the data into blocks, add the Reed-Solomon error correction codewords to each block, and interleave the
+     * blocks.
+     */
+    private static byte[] addErrorCorrection(final byte[] pData, final int pVersion, final Ecc pEcc)
+    {
+        final int numBlocks = NUM_BLOCKS[pEcc.ordinal()][pVersion];
+        final int blockEccLen = ECC_CODEWORDS_PER_BLOCK[pEcc.ordinal()][pVersion];
+        final int rawCodewords = getNumRawDataModules(pVersion) / 8;
+        final int numShortBlocks = numBlocks - rawCodewords % numBlocks;
+        final int shortBlockLen = rawCodewords / numBlocks;
+        final byte[] generator = getGenerator(blockEccLen);
+
+        // each block gets the length of a long block; short blocks have a gap before their error correction
+        final byte[][] blocks = new byte[numBlocks][];
+        for (int i = 0, k = 0; i < numBlocks; i++) {
+            final int dataLen = shortBlockLen - blockEccLen + (i < numShortBlocks ? 0 : 1);
+            blocks[i] = new byte[shortBlockLen + 1];
+            System.arraycopy(pData, k, blocks[i], 0, dataLen);
+            final byte[] ecc = getRemainder(pData, k, dataLen, generator);
+            System.arraycopy(ecc, 0, blocks[i], shortBlockLen + 1 - blockEccLen, blockEccLen);
+            k += dataLen;
+        }
+
+        final byte[] result = new byte[rawCodewords];
+        int n = 0;
+        for (int i = 0; i < blocks[0].length; i++) {
+            for (int j = 0; j < numBlocks; j++) {
+                if (i != shortBlockLen - blockEccLen || j >= numShortBlocks) {
+                    result[n++] = blocks[j][i];
+                }
+            }
+        }
+        return result;
+    }
+
+
+
+    /**
+     * Compute the generator polynomial of the given degree, without its leading coefficient, which is 1.
+     */
+    private static byte[] getGenerator(final int pDegree)
+    {
+        final byte[] result = new byte[pDegree];
+        result[pDegree - 1] = 1;
+        int root = 1;
+        for (int i = 0; i < pDegree; i++) {
+            for (int j = 0; j < pDegree; j++) {
+                result[j] = (byte) multiply(result[j] & 0xff, root);
+                if (j + 1 < pDegree) {
+                    result[j] ^= result[j + 1];
+                }
+            }
+            root = multiply(root, 0x02);
+        }
+        return result;
+    }
+
+
+
+    private static byte[] getRemainder(final byte[] pData, final int pOffset, final int pLength,
+        final byte[] pGenerator)
+    {
+        final byte[] result = new byte[pGenerator.length];
+        for (int i = pOffset; i < pOffset + pLength; i++) {
+            final int factor = (pData[i] ^ result[0]) & 0xff;
+            System.arraycopy(result, 1, result, 0, result.length - 1);
+            result[result.length - 1] = 0;
+            for (int j = 0; j < result.length; j++) {
+                result[j] ^= multiply(pGenerator[j] & 0xff, factor);
+            }
+        }
+        return result;
+    }
+
+
+
+    /** multiplication in GF(2^8) modulo x^8 + x^4 + x^3 + x^2 + 1 */
+    private static int multiply(final int pX, final int pY)
+    {
+        int result = 0;
+        for (int i = 7; i >= 0; i--) {
+            result = (result << 1) ^ ((result >>> 7) * 0x11d);
+            result ^= ((pY >>> i) & 1) * pX;
+        }
+        return result;
+    }
+
+
+
+    private static void drawFunctionPatterns(final boolean[] pDark, final boolean[] pFunction, final int pVersion,
+        final Ecc pEcc)
+    {
+        final int sz = getSize(pVersion);
+        for (int i = 0; i < sz; i++) {
+            setFunction(pDark, pFunction, sz, 6, i, i % 2 == 0);
+            setFunction(pDark, pFunction, sz, i, 6, i % 2 == 0);
+        }
+        drawFinderPattern(pDark, pFunction, sz, 3, 3);
+        drawFinderPattern(pDark, pFunction, sz, sz - 4, 3);
+        drawFinderPattern(pDark, pFunction, sz, 3, sz - 4);
+
+        final int[] alignPos = getAlignmentPatternPositions(pVersion);
+        final int last = alignPos.length - 1;
+        for (int i = 0; i <= last; i++) {
+            for (int j = 0; j <= last; j++) {
+                if (!(i == 0 && j == 0 || i == 0 && j == last || i == last && j == 0)) {  // not on a finder
+                    for (int dy = -2; dy <= 2; dy++) {
+                        for (int dx = -2; dx <= 2; dx++) {
+                            setFunction(pDark, pFunction, sz, alignPos[i] + dx, alignPos[j] + dy,
+                                Math.max(Math.abs(dx), Math.abs(dy)) != 1);
+                        }
+                    }
+                }
+            }
+        }
+
+        drawFormatBits(pDark, pFunction, sz, pEcc, 0);  // reserves the area, overwritten when the mask is known
+        if (pVersion >= 7) {
+            int rem = pVersion;
+            for (int i = 0; i < 12; i++) {
+                rem = (rem << 1) ^ ((rem >>> 11) * 0x1f25);
+            }
+            final int bits = pVersion << 12 | rem;
+            for (int i = 0; i < 18; i++) {
+                final boolean bit = ((bits >>> i) & 1) != 0;
+                final int a = sz - 11 + i % 3;
+                final int b = i / 3;
+                setFunction(pDark, pFunction, sz, a, b, bit);
+                setFunction(pDark, pFunction, sz, b, a, bit);
+            }
+        }
+    }
+
+
+
+    /**
+     * Draw a finder pattern and the separator around it, as far as it is inside the symbol.
+     */
+    private static void drawFinderPattern(final boolean[] pDark, final boolean[] pFunction, final int pSize,
+        final int pX, final int pY)
+    {
+        for (int dy = -4; dy <= 4; dy++) {
+            for (int dx = -4; dx <= 4; dx++) {
+                final int x = pX + dx;
+                final int y = pY + dy;
+                if (x >= 0 && x < pSize && y >= 0 && y < pSize) {
+                    final int dist = Math.max(Math.abs(dx), Math.abs(dy));
+                    setFunction(pDark, pFunction, pSize, x, y, dist != 2 && dist != 4);
+                }
+            }
+        }
+    }
+
+
+
+    private static int[] getAlignmentPatternPositions(final int pVersion)
+    {
+        if (pVersion == 1) {
+            return new int[0];
+        }
+        final int numAlign = pVersion / 7 + 2;
+        final int step = (pVersion * 4 + numAlign * 2 + 1) / (numAlign * 2 - 2) * 2;
+        final int[] result = new int[numAlign];
+        result[0] = 6;
+        for (int i = result.length - 1, pos = getSize(pVersion) - 7; i >= 1; i--, pos -= step) {
+            result[i] = pos;
+        }
+        return result;
+    }
+
+
+
+    private static void drawFormatBits(final boolean[] pDark, final boolean[] pFunction, final int pSize,
+        final Ecc pEcc, final int pMask)
+    {
+        final int data = pEcc.formatBits << 3 | pMask;
+        int rem = data;
+        for (int i = 0; i < 10; i++) {
+            rem = (rem << 1) ^ ((rem >>> 9) * 0x537);
+        }
+        final int bits = (data << 10 | rem) ^ 0x5412;
+
+        // first copy, around the top left finder
+        for (int i = 0; i <= 5; i++) {
+            setFunction(pDark, pFunction, pSize, 8, i, ((bits >>> i) & 1) != 0);
+        }
+        setFunction(pDark, pFunction, pSize, 8, 7, ((bits >>> 6) & 1) != 0);
+        setFunction(pDark, pFunction, pSize, 8, 8, ((bits >>> 7) & 1) != 0);
+        setFunction(pDark, pFunction, pSize, 7, 8, ((bits >>> 8) & 1) != 0);
+        for (int i = 9; i < 15; i++) {
+            setFunction(pDark, pFunction, pSize, 14 - i, 8, ((bits >>> i) & 1) != 0);
+        }
+
+        // second copy, split between the other two finders
+        for (int i = 0; i < 8; i++) {
+            setFunction(pDark, pFunction, pSize, pSize - 1 - i, 8, ((bits >>> i) & 1) != 0);
+        }
+        for (int i = 8; i < 15; i++) {
+            setFunction(pDark, pFunction, pSize, 8, pSize - 15 + i, ((bits >>> i) & 1) != 0);
+        }
+        setFunction(pDark, pFunction, pSize, 8, pSize - 8, true);  // always dark
+    }
+
+
+
+    private static void setFunction(final boolean[] pDark, final boolean[] pFunction, final int pSize, final int pX,
+        final int pY, final boolean pIsDark)
+    {
+        pDark[pY * pSize + pX] = pIsDark;
+        pFunction[pY * pSize + pX] = true;
+    }
+
+
+
+    /**
+     * Place the codewords in the modules which are not part of a function pattern, in two-module wide columns which
+     * zigzag up and down from the right edge. Modules left over are light.
+     */
+    private static void drawCodewords(final boolean[] pDark, final boolean[] pFunction, final int pSize,
+        final byte[] pCodewords)
+    {
+        int i = 0;
+        for (int right = pSize - 1; right >= 1; right -= 2) {
+            if (right == 6) {
+                right = 5;  // skip the vertical timing pattern
+            }
+            final boolean upward = ((right + 1) & 2) == 0;
+            for (int vert = 0; vert < pSize; vert++) {
+                final int y = upward ? pSize - 1 - vert : vert;
+                for (int j = 0; j < 2; j++) {
+                    final int idx = y * pSize + right - j;
+                    if (!pFunction[idx] && i < pCodewords.length * 8) {
+                        pDark[idx] = ((pCodewords[i >>> 3] >>> (7 - (i & 7))) & 1) != 0;
+                        i++;
+                    }
+                }
+            }
+        }
+    }
+
+
+
+    /**
+     * Invert the data modules selected by the given mask pattern. Applying the same mask twice undoes it.
+     */
+    private static void applyMask(final boolean[] pDark, final boolean[] pFunction, final int pSize, final int pMask)
+    {
+        for (int y = 0; y < pSize; y++) {
+            for (int x = 0; x < pSize; x++) {
+                final boolean invert;
+                switch (pMask) {
+                    case 0:
+                        invert = (x + y) % 2 == 0;
+                        break;
+                    case 1:
+                        invert = y % 2 == 0;
+                        break;
+                    case 2:
+                        invert = x % 3 == 0;
+                        break;
+                    case 3:
+                        invert = (x + y) % 3 == 0;
+                        break;
+                    case 4:
+                        invert = (x / 3 + y / 2) % 2 == 0;
+                        break;
+                    case 5:
+                        invert = x * y % 2 + x * y % 3 == 0;
+                        break;
+                    case 6:
+                        invert = (x * y % 2 + x * y % 3) % 2 == 0;
+                        break;
+                    default:
+                        invert = ((x + y) % 2 + x * y % 3) % 2 == 0;
+                        break;
+                }
+                final int idx = y * pSize + x;
+                if (invert && !pFunction[idx]) {
+                    pDark[idx] = !pDark[idx];
+                }
+            }
+        }
+    }
+
+
+
+    /**
+     * Evaluate how hard the symbol is to read, by the four penalty rules of the QR code standard: long runs of the same
+     * color, 2x2 blocks of the same color, patterns which look like a finder, and an imbalance of dark and light.
+     */
+    private static int getPenalty(final boolean[] pDark, final int pSize)
+    {
+        int result = 0;
+        for (int line = 0; line < pSize; line++) {
+            result += getLinePenalty(pDark, pSize, line, true) + getLinePenalty(pDark, pSize, line, false);
+        }
+
+        int dark = 0;
+        for (int y = 0; y < pSize; y++) {
+            for (int x = 0; x < pSize; x++) {
+                final boolean color = pDark[y * pSize + x];
+                if (color) {
+                    dark++;
+                }
+                if (x < pSize - 1 && y < pSize - 1 && color == pDark[y * pSize + x + 1]
+                    && color == pDark[(y + 1) * pSize + x] && color == pDark[(y + 1) * pSize + x + 1])
+                {
+                    result += PENALTY_BLOCK;
+                }
+            }
+        }
+
+        // deviation from 50 % dark in steps of 5 %
+        final int total = pSize * pSize;
+        result += ((Math.abs(dark * 20 - total * 10) + total - 1) / total - 1) * PENALTY_BALANCE;
+        return result;
+    }
+
+
+
+    private static int getLinePenalty(final boolean[] pDark, final int pSize, final int pLine,
+        final boolean pHorizontal)
+    {
+        int result = 0;
+        final int[] runs = new int[7];
+        boolean runColor = false;
+        int runLength = 0;
+        for (int i = 0; i < pSize; i++) {
+            final boolean color = isDark(pDark, pSize, pLine, i, pHorizontal);
+            if (color == runColor) {
+                runLength++;
+            }
+            else {
+                result += getRunPenalty(runLength);
+                addRun(runs, runLength, pSize);
+                if (!runColor) {
+                    result += countFinderLike(runs) * PENALTY_FINDER_LIKE;
+                }
+                runColor = color;
+                runLength = 1;
+            }
+        }
+        result += getRunPenalty(runLength);
+        if (runColor) {
+            addRun(runs, runLength, pSize);
+            runLength = 0;
+        }
+        addRun(runs, runLength + pSize, pSize);  // the light area after the symbol belongs to the last light run
+        result += countFinderLike(runs) * PENALTY_FINDER_LIKE;
+        return result;
+    }
+
+
+
+    private static int getRunPenalty(final int pRunLength)
+    {
+        return pRunLength >= 5 ? PENALTY_RUN + pRunLength - 5 : 0;
+    }
+
+
+
+    /**
+     * Record the length of a run of modules of the same color in a line. The lengths of the last seven runs are kept,
+     * most recent first. The first run of a line is light, and includes the light area before the symbol.
+     */
+    private static void addRun(final int[] pRuns, final int pRunLength, final int pSize)
+    {
+        final int runLength = pRuns[0] == 0 ? pRunLength + pSize : pRunLength;
+        System.arraycopy(pRuns, 0, pRuns, 1, pRuns.length - 1);
+        pRuns[0] = runLength;
+    }
+
+
+
+    /**
+     * Determine how often the last runs of a line, which must end with a light run, look like a finder: dark, light,
+     * dark, dark, dark, light, dark in any module width, with four widths of light before or after it. Both sides count
+     * separately.
+     */
+    private static int countFinderLike(final int[] pRuns)
+    {
+        final int n = pRuns[1];
+        final boolean core = n > 0 && pRuns[2] == n && pRuns[3] == n * 3 && pRuns[4] == n && pRuns[5] == n;
+        return (core && pRuns[0] >= n * 4 && pRuns[6] >= n ? 1 : 0)
+            + (core && pRuns[6] >= n * 4 && pRuns[0] >= n ? 1 : 0);
+    }
+
+
+
+    private static boolean isDark(final boolean[] pDark, final int pSize, final int pLine, final int pPos,
+        final boolean pHorizontal)
+    {
+        if (pPos < 0 || pPos >= pSize) {
+            return false;
+        }
+        return pHorizontal ? pDark[pLine * pSize + pPos] : pDark[pPos * pSize + pLine];
+    }
+}
@@ -0,0 +1,744 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+
+/**
+ * A recurrence rule (RRULE) as per RFC 5545 section 3.3.10, which describes a series of pickup dates such as "every
+ * second Tuesday". Only dates matter to us, so the rule parts for times of day are ignored. Frequencies below daily,
+ * BYWEEKNO, and BYYEARDAY are not supported; trash calendars do not use them.
+ * <p>The occurrences are generated lazily, one period of the rule (day, week, month, or year) at a time, and only
+ * within a window of dates. Unless the series is limited by COUNT, the periods before the window are skipped by
+ * arithmetic, so that the cost depends on the number of occurrences in the window, not on the length of the series.
+ * With COUNT, the occurrences before the window must be counted; for daily and simple weekly rules, this is arithmetic,
+ * too. Instances are immutable.</p>
+ */
+public final class RecurrenceRule
+{
+    /**
+     * The FREQ of a rule, which determines the length of its periods.
+     */
+    public enum Frequency
+    {
+        Daily,
+        Weekly,
+        Monthly,
+        Yearly;
+    }
+
+    //
+
+    /** the weekday codes of RFC 5545, in the order of {@link DayOfWeek} */
+    private static final String[] WEEKDAY_CODES = {"MO", "TU", "WE", "TH", "FR", "SA", "SU"};
+
+    private final Frequency frequency;
+
+    /** distance of the periods which have occurrences, in periods (at least 1) */
+    private final int interval;
+
+    /** maximum number of occurrences, including the start of the series, or 0 if unlimited */
+    private final int count;
+
+    /** the last day of the series, or <code>null</code> if unlimited */
+    private final LocalDate until;
+
+    private final DayOfWeek weekStart;
+
+    /** the BYMONTH values (1-12), or <code>null</code> */
+    private final int[] byMonth;
+
+    /** the BYMONTHDAY values (1 to 31, or -1 to -31 counting from the end of the month), or <code>null</code> */
+    private final int[] byMonthDay;
+
+    /** the weekdays of the BYDAY values, or <code>null</code> */
+    private final DayOfWeek[] byDay;
+
+    /** the ordinals of the BYDAY values, like 2 for <code>2TU</code> or -1 for <code>-1FR</code>; 0 if none */
+    private final int[] byDayOrdinal;
+
+    /** the BYSETPOS values, or <code>null</code> */
+    private final int[] bySetPos;
+
+
+
+    private RecurrenceRule(final Frequency pFrequency, final int pInterval, final int pCount, final LocalDate pUntil,
+        final DayOfWeek pWeekStart, final int[] pByMonth, final int[] pByMonthDay, final DayOfWeek[] pByDay,
+        final int[] pByDayOrdinal, final int[] pBySetPos)
+    {
+        frequency = pFrequency;
+        interval = pInterval;
+        count = pCount;
+        until = pUntil;
+        weekStart = pWeekStart;
+        byMonth = pByMonth;
+        byMonthDay = pByMonthDay;
+        byDay = pByDay;
+        byDayOrdinal = pByDayOrdinal;
+        bySetPos = pBySetPos;
+    }
+
+
+
+    /**
+     * Parse the value of an RRULE property.
+     *
+     * @param pValue the value, like <code>FREQ=WEEKLY;INTERVAL=2;BYDAY=TU</code>
+     * @return the rule
+     * @throws IllegalArgumentException the rule is invalid, or uses parts which are not supported
+     */
+    public static RecurrenceRule parse(final String pValue)
+    {
+        Frequency frequency = null;
+        int interval = 1;
+        int count = 0;
+        LocalDate until = null;
+        DayOfWeek weekStart = DayOfWeek.MONDAY;
+        int[] byMonth = null;
+        int[] byMonthDay = null;
+        DayOfWeek[] byDay = null;
+        int[] byDayOrdinal = null;
+        int[] bySetPos = null;
+
+        for (final String part : pValue.split(";")) {
+            final int eqPos = part.indexOf('=');
+            if (eqPos < 0) {
+                if (part.trim().isEmpty()) {
+                    continue;
+                }
+                throw new IllegalArgumentException("Invalid rule part: " + part);
+            }
+            final String name = part.substring(0, eqPos).trim().toUpperCase(Locale.ROOT);
+            final String value = part.substring(eqPos + 1).trim().toUpperCase(Locale.ROOT);
+            switch (name) {
+                case "FREQ":
+                    frequency = parseFrequency(value);
+                    break;
+                case "INTERVAL":
+                    interval = parseNumbers(value, 1, Integer.MAX_VALUE, false)[0];
+                    break;
+                case "COUNT":
+                    count = parseNumbers(value, 1, Integer.MAX_VALUE, false)[0];
+                    break;
+                case "UNTIL":
+                    until = parseUntil(value);
+                    break;
+                case "WKST":
+                    weekStart = parseWeekday(value);
+                    break;
+                case "BYMONTH":
+                    byMonth = parseNumbers(value, 1, 12, false);
+                    break;
+                case "BYMONTHDAY":
+                    byMonthDay = parseNumbers(value, 1, 31, true);
+                    break;
+                case "BYDAY":
+                    final String[] days = value.split(",");
+                    byDay = new DayOfWeek[days.length];
+                    byDayOrdinal = new int[days.length];
+                    for (int i = 0; i < days.length; i++) {
+                        final String day = days[i].trim();
+                        if (day.length() < 2) {
+                            throw new IllegalArgumentException("Invalid weekday: " + day);
+                        }
+                        byDay[i] = parseWeekday(day.substring(day.length() - 2));
+                        if (day.length() > 2) {
+                            byDayOrdinal[i] = parseNumbers(day.substring(0, day.length() - 2), 1, 53, true)[0];
+                        }
+                    }
+                    break;
+                case "BYSETPOS":
+                    bySetPos = parseNumbers(value, 1, 366, true);
+                    break;
+                case "BYHOUR":
+                case "BYMINUTE":
+                case "BYSECOND":
+                    break;  // all occurrences on the same day are the same pickup
+                default:
+                    throw new IllegalArgumentException("Unsupported rule part: " + name);
+            }
+        }
+
+        if (frequency == null) {
+            throw new IllegalArgumentException("Rule without FREQ: " + pValue);
+        }
+        if (byDayOrdinal != null && (frequency == Frequency.Daily || frequency == Frequency.Weekly)) {
+            for (final int ordinal : byDayOrdinal) {
+                if (ordinal != 0) {
+                    throw new IllegalArgumentException("Numbered weekdays require a monthly or yearly rule: " + pValue);
+                }
+            }
+        }
+        return new RecurrenceRule(frequency, interval, count, until, weekStart, byMonth, byMonthDay, byDay,
+            byDayOrdinal, bySetPos);
+    }
+
+
+
+    private static Frequency parseFrequency(final String pValue)
+    {
+        for (final Frequency frequency : Frequency.values()) {
+            if (frequency.name().equalsIgnoreCase(pValue)) {
+                return frequency;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported frequency: " + pValue);
+    }
+
+
+
+    private static DayOfWeek parseWeekday(final String pValue)
+    {
+        for (int i = 0; i < WEEKDAY_CODES.length; i++) {
+            if (WEEKDAY_CODES[i].equals(pValue)) {
+                return DayOfWeek.of(i + 1);
+            }
+        }
+        throw new IllegalArgumentException("Invalid weekday: " + pValue);
+    }
+
+
+
+    /**
+     * Parse the date of an UNTIL value. A date-time value is cut to its date, which is precise enough for a calendar.
+     *
+     * @param pValue the value, like <code>20261231</code> or <code>20261231T235959Z</code>
+     * @return the date
+     */
+    private static LocalDate parseUntil(final String pValue)
+    {
+        try {
+            return LocalDate.parse(pValue.substring(0, Math.min(8, pValue.length())), DateTimeFormatter.BASIC_ISO_DATE);
+        }
+        catch (DateTimeException e) {
+            throw new IllegalArgumentException("Invalid UNTIL: " + pValue, e);
+        }
+    }
+
+
+
+    /**
+     * Parse a comma-separated list of numbers.
+     *
+     * @param pValue the list
+     * @param pMin the lowest allowed absolute value
+     * @param pMax the highest allowed absolute value
+     * @param pSigned whether negative values are allowed
+     * @return the numbers
+     */
+    private static int[] parseNumbers(final String pValue, final int pMin, final int pMax, final boolean pSigned)
+    {
+        final String[] parts = pValue.split(",");
+        final int[] result = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            final int number;
+            try {
+                number = Integer.parseInt(parts[i].trim());
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number: " + parts[i], e);
+            }
+            if (Math.abs(number) < pMin || Math.abs(number) > pMax || (number < 0 && !pSigned)) {
+                throw new IllegalArgumentException("Number out of range: " + number);
+            }
+            result[i] = number;
+        }
+        return result;
+    }
+
+
+
+    public Frequency getFrequency()
+    {
+        return frequency;
+    }
+
+
+
+    /**
+     * Getter.
+     * @return the number of occurrences as given by COUNT, or 0 if the rule has none
+     */
+    public int getCount()
+    {
+        return count;
+    }
+
+
+
+    /**
+     * Getter.
+     * @return the last day of the series as given by UNTIL, or <code>null</code> if the rule has none
+     */
+    public LocalDate getUntil()
+    {
+        return until;
+    }
+
+
+
+    /**
+     * Generate the occurrences of the rule in a window of dates. The iterator computes them lazily, one period at a
+     * time, starting with the first period which overlaps the window.
+     *
+     * @param pStart the start of the series (DTSTART), which is always its first occurrence
+     * @param pFrom the first day of the window
+     * @param pTo the last day of the window
+     * @return the occurrences in the window, in ascending order
+     */
+    public Iterator<LocalDate> occurrences(final LocalDate pStart, final LocalDate pFrom, final LocalDate pTo)
+    {
+        return new OccurrenceIterator(pStart, pFrom, pTo);
+    }
+
+
+
+    /**
+     * Determine the number of occurrences in each full period, if it is the same for all periods.
+     *
+     * @return the number of occurrences per period, or 0 if it depends on the period
+     */
+    private int getOccurrencesPerPeriod()
+    {
+        if (byMonth != null || byMonthDay != null || bySetPos != null) {
+            return 0;
+        }
+        if (frequency == Frequency.Daily) {
+            return byDay == null ? 1 : 0;
+        }
+        if (frequency == Frequency.Weekly) {
+            return byDay == null ? 1 : (int) Arrays.stream(byDay).distinct().count();
+        }
+        return 0;
+    }
+
+
+
+    private static boolean contains(final int[] pValues, final int pValue)
+    {
+        for (final int value : pValues) {
+            if (value == pValue) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+
+    private boolean isWeekdayIncluded(final DayOfWeek pWeekday)
+    {
+        for (final DayOfWeek day : byDay) {
+            if (day == pWeekday) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+
+    private boolean isMonthDayIncluded(final LocalDate pDate)
+    {
+        final int dayOfMonth = pDate.getDayOfMonth();
+        final int length = pDate.lengthOfMonth();
+        for (final int value : byMonthDay) {
+            if (value > 0 ? value == dayOfMonth : length + 1 + value == dayOfMonth) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+
+    /**
+     * Check the BYxxx parts which limit the days of a daily or weekly rule.
+     *
+     * @param pDate a day of the period
+     * @return <code>true</code> if the day is an occurrence
+     */
+    private boolean isIncluded(final LocalDate pDate)
+    {
+        return (byMonth == null || contains(byMonth, pDate.getMonthValue()))
+            && (byMonthDay == null || isMonthDayIncluded(pDate))
+            && (frequency != Frequency.Daily || byDay == null || isWeekdayIncluded(pDate.getDayOfWeek()));
+    }
+
+
+
+    /**
+     * Add the occurrences of one period to the given list, unsorted and possibly with duplicates.
+     *
+     * @param pPeriodStart the first day of the period
+     * @param pStart the start of the series
+     * @param pResult the list to add to
+     */
+    private void addCandidates(final LocalDate pPeriodStart, final LocalDate pStart, final List<LocalDate> pResult)
+    {
+        switch (frequency) {
+            case Daily:
+                if (isIncluded(pPeriodStart)) {
+                    pResult.add(pPeriodStart);
+                }
+                break;
+            case Weekly:
+                if (byDay == null) {
+                    addIfIncluded(pPeriodStart.with(TemporalAdjusters.nextOrSame(pStart.getDayOfWeek())), pResult);
+                }
+                else {
+                    for (final DayOfWeek day : byDay) {
+                        addIfIncluded(pPeriodStart.with(TemporalAdjusters.nextOrSame(day)), pResult);
+                    }
+                }
+                break;
+            case Monthly:
+                if (byMonth == null || contains(byMonth, pPeriodStart.getMonthValue())) {
+                    addMonthCandidates(pPeriodStart, pStart, pResult);
+                }
+                break;
+            default:
+                if (byMonth != null) {
+                    for (final int month : byMonth) {
+                        addMonthCandidates(pPeriodStart.withMonth(month), pStart, pResult);
+                    }
+                }
+                else if (byMonthDay != null) {
+                    for (int month = 1; month <= 12; month++) {
+                        addMonthCandidates(pPeriodStart.withMonth(month), pStart, pResult);
+                    }
+                }
+                else if (byDay != null) {
+                    addWeekdays(pPeriodStart, pPeriodStart.plusYears(1), pResult);
+                }
+                else if (pStart.getMonthValue() != 2 || pStart.getDayOfMonth() != 29 || pPeriodStart.isLeapYear()) {
+                    pResult.add(pPeriodStart.withMonth(pStart.getMonthValue()).withDayOfMonth(pStart.getDayOfMonth()));
+                }
+                break;
+        }
+    }
+
+
+
+    private void addIfIncluded(final LocalDate pDate, final List<LocalDate> pResult)
+    {
+        if (isIncluded(pDate)) {
+            pResult.add(pDate);
+        }
+    }
+
+
+
+    /**
+     * Add the occurrences in one month of a monthly or yearly rule.
+     *
+     * @param pMonthStart the first day of the month
+     * @param pStart the start of the series, whose day of month is used if the rule does not say otherwise
+     * @param pResult the list to add to
+     */
+    private void addMonthCandidates(final LocalDate pMonthStart, final LocalDate pStart, final List<LocalDate> pResult)
+    {
+        final int length = pMonthStart.lengthOfMonth();
+        if (byMonthDay != null) {
+            for (final int value : byMonthDay) {
+                final int dayOfMonth = value > 0 ? value : length + 1 + value;
+                if (dayOfMonth >= 1 && dayOfMonth <= length) {
+                    final LocalDate date = pMonthStart.withDayOfMonth(dayOfMonth);
+                    if (byDay == null || isWeekdayIncluded(date.getDayOfWeek())) {
+                        pResult.add(date);
+                    }
+                }
+            }
+        }
+        else if (byDay != null) {
+            addWeekdays(pMonthStart, pMonthStart.plusMonths(1), pResult);
+        }
+        else if (pStart.getDayOfMonth() <= length) {
+            pResult.add(pMonthStart.withDayOfMonth(pStart.getDayOfMonth()));
+        }
+    }
+
+
+
+    /**
+     * Add the BYDAY weekdays in a month or year. A numbered weekday like <code>2TU</code> or <code>-1FR</code> counts
+     * within that month or year.
+     *
+     * @param pFirst the first day of the month or year
+     * @param pEnd the first day after the month or year
+     * @param pResult the list to add to
+     */
+    private void addWeekdays(final LocalDate pFirst, final LocalDate pEnd, final List<LocalDate> pResult)
+    {
+        for (int i = 0; i < byDay.length; i++) {
+            final LocalDate first = pFirst.with(TemporalAdjusters.nextOrSame(byDay[i]));
+            final int ordinal = byDayOrdinal[i];
+            if (ordinal == 0) {
+                for (LocalDate date = first; date.isBefore(pEnd); date = date.plusWeeks(1)) {
+                    pResult.add(date);
+                }
+            }
+            else {
+                final LocalDate date = ordinal > 0 ? first.plusWeeks(ordinal - 1L)
+                    : pEnd.minusDays(1).with(TemporalAdjusters.previousOrSame(byDay[i])).minusWeeks(-ordinal - 1L);
+                if (!date.isBefore(pFirst) && date.isBefore(pEnd)) {
+                    pResult.add(date);
+                }
+            }
+        }
+    }
+
+
+
+    /**
+     * Sort the occurrences of a period, remove duplicates, and apply BYSETPOS.
+     *
+     * @param pCandidates the occurrences of the period, which are replaced
+     */
+    private void normalize(final List<LocalDate> pCandidates)
+    {
+        sortDistinct(pCandidates);
+        if (bySetPos != null && !pCandidates.isEmpty()) {
+            final List<LocalDate> selected = new ArrayList<>(bySetPos.length);
+            for (final int pos : bySetPos) {
+                final int index = pos > 0 ? pos - 1 : pCandidates.size() + pos;
+                if (index >= 0 && index < pCandidates.size()) {
+                    selected.add(pCandidates.get(index));
+                }
+            }
+            pCandidates.clear();
+            pCandidates.addAll(selected);
+            sortDistinct(pCandidates);
+        }
+    }
+
+
+
+    private static void sortDistinct(final List<LocalDate> pDates)
+    {
+        Collections.sort(pDates);
+        for (int i = pDates.size() - 1; i > 0; i--) {
+            if (pDates.get(i).equals(pDates.get(i - 1))) {
+                pDates.remove(i);
+            }
+        }
+    }
+
+
+
+    /**
+     * Lazily generates the occurrences in a window of dates.
+     */
+    private final class OccurrenceIterator
+        implements Iterator<LocalDate>
+    {
+        private final LocalDate start;
+
+        private final LocalDate from;
+
+        /** the last day of the window, or of the series, whichever comes first */
+        private final LocalDate last;
+
+        /** the first day of the period which contains the start of the series */
+        private final LocalDate base;
+
+        /** number of the current period, counted from the period of the start */
+        private long period;
+
+        /** the occurrences of the current period */
+        private final List<LocalDate> candidates = new ArrayList<>();
+
+        private int candidatePos = 0;
+
+        /** number of occurrences so far, including those before the window */
+        private int produced = 0;
+
+        /** the next occurrence, or <code>null</code> if it was not computed yet */
+        private LocalDate next = null;
+
+        private boolean finished = false;
+
+
+
+        OccurrenceIterator(final LocalDate pStart, final LocalDate pFrom, final LocalDate pTo)
+        {
+            start = pStart;
+            from = pFrom;
+            last = until != null && until.isBefore(pTo) ? until : pTo;
+            switch (frequency) {
+                case Daily:
+                    base = pStart;
+                    break;
+                case Weekly:
+                    base = pStart.with(TemporalAdjusters.previousOrSame(weekStart));
+                    break;
+                case Monthly:
+                    base = pStart.withDayOfMonth(1);
+                    break;
+                default:
+                    base = pStart.withDayOfYear(1);
+                    break;
+            }
+            period = count > 0 ? 0L : getFirstPeriodInWindow();
+            fillPeriod();
+        }
+
+
+
+        /**
+         * Determine the first period which ends in the window or after it.
+         *
+         * @return the number of the period
+         */
+        private long getFirstPeriodInWindow()
+        {
+            if (!from.isAfter(base)) {
+                return 0L;
+            }
+            switch (frequency) {
+                case Daily:
+                    return ceilDiv(ChronoUnit.DAYS.between(base, from), interval);
+                case Weekly:
+                    return ceilDiv(Math.max(0L, ChronoUnit.DAYS.between(base, from) - 6), 7L * interval);
+                case Monthly:
+                    return ceilDiv(ChronoUnit.MONTHS.between(base, from.withDayOfMonth(1)), interval);
+                default:
+                    return ceilDiv(from.getYear() - base.getYear(), interval);
+            }
+        }
+
+
+
+        private long ceilDiv(final long pDividend, final long pDivisor)
+        {
+            return (pDividend + pDivisor - 1) / pDivisor;
+        }
+
+
+
+        private LocalDate getPeriodStart(final long pPeriod)
+        {
+            final long amount = pPeriod * interval;
+            switch (frequency) {
+                case Daily:
+                    return base.plusDays(amount);
+                case Weekly:
+                    return base.plusWeeks(amount);
+                case Monthly:
+                    return base.plusMonths(amount);
+                default:
+                    return base.plusYears(amount);
+            }
+        }
+
+
+
+        /**
+         * Compute the occurrences of the current period. The start of the series belongs to the first period.
+         */
+        private void fillPeriod()
+        {
+            candidates.clear();
+            candidatePos = 0;
+            final LocalDate periodStart = getPeriodStart(period);
+            if (periodStart.isAfter(last)) {
+                finished = true;
+                return;
+            }
+            addCandidates(periodStart, start, candidates);
+            normalize(candidates);
+            if (period == 0L) {
+                candidates.add(start);
+                sortDistinct(candidates);
+            }
+        }
+
+
+
+        /**
+         * Move on to the next period. With COUNT, full periods before the window are skipped if each of them has the
+         * same number of occurrences.
+         */
+        private void nextPeriod()
+        {
+            period++;
+            if (count > 0) {
+                final int perPeriod = getOccurrencesPerPeriod();
+                final long firstInWindow = getFirstPeriodInWindow();
+                if (perPeriod > 0 && firstInWindow > period) {
+                    final long skipped = (firstInWindow - period) * perPeriod;
+                    if (produced + skipped >= count) {
+                        finished = true;
+                        return;
+                    }
+                    produced += (int) skipped;
+                    period = firstInWindow;
+                }
+            }
+            fillPeriod();
+        }
+
+
+
+        @Override
+        public boolean hasNext()
+        {
+            while (next == null && !finished) {
+                if (candidatePos >= candidates.size()) {
+                    nextPeriod();
+                    continue;
+                }
+                final LocalDate date = candidates.get(candidatePos++);
+                if (date.isBefore(start)) {
+                    continue;
+                }
+                if (date.isAfter(last) || (count > 0 && produced >= count)) {
+                    finished = true;
+                    break;
+                }
+                produced++;
+                if (!date.isBefore(from)) {
+                    next = date;
+                }
+            }
+            return next != null;
+        }
+
+
+
+        @Override
+        public LocalDate next()
+        {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final LocalDate result = next;
+            next = null;
+            return result;
+        }
+    }
+}
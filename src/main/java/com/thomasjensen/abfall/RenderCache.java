@@ -0,0 +1,308 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * In-memory cache of rendered output files, for long-running use by the {@link Server} or the {@link Abfall} library
+ * facade, where the same calendar is often requested many times. The key is the {@link Manifest#fingerprint
+ * fingerprint} of a conversion, which covers the ICS data, year, locale, engine, format, categories, and template
+ * version. The total size of the cached files is bounded, and the least recently used entries are evicted first.
+ * <p>Concurrent requests for the same key are coalesced: the first one renders the file, and the others wait for its
+ * result instead of rendering it, too. The statistics are exposed as a JMX MXBean.</p>
+ */
+public class RenderCache
+    implements RenderCacheMXBean
+{
+    private static final Logger LOG = LogManager.getLogger(RenderCache.class);
+
+    public static final String OBJECT_NAME = "com.thomasjensen.abfall:type=RenderCache";
+
+    /** default maximum size of the cache in server mode, in MiB */
+    public static final int DEFAULT_SIZE_MB = 64;
+
+    /**
+     * Renders a file on a cache miss.
+     */
+    @FunctionalInterface
+    public interface Renderer
+    {
+        byte[] render()
+            throws IOException;
+    }
+
+    //
+
+    private final long maxSizeBytes;
+
+    /** the cached files in access order, guarded by itself */
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** total size of the cached files, guarded by {@link #entries} */
+    private long sizeBytes = 0L;
+
+    /** renders in progress, which identical requests wait for */
+    private final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder coalescedCount = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    private ObjectName objectName = null;
+
+
+
+    /**
+     * Constructor.
+     *
+     * @param pMaxSizeBytes the maximum total size of the cached files in bytes; files larger than that are not cached
+     */
+    public RenderCache(final long pMaxSizeBytes)
+    {
+        maxSizeBytes = pMaxSizeBytes;
+    }
+
+
+
+    /**
+     * Get the file for the given key from the cache, or render it. If the same key is being rendered by another thread
+     * already, wait for that result.
+     *
+     * @param pKey the fingerprint of the conversion
+     * @param pRenderer renders the file if it is not cached
+     * @return the file; the array must not be modified, because it is shared
+     * @throws IOException rendering failed, either in this thread or in the thread whose result we waited for (an
+     * error thrown by the other thread is wrapped)
+     */
+    public byte[] get(final String pKey, final Renderer pRenderer)
+        throws IOException
+    {
+        byte[] result = lookup(pKey);
+        if (result != null) {
+            hitCount.increment();
+            return result;
+        }
+
+        final CompletableFuture<byte[]> own = new CompletableFuture<>();
+        final CompletableFuture<byte[]> other = inFlight.putIfAbsent(pKey, own);
+        if (other != null) {
+            coalescedCount.increment();
+            return await(other);
+        }
+        try {
+            result = lookup(pKey);  // the render we missed above may have finished in the meantime
+            if (result != null) {
+                hitCount.increment();
+            }
+            else {
+                missCount.increment();
+                result = pRenderer.render();
+                put(pKey, result);
+            }
+            own.complete(result);
+            return result;
+        }
+        catch (Throwable e) {
+            // also errors like OutOfMemoryError, or the waiting threads would block forever
+            own.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            inFlight.remove(pKey, own);
+        }
+    }
+
+
+
+    private byte[] await(final CompletableFuture<byte[]> pFuture)
+        throws IOException
+    {
+        try {
+            return pFuture.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an identical conversion");
+        }
+        catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+
+
+    private byte[] lookup(final String pKey)
+    {
+        synchronized (entries) {
+            return entries.get(pKey);
+        }
+    }
+
+
+
+    private void put(final String pKey, final byte[] pFile)
+    {
+        if (pFile.length > maxSizeBytes) {
+            return;
+        }
+        synchronized (entries) {
+            final byte[] previous = entries.put(pKey, pFile);
+            sizeBytes += pFile.length - (previous != null ? previous.length : 0);
+            final Iterator<byte[]> eldest = entries.values().iterator();
+            while (sizeBytes > maxSizeBytes) {
+                sizeBytes -= eldest.next().length;
+                eldest.remove();
+                evictionCount.increment();
+            }
+        }
+    }
+
+
+
+    /**
+     * Register this MXBean with the platform MBean server. Failure to do so is logged, but does not prevent the cache
+     * from working.
+     */
+    public void register()
+    {
+        try {
+            final MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (mbeanServer.isRegistered(name)) {
+                mbeanServer.unregisterMBean(name);  // left over from a previous server in the same JVM
+            }
+            mbeanServer.registerMBean(this, name);
+            objectName = name;
+        }
+        catch (JMException | RuntimeException e) {
+            LOG.warn("Failed to register JMX MBean " + OBJECT_NAME + ": " + e);
+        }
+    }
+
+
+
+    public void unregister()
+    {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            }
+            catch (JMException | RuntimeException e) {
+                LOG.warn("Failed to unregister JMX MBean " + OBJECT_NAME + ": " + e);
+            }
+            objectName = null;
+        }
+    }
+
+
+
+    @Override
+    public long getHitCount()
+    {
+        return hitCount.sum();
+    }
+
+
+
+    @Override
+    public long getMissCount()
+    {
+        return missCount.sum();
+    }
+
+
+
+    @Override
+    public long getCoalescedCount()
+    {
+        return coalescedCount.sum();
+    }
+
+
+
+    @Override
+    public long getEvictionCount()
+    {
+        return evictionCount.sum();
+    }
+
+
+
+    @Override
+    public int getEntryCount()
+    {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+
+
+    @Override
+    public long getSizeBytes()
+    {
+        synchronized (entries) {
+            return sizeBytes;
+        }
+    }
+
+
+
+    @Override
+    public long getMaxSizeBytes()
+    {
+        return maxSizeBytes;
+    }
+
+
+
+    @Override
+    public void clear()
+    {
+        synchronized (entries) {
+            entries.clear();
+            sizeBytes = 0L;
+        }
+        hitCount.reset();
+        missCount.reset();
+        coalescedCount.reset();
+        evictionCount.reset();
+    }
+}
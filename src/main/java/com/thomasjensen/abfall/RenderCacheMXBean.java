@@ -0,0 +1,84 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+/**
+ * JMX view of the {@link RenderCache} of the conversion server.
+ */
+public interface RenderCacheMXBean
+{
+    /**
+     * Getter.
+     *
+     * @return the number of requests answered from the cache
+     */
+    long getHitCount();
+
+
+
+    /**
+     * Getter.
+     *
+     * @return the number of requests which rendered the calendar
+     */
+    long getMissCount();
+
+
+
+    /**
+     * Getter.
+     *
+     * @return the number of requests which waited for an identical request to render the calendar, instead of
+     * rendering it themselves
+     */
+    long getCoalescedCount();
+
+
+
+    /**
+     * Getter.
+     *
+     * @return the number of entries removed to make room for new ones
+     */
+    long getEvictionCount();
+
+
+
+    int getEntryCount();
+
+
+
+    /**
+     * Getter.
+     *
+     * @return the total size of the cached files in bytes
+     */
+    long getSizeBytes();
+
+
+
+    /**
+     * Getter.
+     *
+     * @return the maximum total size of the cached files in bytes
+     */
+    long getMaxSizeBytes();
+
+
+
+    /**
+     * Remove all entries, and start counting from zero.
+     */
+    void clear();
+}
@@ -0,0 +1,117 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+/**
+ * An opaque RGB color. We don't use <code>java.awt.Color</code>, because initializing it loads the AWT toolkit and
+ * its native library, which costs noticeable startup time just for holding three numbers. Instances are immutable.
+ */
+public final class Rgb
+{
+    private final int red;
+
+    private final int green;
+
+    private final int blue;
+
+
+
+    public Rgb(final int pRed, final int pGreen, final int pBlue)
+    {
+        if (((pRed | pGreen | pBlue) & ~0xff) != 0) {
+            throw new IllegalArgumentException("color component out of range: " + pRed + "," + pGreen + "," + pBlue);
+        }
+        red = pRed;
+        green = pGreen;
+        blue = pBlue;
+    }
+
+
+
+    public int getRed()
+    {
+        return red;
+    }
+
+
+
+    public int getGreen()
+    {
+        return green;
+    }
+
+
+
+    public int getBlue()
+    {
+        return blue;
+    }
+
+
+
+    /**
+     * Getter.
+     *
+     * @return the red, green, and blue components as bytes, as POI and the OOXML schema classes expect them
+     */
+    public byte[] toBytes()
+    {
+        return new byte[]{(byte) red, (byte) green, (byte) blue};
+    }
+
+
+
+    /**
+     * Getter.
+     *
+     * @return the color as hex ARGB value, as in the <code>rgb</code> attribute of SpreadsheetML (e.g.
+     * <code>FFC4D79B</code>)
+     */
+    public String toArgbHex()
+    {
+        final int argb = 0xff000000 | red << 16 | green << 8 | blue;
+        return Integer.toHexString(argb).toUpperCase();
+    }
+
+
+
+    @Override
+    public boolean equals(final Object pOther)
+    {
+        if (this == pOther) {
+            return true;
+        }
+        if (pOther == null || getClass() != pOther.getClass()) {
+            return false;
+        }
+        final Rgb other = (Rgb) pOther;
+        return red == other.red && green == other.green && blue == other.blue;
+    }
+
+
+
+    @Override
+    public int hashCode()
+    {
+        return red << 16 | green << 8 | blue;
+    }
+
+
+
+    @Override
+    public String toString()
+    {
+        return "Rgb[" + red + "," + green + "," + blue + "]";
+    }
+}
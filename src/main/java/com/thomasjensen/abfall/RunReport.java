@@ -0,0 +1,89 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * The machine-readable report of one program run, which lists the {@link RunStats} of each conversion as JSON. It
+ * is written when the <code>--report</code> option is given. Conversions may be added from several threads.
+ */
+public class RunReport
+{
+    private static final Logger LOG = LogManager.getLogger(RunReport.class);
+
+    private final Instant startTime = Instant.now();
+
+    private final long startNanos = System.nanoTime();
+
+    private final List<RunStats> conversions = new ArrayList<>();
+
+    private int failedCount = 0;
+
+
+
+    public synchronized void add(final RunStats pStats)
+    {
+        conversions.add(pStats);
+    }
+
+
+
+    public synchronized void addFailure()
+    {
+        failedCount++;
+    }
+
+
+
+    /**
+     * Write the report.
+     *
+     * @param pFile the JSON file to write
+     * @throws IOException writing failed
+     */
+    public synchronized void write(final File pFile)
+        throws IOException
+    {
+        final StringBuilder sb = new StringBuilder(1024 + conversions.size() * 768);
+        sb.append("{\n");
+        sb.append("  \"startTime\": \"").append(startTime).append("\",\n");
+        sb.append("  \"totalMillis\": ").append(RunStats.toMillis(System.nanoTime() - startNanos)).append(",\n");
+        sb.append("  \"failed\": ").append(failedCount).append(",\n");
+        sb.append("  \"conversions\": [");
+        String sep = "\n    ";
+        for (final RunStats stats : conversions) {
+            sb.append(sep);
+            stats.appendJson(sb, "    ");
+            sep = ",\n    ";
+        }
+        sb.append(conversions.isEmpty() ? "]\n" : "\n  ]\n");
+        sb.append("}\n");
+
+        Files.write(pFile.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Wrote run report to " + pFile);
+        }
+    }
+}
@@ -0,0 +1,398 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+
+/**
+ * Timings and counters of one conversion, which end up in the JSON run report and in the {@link ConversionMetrics}
+ * of the server. Each phase records its wall time and the bytes allocated by the converting thread (work done by
+ * the parallel helpers of the direct engine is not included). When a phase runs several times, for example when
+ * several years are written, the values are added up.
+ * <p>Instances are not thread-safe; each conversion uses its own.</p>
+ */
+public class RunStats
+{
+    /** the phases of a conversion */
+    public enum Phase
+    {
+        Fingerprint(null),
+        Parse(null),
+        Group(null),
+        Render(null),
+        Headings(Render),
+        Grid(Render),
+        Merges(Render),
+        Picture(Render),
+        Write(null);
+
+        //
+
+        /** the phase this one is a part of, or <code>null</code> for a top-level phase */
+        private final Phase parent;
+
+
+
+        private Phase(final Phase pParent)
+        {
+            parent = pParent;
+        }
+
+
+
+        public Phase getParent()
+        {
+            return parent;
+        }
+
+
+
+        /**
+         * Getter.
+         *
+         * @return the name of the phase in the JSON report, e.g. <code>render.grid</code>
+         */
+        public String getReportName()
+        {
+            final String name = name().toLowerCase(Locale.ENGLISH);
+            return parent != null ? parent.getReportName() + "." + name : name;
+        }
+    }
+
+
+
+    /**
+     * Measures one phase. Use it in a <code>try</code>-with-resources statement around the phase.
+     */
+    public final class Timer
+        implements AutoCloseable
+    {
+        private final Phase phase;
+
+        private final long startNanos;
+
+        private final long startAllocated;
+
+
+
+        private Timer(final Phase pPhase)
+        {
+            phase = pPhase;
+            startAllocated = getAllocatedBytes();
+            startNanos = System.nanoTime();
+        }
+
+
+
+        @Override
+        public void close()
+        {
+            wallNanos[phase.ordinal()] += System.nanoTime() - startNanos;
+            if (startAllocated >= 0) {
+                allocatedBytes[phase.ordinal()] += getAllocatedBytes() - startAllocated;
+            }
+        }
+    }
+
+
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    /** whether the JVM can tell the bytes allocated by a thread (HotSpot can) */
+    private static final boolean ALLOCATION_SUPPORTED = isAllocationSupported();
+
+    private final long[] wallNanos = new long[Phase.values().length];
+
+    private final long[] allocatedBytes = new long[Phase.values().length];
+
+    private final Config config;
+
+    private int eventCount = 0;
+
+    private int skippedCount = 0;
+
+    private int styleCount = 0;
+
+    private int mergedRegionCount = 0;
+
+    private int workbookCount = 0;
+
+    private long outputBytes = 0L;
+
+    private long totalNanos = 0L;
+
+    /** the conversion was skipped, because its inputs are unchanged since the last incremental run */
+    private boolean unchanged = false;
+
+
+
+    /**
+     * Constructor.
+     *
+     * @param pConfig the configuration of the conversion, which is included in the report
+     */
+    public RunStats(final Config pConfig)
+    {
+        config = pConfig;
+    }
+
+
+
+    private static boolean isAllocationSupported()
+    {
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+            return bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled();
+        }
+        return false;
+    }
+
+
+
+    /**
+     * Getter.
+     *
+     * @return the number of bytes allocated by the current thread so far, or -1 if the JVM can't tell
+     */
+    private static long getAllocatedBytes()
+    {
+        if (ALLOCATION_SUPPORTED) {
+            return ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).getCurrentThreadAllocatedBytes();
+        }
+        return -1L;
+    }
+
+
+
+    /**
+     * Start measuring a phase.
+     *
+     * @param pPhase the phase
+     * @return the timer, which must be closed at the end of the phase
+     */
+    public Timer time(final Phase pPhase)
+    {
+        return new Timer(pPhase);
+    }
+
+
+
+    /**
+     * Record the result of parsing.
+     *
+     * @param pEventCount number of events found in the requested years
+     * @param pSkippedCount number of events skipped because they are outside of the requested years
+     */
+    public void addEvents(final int pEventCount, final int pSkippedCount)
+    {
+        eventCount += pEventCount;
+        skippedCount += pSkippedCount;
+    }
+
+
+
+    /**
+     * Record the result of rendering one workbook.
+     *
+     * @param pStyleCount number of distinct cell styles in the workbook
+     * @param pMergedRegionCount number of merged regions in the sheet
+     */
+    public void addWorkbook(final int pStyleCount, final int pMergedRegionCount)
+    {
+        workbookCount++;
+        styleCount += pStyleCount;
+        mergedRegionCount += pMergedRegionCount;
+    }
+
+
+
+    public void addOutputBytes(final long pOutputBytes)
+    {
+        outputBytes += pOutputBytes;
+    }
+
+
+
+    public void setUnchanged()
+    {
+        unchanged = true;
+    }
+
+
+
+    public boolean isUnchanged()
+    {
+        return unchanged;
+    }
+
+
+
+    public void setTotalNanos(final long pTotalNanos)
+    {
+        totalNanos = pTotalNanos;
+    }
+
+
+
+    public long getTotalNanos()
+    {
+        return totalNanos;
+    }
+
+
+
+    /**
+     * Getter.
+     *
+     * @param pPhase a phase
+     * @return the wall time spent in that phase, in nanoseconds
+     */
+    public long getWallNanos(final Phase pPhase)
+    {
+        return wallNanos[pPhase.ordinal()];
+    }
+
+
+
+    /**
+     * Getter.
+     *
+     * @param pPhase a phase
+     * @return the bytes allocated in that phase, or -1 if the JVM can't tell
+     */
+    public long getAllocatedBytes(final Phase pPhase)
+    {
+        return ALLOCATION_SUPPORTED ? allocatedBytes[pPhase.ordinal()] : -1L;
+    }
+
+
+
+    public int getEventCount()
+    {
+        return eventCount;
+    }
+
+
+
+    public int getSkippedCount()
+    {
+        return skippedCount;
+    }
+
+
+
+    public long getOutputBytes()
+    {
+        return outputBytes;
+    }
+
+
+
+    /**
+     * Describe this conversion as a JSON object.
+     *
+     * @param pSb the string builder to append the JSON object to
+     * @param pIndent the indentation of the object's closing brace
+     */
+    void appendJson(final StringBuilder pSb, final String pIndent)
+    {
+        final String ind = pIndent + "  ";
+        pSb.append("{\n");
+        appendField(pSb, ind, "input", config.getInFileIcs() != null ? config.getInFileIcs().getPath() : null);
+        appendField(pSb, ind, "output", config.getOutFileXlsx() != null ? config.getOutFileXlsx().getPath() : null);
+        appendField(pSb, ind, "years", config.getYears().toString());
+        appendField(pSb, ind, "engine", config.getEngine().name());
+        appendField(pSb, ind, "parser", config.isReferenceParser() ? "biweekly" : "streaming");
+        pSb.append(ind).append("\"unchanged\": ").append(unchanged).append(",\n");
+        pSb.append(ind).append("\"totalMillis\": ").append(toMillis(totalNanos)).append(",\n");
+
+        pSb.append(ind).append("\"phases\": {");
+        String sep = "\n";
+        for (final Phase phase : Phase.values()) {
+            if (wallNanos[phase.ordinal()] > 0L) {
+                pSb.append(sep).append(ind).append("  \"").append(phase.getReportName()).append("\": ");
+                pSb.append("{\"wallMillis\": ").append(toMillis(wallNanos[phase.ordinal()]));
+                pSb.append(", \"allocatedBytes\": ").append(getAllocatedBytes(phase)).append('}');
+                sep = ",\n";
+            }
+        }
+        pSb.append(sep.length() > 1 ? "\n" + ind : "").append("},\n");
+
+        pSb.append(ind).append("\"counters\": {");
+        pSb.append("\"events\": ").append(eventCount);
+        pSb.append(", \"skippedEvents\": ").append(skippedCount);
+        pSb.append(", \"workbooks\": ").append(workbookCount);
+        pSb.append(", \"styles\": ").append(styleCount);
+        pSb.append(", \"mergedRegions\": ").append(mergedRegionCount);
+        pSb.append(", \"outputBytes\": ").append(outputBytes);
+        pSb.append("}\n");
+        pSb.append(pIndent).append('}');
+    }
+
+
+
+    private static void appendField(final StringBuilder pSb, final String pIndent, final String pName,
+        final String pValue)
+    {
+        pSb.append(pIndent).append('"').append(pName).append("\": ");
+        appendString(pSb, pValue);
+        pSb.append(",\n");
+    }
+
+
+
+    /**
+     * Append a JSON string literal.
+     *
+     * @param pSb the string builder
+     * @param pValue the string value, or <code>null</code>
+     */
+    static void appendString(final StringBuilder pSb, final String pValue)
+    {
+        if (pValue == null) {
+            pSb.append("null");
+            return;
+        }
+        pSb.append('"');
+        for (int i = 0; i < pValue.length(); i++) {
+            final char c = pValue.charAt(i);
+            if (c == '"' || c == '\\') {
+                pSb.append('\\').append(c);
+            }
+            else if (c < 0x20) {
+                pSb.append(String.format("\\u%04x", (int) c));
+            }
+            else {
+                pSb.append(c);
+            }
+        }
+        pSb.append('"');
+    }
+
+
+
+    /**
+     * Convert nanoseconds to milliseconds with three decimal places, as used in the report.
+     *
+     * @param pNanos nanoseconds
+     * @return the milliseconds as a JSON number
+     */
+    static String toMillis(final long pNanos)
+    {
+        return String.format(Locale.ENGLISH, "%.3f", pNanos / 1000000d);
+    }
+}
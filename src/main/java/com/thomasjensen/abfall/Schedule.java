@@ -0,0 +1,224 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.util.Arrays;
+
+
+/**
+ * The trash categories picked up on each day of the calendar. The days are kept in a dense array with one slot per
+ * cell of the calendar grid (12 months of 31 days), each holding a bit mask of {@link Art} ordinals. So lookups take
+ * constant time and need no objects, and the categories of a day are naturally sorted.
+ * <p>Instances must not be modified while they are shared between threads.</p>
+ */
+public final class Schedule
+{
+    /** the maximum number of categories on one day, because there are only this many rows per day below the heading */
+    public static final int MAX_PER_DAY = CalendarLayout.ROWS_PER_DAY - 1;
+
+    private static final int NUM_SLOTS = 12 * 31;
+
+    /** all categories by ordinal (<code>Art.values()</code> would create a copy each time) */
+    private static final Art[] ARTS = Art.values();
+
+    /** bit mask of {@link Art} ordinals per day, indexed by {@link #slot} */
+    private final short[] days = new short[NUM_SLOTS];
+
+    static {
+        if (ARTS.length > Short.SIZE) {
+            throw new IllegalStateException("too many values in Art for a bit mask of type short");
+        }
+    }
+
+
+
+    private static int slot(final int pMonth, final int pDay)
+    {
+        if (pMonth < 1 || pMonth > 12 || pDay < 1 || pDay > 31) {
+            throw new IllegalArgumentException("invalid day on calendar: " + pDay + "." + pMonth + ".");
+        }
+        return (pMonth - 1) * 31 + pDay - 1;
+    }
+
+
+
+    /**
+     * Add a pickup date.
+     *
+     * @param pMonth the month (1-12)
+     * @param pDay the day of the month (1-31)
+     * @param pArt the category picked up on that day
+     * @return the number of categories now picked up on that day
+     */
+    public int add(final int pMonth, final int pDay, final Art pArt)
+    {
+        final int slot = slot(pMonth, pDay);
+        days[slot] |= (short) (1 << pArt.ordinal());
+        return Integer.bitCount(days[slot] & 0xffff);
+    }
+
+
+
+    /**
+     * Get the number of categories picked up on a day.
+     *
+     * @param pMonth the month (1-12)
+     * @param pDay the day of the month (1-31)
+     * @return the number of categories picked up on that day
+     */
+    public int getCount(final int pMonth, final int pDay)
+    {
+        return Integer.bitCount(days[slot(pMonth, pDay)] & 0xffff);
+    }
+
+
+
+    public boolean isEmpty(final int pMonth, final int pDay)
+    {
+        return days[slot(pMonth, pDay)] == 0;
+    }
+
+
+
+    /**
+     * Get the first category picked up on a day, in the order of {@link Art}.
+     *
+     * @param pMonth the month (1-12)
+     * @param pDay the day of the month (1-31)
+     * @return the first category, or <code>null</code> if nothing is picked up on that day
+     */
+    public Art getFirst(final int pMonth, final int pDay)
+    {
+        final int mask = days[slot(pMonth, pDay)] & 0xffff;
+        return mask != 0 ? ARTS[Integer.numberOfTrailingZeros(mask)] : null;
+    }
+
+
+
+    /**
+     * Get the last category picked up on a day, in the order of {@link Art}.
+     *
+     * @param pMonth the month (1-12)
+     * @param pDay the day of the month (1-31)
+     * @return the last category, or <code>null</code> if nothing is picked up on that day
+     */
+    public Art getLast(final int pMonth, final int pDay)
+    {
+        final int mask = days[slot(pMonth, pDay)] & 0xffff;
+        return mask != 0 ? ARTS[Integer.SIZE - 1 - Integer.numberOfLeadingZeros(mask)] : null;
+    }
+
+
+
+    /**
+     * Serialize this schedule into a compact form: two bytes per day with pickups, holding the index of the day in
+     * the calendar grid (9 bits) and the category (7 bits), one such pair per category.
+     *
+     * @return the serialized schedule
+     */
+    public byte[] toBytes()
+    {
+        int count = 0;
+        for (final short mask : days) {
+            count += Integer.bitCount(mask & 0xffff);
+        }
+        final byte[] result = new byte[2 * count];
+        int pos = 0;
+        for (int slot = 0; slot < NUM_SLOTS; slot++) {
+            for (int mask = days[slot] & 0xffff; mask != 0; mask &= mask - 1) {
+                final int entry = slot << 7 | Integer.numberOfTrailingZeros(mask);
+                result[pos++] = (byte) (entry >>> 8);
+                result[pos++] = (byte) entry;
+            }
+        }
+        return result;
+    }
+
+
+
+    /**
+     * Restore a schedule from its serialized form.
+     *
+     * @param pBytes the output of {@link #toBytes()}
+     * @return the schedule
+     */
+    public static Schedule fromBytes(final byte[] pBytes)
+    {
+        if (pBytes.length % 2 != 0) {
+            throw new IllegalArgumentException("invalid length of serialized schedule: " + pBytes.length);
+        }
+        final Schedule result = new Schedule();
+        for (int pos = 0; pos < pBytes.length; pos += 2) {
+            final int entry = (pBytes[pos] & 0xff) << 8 | pBytes[pos + 1] & 0xff;
+            final int slot = entry >>> 7;
+            final int ordinal = entry & 0x7f;
+            if (slot >= NUM_SLOTS || ordinal >= ARTS.length) {
+                throw new IllegalArgumentException("invalid entry in serialized schedule: " + entry);
+            }
+            result.days[slot] |= (short) (1 << ordinal);
+        }
+        return result;
+    }
+
+
+
+    @Override
+    public boolean equals(final Object pOther)
+    {
+        if (this == pOther) {
+            return true;
+        }
+        if (pOther == null || getClass() != pOther.getClass()) {
+            return false;
+        }
+        return Arrays.equals(days, ((Schedule) pOther).days);
+    }
+
+
+
+    @Override
+    public int hashCode()
+    {
+        return Arrays.hashCode(days);
+    }
+
+
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        for (int slot = 0; slot < NUM_SLOTS; slot++) {
+            if (days[slot] == 0) {
+                continue;
+            }
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            final int day = slot % 31 + 1;
+            final int month = slot / 31 + 1;
+            sb.append(day < 10 ? "0" : "").append(day).append('.').append(month < 10 ? "0" : "").append(month)
+                .append(".=[");
+            boolean first = true;
+            for (int mask = days[slot] & 0xffff; mask != 0; mask &= mask - 1) {
+                sb.append(first ? "" : ", ").append(ARTS[Integer.numberOfTrailingZeros(mask)]);
+                first = false;
+            }
+            sb.append(']');
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,510 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * Long-running conversion service based on the JDK's built-in HTTP server. An ICS file is POSTed to
+ * <code>/convert?year=2026&amp;locale=de</code> (both parameters optional), and the Excel file is streamed back.
+ * <p>Since the JVM stays up, log4j initialization, class loading, and the calendar skeletons are paid for only once,
+ * and a warm-up conversion at startup takes care of the first request, too. Requests are handled on virtual threads
+ * if the JVM supports them (Java 21+), else on a pool of the configured number of threads.</p>
+ * <p>Latency histograms of the requests and their phases are available via JMX as {@link ConversionMetrics}.</p>
+ * <p>Unless disabled, the converted files are kept in a {@link RenderCache}, so that a calendar which is requested
+ * again, or by several clients at once, is rendered only once.</p>
+ * <p>The server has no authentication, so it listens on the loopback address unless configured otherwise.</p>
+ */
+public class Server
+{
+    private static final Logger LOG = LogManager.getLogger(Server.class);
+
+    /** latency goal for one conversion of a one-year ICS file on a warm server; slower requests are logged */
+    public static final long LATENCY_TARGET_MILLIS = 100L;
+
+    public static final String PATH = "/convert";
+
+    private static final String CONTENT_TYPE_XLSX =
+        "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    /** upper limit of the size of an uploaded ICS file */
+    private static final long MAX_UPLOAD_BYTES = 64L * 1024 * 1024;
+
+    private static final String UPLOAD_TOO_LARGE = "ICS file too large (maximum is " + MAX_UPLOAD_BYTES + " bytes)";
+
+    private static final Set<Locale> AVAILABLE_LOCALES = new HashSet<>(Arrays.asList(Locale.getAvailableLocales()));
+
+    private final Config config;
+
+    private final Converter converter = new Converter();
+
+    private final ConversionMetrics metrics = new ConversionMetrics();
+
+    /** the cache of converted files, or <code>null</code> if disabled */
+    private final RenderCache renderCache;
+
+    private HttpServer httpServer;
+
+    private ExecutorService executor;
+
+
+
+    /**
+     * A request which cannot be converted because of the client's input, which is answered with an error status.
+     */
+    private static final class RequestException
+        extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+
+
+        RequestException(final int pStatus, final String pMessage, final Throwable pCause)
+        {
+            super(pMessage, pCause);
+            status = pStatus;
+        }
+
+
+
+        int getStatus()
+        {
+            return status;
+        }
+    }
+
+
+
+    /**
+     * Fails with status 413 as soon as more than {@link #MAX_UPLOAD_BYTES} are read, so that the limit also holds for
+     * chunked uploads, which have no Content-Length.
+     */
+    private static final class LimitedInputStream
+        extends FilterInputStream
+    {
+        private long remaining = MAX_UPLOAD_BYTES;
+
+
+
+        LimitedInputStream(final InputStream pIn)
+        {
+            super(pIn);
+        }
+
+
+
+        @Override
+        public int read()
+            throws IOException
+        {
+            final int result = in.read();
+            if (result >= 0) {
+                count(1L);
+            }
+            return result;
+        }
+
+
+
+        @Override
+        public int read(final byte[] pBytes, final int pOffset, final int pLength)
+            throws IOException
+        {
+            final int result = in.read(pBytes, pOffset, pLength);
+            if (result > 0) {
+                count(result);
+            }
+            return result;
+        }
+
+
+
+        @Override
+        public long skip(final long pCount)
+            throws IOException
+        {
+            final long result = in.skip(pCount);
+            count(result);
+            return result;
+        }
+
+
+
+        private void count(final long pBytes)
+        {
+            remaining -= pBytes;
+            if (remaining < 0L) {
+                throw new RequestException(413, UPLOAD_TOO_LARGE, null);
+            }
+        }
+    }
+
+
+
+    /**
+     * Constructor.
+     *
+     * @param pConfig the configuration (in server mode), which provides the default year and locale of requests
+     */
+    public Server(final Config pConfig)
+    {
+        config = pConfig;
+        renderCache = pConfig.getRenderCacheMb() > 0 ? new RenderCache(pConfig.getRenderCacheMb() * 1024L * 1024L)
+            : null;
+    }
+
+
+
+    /**
+     * Warm up, and start accepting requests. This method returns immediately; the server runs until {@link #stop()}
+     * is called.
+     *
+     * @throws IOException the server could not be started
+     */
+    public void start()
+        throws IOException
+    {
+        warmUp();
+        executor = createExecutor();
+        httpServer = HttpServer.create(new InetSocketAddress(config.getServerAddress(), config.getServerPort()), 0);
+        httpServer.createContext(PATH, this::handleConvert);
+        httpServer.setExecutor(executor);
+        metrics.register();
+        if (renderCache != null) {
+            renderCache.register();
+        }
+        httpServer.start();
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Conversion server listening on " + config.getServerAddress().getHostAddress() + " port "
+                + getPort() + ", POST ICS files to " + PATH);
+        }
+    }
+
+
+
+    /**
+     * Stop accepting requests, and shut down.
+     */
+    public void stop()
+    {
+        if (httpServer != null) {
+            httpServer.stop(1);
+            executor.shutdownNow();
+            metrics.unregister();
+            if (renderCache != null) {
+                renderCache.unregister();
+            }
+            httpServer = null;
+        }
+    }
+
+
+
+    public ConversionMetrics getMetrics()
+    {
+        return metrics;
+    }
+
+
+
+    /**
+     * Getter.
+     *
+     * @return the cache of converted files, or <code>null</code> if disabled
+     */
+    public RenderCache getRenderCache()
+    {
+        return renderCache;
+    }
+
+
+
+    /**
+     * Getter.
+     *
+     * @return the port the server is listening on, which is useful if it was started on port 0
+     */
+    public int getPort()
+    {
+        return httpServer.getAddress().getPort();
+    }
+
+
+
+    private ExecutorService createExecutor()
+    {
+        // looked up reflectively, because we still compile for Java 17
+        try {
+            final Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            final ExecutorService result = (ExecutorService) factory.invoke(null);
+            LOG.info("Handling requests on virtual threads.");
+            return result;
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            if (LOG.isInfoEnabled()) {
+                LOG.info("Virtual threads not available. Handling requests using " + config.getThreads()
+                    + " threads.");
+            }
+            return Executors.newFixedThreadPool(config.getThreads());
+        }
+    }
+
+
+
+    /**
+     * Run one conversion before accepting requests, so that the classes are loaded, and the calendar skeleton of the
+     * default year and locale is built before the first request comes in.
+     */
+    private void warmUp()
+        throws IOException
+    {
+        final long startMillis = System.currentTimeMillis();
+        new Abfall(config).warmUp(config.getYear(), null);
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Warm-up conversion took " + (System.currentTimeMillis() - startMillis) + " ms.");
+        }
+    }
+
+
+
+    private void handleConvert(final HttpExchange pExchange)
+    {
+        final long startNanos = System.nanoTime();
+        try {
+            if (!"POST".equalsIgnoreCase(pExchange.getRequestMethod())) {
+                sendError(pExchange, 405, "POST the ICS file to " + PATH);
+                return;
+            }
+
+            final Config requestConfig;
+            try {
+                final String contentLength = pExchange.getRequestHeaders().getFirst("Content-Length");
+                if (contentLength != null && parseContentLength(contentLength) > MAX_UPLOAD_BYTES) {
+                    sendError(pExchange, 413, UPLOAD_TOO_LARGE);
+                    return;
+                }
+                requestConfig = parseRequest(pExchange.getRequestURI());
+            }
+            catch (IllegalArgumentException e) {
+                sendError(pExchange, 400, e.getMessage());
+                return;
+            }
+
+            final RunStats stats = new RunStats(requestConfig);
+            if (renderCache != null) {
+                handleCached(pExchange, requestConfig, stats);
+            }
+            else {
+                handleUncached(pExchange, requestConfig, stats);
+            }
+            stats.setTotalNanos(System.nanoTime() - startNanos);
+            metrics.record(stats);
+
+            final long millis = stats.getTotalNanos() / 1000000L;
+            if (millis > LATENCY_TARGET_MILLIS) {
+                if (LOG.isWarnEnabled()) {
+                    LOG.warn("Conversion for " + requestConfig.getYear() + " took " + millis + " ms (target is "
+                        + LATENCY_TARGET_MILLIS + " ms)");
+                }
+            }
+            else if (LOG.isDebugEnabled()) {
+                LOG.debug("Conversion for " + requestConfig.getYear() + " took " + millis + " ms");
+            }
+        }
+        catch (RequestException e) {
+            metrics.recordFailure();
+            try {
+                sendError(pExchange, e.getStatus(), e.getMessage());
+            }
+            catch (IOException e2) {
+                LOG.error("Failed to handle request from " + pExchange.getRemoteAddress() + ": " + e2, e2);
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            metrics.recordFailure();
+            LOG.error("Failed to handle request from " + pExchange.getRemoteAddress() + ": " + e, e);
+        }
+        finally {
+            pExchange.close();
+        }
+    }
+
+
+
+    /**
+     * Convert the uploaded ICS file, and stream the Excel file to the client as it is written.
+     */
+    private void handleUncached(final HttpExchange pExchange, final Config pConfig, final RunStats pStats)
+        throws IOException
+    {
+        final Schedule termine;
+        try (InputStream is = new BufferedInputStream(new LimitedInputStream(pExchange.getRequestBody()))) {
+            termine = converter.readSchedule(pConfig, is, pStats);
+        }
+        catch (RequestException e) {
+            throw e;  // upload too large
+        }
+        catch (RuntimeException e) {
+            throw new RequestException(400, "Invalid ICS file: " + e.getMessage(), e);
+        }
+
+        sendXlsxHeaders(pExchange, pConfig, 0);  // chunked, so the file is streamed as it is written
+        try (OutputStream os = new BufferedOutputStream(pExchange.getResponseBody())) {
+            converter.write(pConfig, termine, os, pStats);
+        }
+    }
+
+
+
+    /**
+     * Answer the request from the render cache, converting the uploaded ICS file only if no identical request was
+     * converted before. The upload is read completely, because its content is part of the cache key.
+     */
+    private void handleCached(final HttpExchange pExchange, final Config pConfig, final RunStats pStats)
+        throws IOException
+    {
+        final byte[] ics;
+        try (InputStream is = pExchange.getRequestBody()) {
+            ics = is.readNBytes((int) MAX_UPLOAD_BYTES + 1);
+        }
+        if (ics.length > MAX_UPLOAD_BYTES) {
+            throw new RequestException(413, UPLOAD_TOO_LARGE, null);
+        }
+
+        final byte[] file = renderCache.get(Manifest.fingerprint(pConfig, ics), () -> {
+            final Schedule termine;
+            try {
+                termine = converter.readSchedule(pConfig, new ByteArrayInputStream(ics), pStats);
+            }
+            catch (RuntimeException e) {
+                throw new RequestException(400, "Invalid ICS file: " + e.getMessage(), e);
+            }
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            converter.write(pConfig, termine, out, pStats);
+            return out.toByteArray();
+        });
+        if (pStats.getOutputBytes() == 0L) {
+            pStats.addOutputBytes(file.length);  // served from the cache
+        }
+
+        sendXlsxHeaders(pExchange, pConfig, file.length);
+        try (OutputStream os = pExchange.getResponseBody()) {
+            os.write(file);
+        }
+    }
+
+
+
+    private void sendXlsxHeaders(final HttpExchange pExchange, final Config pConfig, final long pLength)
+        throws IOException
+    {
+        pExchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE_XLSX);
+        pExchange.getResponseHeaders().set("Content-Disposition",
+            "attachment; filename=\"Abfallkalender " + pConfig.getYear() + ".xlsx\"");
+        pExchange.sendResponseHeaders(200, pLength);
+    }
+
+
+
+    private static long parseContentLength(final String pContentLength)
+    {
+        try {
+            return Long.parseLong(pContentLength.trim());
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid Content-Length: " + pContentLength, e);
+        }
+    }
+
+
+
+    /**
+     * Read the parameters of a request.
+     *
+     * @param pUri the request URI
+     * @return the configuration for the request
+     * @throws IllegalArgumentException a parameter is invalid
+     */
+    private Config parseRequest(final URI pUri)
+    {
+        int year = config.getYear();
+        Locale locale = null;
+        final String query = pUri.getRawQuery();
+        if (query != null && !query.isEmpty()) {
+            for (final String param : query.split("&")) {
+                final int eqPos = param.indexOf('=');
+                final String name = URLDecoder.decode(eqPos >= 0 ? param.substring(0, eqPos) : param,
+                    StandardCharsets.UTF_8);
+                final String value = eqPos >= 0 ? URLDecoder.decode(param.substring(eqPos + 1),
+                    StandardCharsets.UTF_8) : "";
+                if ("year".equals(name)) {
+                    final YearRange years = YearRange.parse(value);
+                    if (years == null || !years.isSingleYear() || years.getFirst() < 2000) {
+                        throw new IllegalArgumentException("Invalid year: " + value);
+                    }
+                    year = years.getFirst();
+                }
+                else if ("locale".equals(name)) {
+                    locale = new Locale(value);
+                    if (!AVAILABLE_LOCALES.contains(locale)) {
+                        throw new IllegalArgumentException("Unknown locale: " + value);
+                    }
+                }
+                else {
+                    throw new IllegalArgumentException("Unknown parameter: " + name);
+                }
+            }
+        }
+        return config.withRequest(year, locale);
+    }
+
+
+
+    private void sendError(final HttpExchange pExchange, final int pStatus, final String pMessage)
+        throws IOException
+    {
+        final byte[] body = (pMessage + "\n").getBytes(StandardCharsets.UTF_8);
+        pExchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        pExchange.sendResponseHeaders(pStatus, body.length);
+        try (OutputStream os = pExchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+}
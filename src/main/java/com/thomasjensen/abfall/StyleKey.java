@@ -0,0 +1,469 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.util.Objects;
+
+
+/**
+ * The visual attributes which distinguish one cell style from another. Two cells with equal keys look the same, so
+ * they can share one cell style in the workbook. The key fully describes the look of the cell independently of the
+ * rendering engine, so that all engines produce the same output.
+ */
+public final class StyleKey
+{
+    /**
+     * The kind of cell, which determines font, alignment, and the type of fill.
+     */
+    public enum Kind
+    {
+        Heading,
+        YearHeading,
+        ColumnHeading,
+        MonthHeading,
+        DayHeading,
+        DayCell,
+        Centered,
+        EmptyDay,
+        Sunday,
+        NoteBig,
+        NoteSmall;
+    }
+
+
+
+    /**
+     * Line style of one side of a cell. Thin lines on the left are drawn in {@link #SEPARATOR_COLOR}.
+     */
+    public enum Border
+    {
+        None,
+        Thin,
+        Medium;
+    }
+
+
+
+    /**
+     * The fonts used on the sheet. All of them are Calibri, the default being 11 points.
+     */
+    public enum Font
+    {
+        Default,
+        Bold24,
+        Bold20,
+        Bold14,
+        Plain14,
+        Plain11,
+        Underlined,
+        White;
+    }
+
+
+
+    /**
+     * The types of cell backgrounds.
+     */
+    public enum Fill
+    {
+        None,
+        Solid,
+
+        /** thin diagonal lines from bottom left to top right */
+        Hatched,
+
+        /** path gradient from {@link #getGradientInnerColor()} in the center to {@link #getFillColor()} */
+        Gradient;
+    }
+
+
+
+    /**
+     * Horizontal alignment of the cell content. Cells which are not {@link #General} are also centered vertically.
+     */
+    public enum Alignment
+    {
+        General,
+        Left,
+        Center;
+    }
+
+    //
+
+    /** color of the thin vertical lines separating the days */
+    public static final Rgb SEPARATOR_COLOR = new Rgb(128, 128, 128);
+
+    /** text color of the {@link Font#White} font */
+    public static final Rgb WHITE = new Rgb(255, 255, 255);
+
+    private static final Rgb ODD_BACKGROUND_COLOR = new Rgb(221, 221, 221);
+
+    private static final Rgb SUNDAY_BACKGROUND_COLOR = new Rgb(191, 191, 191);
+
+    private final Kind kind;
+
+    private final Border top;
+
+    private final Border bottom;
+
+    private final Border left;
+
+    private final Border right;
+
+    /** the gray background of every other month */
+    private final boolean shaded;
+
+    /** trash category determining the fill color, or <code>null</code> */
+    private final Art category;
+
+    /** weekday names are underlined on public holidays */
+    private final boolean holiday;
+
+
+
+    public StyleKey(final Kind pKind)
+    {
+        this(pKind, Border.None, Border.None, Border.None, Border.None, false, null, false);
+    }
+
+
+
+    public StyleKey(final Kind pKind, final Border pTop, final Border pBottom, final Border pLeft,
+        final Border pRight, final boolean pShaded, final Art pCategory, final boolean pHoliday)
+    {
+        kind = Objects.requireNonNull(pKind);
+        top = Objects.requireNonNull(pTop);
+        bottom = Objects.requireNonNull(pBottom);
+        left = Objects.requireNonNull(pLeft);
+        right = Objects.requireNonNull(pRight);
+        shaded = pShaded;
+        category = pCategory;
+        holiday = pHoliday;
+    }
+
+
+
+    public static StyleKey heading()
+    {
+        return new StyleKey(Kind.Heading);
+    }
+
+
+
+    public static StyleKey yearHeading()
+    {
+        return new StyleKey(Kind.YearHeading, Border.None, Border.Medium, Border.None, Border.None, false, null,
+            false);
+    }
+
+
+
+    public static StyleKey columnHeading(final int pDay)
+    {
+        return new StyleKey(Kind.ColumnHeading, Border.Medium, Border.Medium, leftBorder(pDay), rightBorder(pDay),
+            false, null, false);
+    }
+
+
+
+    public static StyleKey monthHeading(final Position pPos)
+    {
+        return new StyleKey(Kind.MonthHeading, topBorder(pPos), bottomBorder(pPos), Border.Medium, Border.Medium,
+            pPos.isOddMonth(), null, false);
+    }
+
+
+
+    public static StyleKey dayHeading(final Position pPos, final Art pCategory, final boolean pHoliday)
+    {
+        return new StyleKey(Kind.DayHeading, pPos.isJanuary() ? Border.Medium : Border.Thin, Border.None,
+            leftBorder(pPos.getDay()), rightBorder(pPos.getDay()), false, pCategory, pHoliday);
+    }
+
+
+
+    public static StyleKey dayCell(final Position pPos, final Art pCategory)
+    {
+        return new StyleKey(Kind.DayCell, Border.None, bottomBorder(pPos), leftBorder(pPos.getDay()),
+            rightBorder(pPos.getDay()), false, pCategory, false);
+    }
+
+
+
+    public static StyleKey centered(final Position pPos)
+    {
+        return normalCell(Kind.Centered, pPos, false);
+    }
+
+
+
+    public static StyleKey emptyDay(final Position pPos)
+    {
+        return normalCell(Kind.EmptyDay, pPos, pPos.isOddMonth());
+    }
+
+
+
+    public static StyleKey sunday(final Position pPos)
+    {
+        return normalCell(Kind.Sunday, pPos, false);
+    }
+
+
+
+    public static StyleKey noteBig()
+    {
+        return new StyleKey(Kind.NoteBig);
+    }
+
+
+
+    public static StyleKey noteSmall()
+    {
+        return new StyleKey(Kind.NoteSmall);
+    }
+
+
+
+    private static StyleKey normalCell(final Kind pKind, final Position pPos, final boolean pShaded)
+    {
+        return new StyleKey(pKind, topBorder(pPos), bottomBorder(pPos), leftBorder(pPos.getDay()),
+            rightBorder(pPos.getDay()), pShaded, null, false);
+    }
+
+
+
+    private static Border topBorder(final Position pPos)
+    {
+        Border result = Border.None;
+        if (pPos.isFirstRowOfDay()) {
+            result = pPos.isJanuary() ? Border.Medium : Border.Thin;
+        }
+        return result;
+    }
+
+
+
+    private static Border bottomBorder(final Position pPos)
+    {
+        Border result = Border.None;
+        if (pPos.isLastRowOfDay()) {
+            result = pPos.isDecember() ? Border.Medium : Border.Thin;
+        }
+        return result;
+    }
+
+
+
+    private static Border leftBorder(final int pDay)
+    {
+        return pDay == 1 ? Border.Medium : Border.Thin;
+    }
+
+
+
+    private static Border rightBorder(final int pDay)
+    {
+        return pDay == 31 ? Border.Medium : Border.None;
+    }
+
+
+
+    public Kind getKind()
+    {
+        return kind;
+    }
+
+
+
+    public Border getTop()
+    {
+        return top;
+    }
+
+
+
+    public Border getBottom()
+    {
+        return bottom;
+    }
+
+
+
+    public Border getLeft()
+    {
+        return left;
+    }
+
+
+
+    public Border getRight()
+    {
+        return right;
+    }
+
+
+
+    public boolean isShaded()
+    {
+        return shaded;
+    }
+
+
+
+    public Art getCategory()
+    {
+        return category;
+    }
+
+
+
+    public boolean isHoliday()
+    {
+        return holiday;
+    }
+
+
+
+    public Font getFont()
+    {
+        switch (kind) {
+            case Heading:
+                return Font.Bold24;
+            case YearHeading:
+                return Font.Bold20;
+            case ColumnHeading:
+            case MonthHeading:
+                return Font.Bold14;
+            case DayHeading:
+                return holiday ? Font.Underlined : Font.Default;
+            case Sunday:
+                return Font.White;
+            case NoteBig:
+                return Font.Plain14;
+            case NoteSmall:
+                return Font.Plain11;
+            default:
+                return Font.Default;
+        }
+    }
+
+
+
+    public Alignment getAlignment()
+    {
+        switch (kind) {
+            case Heading:
+            case NoteBig:
+            case NoteSmall:
+                return Alignment.General;
+            case MonthHeading:
+                return Alignment.Left;
+            default:
+                return Alignment.Center;
+        }
+    }
+
+
+
+    public Fill getFill()
+    {
+        Fill result = Fill.None;
+        if (kind == Kind.DayHeading) {
+            result = category == Art.Gartenabfall ? Fill.Hatched : Fill.Solid;
+        }
+        else if (kind == Kind.DayCell) {
+            result = category == Art.Gartenabfall ? Fill.Hatched : Fill.Gradient;
+        }
+        else if (kind == Kind.Sunday || shaded) {
+            result = Fill.Solid;
+        }
+        return result;
+    }
+
+
+
+    /**
+     * Getter.
+     * @return the foreground color of the fill, or <code>null</code> if there is no fill
+     */
+    public Rgb getFillColor()
+    {
+        Rgb result = null;
+        if (kind == Kind.DayHeading || kind == Kind.DayCell) {
+            result = category.getColor();
+        }
+        else if (kind == Kind.Sunday) {
+            result = SUNDAY_BACKGROUND_COLOR;
+        }
+        else if (shaded) {
+            result = ODD_BACKGROUND_COLOR;
+        }
+        return result;
+    }
+
+
+
+    /**
+     * Getter.
+     * @return the color in the center of a {@link Fill#Gradient} fill, or <code>null</code> if there is none
+     */
+    public Rgb getGradientInnerColor()
+    {
+        return getFill() == Fill.Gradient ? category.getLightColor() : null;
+    }
+
+
+
+    @Override
+    public boolean equals(final Object pOther)
+    {
+        if (this == pOther) {
+            return true;
+        }
+        if (pOther == null || getClass() != pOther.getClass()) {
+            return false;
+        }
+
+        final StyleKey other = (StyleKey) pOther;
+        return kind == other.kind && top == other.top && bottom == other.bottom && left == other.left
+            && right == other.right && shaded == other.shaded && category == other.category
+            && holiday == other.holiday;
+    }
+
+
+
+    @Override
+    public int hashCode()
+    {
+        int result = kind.ordinal();
+        result = 31 * result + top.ordinal();
+        result = 31 * result + bottom.ordinal();
+        result = 31 * result + left.ordinal();
+        result = 31 * result + right.ordinal();
+        result = 31 * result + (shaded ? 1 : 0);
+        result = 31 * result + (category != null ? category.ordinal() + 1 : 0);
+        result = 31 * result + (holiday ? 1 : 0);
+        return result;
+    }
+
+
+
+    @Override
+    public String toString()
+    {
+        return kind + "{top=" + top + ", bottom=" + bottom + ", left=" + left + ", right=" + right
+            + ", shaded=" + shaded + ", category=" + category + ", holiday=" + holiday + '}';
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Writes the page as an SVG image. Unlike PDF, SVG leaves measuring and placing the text to the viewer, so the text
+ * may use any characters, and is set in Calibri if the viewer has it, as in the Excel file.
+ */
+public class SvgCanvas
+    extends PrintCanvas
+{
+    /** Carlito is metrically compatible to Calibri, and often installed on Linux instead */
+    private static final String FONT_FAMILY = "Calibri, Carlito, Arial, Helvetica, sans-serif";
+
+    /** pattern and gradient definitions */
+    private final StringBuilder defs = new StringBuilder();
+
+    /** the graphics elements */
+    private final StringBuilder body = new StringBuilder(65536);
+
+    /** IDs of the hatch patterns by their line color */
+    private final Map<Rgb, String> hatchIds = new HashMap<>();
+
+    /** IDs of the path gradients by their colors; each ID is the prefix of four linear gradients */
+    private final Map<String, String> gradientIds = new HashMap<>();
+
+
+
+    public SvgCanvas(final String pTitle, final double pSheetWidth, final double pSheetHeight)
+    {
+        super(pTitle, pSheetWidth, pSheetHeight);
+    }
+
+
+
+    @Override
+    public void fillRect(final double pX, final double pY, final double pWidth, final double pHeight,
+        final Rgb pColor)
+    {
+        appendRect(pX, pY, pWidth, pHeight, toSvgColor(pColor));
+    }
+
+
+
+    @Override
+    public void fillHatched(final double pX, final double pY, final double pWidth, final double pHeight,
+        final Rgb pColor)
+    {
+        final String id = hatchIds.computeIfAbsent(pColor, k -> {
+            // one tile holds the line where x + y equals the spacing, and the ends of the lines through its corners
+            final String s = format(HATCH_SPACING);
+            final String newId = "h" + (hatchIds.size() + 1);
+            defs.append("<pattern id=\"").append(newId).append("\" patternUnits=\"userSpaceOnUse\" width=\"")
+                .append(s).append("\" height=\"").append(s).append("\"><rect width=\"").append(s)
+                .append("\" height=\"").append(s).append("\" fill=\"#ffffff\"/><path d=\"M0,").append(s).append(" L")
+                .append(s).append(",0 M-1,1 L1,-1 M").append(format(HATCH_SPACING - 1)).append(',')
+                .append(format(HATCH_SPACING + 1)).append(" L").append(format(HATCH_SPACING + 1)).append(',')
+                .append(format(HATCH_SPACING - 1)).append("\" stroke=\"").append(toSvgColor(pColor))
+                .append("\" stroke-width=\"").append(format(HATCH_LINE_WIDTH)).append("\"/></pattern>\n");
+            return newId;
+        });
+        appendRect(pX, pY, pWidth, pHeight, "url(#" + id + ")");
+    }
+
+
+
+    @Override
+    public void fillPathGradient(final double pX, final double pY, final double pWidth, final double pHeight,
+        final Rgb pInner, final Rgb pOuter)
+    {
+        fillRect(pX, pY, pWidth, pHeight, pOuter);  // covers hairline gaps which viewers leave between the triangles
+        final String id = getGradient(pInner, pOuter);
+        final double centerX = pX + pWidth / 2;
+        final double centerY = pY + pHeight / 2;
+        appendTriangle(id + "t", centerX, centerY, pX, pY, pX + pWidth, pY);
+        appendTriangle(id + "r", centerX, centerY, pX + pWidth, pY, pX + pWidth, pY + pHeight);
+        appendTriangle(id + "b", centerX, centerY, pX + pWidth, pY + pHeight, pX, pY + pHeight);
+        appendTriangle(id + "l", centerX, centerY, pX, pY + pHeight, pX, pY);
+    }
+
+
+
+    /**
+     * Get the linear gradients for the four triangles of a path gradient. Their coordinates are relative to the
+     * bounding box of the triangle, so that each runs from the center of the rectangle to one of its edges.
+     */
+    private String getGradient(final Rgb pInner, final Rgb pOuter)
+    {
+        return gradientIds.computeIfAbsent(pInner.toArgbHex() + pOuter.toArgbHex(), k -> {
+            final String newId = "g" + (gradientIds.size() + 1);
+            appendLinearGradient(newId + "t", "0", "1", "0", "0", pInner, pOuter);
+            appendLinearGradient(newId + "r", "0", "0", "1", "0", pInner, pOuter);
+            appendLinearGradient(newId + "b", "0", "0", "0", "1", pInner, pOuter);
+            appendLinearGradient(newId + "l", "1", "0", "0", "0", pInner, pOuter);
+            return newId;
+        });
+    }
+
+
+
+    private void appendLinearGradient(final String pId, final String pX1, final String pY1, final String pX2,
+        final String pY2, final Rgb pInner, final Rgb pOuter)
+    {
+        defs.append("<linearGradient id=\"").append(pId).append("\" x1=\"").append(pX1).append("\" y1=\"")
+            .append(pY1).append("\" x2=\"").append(pX2).append("\" y2=\"").append(pY2)
+            .append("\"><stop offset=\"0\" stop-color=\"").append(toSvgColor(pInner))
+            .append("\"/><stop offset=\"1\" stop-color=\"").append(toSvgColor(pOuter))
+            .append("\"/></linearGradient>\n");
+    }
+
+
+
+    private void appendTriangle(final String pGradientId, final double pCenterX, final double pCenterY,
+        final double pX1, final double pY1, final double pX2, final double pY2)
+    {
+        body.append("<path d=\"M").append(format(pCenterX)).append(',').append(format(pCenterY))
+            .append(" L").append(format(pX1)).append(',').append(format(pY1))
+            .append(" L").append(format(pX2)).append(',').append(format(pY2))
+            .append(" Z\" fill=\"url(#").append(pGradientId).append(")\"/>\n");
+    }
+
+
+
+    @Override
+    public void drawLine(final double pX1, final double pY1, final double pX2, final double pY2,
+        final double pWidth, final Rgb pColor)
+    {
+        body.append("<line");
+        appendAttribute("x1", pX1);
+        appendAttribute("y1", pY1);
+        appendAttribute("x2", pX2);
+        appendAttribute("y2", pY2);
+        body.append(" stroke=\"").append(toSvgColor(pColor)).append('"');
+        appendAttribute("stroke-width", pWidth);
+        body.append(" stroke-linecap=\"square\"/>\n");
+    }
+
+
+
+    @Override
+    public void drawText(final double pX, final double pY, final String pText, final StyleKey.Font pFont,
+        final Anchor pAnchor)
+    {
+        body.append("<text");
+        appendAttribute("x", pX);
+        appendAttribute("y", pY);
+        appendAttribute("font-size", getFontSize(pFont));
+        if (isBold(pFont)) {
+            body.append(" font-weight=\"bold\"");
+        }
+        if (pAnchor != Anchor.Start) {
+            body.append(" text-anchor=\"").append(pAnchor == Anchor.Middle ? "middle" : "end").append('"');
+        }
+        if (!BLACK.equals(getTextColor(pFont))) {
+            body.append(" fill=\"").append(toSvgColor(getTextColor(pFont))).append('"');
+        }
+        if (pFont == StyleKey.Font.Underlined) {
+            body.append(" text-decoration=\"underline\"");
+        }
+        body.append('>');
+        XlsxWriter.appendEscaped(body, pText);
+        body.append("</text>\n");
+    }
+
+
+
+    @Override
+    public void drawPng(final byte[] pPng, final double pX, final double pY, final double pWidth,
+        final double pHeight)
+    {
+        body.append("<image");
+        appendAttribute("x", pX);
+        appendAttribute("y", pY);
+        appendAttribute("width", pWidth);
+        appendAttribute("height", pHeight);
+        body.append(" preserveAspectRatio=\"none\" image-rendering=\"optimizeSpeed\"")
+            .append(" xlink:href=\"data:image/png;base64,").append(Base64.getEncoder().encodeToString(pPng))
+            .append("\"/>\n");
+    }
+
+
+
+    @Override
+    public void finish(final OutputStream pOutput)
+        throws IOException
+    {
+        final StringBuilder svg = new StringBuilder(body.length() + defs.length() + 1024);
+        svg.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+            .append("<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" ")
+            .append("version=\"1.1\" width=\"297mm\" height=\"210mm\" viewBox=\"0 0 ").append(format(PAGE_WIDTH))
+            .append(' ').append(format(PAGE_HEIGHT)).append("\" xml:space=\"preserve\">\n")  // keep leading spaces
+            .append("<title>");
+        XlsxWriter.appendEscaped(svg, title);
+        svg.append("</title>\n<defs>\n").append(defs).append("</defs>\n")
+            .append("<rect width=\"100%\" height=\"100%\" fill=\"#ffffff\"/>\n")
+            .append("<g transform=\"translate(").append(format(offsetX)).append(',').append(format(offsetY))
+            .append(") scale(").append(format(scale)).append(")\" font-family=\"").append(FONT_FAMILY)
+            .append("\">\n").append(body).append("</g>\n</svg>\n");
+        pOutput.write(svg.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+
+
+    private void appendRect(final double pX, final double pY, final double pWidth, final double pHeight,
+        final String pFill)
+    {
+        body.append("<rect");
+        appendAttribute("x", pX);
+        appendAttribute("y", pY);
+        appendAttribute("width", pWidth);
+        appendAttribute("height", pHeight);
+        body.append(" fill=\"").append(pFill).append("\"/>\n");
+    }
+
+
+
+    private void appendAttribute(final String pName, final double pValue)
+    {
+        body.append(' ').append(pName).append("=\"").append(format(pValue)).append('"');
+    }
+
+
+
+    private static String toSvgColor(final Rgb pColor)
+    {
+        return "#" + pColor.toArgbHex().substring(2).toLowerCase();
+    }
+}
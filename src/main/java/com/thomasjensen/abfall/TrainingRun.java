@@ -0,0 +1,165 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * Creates a class data sharing (CDS) archive of the classes used by a conversion. On the following starts, the JVM
+ * maps these classes from the archive instead of loading and verifying them from the jar files, which saves a large
+ * part of the startup time. The start scripts use the archive if it exists.
+ * <p>The archive is created by a training run, which converts a bundled sample ICS file with each engine and into
+ * each print format in a child JVM. The child JVM gets the same class path as this one, because the archive is only
+ * valid for that.</p>
+ */
+public class TrainingRun
+{
+    private static final Logger LOG = LogManager.getLogger(TrainingRun.class);
+
+    /** file name of the archive, which is expected next to the jar file by the start scripts */
+    public static final String ARCHIVE_NAME = "abfall.jsa";
+
+    private static final String SAMPLE_ICS = "beispiel.ics";
+
+    /** the year covered by the sample ICS file */
+    private static final int SAMPLE_YEAR = 2026;
+
+
+
+    /**
+     * Create or replace the archive.
+     *
+     * @return <code>true</code> if the archive was created successfully
+     * @throws IOException the training run could not be started, or the archive could not be moved into place
+     */
+    public boolean createArchive()
+        throws IOException
+    {
+        final File archive = getArchiveFile();
+        if (archive == null) {
+            LOG.error("The class data sharing archive can only be created when running from the jar file.");
+            return false;
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Creating class data sharing archive " + archive + " by a training run ...");
+        }
+
+        final long startMillis = System.currentTimeMillis();
+        final File tmpArchive = new File(archive.getPath() + ".tmp");
+        Files.deleteIfExists(tmpArchive.toPath());
+        final List<String> command = Arrays.asList(
+            Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+            "-XX:ArchiveClassesAtExit=" + tmpArchive.getPath(),
+            "-Xlog:cds=error,cds+dynamic=error",  // skipped classes are reported as warnings, which is normal
+            "-cp", System.getProperty("java.class.path"),
+            TrainingRun.class.getName());
+        final int exitCode;
+        try {
+            exitCode = new ProcessBuilder(command).inheritIO().start().waitFor();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.error("Training run interrupted");
+            return false;
+        }
+        if (exitCode != 0 || !tmpArchive.isFile()) {
+            LOG.error("Training run failed (exit code " + exitCode + "). No archive created.");
+            Files.deleteIfExists(tmpArchive.toPath());
+            return false;
+        }
+        Files.move(tmpArchive.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Created " + archive + " (" + archive.length() / 1024 + " KiB) in "
+                + (System.currentTimeMillis() - startMillis) + " ms. It is used from the next start on.");
+        }
+        return true;
+    }
+
+
+
+    /**
+     * Determine the location of the archive.
+     *
+     * @return the archive file next to our jar file, or <code>null</code> if we are not running from a jar file (CDS
+     * does not support classes from directories)
+     */
+    static File getArchiveFile()
+    {
+        final CodeSource codeSource = TrainingRun.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            return null;
+        }
+        final File location;
+        try {
+            location = new File(codeSource.getLocation().toURI());
+        }
+        catch (URISyntaxException e) {
+            return null;
+        }
+        return location.isFile() ? new File(location.getParentFile(), ARCHIVE_NAME) : null;
+    }
+
+
+
+    /**
+     * The training run, executed in the child JVM which writes the archive when it exits. It goes through the same
+     * code paths as a real conversion, so that all classes needed for a conversion are loaded.
+     *
+     * @param pArgs ignored
+     * @throws IOException a conversion failed
+     */
+    public static void main(final String[] pArgs)
+        throws IOException
+    {
+        final Path tmpDir = Files.createTempDirectory("abfall-training");
+        try {
+            final Path icsFile = tmpDir.resolve(SAMPLE_ICS);
+            try (InputStream is = TrainingRun.class.getResourceAsStream(SAMPLE_ICS)) {
+                Files.copy(is, icsFile);
+            }
+            for (final Engine engine : Engine.values()) {
+                final Path outFile = tmpDir.resolve("Abfallkalender " + engine + ".xlsx");
+                new Main().entrypoint(new String[]{"--year", String.valueOf(SAMPLE_YEAR), "--engine", engine.name(),
+                    "--output", outFile.toString(), icsFile.toString()});
+            }
+            for (final Format format : new Format[]{Format.Pdf, Format.Svg}) {
+                final Path outFile = tmpDir.resolve("Abfallkalender." + format.getExtension());
+                new Main().entrypoint(new String[]{"--year", String.valueOf(SAMPLE_YEAR), "--output",
+                    outFile.toString(), icsFile.toString()});
+            }
+        }
+        finally {
+            try (Stream<Path> files = Files.walk(tmpDir)) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+
+/**
+ * Converts the ICS files of a directory, and keeps converting them again whenever they change. Editors and copy
+ * tools often write a file in several steps, so a file is converted only after it has not changed for
+ * {@link #DEBOUNCE_MILLIS}. Changed files are converted in parallel by the configured number of threads. A file
+ * which changes again while it is being converted is converted once more afterwards, however often it changed.
+ */
+public class Watcher
+{
+    private static final Logger LOG = LogManager.getLogger(Watcher.class);
+
+    /** quiet time after the last change of a file before it is converted */
+    public static final long DEBOUNCE_MILLIS = 500L;
+
+    private final Config config;
+
+    private final BatchRunner batchRunner;
+
+    private final Converter converter = new Converter();
+
+    /** files waiting for their quiet time to pass, with the time when they may be converted */
+    private final Map<Path, Long> pending = new ConcurrentHashMap<>();
+
+    /** files being converted; guarded by <code>this</code> */
+    private final Set<Path> running = new HashSet<>();
+
+    /** files which changed again while being converted; guarded by <code>this</code> */
+    private final Set<Path> changedWhileRunning = new HashSet<>();
+
+    private volatile WatchService watchService = null;
+
+
+
+    /**
+     * Constructor.
+     *
+     * @param pConfig the configuration, whose input is a directory or glob pattern as in batch mode
+     */
+    public Watcher(final Config pConfig)
+    {
+        config = pConfig;
+        batchRunner = new BatchRunner(pConfig);
+    }
+
+
+
+    /**
+     * Convert all files once, and then watch for changes until {@link #stop()} is called.
+     *
+     * @throws IOException the directory could not be watched, or the output directory could not be created
+     */
+    public void run()
+        throws IOException
+    {
+        final File input = config.getInFileIcs();
+        final Path dir = input.isDirectory() ? input.toPath() : input.getAbsoluteFile().getParentFile().toPath();
+        final String glob = input.isDirectory() ? BatchRunner.DEFAULT_GLOB : input.getName();
+        final PathMatcher matcher = dir.getFileSystem().getPathMatcher("glob:" + glob);
+
+        final ExecutorService pool = Executors.newFixedThreadPool(config.getThreads());
+        try (WatchService ws = dir.getFileSystem().newWatchService()) {
+            watchService = ws;
+            // registered before the initial conversion, so that no change gets lost in between
+            dir.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            batchRunner.run();
+            if (LOG.isInfoEnabled()) {
+                LOG.info("Watching " + dir + " for changes of " + glob + " ...");
+            }
+            watch(dir, matcher, pool);
+        }
+        catch (ClosedWatchServiceException e) {
+            LOG.info("Stopped watching.");
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+
+
+    /**
+     * Stop watching. Conversions in progress are completed.
+     */
+    public void stop()
+    {
+        final WatchService ws = watchService;
+        if (ws != null) {
+            try {
+                ws.close();
+            }
+            catch (IOException e) {
+                LOG.warn("Failed to close the watch service: " + e);
+            }
+        }
+    }
+
+
+
+    private void watch(final Path pDir, final PathMatcher pMatcher, final ExecutorService pPool)
+        throws IOException
+    {
+        while (true) {
+            final WatchKey key;
+            try {
+                key = watchService.poll(getPollTimeoutMillis(), TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (key != null) {
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        LOG.warn("Too many changes at once in " + pDir + ", checking all files");
+                        scheduleAll(pDir, pMatcher);
+                    }
+                    else {
+                        final Path name = (Path) event.context();
+                        if (pMatcher.matches(name)) {
+                            schedule(pDir.resolve(name));
+                        }
+                    }
+                }
+                if (!key.reset()) {
+                    LOG.error("Directory " + pDir + " can no longer be watched");
+                    return;
+                }
+            }
+            submitDueConversions(pPool);
+        }
+    }
+
+
+
+    /**
+     * Determine how long to wait for file system events.
+     *
+     * @return the time until the next pending file may be converted, but not more than the debounce time
+     */
+    private long getPollTimeoutMillis()
+    {
+        final long now = System.currentTimeMillis();
+        long result = DEBOUNCE_MILLIS;
+        for (final Long due : pending.values()) {
+            result = Math.min(result, due.longValue() - now);
+        }
+        return Math.max(result, 1L);
+    }
+
+
+
+    private void schedule(final Path pFile)
+    {
+        pending.put(pFile, System.currentTimeMillis() + DEBOUNCE_MILLIS);  // later changes postpone the conversion
+    }
+
+
+
+    private void scheduleAll(final Path pDir, final PathMatcher pMatcher)
+        throws IOException
+    {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(pDir)) {
+            for (final Path path : stream) {
+                if (pMatcher.matches(path.getFileName()) && Files.isRegularFile(path)) {
+                    schedule(path);
+                }
+            }
+        }
+    }
+
+
+
+    private void submitDueConversions(final ExecutorService pPool)
+    {
+        final long now = System.currentTimeMillis();
+        for (final Map.Entry<Path, Long> entry : pending.entrySet()) {
+            final Path file = entry.getKey();
+            if (entry.getValue().longValue() <= now && pending.remove(file, entry.getValue()) && start(file)) {
+                pPool.submit(() -> convert(file));
+            }
+        }
+    }
+
+
+
+    /**
+     * Mark a file as being converted.
+     *
+     * @param pFile the file
+     * @return <code>true</code> if the file may be converted now, or <code>false</code> if it is already being
+     * converted, in which case it is converted again afterwards
+     */
+    private synchronized boolean start(final Path pFile)
+    {
+        if (running.add(pFile)) {
+            return true;
+        }
+        changedWhileRunning.add(pFile);
+        return false;
+    }
+
+
+
+    private synchronized void finish(final Path pFile)
+    {
+        running.remove(pFile);
+        if (changedWhileRunning.remove(pFile)) {
+            schedule(pFile);
+        }
+    }
+
+
+
+    private void convert(final Path pFile)
+    {
+        try {
+            if (!Files.isRegularFile(pFile)) {
+                return;  // deleted or renamed in the meantime
+            }
+            final File inFile = pFile.toFile();
+            converter.convert(config.withFiles(inFile, batchRunner.getOutFile(inFile, config.getOutFileXlsx())));
+        }
+        catch (IOException | RuntimeException e) {
+            LOG.error("Failed to convert " + pFile + ": " + e, e);
+        }
+        finally {
+            finish(pFile);
+        }
+    }
+}
@@ -0,0 +1,692 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+
+/**
+ * Writes a {@link CalendarLayout} as an Excel file by streaming the XML parts of the OOXML package directly into the
+ * zip file, without building an object model. This is much faster than POI and produces almost no garbage. The
+ * month rows can be rendered in parallel.
+ * <p>Instances have no state, so they may be shared between threads.</p>
+ */
+public class XlsxWriter
+{
+    private static final String SHEET_NAME = "Abholtermine";
+
+    private static final String XML_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+
+    private static final String NS_MAIN = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+
+    private static final String NS_REL = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    private static final String NS_PKG_REL = "http://schemas.openxmlformats.org/package/2006/relationships";
+
+    /** width of a digit in the default font (Calibri 11) in pixels, as used by Excel to convert column widths */
+    private static final double CHAR_WIDTH_PX = 7.0017d;
+
+    private static final long EMU_PER_PIXEL = 9525L;
+
+    private static final long EMU_PER_POINT = 12700L;
+
+    /** column names A, B, C, ... */
+    private static final String[] COLUMN_NAMES = new String[CalendarLayout.NUM_COLUMNS];
+
+    static {
+        for (int i = 0; i < COLUMN_NAMES.length; i++) {
+            COLUMN_NAMES[i] = toColumnName(i);
+        }
+    }
+
+    private final boolean parallel;
+
+
+
+    /**
+     * Constructor.
+     *
+     * @param pConfig the configuration; if more than one thread is configured, month rows are rendered in parallel
+     */
+    public XlsxWriter(final Config pConfig)
+    {
+        parallel = pConfig.getThreads() > 1;
+    }
+
+
+
+    /**
+     * Write the calendar as an Excel file.
+     *
+     * @param pLayout the calendar
+     * @param pOut the target stream, which is not closed
+     * @throws IOException writing failed
+     */
+    public void write(final CalendarLayout pLayout, final OutputStream pOut)
+        throws IOException
+    {
+        final StyleTable styles = new StyleTable(pLayout);
+        final ZipOutputStream zip = new ZipOutputStream(pOut);
+        zip.setLevel(Deflater.BEST_SPEED);  // the XML is very repetitive, so this still compresses well
+        final Writer out = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+
+        startPart(zip, "[Content_Types].xml");
+        writeContentTypes(out);
+        endPart(zip, out);
+
+        startPart(zip, "_rels/.rels");
+        writeRelationships(out, new String[][]{
+            {"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument", "xl/workbook.xml"},
+            {"http://schemas.openxmlformats.org/package/2006/relationships/metadata/core-properties",
+                "docProps/core.xml"},
+            {"http://schemas.openxmlformats.org/officeDocument/2006/relationships/extended-properties",
+                "docProps/app.xml"}});
+        endPart(zip, out);
+
+        startPart(zip, "docProps/app.xml");
+        out.write(XML_HEADER);
+        out.write("<Properties xmlns=\"http://schemas.openxmlformats.org/officeDocument/2006/extended-properties\">"
+            + "<Application>abfall</Application></Properties>");
+        endPart(zip, out);
+
+        startPart(zip, "docProps/core.xml");
+        writeCoreProperties(out, pLayout);
+        endPart(zip, out);
+
+        startPart(zip, "xl/workbook.xml");
+        writeWorkbook(out, pLayout);
+        endPart(zip, out);
+
+        startPart(zip, "xl/_rels/workbook.xml.rels");
+        writeRelationships(out, new String[][]{
+            {NS_REL + "/worksheet", "worksheets/sheet1.xml"},
+            {NS_REL + "/styles", "styles.xml"}});
+        endPart(zip, out);
+
+        startPart(zip, "xl/styles.xml");
+        styles.write(out);
+        endPart(zip, out);
+
+        startPart(zip, "xl/worksheets/sheet1.xml");
+        writeSheet(out, pLayout, styles);
+        endPart(zip, out);
+
+        startPart(zip, "xl/worksheets/_rels/sheet1.xml.rels");
+        writeRelationships(out, new String[][]{{NS_REL + "/drawing", "../drawings/drawing1.xml"}});
+        endPart(zip, out);
+
+        startPart(zip, "xl/drawings/drawing1.xml");
+        writeDrawing(out, pLayout);
+        endPart(zip, out);
+
+        startPart(zip, "xl/drawings/_rels/drawing1.xml.rels");
+        writeRelationships(out, new String[][]{{NS_REL + "/image", "../media/image1.png"}});
+        endPart(zip, out);
+
+        startPart(zip, "xl/media/image1.png");
+        zip.write(pLayout.getQrCodePng());
+        zip.closeEntry();
+
+        zip.finish();
+    }
+
+
+
+    private void startPart(final ZipOutputStream pZip, final String pName)
+        throws IOException
+    {
+        pZip.putNextEntry(new ZipEntry(pName));
+    }
+
+
+
+    private void endPart(final ZipOutputStream pZip, final Writer pOut)
+        throws IOException
+    {
+        pOut.flush();
+        pZip.closeEntry();
+    }
+
+
+
+    private void writeContentTypes(final Writer pOut)
+        throws IOException
+    {
+        final String ct = "application/vnd.openxmlformats-";
+        pOut.write(XML_HEADER);
+        pOut.write("<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">");
+        pOut.write("<Default Extension=\"rels\" ContentType=\"" + ct + "package.relationships+xml\"/>");
+        pOut.write("<Default Extension=\"xml\" ContentType=\"application/xml\"/>");
+        pOut.write("<Default Extension=\"png\" ContentType=\"image/png\"/>");
+        pOut.write("<Override PartName=\"/xl/workbook.xml\" ContentType=\"" + ct
+            + "officedocument.spreadsheetml.sheet.main+xml\"/>");
+        pOut.write("<Override PartName=\"/xl/styles.xml\" ContentType=\"" + ct
+            + "officedocument.spreadsheetml.styles+xml\"/>");
+        pOut.write("<Override PartName=\"/xl/worksheets/sheet1.xml\" ContentType=\"" + ct
+            + "officedocument.spreadsheetml.worksheet+xml\"/>");
+        pOut.write("<Override PartName=\"/xl/drawings/drawing1.xml\" ContentType=\"" + ct
+            + "officedocument.drawing+xml\"/>");
+        pOut.write("<Override PartName=\"/docProps/core.xml\" ContentType=\"" + ct
+            + "package.core-properties+xml\"/>");
+        pOut.write("<Override PartName=\"/docProps/app.xml\" ContentType=\"" + ct
+            + "officedocument.extended-properties+xml\"/>");
+        pOut.write("</Types>");
+    }
+
+
+
+    /**
+     * Write a relationships part.
+     *
+     * @param pOut the target
+     * @param pRelationships pairs of relationship type and target; the IDs are numbered from <code>rId1</code>
+     * @throws IOException writing failed
+     */
+    private void writeRelationships(final Writer pOut, final String[][] pRelationships)
+        throws IOException
+    {
+        pOut.write(XML_HEADER);
+        pOut.write("<Relationships xmlns=\"" + NS_PKG_REL + "\">");
+        for (int i = 0; i < pRelationships.length; i++) {
+            pOut.write("<Relationship Id=\"rId" + (i + 1) + "\" Type=\"" + pRelationships[i][0] + "\" Target=\""
+                + pRelationships[i][1] + "\"/>");
+        }
+        pOut.write("</Relationships>");
+    }
+
+
+
+    private void writeCoreProperties(final Writer pOut, final CalendarLayout pLayout)
+        throws IOException
+    {
+        pOut.write(XML_HEADER);
+        pOut.write("<cp:coreProperties"
+            + " xmlns:cp=\"http://schemas.openxmlformats.org/package/2006/metadata/core-properties\""
+            + " xmlns:dc=\"http://purl.org/dc/elements/1.1/\" xmlns:dcterms=\"http://purl.org/dc/terms/\""
+            + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">");
+        pOut.write("<dcterms:created xsi:type=\"dcterms:W3CDTF\">"
+            + Instant.now().truncatedTo(ChronoUnit.SECONDS) + "</dcterms:created>");
+        pOut.write("<dc:creator>abfall</dc:creator>");
+        pOut.write("<dc:description>Generated by &quot;abfall&quot; from https://github.com/tsjensen/abfall"
+            + "</dc:description>");
+        pOut.write("<dc:title>Abfallkalender " + pLayout.getYear() + "</dc:title>");
+        pOut.write("</cp:coreProperties>");
+    }
+
+
+
+    private void writeWorkbook(final Writer pOut, final CalendarLayout pLayout)
+        throws IOException
+    {
+        pOut.write(XML_HEADER);
+        pOut.write("<workbook xmlns=\"" + NS_MAIN + "\" xmlns:r=\"" + NS_REL + "\">");
+        pOut.write("<bookViews><workbookView activeTab=\"0\"/></bookViews>");
+        pOut.write("<sheets><sheet name=\"" + SHEET_NAME + "\" sheetId=\"1\" r:id=\"rId1\"/></sheets>");
+        pOut.write("<definedNames><definedName name=\"_xlnm.Print_Area\" localSheetId=\"0\">'" + SHEET_NAME
+            + "'!$A$1:$" + COLUMN_NAMES[CalendarLayout.NUM_COLUMNS - 1] + '$' + (pLayout.getLastRow() + 1)
+            + "</definedName></definedNames>");
+        pOut.write("</workbook>");
+    }
+
+
+
+    private void writeSheet(final Writer pOut, final CalendarLayout pLayout, final StyleTable pStyles)
+        throws IOException
+    {
+        pOut.write(XML_HEADER);
+        pOut.write("<worksheet xmlns=\"" + NS_MAIN + "\" xmlns:r=\"" + NS_REL + "\">");
+        pOut.write("<dimension ref=\"A1:" + COLUMN_NAMES[CalendarLayout.NUM_COLUMNS - 1]
+            + pLayout.getRows().size() + "\"/>");
+        pOut.write("<sheetViews><sheetView tabSelected=\"1\" workbookViewId=\"0\"/></sheetViews>");
+        pOut.write("<sheetFormatPr defaultRowHeight=\"" + CalendarLayout.DEFAULT_ROW_HEIGHT + "\"/>");
+        writeColumns(pOut, pLayout);
+
+        pOut.write("<sheetData>");
+        for (final StringBuilder fragment : renderRows(pLayout.getRows(), pStyles)) {
+            pOut.append(fragment);
+        }
+        pOut.write("</sheetData>");
+
+        final List<CalendarLayout.Region> mergedRegions = pLayout.getMergedRegions();
+        if (!mergedRegions.isEmpty()) {
+            final StringBuilder sb = new StringBuilder(mergedRegions.size() * 32);
+            sb.append("<mergeCells count=\"").append(mergedRegions.size()).append("\">");
+            for (final CalendarLayout.Region region : mergedRegions) {
+                sb.append("<mergeCell ref=\"");
+                appendCellRef(sb, region.getFirstRow(), region.getFirstColumn());
+                sb.append(':');
+                appendCellRef(sb, region.getLastRow(), region.getLastColumn());
+                sb.append("\"/>");
+            }
+            sb.append("</mergeCells>");
+            pOut.append(sb);
+        }
+
+        pOut.write("<pageMargins left=\"0.7\" right=\"0.7\" top=\"0.75\" bottom=\"0.75\" header=\"0.3\""
+            + " footer=\"0.3\"/>");
+        pOut.write("<pageSetup paperSize=\"9\" orientation=\"landscape\"/>");  // A4
+        pOut.write("<drawing r:id=\"rId1\"/>");
+        pOut.write("</worksheet>");
+    }
+
+
+
+    private void writeColumns(final Writer pOut, final CalendarLayout pLayout)
+        throws IOException
+    {
+        pOut.write("<cols>");
+        int first = 0;
+        for (int col = 1; col <= CalendarLayout.NUM_COLUMNS; col++) {
+            if (col == CalendarLayout.NUM_COLUMNS || pLayout.getColumnWidth(col) != pLayout.getColumnWidth(first)) {
+                pOut.write("<col min=\"" + (first + 1) + "\" max=\"" + col + "\" width=\""
+                    + (pLayout.getColumnWidth(first) / 256d) + "\" customWidth=\"1\"/>");
+                first = col;
+            }
+        }
+        pOut.write("</cols>");
+    }
+
+
+
+    /**
+     * Render the rows into XML fragments. The rows of each month form one fragment, which can be rendered in
+     * parallel with the other months.
+     *
+     * @param pRows all rows of the sheet
+     * @param pStyles the style table, which is only read
+     * @return the fragments in row order
+     */
+    private List<StringBuilder> renderRows(final List<CalendarLayout.Row> pRows, final StyleTable pStyles)
+    {
+        final int firstMonthRow = CalendarLayout.FIRST_MONTH_ROW;
+        final int monthRows = CalendarLayout.ROWS_PER_DAY;
+        final int endMonthRow = Math.min(pRows.size(), firstMonthRow + 12 * monthRows);
+        final int numMonths = (endMonthRow - firstMonthRow) / monthRows;
+
+        final StringBuilder[] months = new StringBuilder[numMonths];
+        IntStream monthStream = IntStream.range(0, numMonths);
+        if (parallel) {
+            monthStream = monthStream.parallel();
+        }
+        monthStream.forEach(m -> {
+            final int start = firstMonthRow + m * monthRows;
+            months[m] = renderRows(pRows.subList(start, start + monthRows), pStyles, 8192);
+        });
+
+        final List<StringBuilder> result = new ArrayList<>(numMonths + 2);
+        result.add(renderRows(pRows.subList(0, firstMonthRow), pStyles, 4096));
+        for (final StringBuilder month : months) {
+            result.add(month);
+        }
+        result.add(renderRows(pRows.subList(endMonthRow, pRows.size()), pStyles, 2048));
+        return result;
+    }
+
+
+
+    private StringBuilder renderRows(final List<CalendarLayout.Row> pRows, final StyleTable pStyles,
+        final int pCapacity)
+    {
+        final StringBuilder sb = new StringBuilder(pCapacity);
+        for (int r = 0; r < pRows.size(); r++) {
+            final CalendarLayout.Row row = pRows.get(r);
+            if (row.getCells().isEmpty() && !row.hasHeight()) {
+                continue;
+            }
+            sb.append("<row r=\"").append(row.getIndex() + 1).append('"');
+            if (row.hasHeight()) {
+                sb.append(" ht=\"").append(row.getHeight()).append("\" customHeight=\"1\"");
+            }
+            sb.append('>');
+            final List<CalendarLayout.Cell> cells = row.getCells();
+            for (int i = 0; i < cells.size(); i++) {
+                final CalendarLayout.Cell cell = cells.get(i);
+                appendCell(sb, cell, pStyles.indexOf(cell));
+            }
+            sb.append("</row>");
+        }
+        return sb;
+    }
+
+
+
+    private void appendCell(final StringBuilder pSb, final CalendarLayout.Cell pCell, final int pStyleIndex)
+    {
+        pSb.append("<c r=\"");
+        appendCellRef(pSb, pCell.getRow(), pCell.getColumn());
+        pSb.append("\" s=\"").append(pStyleIndex).append('"');
+        if (pCell.isNumeric()) {
+            pSb.append("><v>").append(pCell.getNumber()).append("</v></c>");
+        }
+        else if (pCell.getText() != null) {
+            pSb.append(" t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+            appendEscaped(pSb, pCell.getText());
+            pSb.append("</t></is></c>");
+        }
+        else {
+            pSb.append("/>");
+        }
+    }
+
+
+
+    private void writeDrawing(final Writer pOut, final CalendarLayout pLayout)
+        throws IOException
+    {
+        final CalendarLayout.Region anchor = pLayout.getQrCodeAnchor();
+        long width = 0L;
+        for (int col = anchor.getFirstColumn(); col <= anchor.getLastColumn(); col++) {
+            width += getColumnWidthEmu(pLayout, col);
+        }
+        width = Math.round(width * CalendarLayout.QR_CODE_SCALE_X);
+        long height = 0L;
+        for (int row = anchor.getFirstRow(); row <= anchor.getLastRow(); row++) {
+            height += getRowHeightEmu(pLayout, row);
+        }
+
+        int toCol = anchor.getFirstColumn();
+        long colOffset = width;
+        while (colOffset >= getColumnWidthEmu(pLayout, toCol)) {
+            colOffset -= getColumnWidthEmu(pLayout, toCol++);
+        }
+        int toRow = anchor.getFirstRow();
+        long rowOffset = height;
+        while (rowOffset >= getRowHeightEmu(pLayout, toRow)) {
+            rowOffset -= getRowHeightEmu(pLayout, toRow++);
+        }
+
+        pOut.write(XML_HEADER);
+        pOut.write("<xdr:wsDr xmlns:xdr=\"http://schemas.openxmlformats.org/drawingml/2006/spreadsheetDrawing\""
+            + " xmlns:a=\"http://schemas.openxmlformats.org/drawingml/2006/main\" xmlns:r=\"" + NS_REL + "\">");
+        pOut.write("<xdr:twoCellAnchor editAs=\"absolute\">");
+        pOut.write("<xdr:from><xdr:col>" + anchor.getFirstColumn() + "</xdr:col><xdr:colOff>0</xdr:colOff><xdr:row>"
+            + anchor.getFirstRow() + "</xdr:row><xdr:rowOff>0</xdr:rowOff></xdr:from>");
+        pOut.write("<xdr:to><xdr:col>" + toCol + "</xdr:col><xdr:colOff>" + colOffset + "</xdr:colOff><xdr:row>"
+            + toRow + "</xdr:row><xdr:rowOff>" + rowOffset + "</xdr:rowOff></xdr:to>");
+        pOut.write("<xdr:pic><xdr:nvPicPr><xdr:cNvPr id=\"1\" name=\"Picture 1\"/>"
+            + "<xdr:cNvPicPr><a:picLocks noChangeAspect=\"1\"/></xdr:cNvPicPr></xdr:nvPicPr>");
+        pOut.write("<xdr:blipFill><a:blip r:embed=\"rId1\"/><a:stretch><a:fillRect/></a:stretch></xdr:blipFill>");
+        pOut.write("<xdr:spPr><a:xfrm><a:off x=\"0\" y=\"0\"/><a:ext cx=\"" + width + "\" cy=\"" + height
+            + "\"/></a:xfrm><a:prstGeom prst=\"rect\"><a:avLst/></a:prstGeom></xdr:spPr></xdr:pic>");
+        pOut.write("<xdr:clientData/></xdr:twoCellAnchor></xdr:wsDr>");
+    }
+
+
+
+    private long getColumnWidthEmu(final CalendarLayout pLayout, final int pColumn)
+    {
+        return Math.round(pLayout.getColumnWidth(pColumn) / 256d * CHAR_WIDTH_PX * EMU_PER_PIXEL);
+    }
+
+
+
+    private long getRowHeightEmu(final CalendarLayout pLayout, final int pRow)
+    {
+        return Math.round(pLayout.getRowHeight(pRow) * EMU_PER_POINT);
+    }
+
+
+
+    private static void appendCellRef(final StringBuilder pSb, final int pRow, final int pColumn)
+    {
+        pSb.append(COLUMN_NAMES[pColumn]).append(pRow + 1);
+    }
+
+
+
+    private static String toColumnName(final int pColumn)
+    {
+        final StringBuilder sb = new StringBuilder();
+        for (int n = pColumn + 1; n > 0; n = (n - 1) / 26) {
+            sb.insert(0, (char) ('A' + (n - 1) % 26));
+        }
+        return sb.toString();
+    }
+
+
+
+    static void appendEscaped(final StringBuilder pSb, final String pText)
+    {
+        for (int i = 0; i < pText.length(); i++) {
+            final char c = pText.charAt(i);
+            switch (c) {
+                case '&':
+                    pSb.append("&amp;");
+                    break;
+                case '<':
+                    pSb.append("&lt;");
+                    break;
+                case '>':
+                    pSb.append("&gt;");
+                    break;
+                case '"':
+                    pSb.append("&quot;");
+                    break;
+                default:
+                    if (c >= ' ' || c == '\t' || c == '\n' || c == '\r') {
+                        pSb.append(c);
+                    }
+                    break;  // other control characters are not allowed in XML
+            }
+        }
+    }
+
+
+
+    /**
+     * The style sheet of the workbook. The cell formats are the styles of the layout, shifted by one because index
+     * 0 is the default format. Fonts, fills, and borders are shared between cell formats.
+     */
+    private static final class StyleTable
+    {
+        private final List<StyleKey> keys;
+
+
+
+        StyleTable(final CalendarLayout pLayout)
+        {
+            keys = pLayout.getStyles();
+        }
+
+
+
+        int indexOf(final CalendarLayout.Cell pCell)
+        {
+            return pCell.getStyleIndex() + 1;
+        }
+
+
+
+        void write(final Writer pOut)
+            throws IOException
+        {
+            final Map<StyleKey.Font, Integer> fonts = new EnumMap<>(StyleKey.Font.class);
+            fonts.put(StyleKey.Font.Default, 0);
+            final Map<String, Integer> fills = new LinkedHashMap<>();
+            fills.put("<fill><patternFill patternType=\"none\"/></fill>", 0);
+            fills.put("<fill><patternFill patternType=\"gray125\"/></fill>", 1);
+            final Map<String, Integer> borders = new LinkedHashMap<>();
+            borders.put(toBorderXml(new StyleKey(StyleKey.Kind.Heading)), 0);
+
+            final StringBuilder xfs = new StringBuilder(keys.size() * 160);
+            xfs.append("<cellXfs count=\"").append(keys.size() + 1).append("\">");
+            xfs.append("<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>");
+            for (final StyleKey key : keys) {
+                final int fontId = fonts.computeIfAbsent(key.getFont(), f -> fonts.size());
+                final int fillId = fills.computeIfAbsent(toFillXml(key), f -> fills.size());
+                final int borderId = borders.computeIfAbsent(toBorderXml(key), b -> borders.size());
+                xfs.append("<xf numFmtId=\"0\" fontId=\"").append(fontId).append("\" fillId=\"").append(fillId)
+                    .append("\" borderId=\"").append(borderId).append("\" xfId=\"0\"");
+                if (fontId != 0) {
+                    xfs.append(" applyFont=\"1\"");
+                }
+                if (fillId != 0) {
+                    xfs.append(" applyFill=\"1\"");
+                }
+                if (borderId != 0) {
+                    xfs.append(" applyBorder=\"1\"");
+                }
+                if (key.getAlignment() != StyleKey.Alignment.General) {
+                    xfs.append(" applyAlignment=\"1\"><alignment horizontal=\"")
+                        .append(key.getAlignment() == StyleKey.Alignment.Left ? "left" : "center")
+                        .append("\" vertical=\"center\"/></xf>");
+                }
+                else {
+                    xfs.append("/>");
+                }
+            }
+            xfs.append("</cellXfs>");
+
+            pOut.write(XML_HEADER);
+            pOut.write("<styleSheet xmlns=\"" + NS_MAIN + "\">");
+            pOut.write("<fonts count=\"" + fonts.size() + "\">");
+            for (final StyleKey.Font font : sortedByIndex(fonts)) {
+                pOut.write(toFontXml(font));
+            }
+            pOut.write("</fonts>");
+            writeAll(pOut, "fills", fills);
+            writeAll(pOut, "borders", borders);
+            pOut.write("<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/>"
+                + "</cellStyleXfs>");
+            pOut.append(xfs);
+            pOut.write("<cellStyles count=\"1\"><cellStyle name=\"Normal\" xfId=\"0\" builtinId=\"0\"/></cellStyles>");
+            pOut.write("</styleSheet>");
+        }
+
+
+
+        private List<StyleKey.Font> sortedByIndex(final Map<StyleKey.Font, Integer> pFonts)
+        {
+            final StyleKey.Font[] result = new StyleKey.Font[pFonts.size()];
+            for (final Map.Entry<StyleKey.Font, Integer> entry : pFonts.entrySet()) {
+                result[entry.getValue().intValue()] = entry.getKey();
+            }
+            return List.of(result);
+        }
+
+
+
+        /**
+         * Write the elements of a map which is ordered by index.
+         */
+        private void writeAll(final Writer pOut, final String pElement, final Map<String, Integer> pXmls)
+            throws IOException
+        {
+            pOut.write("<" + pElement + " count=\"" + pXmls.size() + "\">");
+            for (final String xml : pXmls.keySet()) {
+                pOut.write(xml);
+            }
+            pOut.write("</" + pElement + ">");
+        }
+
+
+
+        private String toFontXml(final StyleKey.Font pFont)
+        {
+            switch (pFont) {
+                case Default:
+                    return calibri("", 11);
+                case Bold24:
+                    return calibri("<b/>", 24);
+                case Bold20:
+                    return calibri("<b/>", 20);
+                case Bold14:
+                    return calibri("<b/>", 14);
+                case Plain14:
+                    return calibri("", 14);
+                case Plain11:
+                    return calibri("", 11);
+                case Underlined:
+                    return calibri("<u/>", 11);
+                case White:
+                    return "<font><sz val=\"11\"/><color rgb=\"" + StyleKey.WHITE.toArgbHex()
+                        + "\"/><name val=\"Calibri\"/><family val=\"2\"/></font>";
+                default:
+                    throw new IllegalArgumentException("unknown font: " + pFont);
+            }
+        }
+
+
+
+        private String calibri(final String pDecoration, final int pSize)
+        {
+            return "<font>" + pDecoration + "<sz val=\"" + pSize + "\"/><name val=\"Calibri\"/><family val=\"2\"/>"
+                + "</font>";
+        }
+
+
+
+        private String toFillXml(final StyleKey pKey)
+        {
+            switch (pKey.getFill()) {
+                case Solid:
+                    return "<fill><patternFill patternType=\"solid\"><fgColor rgb=\"" + pKey.getFillColor().toArgbHex()
+                        + "\"/><bgColor indexed=\"64\"/></patternFill></fill>";
+                case Hatched:
+                    return "<fill><patternFill patternType=\"lightUp\"><fgColor rgb=\""
+                        + pKey.getFillColor().toArgbHex() + "\"/><bgColor indexed=\"64\"/></patternFill></fill>";
+                case Gradient:
+                    return "<fill><gradientFill type=\"path\" left=\"0.5\" right=\"0.5\" top=\"0.5\" bottom=\"0.5\">"
+                        + "<stop position=\"0\"><color rgb=\"" + pKey.getGradientInnerColor().toArgbHex()
+                        + "\"/></stop>"
+                        + "<stop position=\"1\"><color rgb=\"" + pKey.getFillColor().toArgbHex() + "\"/></stop>"
+                        + "</gradientFill></fill>";
+                default:
+                    return "<fill><patternFill patternType=\"none\"/></fill>";
+            }
+        }
+
+
+
+        private String toBorderXml(final StyleKey pKey)
+        {
+            final String separatorColor = "<color rgb=\"" + StyleKey.SEPARATOR_COLOR.toArgbHex() + "\"/>";
+            return "<border>"
+                + toBorderSideXml("left", pKey.getLeft(), separatorColor)
+                + toBorderSideXml("right", pKey.getRight(), "")
+                + toBorderSideXml("top", pKey.getTop(), "")
+                + toBorderSideXml("bottom", pKey.getBottom(), "")
+                + "<diagonal/></border>";
+        }
+
+
+
+        private String toBorderSideXml(final String pSide, final StyleKey.Border pBorder, final String pThinColor)
+        {
+            switch (pBorder) {
+                case Thin:
+                    return "<" + pSide + " style=\"thin\">" + pThinColor + "</" + pSide + ">";
+                case Medium:
+                    return "<" + pSide + " style=\"medium\"/>";
+                default:
+                    return "<" + pSide + "/>";
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * The years for which calendars are created: a single year, a range of years, or all years present in the ICS file.
+ * Instances are immutable.
+ */
+public final class YearRange
+{
+    /** all years present in the ICS file */
+    public static final YearRange ALL = new YearRange(Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+    private static final Pattern RANGE_PATTERN = Pattern.compile("(\\d{4})(?:\\s*-\\s*(\\d{4}))?");
+
+    private final int first;
+
+    private final int last;
+
+
+
+    private YearRange(final int pFirst, final int pLast)
+    {
+        first = pFirst;
+        last = pLast;
+    }
+
+
+
+    public static YearRange of(final int pYear)
+    {
+        return new YearRange(pYear, pYear);
+    }
+
+
+
+    /**
+     * Parse a year range as given on the command line.
+     *
+     * @param pText a four-digit year (<code>2026</code>), a range of years (<code>2025-2026</code>), or
+     * <code>all</code>
+     * @return the year range, or <code>null</code> if the text is not a valid year range
+     */
+    public static YearRange parse(final String pText)
+    {
+        final String text = pText.trim();
+        if ("all".equalsIgnoreCase(text)) {
+            return ALL;
+        }
+        final Matcher m = RANGE_PATTERN.matcher(text);
+        if (!m.matches()) {
+            return null;
+        }
+        final int first = Integer.parseInt(m.group(1));
+        final int last = m.group(2) != null ? Integer.parseInt(m.group(2)) : first;
+        return last >= first ? new YearRange(first, last) : null;
+    }
+
+
+
+    public int getFirst()
+    {
+        return first;
+    }
+
+
+
+    public int getLast()
+    {
+        return last;
+    }
+
+
+
+    public boolean isAll()
+    {
+        return this == ALL;
+    }
+
+
+
+    public boolean isSingleYear()
+    {
+        return first == last;
+    }
+
+
+
+    public boolean contains(final int pYear)
+    {
+        return pYear >= first && pYear <= last;
+    }
+
+
+
+    @Override
+    public boolean equals(final Object pOther)
+    {
+        if (this == pOther) {
+            return true;
+        }
+        if (pOther == null || getClass() != pOther.getClass()) {
+            return false;
+        }
+        final YearRange other = (YearRange) pOther;
+        return first == other.first && last == other.last;
+    }
+
+
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * first + last;
+    }
+
+
+
+    @Override
+    public String toString()
+    {
+        if (isAll()) {
+            return "all years";
+        }
+        return isSingleYear() ? String.valueOf(first) : first + "-" + last;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Tests that the {@link CategoryClassifier} classifies like the chain of <code>contains()</code> calls which it
+ * replaced, and like a plain substring search over the rules of a custom categories file.
+ */
+public class CategoryClassifierTest
+{
+    /** more specific rules first, and keywords which overlap in every way: prefix, suffix, and inside */
+    private static final List<String> CUSTOM_RULES = List.of(
+        "# custom rules",
+        "altpapier @ straße          = Papier",
+        "biotonne                    = Bio",
+        "bio                         = Gartenabfall",
+        "gelber sack                 = GelberSack",
+        "sack                        = Papier",
+        "grünschnitt                 = Gartenabfall",
+        "grün                        = Bio",
+        "restmüll                    = Rest",
+        "müll                        = Schadstoff4",
+        "PAPIER                      = Papier",
+        "schadstoff @ Süd            = Schadstoff1",
+        "schadstoff @ nord           = Schadstoff2",
+        "stoff                       = Schadstoff3");
+
+    private static final String[] SUMMARIES = {
+        "Biotonne", "BIOTONNE", "bioTonne", "Bio", "Biomüll", "Biopapier", "Restpapier", "Gelber Sack", "GELBER SACK",
+        "gelber  sack", "Papiersack", "Gartensack", "Schadstoffsack", "Grünschnitt", "GRÜNSCHNITT", "grÜnschnitt",
+        "Grüngut", "Restmüll", "RESTMÜLL", "Restmuell", "Sperrmüll", "MÜLL", "Altpapier", "ALTPAPIER", "Papiertonne",
+        "Schadstoffmobil", "SCHADSTOFFMOBIL", "Stoffreste", "Weihnachtsbaum", "Glas", ""};
+
+    private static final String[] LOCATIONS = {
+        null, "", "Info: Some Street 1", "Info: SOME OTHER STREET 2", "Info: some street 3", "Marktplatz",
+        "Hauptstraße 1", "HAUPTSTRAẞE 1", "Hauptstrasse 1", "Südring 5", "SÜDRING 5", "Nordweg", "Musterstadt Süd"};
+
+    @TempDir
+    Path tempDir;
+
+
+
+    /**
+     * The classification of the pickup dates before the rule table, copied from <code>Converter.groupByDay</code>.
+     */
+    private static Art classifyOld(final String pSummary, final String pLocation)
+    {
+        final String desc = pSummary.toLowerCase();
+        Art art = null;
+        if (desc.contains("bio")) {
+            art = Art.Bio;
+        }
+        else if (desc.contains("papier")) {
+            art = Art.Papier;
+        }
+        else if (desc.contains("rest")) {
+            art = Art.Rest;
+        }
+        else if (desc.contains("sack")) {
+            art = Art.GelberSack;
+        }
+        else if (desc.contains("garten")) {
+            art = Art.Gartenabfall;
+        }
+        else if (desc.contains("schadstoff")) {
+            String loc = pLocation;
+            loc = loc.substring(loc.indexOf("Info: ") + "Info: ".length()).toLowerCase();
+            if (loc.contains("some street 1")) {
+                art = Art.Schadstoff1;
+            }
+            else if (loc.contains("some other street 2")) {
+                art = Art.Schadstoff2;
+            }
+            else {
+                art = Art.Schadstoff3;
+            }
+        }
+        return art;
+    }
+
+
+
+    /**
+     * Classify by trying the rules in order, using a plain substring search of the lower-case keywords.
+     */
+    private static Art classifySubstring(final List<String> pRules, final String pSummary, final String pLocation)
+    {
+        for (final String rule : pRules) {
+            if (rule.startsWith("#")) {
+                continue;
+            }
+            final String[] parts = rule.split("=");
+            final String[] keywords = parts[0].split("@");
+            final String summaryKeyword = keywords[0].trim().toLowerCase();
+            final String locationKeyword = keywords.length > 1 ? keywords[1].trim().toLowerCase() : null;
+            if (pSummary.toLowerCase().contains(summaryKeyword) && (locationKeyword == null
+                || (pLocation != null && pLocation.toLowerCase().contains(locationKeyword))))
+            {
+                return Art.valueOf(parts[1].trim());
+            }
+        }
+        return null;
+    }
+
+
+
+    private static List<IcsEvent> readSample()
+        throws IOException
+    {
+        try (InputStream is = CategoryClassifier.class.getResourceAsStream("beispiel.ics")) {
+            return new IcsReader(YearRange.ALL).read(is);
+        }
+    }
+
+
+
+    @Test
+    public void testBuiltInRulesClassifyLikeOldChain()
+        throws IOException
+    {
+        final CategoryClassifier classifier = CategoryClassifier.getDefault();
+        final List<IcsEvent> sample = readSample();
+        Assertions.assertFalse(sample.isEmpty());
+        for (final IcsEvent event : sample) {
+            final Art expected = classifyOld(event.getSummary(), event.getLocation());
+            Assertions.assertNotNull(expected, event.getSummary());
+            Assertions.assertEquals(expected, classifier.classify(event.getSummary(), event.getLocation()),
+                event.getSummary());
+        }
+        for (final String summary : SUMMARIES) {
+            for (final String location : LOCATIONS) {
+                if (location == null || !location.startsWith("Info: ")) {
+                    continue;  // the old chain required this prefix in the locations of hazardous waste dates
+                }
+                Assertions.assertEquals(classifyOld(summary, location), classifier.classify(summary, location),
+                    summary + " @ " + location);
+            }
+        }
+    }
+
+
+
+    @Test
+    public void testCustomRulesClassifyLikeSubstringSearch()
+        throws IOException
+    {
+        final File file = tempDir.resolve("kategorien.txt").toFile();
+        Files.write(file.toPath(), CUSTOM_RULES, StandardCharsets.UTF_8);
+        final CategoryClassifier classifier = CategoryClassifier.forFile(file);
+
+        final List<String[]> inputs = new ArrayList<>();
+        for (final IcsEvent event : readSample()) {
+            inputs.add(new String[]{event.getSummary(), event.getLocation()});
+        }
+        for (final String summary : SUMMARIES) {
+            for (final String location : LOCATIONS) {
+                inputs.add(new String[]{summary, location});
+            }
+        }
+        for (final String[] input : inputs) {
+            Assertions.assertEquals(classifySubstring(CUSTOM_RULES, input[0], input[1]),
+                classifier.classify(input[0], input[1]), input[0] + " @ " + input[1]);
+        }
+    }
+
+
+
+    @Test
+    public void testRuleOrderDecides()
+        throws IOException
+    {
+        final File file = tempDir.resolve("kategorien.txt").toFile();
+        Files.write(file.toPath(), CUSTOM_RULES, StandardCharsets.UTF_8);
+        final CategoryClassifier classifier = CategoryClassifier.forFile(file);
+
+        Assertions.assertEquals(Art.Bio, classifier.classify("BIOTONNE", null));
+        Assertions.assertEquals(Art.Gartenabfall, classifier.classify("Biomüll", null));
+        Assertions.assertEquals(Art.GelberSack, classifier.classify("Gelber Sack", null));
+        Assertions.assertEquals(Art.Papier, classifier.classify("Gelber  Sack", null));
+        Assertions.assertEquals(Art.Gartenabfall, classifier.classify("GRÜNSCHNITT", null));
+        Assertions.assertEquals(Art.Bio, classifier.classify("Grüngut", null));
+        Assertions.assertEquals(Art.Rest, classifier.classify("RESTMÜLL", null));
+        Assertions.assertEquals(Art.Schadstoff4, classifier.classify("Sperrmüll", null));
+        Assertions.assertEquals(Art.Papier, classifier.classify("Altpapier", "HAUPTSTRAẞE 1"));
+        Assertions.assertEquals(Art.Papier, classifier.classify("Altpapier", null));
+        Assertions.assertEquals(Art.Schadstoff1, classifier.classify("Schadstoffmobil", "SÜDRING 5"));
+        Assertions.assertEquals(Art.Schadstoff2, classifier.classify("Schadstoffmobil", "Nordweg"));
+        Assertions.assertEquals(Art.Schadstoff3, classifier.classify("Schadstoffmobil", "Marktplatz"));
+        Assertions.assertNull(classifier.classify("Weihnachtsbaum", "Marktplatz"));
+
+        Assertions.assertEquals(Art.Bio, CategoryClassifier.getDefault().classify("Biopapier", null));
+        Assertions.assertEquals(Art.Papier, CategoryClassifier.getDefault().classify("Restpapier", null));
+        Assertions.assertEquals(Art.Rest, CategoryClassifier.getDefault().classify("Schadstoffreste", null));
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests the k-way merge of the events of several ICS files by the {@link EventMerger}.
+ */
+public class EventMergerTest
+{
+    private static final String LOCATION = "Musterstraße 1, 12345 Musterstadt";
+
+
+
+    private static IcsEvent event(final int pMonth, final int pDay, final String pSummary)
+    {
+        return new IcsEvent(2026, pMonth, pDay, pSummary, LOCATION);
+    }
+
+
+
+    private static List<IcsEvent> merge(final List<List<IcsEvent>> pSources)
+    {
+        final List<IcsEvent> result = new ArrayList<>();
+        new EventMerger(pSources).forEach(result::add);
+        return result;
+    }
+
+
+
+    /**
+     * Compare by identity, so that it is clear which of several equal events was kept.
+     */
+    private static void assertSameEvents(final List<IcsEvent> pExpected, final List<IcsEvent> pActual)
+    {
+        Assertions.assertEquals(pExpected.size(), pActual.size(), pActual.toString());
+        for (int i = 0; i < pExpected.size(); i++) {
+            Assertions.assertSame(pExpected.get(i), pActual.get(i), "event " + i + " of " + pActual);
+        }
+    }
+
+
+
+    @Test
+    public void testInterleavedDates()
+    {
+        final IcsEvent bio1 = event(1, 5, "Biotonne");
+        final IcsEvent bio2 = event(1, 19, "Biotonne");
+        final IcsEvent bio3 = event(2, 2, "Biotonne");
+        final IcsEvent papier1 = event(1, 12, "Papiertonne");
+        final IcsEvent papier2 = event(2, 9, "Papiertonne");
+        final IcsEvent sack1 = event(1, 1, "Gelber Sack");
+        final IcsEvent sack2 = event(12, 31, "Gelber Sack");
+
+        final List<IcsEvent> actual = merge(List.of(List.of(bio1, bio2, bio3), List.of(papier1, papier2),
+            List.of(sack1, sack2)));
+
+        assertSameEvents(List.of(sack1, bio1, papier1, bio2, bio3, papier2, sack2), actual);
+    }
+
+
+
+    @Test
+    public void testUnsortedSource()
+    {
+        final IcsEvent late = new IcsEvent(2027, 1, 4, "Biotonne", null);
+        final IcsEvent early = event(3, 2, "Biotonne");
+        final IcsEvent middle = event(11, 30, "Papiertonne");
+
+        assertSameEvents(List.of(early, middle, late), merge(List.of(List.of(late, early), List.of(middle))));
+    }
+
+
+
+    @Test
+    public void testSameDayIsStable()
+    {
+        final IcsEvent bio = event(4, 7, "Biotonne");
+        final IcsEvent rest = event(4, 7, "Restmülltonne");
+        final IcsEvent papier = event(4, 7, "Papiertonne");
+        final IcsEvent sack = event(4, 7, "Gelber Sack");
+        final IcsEvent garten = event(4, 7, "Gartenabfall");
+
+        // within a file, events of a day keep their order; files come in the order they were given
+        final List<IcsEvent> actual = merge(List.of(List.of(papier, bio), List.of(sack), List.of(rest, garten)));
+
+        assertSameEvents(List.of(papier, bio, sack, rest, garten), actual);
+    }
+
+
+
+    @Test
+    public void testDuplicatesAcrossFilesAreRemoved()
+    {
+        final IcsEvent bioA = event(5, 4, "Biotonne");
+        final IcsEvent bioB = event(5, 4, "Biotonne");
+        final IcsEvent bioOtherPlace = new IcsEvent(2026, 5, 4, "Biotonne", "Marktplatz");
+        final IcsEvent bioOtherDay = event(5, 5, "Biotonne");
+        final IcsEvent bioNoLocation = new IcsEvent(2026, 5, 4, "Biotonne", null);
+        final IcsEvent bioNoLocationB = new IcsEvent(2026, 5, 4, "Biotonne", null);
+
+        final List<IcsEvent> actual = merge(List.of(List.of(bioA, bioNoLocation),
+            List.of(bioB, bioOtherPlace, bioNoLocationB, bioOtherDay)));
+
+        // the first file's events are kept, the other file's copies are dropped
+        assertSameEvents(List.of(bioA, bioNoLocation, bioOtherPlace, bioOtherDay), actual);
+    }
+
+
+
+    @Test
+    public void testDuplicatesWithinFileAreKept()
+    {
+        final IcsEvent bioA = event(6, 1, "Biotonne");
+        final IcsEvent bioB = event(6, 1, "Biotonne");
+        final IcsEvent bioC = event(6, 1, "Biotonne");
+
+        assertSameEvents(List.of(bioA, bioB), merge(List.of(List.of(bioA, bioB), List.of(bioC))));
+    }
+
+
+
+    @Test
+    public void testEmptySources()
+    {
+        final IcsEvent bio = event(7, 1, "Biotonne");
+
+        assertSameEvents(List.of(bio), merge(List.of(Collections.emptyList(), List.of(bio), Collections.emptyList())));
+        Assertions.assertTrue(merge(List.of(Collections.emptyList(), Collections.emptyList())).isEmpty());
+        Assertions.assertTrue(merge(Collections.emptyList()).isEmpty());
+
+        final Iterator<IcsEvent> iterator = new EventMerger(List.of(Collections.emptyList())).iterator();
+        Assertions.assertFalse(iterator.hasNext());
+        Assertions.assertThrows(NoSuchElementException.class, iterator::next);
+    }
+
+
+
+    @Test
+    public void testEachIterationMergesAgain()
+    {
+        final EventMerger merger = new EventMerger(List.of(List.of(event(8, 3, "Biotonne")),
+            List.of(event(8, 3, "Biotonne"), event(8, 4, "Papiertonne"))));
+
+        final List<IcsEvent> first = new ArrayList<>();
+        merger.forEach(first::add);
+        final List<IcsEvent> second = new ArrayList<>();
+        merger.forEach(second::add);
+
+        Assertions.assertEquals(2, first.size());
+        assertSameEvents(first, second);
+    }
+
+
+
+    @Test
+    public void testTooManyEventsPerDayAcrossFiles()
+    {
+        // each file alone is fine, but together they have three categories on one day
+        final EventMerger merger = new EventMerger(List.of(
+            List.of(event(9, 14, "Biotonne"), event(9, 14, "Papiertonne")),
+            List.of(event(9, 14, "Biotonne"), event(9, 14, "Restmülltonne"))));
+
+        final IllegalStateException e = Assertions.assertThrows(IllegalStateException.class,
+            () -> new Converter().groupByDay(merger, CategoryClassifier.getDefault()));
+        Assertions.assertEquals("too many events per day on 14.9.2026", e.getMessage());
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+/**
+ * Tests the {@link FeedFetcher} against a local HTTP server.
+ */
+public class FeedFetcherTest
+{
+    private static final String ICS = "BEGIN:VCALENDAR\r\nBEGIN:VEVENT\r\nDTSTART;VALUE=DATE:20260105\r\n"
+        + "SUMMARY:Papier\r\nEND:VEVENT\r\nEND:VCALENDAR\r\n";
+
+    private static final String ETAG = "\"v1\"";
+
+    private static final String LAST_MODIFIED = "Mon, 05 Jan 2026 08:00:00 GMT";
+
+    @TempDir
+    Path cacheDir;
+
+    private HttpServer server;
+
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    private volatile long delayMillis = 0L;
+
+
+
+    @BeforeEach
+    public void startServer()
+        throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+
+
+    @AfterEach
+    public void stopServer()
+    {
+        server.stop(0);
+    }
+
+
+
+    /**
+     * Serves the calendar below <code>/feed</code> with validators, and 404 for everything else. Each request is
+     * recorded with its conditional headers.
+     */
+    private void handle(final HttpExchange pExchange)
+        throws IOException
+    {
+        final int now = running.incrementAndGet();
+        maxRunning.accumulateAndGet(now, Math::max);
+        try (HttpExchange exchange = pExchange) {
+            final String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            final String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+            requests.add(exchange.getRequestURI().getPath() + " " + ifNoneMatch + " " + ifModifiedSince);
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
+            if (!exchange.getRequestURI().getPath().startsWith("/feed")) {
+                exchange.sendResponseHeaders(404, -1);
+            }
+            else if (ETAG.equals(ifNoneMatch)) {
+                exchange.sendResponseHeaders(304, -1);
+            }
+            else {
+                final byte[] body = ICS.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("ETag", ETAG);
+                exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            running.decrementAndGet();
+        }
+    }
+
+
+
+    private URI url(final String pPath)
+    {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort()
+            + pPath);
+    }
+
+
+
+    private List<String> listCacheDir()
+        throws IOException
+    {
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            return files.map(f -> f.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+
+
+    @Test
+    public void testDownloadWritesCacheFile()
+        throws IOException
+    {
+        final File ics = new FeedFetcher(cacheDir.toFile(), 1).fetch(url("/feed.ics#Nordstadt"));
+
+        Assertions.assertEquals(new File(cacheDir.toFile(), "Nordstadt.ics"), ics);
+        Assertions.assertEquals(ICS, Files.readString(ics.toPath()));
+        Assertions.assertEquals(List.of("Nordstadt.ics", "Nordstadt.ics.properties"), listCacheDir());
+        Assertions.assertEquals(List.of("/feed.ics null null"), requests);
+    }
+
+
+
+    @Test
+    public void testSecondDownloadIsConditional()
+        throws IOException
+    {
+        final URI feed = url("/feed.ics#Nordstadt");
+        final File ics = new FeedFetcher(cacheDir.toFile(), 1).fetch(feed);
+        final long lastModified = ics.lastModified();
+
+        Assertions.assertEquals(ics, new FeedFetcher(cacheDir.toFile(), 1).fetch(feed));
+        Assertions.assertEquals(List.of("/feed.ics null null", "/feed.ics " + ETAG + " " + LAST_MODIFIED), requests);
+        Assertions.assertEquals(ICS, Files.readString(ics.toPath()));
+        Assertions.assertEquals(lastModified, ics.lastModified());
+    }
+
+
+
+    @Test
+    public void testFailedFeedDoesNotStopOthers()
+    {
+        final URI missing = url("/missing.ics#Missing");
+        final URI feed = url("/feed.ics#Nordstadt");
+
+        final Map<URI, File> result = new FeedFetcher(cacheDir.toFile(), 2).fetchAll(List.of(missing, feed));
+
+        Assertions.assertEquals(List.of(feed), new ArrayList<>(result.keySet()));
+        Assertions.assertTrue(result.get(feed).isFile());
+    }
+
+
+
+    @Test
+    public void testDuplicateNamesAreRejected()
+    {
+        final List<URI> feeds = List.of(url("/feed.ics?id=1#Nordstadt"), url("/feed.ics?id=2#Nordstadt"));
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> new FeedFetcher(cacheDir.toFile(), 2).fetchAll(feeds));
+        Assertions.assertTrue(requests.isEmpty());
+    }
+
+
+
+    @Test
+    public void testRequestsPerHostAreLimited()
+    {
+        delayMillis = 200L;
+        final List<URI> feeds = new ArrayList<>();
+        for (int i = 0; i < 3 * FeedFetcher.MAX_REQUESTS_PER_HOST; i++) {
+            feeds.add(url("/feed.ics?id=" + i + "#Feed" + i));
+        }
+
+        final Map<URI, File> result = new FeedFetcher(cacheDir.toFile(), feeds.size()).fetchAll(feeds);
+
+        Assertions.assertEquals(feeds.size(), result.size());
+        Assertions.assertEquals(FeedFetcher.MAX_REQUESTS_PER_HOST, maxRunning.get());
+    }
+
+
+
+    @Test
+    public void testConcurrentDownloadsOfSameFeed()
+        throws Exception
+    {
+        delayMillis = 100L;
+        final URI feed = url("/feed.ics#Nordstadt");
+        final int count = 4;
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService pool = Executors.newFixedThreadPool(count);
+        try {
+            final List<Future<File>> results = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                // separate fetchers, as if several processes shared the cache directory
+                final FeedFetcher fetcher = new FeedFetcher(cacheDir.toFile(), 1);
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return fetcher.fetch(feed);
+                }));
+            }
+            start.countDown();
+            for (final Future<File> result : results) {
+                Assertions.assertEquals(ICS, Files.readString(result.get(10, TimeUnit.SECONDS).toPath()));
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+
+        Assertions.assertTrue(maxRunning.get() > 1);
+        Assertions.assertEquals(List.of("Nordstadt.ics", "Nordstadt.ics.properties"), listCacheDir());
+        Assertions.assertTrue(Files.readString(cacheDir.resolve("Nordstadt.ics.properties")).contains(ETAG));
+    }
+}
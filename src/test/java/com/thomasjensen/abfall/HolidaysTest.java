@@ -0,0 +1,127 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests the computation of Easter Sunday and the holidays derived from it.
+ */
+public class HolidaysTest
+{
+    private static Position position(final int pYear, final int pMonth, final int pDay)
+    {
+        final Position result = new Position(pYear, pMonth, 0, CalendarLayout.ROWS_PER_DAY);
+        result.setDay(pDay);
+        return result;
+    }
+
+
+
+    private static List<LocalDate> holidaysIn(final Holidays pHolidays)
+    {
+        final List<LocalDate> result = new ArrayList<>();
+        for (int month = 1; month <= 12; month++) {
+            for (int day = 1; day <= 31; day++) {
+                final Position pos = position(pHolidays.getYear(), month, day);
+                if (pHolidays.isHoliday(pos)) {
+                    result.add(LocalDate.of(pHolidays.getYear(), month, day));
+                }
+            }
+        }
+        return result;
+    }
+
+
+
+    @Test
+    public void testEasterSunday()
+    {
+        Assertions.assertEquals(LocalDate.of(2025, 4, 20), Holidays.easterSunday(2025));
+        Assertions.assertEquals(LocalDate.of(2026, 4, 5), Holidays.easterSunday(2026));
+        Assertions.assertEquals(LocalDate.of(2027, 3, 28), Holidays.easterSunday(2027));
+        Assertions.assertEquals(LocalDate.of(2038, 4, 25), Holidays.easterSunday(2038));  // latest possible date
+        Assertions.assertEquals(LocalDate.of(2285, 3, 22), Holidays.easterSunday(2285));  // earliest possible date
+        Assertions.assertEquals(LocalDate.of(2000, 4, 23), Holidays.easterSunday(2000));
+        Assertions.assertEquals(LocalDate.of(2100, 3, 28), Holidays.easterSunday(2100));
+    }
+
+
+
+    @Test
+    public void testHolidays2026()
+    {
+        Assertions.assertEquals(List.of(
+            LocalDate.of(2026, 1, 1), LocalDate.of(2026, 1, 6),
+            LocalDate.of(2026, 4, 3), LocalDate.of(2026, 4, 5), LocalDate.of(2026, 4, 6),  // Easter
+            LocalDate.of(2026, 5, 1), LocalDate.of(2026, 5, 14), LocalDate.of(2026, 5, 25), LocalDate.of(2026, 6, 4),
+            LocalDate.of(2026, 10, 3), LocalDate.of(2026, 11, 1), LocalDate.of(2026, 12, 25),
+            LocalDate.of(2026, 12, 26)), holidaysIn(Holidays.forYear(2026)));
+    }
+
+
+
+    @Test
+    public void testMovableHolidaysOfLateEaster()
+    {
+        final Holidays holidays = Holidays.forYear(2038);
+        Assertions.assertTrue(holidays.isHoliday(position(2038, 4, 23)));   // Karfreitag
+        Assertions.assertTrue(holidays.isHoliday(position(2038, 4, 26)));   // Ostermontag
+        Assertions.assertTrue(holidays.isHoliday(position(2038, 6, 3)));    // Christi Himmelfahrt
+        Assertions.assertTrue(holidays.isHoliday(position(2038, 6, 14)));   // Pfingstmontag
+        Assertions.assertTrue(holidays.isHoliday(position(2038, 6, 24)));   // Fronleichnam
+        Assertions.assertFalse(holidays.isHoliday(position(2038, 4, 24)));  // Karsamstag
+        Assertions.assertFalse(holidays.isHoliday(position(2038, 2, 30)));  // does not exist
+    }
+
+
+
+    @Test
+    public void testPositionOfAnotherYear()
+    {
+        final Holidays holidays2026 = Holidays.forYear(2026);
+        Assertions.assertTrue(holidays2026.isHoliday(position(2025, 4, 21)));   // Ostermontag 2025
+        Assertions.assertFalse(holidays2026.isHoliday(position(2025, 4, 6)));   // Ostermontag 2026
+        Assertions.assertTrue(holidays2026.isHoliday(position(2024, 3, 29)));   // Karfreitag 2024
+    }
+
+
+
+    @Test
+    public void testOffsetsOutsideOfYear()
+    {
+        final List<MonthDay> noFixed = Collections.emptyList();
+
+        // 100 days before Easter 2027 (March 28) is December 18, 2026
+        final BitSet before = Holidays.compile(2026, noFixed, List.of(-100));
+        Assertions.assertEquals(1, before.cardinality());
+        Assertions.assertTrue(before.get(LocalDate.of(2026, 12, 18).getDayOfYear()));
+
+        // 300 days after Easter 2025 (April 20) is February 14, 2026
+        final BitSet after = Holidays.compile(2026, noFixed, List.of(300));
+        Assertions.assertEquals(1, after.cardinality());
+        Assertions.assertTrue(after.get(LocalDate.of(2026, 2, 14).getDayOfYear()));
+
+        Assertions.assertEquals(0, Holidays.compile(2026, noFixed, List.of(1000)).cardinality());
+    }
+}
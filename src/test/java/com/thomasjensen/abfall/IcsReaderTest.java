@@ -0,0 +1,107 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests the expansion of recurring events by the {@link IcsReader} when all years are requested, also against the
+ * reference parser.
+ */
+public class IcsReaderTest
+{
+    private static List<String> read(final String pEvents)
+        throws IOException
+    {
+        final List<IcsEvent> events = new IcsReader(YearRange.ALL).read(toIcs(pEvents));
+        return events.stream().map(IcsEvent::toString).collect(Collectors.toList());
+    }
+
+
+
+    private static List<String> readReference(final String pEvents)
+        throws IOException
+    {
+        final Config config = Config.builder(YearRange.ALL).referenceParser(true).build();
+        final List<IcsEvent> events = new Converter().readIcs(config, toIcs(pEvents), new RunStats(config));
+        return events.stream().map(IcsEvent::toString).collect(Collectors.toList());
+    }
+
+
+
+    private static ByteArrayInputStream toIcs(final String pEvents)
+    {
+        final String ics = "BEGIN:VCALENDAR\r\n" + pEvents + "END:VCALENDAR\r\n";
+        return new ByteArrayInputStream(ics.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+
+    private static String event(final String pStart, final String pRule, final String pSummary)
+    {
+        return "BEGIN:VEVENT\r\nDTSTART;VALUE=DATE:" + pStart + "\r\n"
+            + (pRule != null ? "RRULE:" + pRule + "\r\n" : "") + "SUMMARY:" + pSummary + "\r\nEND:VEVENT\r\n";
+    }
+
+
+
+    @Test
+    public void testCountContinuesPastLastStartYear()
+        throws IOException
+    {
+        final List<String> actual = read(event("20261105", "FREQ=MONTHLY;COUNT=4", "Papier"));
+        Assertions.assertEquals(List.of("2026-11-5 Papier", "2026-12-5 Papier", "2027-1-5 Papier", "2027-2-5 Papier"),
+            actual);
+    }
+
+
+
+    @Test
+    public void testCountAgreesWithReferenceParser()
+        throws IOException
+    {
+        final String events = event("20261105", "FREQ=MONTHLY;COUNT=4", "Papier");
+        Assertions.assertEquals(readReference(events), read(events));
+    }
+
+
+
+    @Test
+    public void testUntilContinuesPastLastStartYear()
+        throws IOException
+    {
+        final List<String> actual = read(event("20261221", "FREQ=WEEKLY;UNTIL=20270111", "Bio"));
+        Assertions.assertEquals(List.of("2026-12-21 Bio", "2026-12-28 Bio", "2027-1-4 Bio", "2027-1-11 Bio"), actual);
+    }
+
+
+
+    @Test
+    public void testEndlessSeriesEndsWithLastStartYear()
+        throws IOException
+    {
+        final List<String> actual = read(event("20250301", "FREQ=YEARLY", "Schadstoff")
+            + event("20270115", null, "Rest"));
+        Assertions.assertEquals(List.of("2027-1-15 Rest", "2025-3-1 Schadstoff", "2026-3-1 Schadstoff",
+            "2027-3-1 Schadstoff"), actual);
+    }
+}
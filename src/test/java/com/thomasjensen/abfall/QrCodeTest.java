@@ -0,0 +1,139 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import io.nayuki.qrcodegen.QrSegment;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Known-answer tests of the {@link QrCode} encoder, which compare its modules with those of the reference encoder by
+ * Project Nayuki, using byte mode, the same error correction level, and versions 1 to 10.
+ */
+public class QrCodeTest
+{
+    private static final String SHORT = "abfall";
+
+    private static final String URL = "https://github.com/tsjensen/abfall";
+
+    private static final String FEED = "https://mein-abfallkalender.online/ical.ics"
+        + "?key=4f3a2b1c-9d8e-7f6a-5b4c-3d2e1f0a9b8c&year=2026&street=M%C3%BChlenweg";
+
+    /** 213 bytes, the most which fits into version 10 with error correction level M */
+    private static final String LONGEST = "https://example.com/" + "Müllabfuhr-".repeat(16) + "x";
+
+
+
+    private static io.nayuki.qrcodegen.QrCode reference(final String pText, final QrCode.Ecc pEcc)
+    {
+        final io.nayuki.qrcodegen.QrCode.Ecc ecc;
+        switch (pEcc) {
+            case L:
+                ecc = io.nayuki.qrcodegen.QrCode.Ecc.LOW;
+                break;
+            case M:
+                ecc = io.nayuki.qrcodegen.QrCode.Ecc.MEDIUM;
+                break;
+            case Q:
+                ecc = io.nayuki.qrcodegen.QrCode.Ecc.QUARTILE;
+                break;
+            default:
+                ecc = io.nayuki.qrcodegen.QrCode.Ecc.HIGH;
+                break;
+        }
+        final List<QrSegment> segments = List.of(QrSegment.makeBytes(pText.getBytes(StandardCharsets.UTF_8)));
+        return io.nayuki.qrcodegen.QrCode.encodeSegments(segments, ecc, 1, 10, -1, false);
+    }
+
+
+
+    private static void assertSameAsReference(final String pText, final QrCode.Ecc pEcc)
+    {
+        final io.nayuki.qrcodegen.QrCode expected = reference(pText, pEcc);
+        final QrCode actual = QrCode.encode(pText, pEcc);
+
+        Assertions.assertEquals(expected.version, actual.getVersion(), "version");
+        Assertions.assertEquals(expected.size, actual.getSize(), "size");
+        Assertions.assertEquals(expected.mask, actual.getMask(), "mask");
+        for (int y = 0; y < expected.size; y++) {
+            for (int x = 0; x < expected.size; x++) {
+                Assertions.assertEquals(expected.getModule(x, y), actual.isDark(x, y), "module " + x + "," + y);
+            }
+        }
+    }
+
+
+
+    @Test
+    public void testShortText()
+    {
+        assertSameAsReference(SHORT, QrCode.Ecc.M);
+        Assertions.assertEquals(1, QrCode.encode(SHORT, QrCode.Ecc.M).getVersion());
+    }
+
+
+
+    @Test
+    public void testUrlWithAllLevels()
+    {
+        for (final QrCode.Ecc ecc : QrCode.Ecc.values()) {
+            assertSameAsReference(URL, ecc);
+        }
+    }
+
+
+
+    @Test
+    public void testFeedUrl()
+    {
+        assertSameAsReference(FEED, QrCode.DEFAULT_ECC);
+    }
+
+
+
+    @Test
+    public void testLongestText()
+    {
+        Assertions.assertEquals(213, LONGEST.getBytes(StandardCharsets.UTF_8).length);
+        assertSameAsReference(LONGEST, QrCode.Ecc.M);
+        Assertions.assertEquals(10, QrCode.encode(LONGEST, QrCode.Ecc.M).getVersion());
+    }
+
+
+
+    @Test
+    public void testEveryVersion()
+    {
+        // the texts grow by 15 bytes, so that each of the versions 1 to 10 is used at least once
+        for (int length = 1; length <= 213; length += 15) {
+            assertSameAsReference("x".repeat(length), QrCode.Ecc.M);
+        }
+    }
+
+
+
+    @Test
+    public void testTooLongTextIsRejected()
+    {
+        final String tooLong = LONGEST + "x";
+        Assertions.assertThrows(IllegalArgumentException.class, () -> QrCode.forText(tooLong));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> QrCode.encode(tooLong, QrCode.Ecc.M));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new Abfall(Engine.Direct, Format.Xlsx, null)
+            .withQrCode(tooLong));
+    }
+}
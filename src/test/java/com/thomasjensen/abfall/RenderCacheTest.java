@@ -0,0 +1,197 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests the coalescing, eviction, and failure handling of the {@link RenderCache}.
+ */
+public class RenderCacheTest
+{
+    private static final int THREADS = 8;
+
+
+
+    private static byte[] file(final int pSize)
+    {
+        return new byte[pSize];
+    }
+
+
+
+    /**
+     * Call the cache for the same key from several threads, while the first render is blocked until all other threads
+     * are waiting for it.
+     *
+     * @param pCache the cache
+     * @param pRenderer the renderer, which is called after the other threads are waiting
+     * @return the results of the threads, whose {@link Future#get} throws the exception of a failed call
+     */
+    private static List<Future<byte[]>> getConcurrently(final RenderCache pCache, final RenderCache.Renderer pRenderer)
+        throws InterruptedException
+    {
+        final CountDownLatch waiting = new CountDownLatch(1);
+        final RenderCache.Renderer blocked = () -> {
+            try {
+                Assertions.assertTrue(waiting.await(10, TimeUnit.SECONDS));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return pRenderer.render();
+        };
+        final ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<byte[]>> result = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                result.add(pool.submit(() -> pCache.get("key", blocked)));
+            }
+            final long deadline = System.currentTimeMillis() + 10000L;
+            while (pCache.getCoalescedCount() < THREADS - 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10L);
+            }
+            Assertions.assertEquals(THREADS - 1, pCache.getCoalescedCount());
+            waiting.countDown();
+            pool.shutdown();
+            Assertions.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS), "waiting threads were not released");
+            return result;
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+
+
+    @Test
+    public void testConcurrentCallsRenderOnce()
+        throws Exception
+    {
+        final RenderCache cache = new RenderCache(1000L);
+        final AtomicInteger renderCount = new AtomicInteger();
+        final byte[] expected = file(100);
+
+        final List<Future<byte[]>> results = getConcurrently(cache, () -> {
+            renderCount.incrementAndGet();
+            return expected;
+        });
+
+        for (final Future<byte[]> result : results) {
+            Assertions.assertSame(expected, result.get());
+        }
+        Assertions.assertEquals(1, renderCount.get());
+        Assertions.assertEquals(1L, cache.getMissCount());
+        Assertions.assertSame(expected, cache.get("key", () -> Assertions.fail("rendered again")));
+        Assertions.assertEquals(1L, cache.getHitCount());
+    }
+
+
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted()
+        throws IOException
+    {
+        final RenderCache cache = new RenderCache(300L);
+        cache.get("a", () -> file(100));
+        cache.get("b", () -> file(100));
+        cache.get("c", () -> file(100));
+        cache.get("a", () -> Assertions.fail("a was evicted"));  // now b is the least recently used
+
+        cache.get("d", () -> file(150));
+
+        Assertions.assertEquals(2L, cache.getEvictionCount());
+        Assertions.assertEquals(2, cache.getEntryCount());
+        Assertions.assertEquals(250L, cache.getSizeBytes());
+        cache.get("a", () -> Assertions.fail("a was evicted"));
+        cache.get("d", () -> Assertions.fail("d was evicted"));
+        Assertions.assertEquals(4L, cache.getMissCount());
+    }
+
+
+
+    @Test
+    public void testFileLargerThanCacheIsNotCached()
+        throws IOException
+    {
+        final RenderCache cache = new RenderCache(300L);
+        cache.get("a", () -> file(100));
+
+        Assertions.assertEquals(301, cache.get("big", () -> file(301)).length);
+
+        Assertions.assertEquals(1, cache.getEntryCount());
+        Assertions.assertEquals(100L, cache.getSizeBytes());
+        Assertions.assertEquals(0L, cache.getEvictionCount());
+    }
+
+
+
+    @Test
+    public void testFailureIsPropagatedToWaiters()
+        throws Exception
+    {
+        final RenderCache cache = new RenderCache(1000L);
+
+        final List<Future<byte[]>> results = getConcurrently(cache, () -> {
+            throw new IOException("invalid ICS file");
+        });
+
+        for (final Future<byte[]> result : results) {
+            final ExecutionException e = Assertions.assertThrows(ExecutionException.class, result::get);
+            Assertions.assertInstanceOf(IOException.class, e.getCause());
+            Assertions.assertEquals("invalid ICS file", e.getCause().getMessage());
+        }
+        Assertions.assertEquals(0, cache.getEntryCount());
+        Assertions.assertEquals(100, cache.get("key", () -> file(100)).length);  // failures are not cached
+    }
+
+
+
+    @Test
+    public void testErrorReleasesWaiters()
+        throws Exception
+    {
+        final RenderCache cache = new RenderCache(1000L);
+
+        final List<Future<byte[]>> results = getConcurrently(cache, () -> {
+            throw new StackOverflowError();
+        });
+
+        int errorCount = 0;
+        for (final Future<byte[]> result : results) {
+            final ExecutionException e = Assertions.assertThrows(ExecutionException.class, result::get);
+            if (e.getCause() instanceof StackOverflowError) {
+                errorCount++;  // the thread which rendered
+            }
+            else {
+                Assertions.assertInstanceOf(IOException.class, e.getCause());
+                Assertions.assertInstanceOf(StackOverflowError.class, e.getCause().getCause());
+            }
+        }
+        Assertions.assertEquals(1, errorCount);
+    }
+}
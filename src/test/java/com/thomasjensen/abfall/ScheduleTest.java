@@ -0,0 +1,165 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.util.List;
+import java.util.SortedMap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests the {@link Schedule} grid, its serialization, and the limit of pickups per day in
+ * {@link Converter#groupByDay}.
+ */
+public class ScheduleTest
+{
+    /** month and day of the first and last slot of the grid, and of the days which not every year has */
+    private static final int[][] EDGE_DAYS = {{1, 1}, {2, 28}, {2, 29}, {3, 1}, {6, 30}, {12, 31}};
+
+
+
+    private static Schedule roundTrip(final Schedule pSchedule)
+    {
+        return Schedule.fromBytes(pSchedule.toBytes());
+    }
+
+
+
+    @Test
+    public void testEveryCategoryOnEdgeDays()
+    {
+        final Schedule schedule = new Schedule();
+        final Art[] arts = Art.values();
+        for (final int[] day : EDGE_DAYS) {
+            for (int i = 0; i < arts.length; i++) {
+                Assertions.assertEquals(i + 1, schedule.add(day[0], day[1], arts[i]));
+            }
+        }
+
+        final Schedule restored = roundTrip(schedule);
+
+        Assertions.assertEquals(schedule, restored);
+        Assertions.assertEquals(schedule.hashCode(), restored.hashCode());
+        Assertions.assertEquals(schedule.toString(), restored.toString());
+        Assertions.assertEquals(2 * arts.length * EDGE_DAYS.length, schedule.toBytes().length);
+        for (final int[] day : EDGE_DAYS) {
+            Assertions.assertEquals(arts.length, restored.getCount(day[0], day[1]));
+            Assertions.assertEquals(arts[0], restored.getFirst(day[0], day[1]));
+            Assertions.assertEquals(arts[arts.length - 1], restored.getLast(day[0], day[1]));
+        }
+        Assertions.assertTrue(restored.isEmpty(1, 2));
+        Assertions.assertTrue(restored.isEmpty(12, 30));
+    }
+
+
+
+    @Test
+    public void testEachCategoryAlone()
+    {
+        for (final Art art : Art.values()) {
+            for (final int[] day : EDGE_DAYS) {
+                final Schedule schedule = new Schedule();
+                schedule.add(day[0], day[1], art);
+
+                final Schedule restored = roundTrip(schedule);
+
+                Assertions.assertEquals(schedule, restored, art + " on " + day[1] + "." + day[0] + ".");
+                Assertions.assertEquals(1, restored.getCount(day[0], day[1]));
+                Assertions.assertEquals(art, restored.getFirst(day[0], day[1]));
+                Assertions.assertEquals(art, restored.getLast(day[0], day[1]));
+            }
+        }
+    }
+
+
+
+    @Test
+    public void testEmptySchedule()
+    {
+        final Schedule schedule = new Schedule();
+
+        Assertions.assertEquals(0, schedule.toBytes().length);
+        Assertions.assertEquals(schedule, roundTrip(schedule));
+        Assertions.assertEquals("{}", schedule.toString());
+        Assertions.assertNull(schedule.getFirst(1, 1));
+        Assertions.assertNull(schedule.getLast(12, 31));
+    }
+
+
+
+    @Test
+    public void testSameCategoryTwice()
+    {
+        final Schedule schedule = new Schedule();
+        schedule.add(2, 29, Art.Papier);
+
+        Assertions.assertEquals(1, schedule.add(2, 29, Art.Papier));
+        Assertions.assertEquals(2, roundTrip(schedule).toBytes().length);
+    }
+
+
+
+    @Test
+    public void testInvalidInput()
+    {
+        final Schedule schedule = new Schedule();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> schedule.add(0, 1, Art.Bio));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> schedule.add(13, 1, Art.Bio));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> schedule.add(1, 32, Art.Bio));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Schedule.fromBytes(new byte[3]));
+        // slot 0, category ordinal 127
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Schedule.fromBytes(new byte[]{0, 0x7f}));
+        // slot 372, just after December 31
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> Schedule.fromBytes(new byte[]{(byte) (372 >>> 1), (byte) (372 << 7)}));
+    }
+
+
+
+    @Test
+    public void testGroupByDay()
+    {
+        final List<IcsEvent> events = List.of(
+            new IcsEvent(2028, 2, 29, "Papiertonne", null),
+            new IcsEvent(2028, 2, 29, "Restmülltonne", null),
+            new IcsEvent(2028, 2, 29, "Papiertonne", null),
+            new IcsEvent(2028, 12, 31, "Gelber Sack", null),
+            new IcsEvent(2029, 1, 1, "Biotonne", null),
+            new IcsEvent(2029, 1, 1, "Weihnachtsbaum", null));
+
+        final SortedMap<Integer, Schedule> result = new Converter().groupByDay(events,
+            CategoryClassifier.getDefault());
+
+        Assertions.assertEquals(List.of(2028, 2029), List.copyOf(result.keySet()));
+        Assertions.assertEquals("{29.02.=[Papier, Rest], 31.12.=[GelberSack]}", result.get(2028).toString());
+        Assertions.assertEquals("{01.01.=[Bio]}", result.get(2029).toString());
+    }
+
+
+
+    @Test
+    public void testGroupByDayTooManyEvents()
+    {
+        final List<IcsEvent> events = List.of(
+            new IcsEvent(2026, 12, 31, "Papiertonne", null),
+            new IcsEvent(2026, 12, 31, "Restmülltonne", null),
+            new IcsEvent(2026, 12, 31, "Biotonne", null));
+
+        final IllegalStateException e = Assertions.assertThrows(IllegalStateException.class,
+            () -> new Converter().groupByDay(events, CategoryClassifier.getDefault()));
+        Assertions.assertEquals("too many events per day on 31.12.2026", e.getMessage());
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * abfall - convert ICS format trash calendar into a single Excel sheet
+ * Copyright (C) 2011-2026 Thomas Jensen
+ *
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License, version 3, as published by the Free Software Foundation.
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ *
+ * SPDX-License-Identifier: GPL-3.0-only
+ */
+package com.thomasjensen.abfall;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests the status codes of the conversion {@link Server}, which is started on an ephemeral port.
+ */
+public class ServerTest
+{
+    private static final int YEAR = 2026;
+
+    private Server server;
+
+
+
+    private void start(final int pRenderCacheMb)
+        throws IOException
+    {
+        final Config config = Config.builder(YearRange.of(YEAR)).engine(Engine.Direct).serverPort(0)
+            .renderCacheMb(pRenderCacheMb).build();
+        server = new Server(config);
+        server.start();
+    }
+
+
+
+    @AfterEach
+    public void stop()
+    {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+
+
+    private HttpResponse<byte[]> post(final String pQuery, final byte[] pIcs)
+        throws IOException, InterruptedException
+    {
+        // the JDK's HTTP server does not speak HTTP/2, so don't let the client try to upgrade the connection
+        final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        final HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort()
+                + Server.PATH + pQuery))
+            .POST(HttpRequest.BodyPublishers.ofByteArray(pIcs))
+            .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+
+
+    /**
+     * Send a request through a plain socket, so that its headers are not checked by an HTTP client.
+     *
+     * @param pHeaders the request line and headers, without the empty line which ends them
+     * @param pBodyBytes the number of body bytes to send in chunks, which is stopped when the server closes the
+     * connection; 0 for no body
+     * @return the status code of the response
+     */
+    private int sendRaw(final String pHeaders, final long pBodyBytes)
+        throws IOException
+    {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            final OutputStream os = socket.getOutputStream();
+            os.write((pHeaders + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            if (pBodyBytes > 0) {
+                final byte[] chunk = new byte[1024 * 1024];
+                Arrays.fill(chunk, (byte) 'x');
+                final byte[] chunkHeader = (Integer.toHexString(chunk.length) + "\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+                try {
+                    for (long sent = 0; sent < pBodyBytes; sent += chunk.length) {
+                        os.write(chunkHeader);
+                        os.write(chunk);
+                        os.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+                    }
+                    os.write("0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                }
+                catch (IOException e) {
+                    // the server answered, and closed the connection without reading the rest
+                }
+            }
+            os.flush();
+            final InputStream is = socket.getInputStream();
+            final StringBuilder statusLine = new StringBuilder();
+            for (int c = is.read(); c >= 0 && c != '\r'; c = is.read()) {
+                statusLine.append((char) c);
+            }
+            final String[] parts = statusLine.toString().split(" ");
+            Assertions.assertTrue(parts.length >= 2, "no status line: " + statusLine);
+            return Integer.parseInt(parts[1]);
+        }
+    }
+
+
+
+    private static byte[] sampleIcs()
+        throws IOException
+    {
+        try (InputStream is = Server.class.getResourceAsStream("beispiel.ics")) {
+            return is.readAllBytes();
+        }
+    }
+
+
+
+    @Test
+    public void testConvert()
+        throws Exception
+    {
+        start(0);
+        final HttpResponse<byte[]> response = post("?year=" + YEAR + "&locale=en", sampleIcs());
+
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
+            response.headers().firstValue("Content-Type").orElse(null));
+        Assertions.assertEquals('P', response.body()[0]);  // a zip file
+        Assertions.assertEquals('K', response.body()[1]);
+    }
+
+
+
+    @Test
+    public void testConvertCached()
+        throws Exception
+    {
+        start(RenderCache.DEFAULT_SIZE_MB);
+        final HttpResponse<byte[]> first = post("", sampleIcs());
+        final HttpResponse<byte[]> second = post("", sampleIcs());
+
+        Assertions.assertEquals(200, first.statusCode());
+        Assertions.assertEquals(200, second.statusCode());
+        Assertions.assertArrayEquals(first.body(), second.body());
+        Assertions.assertEquals(1L, server.getRenderCache().getHitCount());
+    }
+
+
+
+    @Test
+    public void testInvalidParameter()
+        throws Exception
+    {
+        start(0);
+        Assertions.assertEquals(400, post("?year=1999", sampleIcs()).statusCode());
+        Assertions.assertEquals(400, post("?color=blue", sampleIcs()).statusCode());
+    }
+
+
+
+    @Test
+    public void testInvalidContentLength()
+        throws IOException
+    {
+        start(0);
+        Assertions.assertEquals(400,
+            sendRaw("POST " + Server.PATH + " HTTP/1.1\r\nHost: localhost\r\nContent-Length: abc", 0L));
+    }
+
+
+
+    @Test
+    public void testContentLengthTooLarge()
+        throws IOException
+    {
+        start(0);
+        Assertions.assertEquals(413,
+            sendRaw("POST " + Server.PATH + " HTTP/1.1\r\nHost: localhost\r\nContent-Length: 99999999999", 0L));
+    }
+
+
+
+    @Test
+    public void testChunkedUploadTooLarge()
+        throws IOException
+    {
+        start(0);
+        Assertions.assertEquals(413, sendRaw("POST " + Server.PATH
+            + " HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked", 65L * 1024 * 1024));
+    }
+
+
+
+    @Test
+    public void testChunkedUploadTooLargeCached()
+        throws IOException
+    {
+        start(RenderCache.DEFAULT_SIZE_MB);
+        Assertions.assertEquals(413, sendRaw("POST " + Server.PATH
+            + " HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked", 65L * 1024 * 1024));
+    }
+}